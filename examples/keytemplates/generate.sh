@@ -33,6 +33,10 @@ tinkey create-key-template \
 tinkey create-key-template \
 --type-url type.googleapis.com/google.crypto.tink.ChaCha20Poly1305Key > aead/CHACHA20_POLY1305.ascii
 
+# XChaCha20Poly1305
+tinkey create-key-template \
+--type-url type.googleapis.com/google.crypto.tink.XChaCha20Poly1305Key > aead/XCHACHA20_POLY1305.ascii
+
 tinkey create-key-template \
 --type-url type.googleapis.com/google.crypto.tink.AesEaxKey \
 --key-format "params{iv_size:16}key_size:32" > aead/AES256_EAX.ascii
@@ -0,0 +1,110 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.aead;
+
+import com.google.crypto.tink.Aead;
+import com.google.crypto.tink.CleartextKeysetHandle;
+import com.google.crypto.tink.TinkProto.KeyTemplate;
+import com.google.crypto.tink.subtle.AeadBatch;
+import com.google.crypto.tink.subtle.Random;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks {@link AeadBatch#encrypt} and {@link AeadBatch#decrypt} with the {@code Aead}
+ * primitives returned by {@code AeadFactory}, against encrypting many small records one by one.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AeadFactoryBatchBenchmark {
+  @Param({"AES128_GCM", "AES128_EAX", "CHACHA20_POLY1305", "AES128_CTR_HMAC_SHA256"})
+  public String keyTemplate;
+
+  @Param({"100", "500"})
+  public int recordSize;
+
+  @Param({"1000"})
+  public int batchSize;
+
+  private Aead aead;
+  private byte[][] plaintexts;
+  private byte[] aad;
+  private int[] ciphertextOffsets;
+  private byte[] ciphertexts;
+
+  @Setup
+  public void setUp() throws GeneralSecurityException {
+    AeadConfig.registerStandardKeyTypes();
+    aead = AeadFactory.getPrimitive(CleartextKeysetHandle.generateNew(getKeyTemplate()));
+    plaintexts = new byte[batchSize][];
+    for (int i = 0; i < batchSize; i++) {
+      plaintexts[i] = Random.randBytes(recordSize);
+    }
+    aad = Random.randBytes(16);
+    ciphertextOffsets = new int[batchSize + 1];
+    ciphertexts = AeadBatch.encrypt(aead, plaintexts, aad, ciphertextOffsets);
+  }
+
+  @Benchmark
+  public byte[][] encryptOneByOne() throws GeneralSecurityException {
+    byte[][] result = new byte[batchSize][];
+    for (int i = 0; i < batchSize; i++) {
+      result[i] = aead.encrypt(plaintexts[i], aad);
+    }
+    return result;
+  }
+
+  @Benchmark
+  public byte[] encryptBatch() throws GeneralSecurityException {
+    return AeadBatch.encrypt(aead, plaintexts, aad, new int[batchSize + 1]);
+  }
+
+  @Benchmark
+  public byte[][] decryptBatch() throws GeneralSecurityException {
+    return AeadBatch.decrypt(aead, ciphertexts, ciphertextOffsets, aad);
+  }
+
+  private KeyTemplate getKeyTemplate() throws GeneralSecurityException {
+    switch (keyTemplate) {
+      case "AES128_GCM":
+        return AeadKeyTemplates.AES128_GCM;
+      case "AES128_EAX":
+        return AeadKeyTemplates.AES128_EAX;
+      case "CHACHA20_POLY1305":
+        return AeadKeyTemplates.CHACHA20_POLY1305;
+      case "AES128_CTR_HMAC_SHA256":
+        return AeadKeyTemplates.AES128_CTR_HMAC_SHA256;
+      default:
+        throw new GeneralSecurityException("unknown key template: " + keyTemplate);
+    }
+  }
+}
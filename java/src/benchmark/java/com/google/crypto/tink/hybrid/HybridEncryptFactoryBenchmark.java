@@ -0,0 +1,107 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.hybrid;
+
+import com.google.crypto.tink.CommonProto.EcPointFormat;
+import com.google.crypto.tink.CommonProto.EllipticCurveType;
+import com.google.crypto.tink.CommonProto.HashType;
+import com.google.crypto.tink.EciesAeadHkdfProto.EciesAeadHkdfPrivateKey;
+import com.google.crypto.tink.HybridDecrypt;
+import com.google.crypto.tink.HybridEncrypt;
+import com.google.crypto.tink.TestUtil;
+import com.google.crypto.tink.TinkProto.KeyData;
+import com.google.crypto.tink.TinkProto.KeyStatusType;
+import com.google.crypto.tink.TinkProto.Keyset.Key;
+import com.google.crypto.tink.TinkProto.OutputPrefixType;
+import com.google.crypto.tink.aead.AeadKeyTemplates;
+import com.google.crypto.tink.subtle.Random;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for the {@code HybridEncrypt} and {@code HybridDecrypt} primitives returned by
+ * {@code HybridEncryptFactory} and {@code HybridDecryptFactory}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HybridEncryptFactoryBenchmark {
+  @Param({"16", "256", "4096", "65536", "1048576", "16777216"})
+  public int messageSize;
+
+  private HybridEncrypt hybridEncrypt;
+  private HybridDecrypt hybridDecrypt;
+  private byte[] plaintext;
+  private byte[] contextInfo;
+  private byte[] ciphertext;
+
+  @Setup
+  public void setUp() throws Exception {
+    HybridEncryptConfig.registerStandardKeyTypes();
+    HybridDecryptConfig.registerStandardKeyTypes();
+    EciesAeadHkdfPrivateKey privProto = TestUtil.generateEciesAeadHkdfPrivKey(
+        EllipticCurveType.NIST_P256, HashType.SHA256, EcPointFormat.UNCOMPRESSED,
+        AeadKeyTemplates.AES128_GCM, new byte[0]);
+    Key priv = TestUtil.createKey(
+        TestUtil.createKeyData(
+            privProto,
+            EciesAeadHkdfPrivateKeyManager.TYPE_URL,
+            KeyData.KeyMaterialType.ASYMMETRIC_PRIVATE),
+        42,
+        KeyStatusType.ENABLED,
+        OutputPrefixType.TINK);
+    Key pub = TestUtil.createKey(
+        TestUtil.createKeyData(
+            privProto.getPublicKey(),
+            EciesAeadHkdfPublicKeyManager.TYPE_URL,
+            KeyData.KeyMaterialType.ASYMMETRIC_PUBLIC),
+        42,
+        KeyStatusType.ENABLED,
+        OutputPrefixType.TINK);
+    hybridEncrypt = HybridEncryptFactory.getPrimitive(
+        TestUtil.createKeysetHandle(TestUtil.createKeyset(pub)));
+    hybridDecrypt = HybridDecryptFactory.getPrimitive(
+        TestUtil.createKeysetHandle(TestUtil.createKeyset(priv)));
+    plaintext = Random.randBytes(messageSize);
+    contextInfo = Random.randBytes(16);
+    ciphertext = hybridEncrypt.encrypt(plaintext, contextInfo);
+  }
+
+  @Benchmark
+  public byte[] encrypt() throws GeneralSecurityException {
+    return hybridEncrypt.encrypt(plaintext, contextInfo);
+  }
+
+  @Benchmark
+  public byte[] decrypt() throws GeneralSecurityException {
+    return hybridDecrypt.decrypt(ciphertext, contextInfo);
+  }
+}
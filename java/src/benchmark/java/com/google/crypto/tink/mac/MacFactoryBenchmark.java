@@ -0,0 +1,71 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.mac;
+
+import com.google.crypto.tink.CleartextKeysetHandle;
+import com.google.crypto.tink.Mac;
+import com.google.crypto.tink.subtle.Random;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for the {@code Mac} primitives returned by {@code MacFactory}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MacFactoryBenchmark {
+  @Param({"16", "256", "4096", "65536", "1048576", "16777216"})
+  public int messageSize;
+
+  private Mac mac;
+  private byte[] data;
+  private byte[] tag;
+
+  @Setup
+  public void setUp() throws GeneralSecurityException {
+    MacConfig.registerStandardKeyTypes();
+    mac = MacFactory.getPrimitive(
+        CleartextKeysetHandle.generateNew(MacKeyTemplates.HMAC_SHA256_128BITTAG));
+    data = Random.randBytes(messageSize);
+    tag = mac.computeMac(data);
+  }
+
+  @Benchmark
+  public byte[] computeMac() throws GeneralSecurityException {
+    return mac.computeMac(data);
+  }
+
+  @Benchmark
+  public void verifyMac() throws GeneralSecurityException {
+    mac.verifyMac(tag, data);
+  }
+}
@@ -0,0 +1,79 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.signature;
+
+import com.google.crypto.tink.CleartextKeysetHandle;
+import com.google.crypto.tink.PublicKeySign;
+import com.google.crypto.tink.TinkProto.KeyTemplate;
+import com.google.crypto.tink.subtle.Random;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for the {@code PublicKeySign} primitives returned by {@code PublicKeySignFactory}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PublicKeySignFactoryBenchmark {
+  @Param({"ECDSA_P256", "ED25519"})
+  public String keyTemplate;
+
+  @Param({"16", "256", "4096", "65536", "1048576", "16777216"})
+  public int messageSize;
+
+  private PublicKeySign signer;
+  private byte[] data;
+
+  @Setup
+  public void setUp() throws GeneralSecurityException {
+    PublicKeySignConfig.registerStandardKeyTypes();
+    signer = PublicKeySignFactory.getPrimitive(
+        CleartextKeysetHandle.generateNew(getKeyTemplate()));
+    data = Random.randBytes(messageSize);
+  }
+
+  @Benchmark
+  public byte[] sign() throws GeneralSecurityException {
+    return signer.sign(data);
+  }
+
+  private KeyTemplate getKeyTemplate() throws GeneralSecurityException {
+    switch (keyTemplate) {
+      case "ECDSA_P256":
+        return SignatureKeyTemplates.ECDSA_P256;
+      case "ED25519":
+        return SignatureKeyTemplates.ED25519;
+      default:
+        throw new GeneralSecurityException("unknown key template: " + keyTemplate);
+    }
+  }
+}
@@ -0,0 +1,91 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.subtle;
+
+import com.google.crypto.tink.Aead;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.TimeUnit;
+import javax.crypto.spec.SecretKeySpec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for the subtle {@code Aead} implementations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AeadBenchmark {
+  @Param({"AesGcmJce", "AesEaxJce", "ChaCha20Poly1305", "EncryptThenAuthenticate"})
+  public String implementation;
+
+  @Param({"16", "256", "4096", "65536", "1048576", "16777216"})
+  public int messageSize;
+
+  private Aead aead;
+  private byte[] plaintext;
+  private byte[] aad;
+  private byte[] ciphertext;
+
+  @Setup
+  public void setUp() throws GeneralSecurityException {
+    aead = newAead(implementation);
+    plaintext = Random.randBytes(messageSize);
+    aad = Random.randBytes(16);
+    ciphertext = aead.encrypt(plaintext, aad);
+  }
+
+  @Benchmark
+  public byte[] encrypt() throws GeneralSecurityException {
+    return aead.encrypt(plaintext, aad);
+  }
+
+  @Benchmark
+  public byte[] decrypt() throws GeneralSecurityException {
+    return aead.decrypt(ciphertext, aad);
+  }
+
+  private static Aead newAead(String implementation) throws GeneralSecurityException {
+    switch (implementation) {
+      case "AesGcmJce":
+        return new AesGcmJce(Random.randBytes(16));
+      case "AesEaxJce":
+        return new AesEaxJce(Random.randBytes(16), 16);
+      case "ChaCha20Poly1305":
+        return new ChaCha20Poly1305(Random.randBytes(DJBCipher.KEY_SIZE_IN_BYTES));
+      case "EncryptThenAuthenticate":
+        return new EncryptThenAuthenticate(
+            new AesCtrJceCipher(Random.randBytes(16), 16),
+            new MacJce("HMACSHA256", new SecretKeySpec(Random.randBytes(32), "HMAC"), 16),
+            16);
+      default:
+        throw new GeneralSecurityException("unknown implementation: " + implementation);
+    }
+  }
+}
@@ -0,0 +1,91 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.subtle;
+
+import com.google.crypto.tink.PublicKeySign;
+import com.google.crypto.tink.PublicKeyVerify;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.interfaces.ECPrivateKey;
+import java.security.interfaces.ECPublicKey;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for {@code EcdsaSignJce}, {@code Ed25519Sign} and their verifiers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PublicKeySignBenchmark {
+  @Param({"EcdsaSignJce", "Ed25519Sign"})
+  public String implementation;
+
+  @Param({"16", "256", "4096", "65536", "1048576", "16777216"})
+  public int messageSize;
+
+  private PublicKeySign signer;
+  private PublicKeyVerify verifier;
+  private byte[] data;
+  private byte[] signature;
+
+  @Setup
+  public void setUp() throws GeneralSecurityException {
+    switch (implementation) {
+      case "EcdsaSignJce":
+        KeyPairGenerator keyGen = KeyPairGenerator.getInstance("EC");
+        keyGen.initialize(EcUtil.getNistP256Params());
+        KeyPair keyPair = keyGen.generateKeyPair();
+        signer = new EcdsaSignJce((ECPrivateKey) keyPair.getPrivate(), "SHA256WithECDSA");
+        verifier = new EcdsaVerifyJce((ECPublicKey) keyPair.getPublic(), "SHA256WithECDSA");
+        break;
+      case "Ed25519Sign":
+        Ed25519Sign.KeyPair ed25519KeyPair = Ed25519Sign.KeyPair.newKeyPair();
+        signer = new Ed25519Sign(ed25519KeyPair.getPrivateKey());
+        verifier = new Ed25519Verify(ed25519KeyPair.getPublicKey());
+        break;
+      default:
+        throw new GeneralSecurityException("unknown implementation: " + implementation);
+    }
+    data = Random.randBytes(messageSize);
+    signature = signer.sign(data);
+  }
+
+  @Benchmark
+  public byte[] sign() throws GeneralSecurityException {
+    return signer.sign(data);
+  }
+
+  @Benchmark
+  public void verify() throws GeneralSecurityException {
+    verifier.verify(signature, data);
+  }
+}
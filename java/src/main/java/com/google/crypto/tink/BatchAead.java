@@ -0,0 +1,62 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink;
+
+import java.security.GeneralSecurityException;
+
+/**
+ * A {@link ZeroCopyAead} that encrypts and decrypts many records at once, sharing work between
+ * them, e.g. by drawing all IVs from the random number generator in one call.
+ *
+ * <p>This interface is optional. Use {@code com.google.crypto.tink.subtle.AeadBatch} to
+ * encrypt or decrypt a batch with any {@code Aead}, which uses this interface if the primitive
+ * implements it, and processes the records one by one otherwise.
+ *
+ * <p>A batch of ciphertexts is stored back to back in a single array, and is described by an
+ * offset index: the ciphertext of record {@code i} occupies the bytes from
+ * {@code ciphertextOffsets[i]} (inclusive) to {@code ciphertextOffsets[i + 1]} (exclusive).
+ */
+public interface BatchAead extends ZeroCopyAead {
+  /**
+   * Encrypts each of {@code plaintexts} with {@code additionalData} as additional authenticated
+   * data, and writes the ciphertext of {@code plaintexts[i]} into {@code ciphertext}, starting
+   * at {@code ciphertextOffsets[i]}. Each ciphertext is the same as one returned by
+   * {@link #encrypt(byte[], byte[])}, and is {@code ciphertextSize(plaintexts[i].length)} bytes
+   * long.
+   *
+   * <p>Only the first {@code plaintexts.length} entries of {@code ciphertextOffsets} are read,
+   * so that both an offset index and the start offsets of records that are not back to back can
+   * be passed.
+   *
+   * @throws javax.crypto.ShortBufferException if a ciphertext does not fit into
+   * {@code ciphertext}.
+   */
+  void encryptBatch(final byte[][] plaintexts, final byte[] additionalData, byte[] ciphertext,
+      final int[] ciphertextOffsets) throws GeneralSecurityException;
+
+  /**
+   * Decrypts each of the ciphertexts stored back to back in {@code ciphertext}, with
+   * {@code additionalData} as additional authenticated data. The ciphertext of record {@code i}
+   * occupies the bytes from {@code ciphertextOffsets[i]} (inclusive) to
+   * {@code ciphertextOffsets[i + 1]} (exclusive).
+   *
+   * @return the plaintext of each record.
+   * @throws GeneralSecurityException if any of the records cannot be decrypted.
+   */
+  byte[][] decryptBatch(final byte[] ciphertext, final int[] ciphertextOffsets,
+      final byte[] additionalData) throws GeneralSecurityException;
+}
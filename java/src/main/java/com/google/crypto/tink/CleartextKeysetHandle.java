@@ -19,6 +19,7 @@ package com.google.crypto.tink;
 import com.google.crypto.tink.TinkProto.KeyTemplate;
 import com.google.crypto.tink.TinkProto.Keyset;
 import com.google.protobuf.InvalidProtocolBufferException;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.security.GeneralSecurityException;
@@ -69,6 +70,20 @@ public final class CleartextKeysetHandle {
     return new KeysetHandle(keyset);
   }
 
+  /**
+   * @return a watcher of {@code file}, which contains a serialized {@code Keyset}.
+   * @throws GeneralSecurityException, IOException
+   */
+  public static final KeysetFileWatcher watch(File file)
+      throws GeneralSecurityException, IOException {
+    return new KeysetFileWatcher(file, new KeysetFileWatcher.Parser() {
+      @Override
+      public KeysetHandle parse(final byte[] serialized) throws GeneralSecurityException {
+        return parseFrom(serialized);
+      }
+    });
+  }
+
   /**
    * @return a new keyset handle that contains a single fresh key generated
    * according to the {@code keyTemplate}.
@@ -0,0 +1,164 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink;
+
+import com.google.crypto.tink.CommonProto.EllipticCurveType;
+import java.security.interfaces.ECPublicKey;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded cache of validated EC public keys, keyed by their curve and coordinates. <p>
+ *
+ * Once installed with {@link Util#setEcPublicKeyCache}, {@link Util#getEcPublicKey} returns the
+ * cached {@code ECPublicKey} for coordinates that it has seen before, instead of checking again
+ * that the point is on the curve and building a new key with a {@code KeyFactory}. This helps
+ * callers that verify signatures or encrypt with a large but recurring set of public keys, as
+ * both {@code EcdsaVerifyKeyManager} and {@code EciesAeadHkdfPublicKeyManager} go through
+ * {@code Util.getEcPublicKey}. The primitives themselves can be cached as well with
+ * {@link Registry#setPrimitiveCache}. <p>
+ *
+ * At most {@code maxSize} keys are kept, and the least recently used one is evicted first.
+ * Public keys are not secret, so entries don't expire, and nothing is overwritten on eviction.
+ */
+public final class EcPublicKeyCache {
+  /** The curve and the coordinates of a public key, as they appear in the key proto. */
+  private static final class CacheKey {
+    private final EllipticCurveType curve;
+    private final byte[] x;
+    private final byte[] y;
+    private final int hashCode;
+
+    CacheKey(EllipticCurveType curve, final byte[] x, final byte[] y) {
+      this.curve = curve;
+      this.x = x.clone();
+      this.y = y.clone();
+      this.hashCode = 31 * (31 * curve.hashCode() + Arrays.hashCode(x)) + Arrays.hashCode(y);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof CacheKey)) {
+        return false;
+      }
+      CacheKey other = (CacheKey) o;
+      return curve == other.curve && Arrays.equals(x, other.x) && Arrays.equals(y, other.y);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+
+  private final int maxSize;
+  // All fields below are guarded by this.
+  private final LinkedHashMap<CacheKey, ECPublicKey> entries;
+  private long hitCount;
+  private long missCount;
+  private long evictionCount;
+
+  /**
+   * Creates a cache that holds at most {@code maxSize} public keys.
+   *
+   * @throws IllegalArgumentException if {@code maxSize} is not positive.
+   */
+  public EcPublicKeyCache(int maxSize) {
+    if (maxSize <= 0) {
+      throw new IllegalArgumentException("maxSize must be positive");
+    }
+    this.maxSize = maxSize;
+    // Access order, so that the eldest entry is the least recently used one.
+    this.entries = new LinkedHashMap<CacheKey, ECPublicKey>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<CacheKey, ECPublicKey> eldest) {
+        if (size() > EcPublicKeyCache.this.maxSize) {
+          evictionCount++;
+          return true;
+        }
+        return false;
+      }
+    };
+  }
+
+  /**
+   * @return the key cached for {@code curve}, {@code x} and {@code y}, or null if there is none.
+   */
+  synchronized ECPublicKey get(EllipticCurveType curve, final byte[] x, final byte[] y) {
+    ECPublicKey key = entries.get(new CacheKey(curve, x, y));
+    if (key == null) {
+      missCount++;
+    } else {
+      hitCount++;
+    }
+    return key;
+  }
+
+  /**
+   * Caches {@code key}, which must have been validated, for {@code curve}, {@code x} and
+   * {@code y}.
+   */
+  synchronized void put(EllipticCurveType curve, final byte[] x, final byte[] y, ECPublicKey key) {
+    entries.put(new CacheKey(curve, x, y), key);
+  }
+
+  /**
+   * Evicts all keys.
+   */
+  public synchronized void clear() {
+    evictionCount += entries.size();
+    entries.clear();
+  }
+
+  /**
+   * @return the number of keys in the cache.
+   */
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  /**
+   * @return the number of lookups that found a key.
+   */
+  public synchronized long hitCount() {
+    return hitCount;
+  }
+
+  /**
+   * @return the number of lookups that found no key, and led to validating and building one.
+   */
+  public synchronized long missCount() {
+    return missCount;
+  }
+
+  /**
+   * @return the fraction of lookups that found a key, or 0 if there was no lookup yet.
+   */
+  public synchronized double hitRate() {
+    long lookups = hitCount + missCount;
+    return lookups == 0 ? 0 : (double) hitCount / lookups;
+  }
+
+  /**
+   * @return the number of keys that were evicted because the cache was full, or by
+   * {@link #clear}.
+   */
+  public synchronized long evictionCount() {
+    return evictionCount;
+  }
+}
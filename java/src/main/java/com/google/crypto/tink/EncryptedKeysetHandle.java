@@ -20,6 +20,7 @@ import com.google.crypto.tink.TinkProto.EncryptedKeyset;
 import com.google.crypto.tink.TinkProto.KeyTemplate;
 import com.google.crypto.tink.TinkProto.Keyset;
 import com.google.protobuf.InvalidProtocolBufferException;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.security.GeneralSecurityException;
@@ -79,6 +80,21 @@ public final class EncryptedKeysetHandle {
     }
   }
 
+  /**
+   * @return a watcher of {@code file}, which contains a serialized {@code EncryptedKeyset}.
+   * The keyset is encrypted with {@code masterKey}.
+   * @throws GeneralSecurityException, IOException
+   */
+  public static final KeysetFileWatcher watch(File file, final Aead masterKey)
+      throws GeneralSecurityException, IOException {
+    return new KeysetFileWatcher(file, new KeysetFileWatcher.Parser() {
+      @Override
+      public KeysetHandle parse(final byte[] serialized) throws GeneralSecurityException {
+        return parseFrom(serialized, masterKey);
+      }
+    });
+  }
+
   /**
    * @return a new keyset handle that contains a single fresh key generated
    * according to the {@code keyTemplate}. The keyset is encrypted with {@code masterKey}.
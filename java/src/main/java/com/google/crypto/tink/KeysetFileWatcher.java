@@ -0,0 +1,238 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink;
+
+import com.google.crypto.tink.subtle.EngineFactory;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Watches a keyset file, and keeps primitives up to date with its content, so that a key
+ * rotation (e.g. with Tinkey) doesn't require restarting the process. <p>
+ *
+ * Primitives are obtained from sets returned by {@link #watchPrimitives}, for example:
+ * <pre>   {@code
+ *   KeysetFileWatcher watcher = CleartextKeysetHandle.watch(new File("keyset.bin"));
+ *   PrimitiveSet<Aead> primitives = watcher.watchPrimitives();
+ *   Aead aead = AeadFactory.getPrimitive(primitives);
+ *   watcher.start(executor, 1, TimeUnit.MINUTES);
+ *  }</pre>
+ * When the content of the file changes, the new keyset is parsed and validated once, and
+ * all watched sets are rotated to it with {@link Registry#updatePrimitives}. Operations that
+ * are in flight keep using the keys they started with. If the new content can't be parsed or
+ * is not a valid keyset, e.g. because the file is being rewritten, the primitives keep using
+ * the previous keyset, and the file is read again on the next check. <p>
+ *
+ * The file is polled rather than watched with {@code java.nio.file.WatchService}, so that
+ * this class also works on Android, and with files that are replaced by renaming.
+ */
+public final class KeysetFileWatcher {
+  private static final Logger logger = Logger.getLogger(KeysetFileWatcher.class.getName());
+
+  /**
+   * Turns the content of a keyset file into a {@link KeysetHandle}.
+   */
+  public interface Parser {
+    KeysetHandle parse(final byte[] serialized) throws GeneralSecurityException;
+  }
+
+  /** A watched set, and the key manager it was created with. */
+  private static final class Watched<P> {
+    final PrimitiveSet<P> primitives;
+    final KeyManager<P> customManager;
+    // The rotated content of primitives, between prepare and publish.
+    private PrimitiveSet<P> pending;
+
+    Watched(PrimitiveSet<P> primitives, KeyManager<P> customManager) {
+      this.primitives = primitives;
+      this.customManager = customManager;
+    }
+
+    /**
+     * Instantiates the primitives for {@code keysetHandle}, without changing the watched set.
+     */
+    void prepare(KeysetHandle keysetHandle) throws GeneralSecurityException {
+      pending = Registry.INSTANCE.getPrimitives(keysetHandle, customManager, primitives);
+    }
+
+    /**
+     * Rotates the watched set to the primitives instantiated by {@link #prepare}.
+     */
+    void publish() {
+      synchronized (primitives) {
+        primitives.replaceWith(pending);
+      }
+      pending = null;
+    }
+
+    void discard() {
+      pending = null;
+    }
+  }
+
+  private final File file;
+  private final Parser parser;
+  // All fields below are guarded by this.
+  private final List<Watched<?>> watched = new ArrayList<Watched<?>>();
+  private KeysetHandle keysetHandle;
+  // The SHA-256 digest of the content of the file that keysetHandle was parsed from, which is
+  // only used to detect changes of the file.
+  private byte[] digest;
+
+  /**
+   * Reads the keyset in {@code file} with {@code parser}.
+   *
+   * @throws GeneralSecurityException if the file doesn't contain a valid keyset.
+   * @throws IOException if the file can't be read.
+   */
+  public KeysetFileWatcher(File file, Parser parser) throws GeneralSecurityException, IOException {
+    this.file = file;
+    this.parser = parser;
+    reload();
+  }
+
+  /**
+   * @return the handle of the keyset that was read last.
+   */
+  public synchronized KeysetHandle getKeysetHandle() {
+    return keysetHandle;
+  }
+
+  /**
+   * @return a set of primitives for the current keyset, which is rotated whenever the keyset in
+   * the file changes.
+   */
+  public <P> PrimitiveSet<P> watchPrimitives() throws GeneralSecurityException {
+    return watchPrimitives(null /* customManager */);
+  }
+
+  /**
+   * @return a set of primitives for the current keyset, created with {@code customManager} as
+   * in {@link Registry#getPrimitives(KeysetHandle, KeyManager)}, which is rotated whenever the
+   * keyset in the file changes.
+   */
+  public synchronized <P> PrimitiveSet<P> watchPrimitives(final KeyManager<P> customManager)
+      throws GeneralSecurityException {
+    PrimitiveSet<P> primitives = Registry.INSTANCE.getPrimitives(keysetHandle, customManager);
+    watched.add(new Watched<P>(primitives, customManager));
+    return primitives;
+  }
+
+  /**
+   * Reads the file, and rotates all watched sets if its content has changed.
+   *
+   * @return true if the keyset was changed.
+   * @throws GeneralSecurityException if the file doesn't contain a valid keyset. The watched
+   * sets are left unchanged in that case.
+   * @throws IOException if the file can't be read.
+   */
+  public synchronized boolean reload() throws GeneralSecurityException, IOException {
+    byte[] serialized = readFully(file);
+    byte[] newDigest = EngineFactory.MESSAGE_DIGEST.getInstance("SHA-256").digest(serialized);
+    if (digest != null && MessageDigest.isEqual(digest, newDigest)) {
+      return false;
+    }
+    KeysetHandle newKeysetHandle;
+    try {
+      newKeysetHandle = parser.parse(serialized);
+    } finally {
+      Arrays.fill(serialized, (byte) 0);
+    }
+    Util.validateKeyset(newKeysetHandle.getKeyset());
+    // Instantiates the primitives of all sets before rotating any of them, so that a failure
+    // leaves all of them unchanged.
+    boolean prepared = false;
+    try {
+      for (Watched<?> w : watched) {
+        w.prepare(newKeysetHandle);
+      }
+      prepared = true;
+    } finally {
+      if (!prepared) {
+        for (Watched<?> w : watched) {
+          w.discard();
+        }
+      }
+    }
+    for (Watched<?> w : watched) {
+      w.publish();
+    }
+    keysetHandle = newKeysetHandle;
+    digest = newDigest;
+    return true;
+  }
+
+  /**
+   * Checks the file for changes every {@code period} on {@code executor}. Failures are logged,
+   * and the file is checked again after the next period.
+   *
+   * @return the future of the checks, which stops them when cancelled.
+   */
+  public ScheduledFuture<?> start(ScheduledExecutorService executor, long period, TimeUnit unit) {
+    return executor.scheduleWithFixedDelay(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          if (reload()) {
+            logger.info("reloaded keyset from " + file);
+          }
+        } catch (Exception e) {
+          // Exceptions would cancel the periodic task, so keep the current keys and retry later.
+          logger.log(Level.WARNING, "cannot reload keyset from " + file, e);
+        }
+      }
+    }, period, period, unit);
+  }
+
+  /**
+   * @return the content of {@code file}. The buffers used while reading are wiped, so that the
+   * serialized keyset is only left in the returned array, which the caller wipes.
+   */
+  private static byte[] readFully(File file) throws IOException {
+    // The file may change while it is read, so its length is only the initial size.
+    byte[] buffer = new byte[(int) Math.min(file.length(), 1 << 20) + 1];
+    InputStream in = new FileInputStream(file);
+    int size = 0;
+    try {
+      int read;
+      while ((read = in.read(buffer, size, buffer.length - size)) != -1) {
+        size += read;
+        if (size == buffer.length) {
+          byte[] larger = Arrays.copyOf(buffer, 2 * buffer.length);
+          Arrays.fill(buffer, (byte) 0);
+          buffer = larger;
+        }
+      }
+      return Arrays.copyOf(buffer, size);
+    } finally {
+      Arrays.fill(buffer, (byte) 0);
+      in.close();
+    }
+  }
+}
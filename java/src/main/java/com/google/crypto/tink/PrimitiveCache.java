@@ -0,0 +1,234 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink;
+
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.security.auth.DestroyFailedException;
+import javax.security.auth.Destroyable;
+
+/**
+ * A bounded cache of primitives, keyed by the serialized {@code KeyData} they were created from.
+ * <p>
+ *
+ * Once installed with {@link Registry#setPrimitiveCache}, {@code Registry.getPrimitive} returns
+ * the cached primitive for a key that it has instantiated before, instead of parsing the key and
+ * initializing a new primitive. This helps callers that instantiate the same key repeatedly,
+ * e.g. envelope encryption that sees the same DEK many times, or code that calls a primitive
+ * factory for every request. Primitives are shared between callers, which is safe as long as
+ * they are thread-safe, as all primitives in Tink are. <p>
+ *
+ * At most {@code maxSize} primitives are kept, and the least recently used one is evicted
+ * first. A primitive is also evicted {@code ttl} after it was cached, so that keys don't stay in
+ * memory forever. The copy of the key held by the cache is overwritten with zeros on eviction.
+ * Evicted primitives that implement {@link Destroyable} are destroyed, so their key material is
+ * wiped as well; such primitives must not be used after their eviction. The primitives in Tink
+ * don't implement {@code Destroyable}, since callers keep using them after they were evicted,
+ * so their key material is only released to the garbage collector.
+ */
+public final class PrimitiveCache {
+  /** Serialized {@code KeyData}, compared in constant time. */
+  private static final class CacheKey {
+    private final byte[] value;
+    private final int hashCode;
+
+    CacheKey(byte[] value) {
+      this.value = value;
+      this.hashCode = Arrays.hashCode(value);
+    }
+
+    void destroy() {
+      Arrays.fill(value, (byte) 0);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof CacheKey)) {
+        return false;
+      }
+      return MessageDigest.isEqual(value, ((CacheKey) o).value);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+
+  private static final class CacheEntry {
+    final CacheKey key;
+    final Object primitive;
+    final long expirationNanos;
+
+    CacheEntry(CacheKey key, Object primitive, long expirationNanos) {
+      this.key = key;
+      this.primitive = primitive;
+      this.expirationNanos = expirationNanos;
+    }
+
+    boolean isExpired(long nowNanos) {
+      return nowNanos - expirationNanos >= 0;
+    }
+  }
+
+  private final int maxSize;
+  private final long ttlNanos;
+  // All fields below are guarded by this.
+  private final LinkedHashMap<CacheKey, CacheEntry> entries;
+  private long hitCount;
+  private long missCount;
+  private long evictionCount;
+
+  /**
+   * Creates a cache that holds at most {@code maxSize} primitives, each for at most {@code ttl}.
+   *
+   * @throws IllegalArgumentException if {@code maxSize} or {@code ttl} is not positive.
+   */
+  public PrimitiveCache(int maxSize, long ttl, TimeUnit unit) {
+    if (maxSize <= 0) {
+      throw new IllegalArgumentException("maxSize must be positive");
+    }
+    if (ttl <= 0) {
+      throw new IllegalArgumentException("ttl must be positive");
+    }
+    this.maxSize = maxSize;
+    this.ttlNanos = unit.toNanos(ttl);
+    // Access order, so that the eldest entry is the least recently used one.
+    this.entries = new LinkedHashMap<CacheKey, CacheEntry>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<CacheKey, CacheEntry> eldest) {
+        if (size() > PrimitiveCache.this.maxSize) {
+          evict(eldest.getValue());
+          return true;
+        }
+        return false;
+      }
+    };
+  }
+
+  /**
+   * @return the primitive cached for {@code serializedKeyData}, or null if there is none.
+   */
+  synchronized Object get(final byte[] serializedKeyData) {
+    CacheKey key = new CacheKey(serializedKeyData);
+    CacheEntry entry = entries.get(key);
+    if (entry != null && entry.isExpired(System.nanoTime())) {
+      entries.remove(key);
+      evict(entry);
+      entry = null;
+    }
+    if (entry == null) {
+      missCount++;
+      return null;
+    }
+    hitCount++;
+    return entry.primitive;
+  }
+
+  /**
+   * Caches {@code primitive} for {@code serializedKeyData}, unless another primitive has been
+   * cached for it in the meantime. The cache takes ownership of {@code serializedKeyData}, and
+   * overwrites it with zeros when it is no longer needed.
+   *
+   * @return the cached primitive, which callers should use instead of {@code primitive}.
+   */
+  synchronized Object put(final byte[] serializedKeyData, Object primitive) {
+    long now = System.nanoTime();
+    removeEldestExpired(now);
+    CacheKey key = new CacheKey(serializedKeyData);
+    CacheEntry existing = entries.get(key);
+    if (existing != null) {
+      key.destroy();
+      return existing.primitive;
+    }
+    entries.put(key, new CacheEntry(key, primitive, now + ttlNanos));
+    return primitive;
+  }
+
+  /**
+   * Evicts all primitives.
+   */
+  public synchronized void clear() {
+    for (CacheEntry entry : entries.values()) {
+      evict(entry);
+    }
+    entries.clear();
+  }
+
+  /**
+   * @return the number of primitives in the cache, including expired ones that have not been
+   * evicted yet.
+   */
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  /**
+   * @return the number of lookups that found a primitive.
+   */
+  public synchronized long hitCount() {
+    return hitCount;
+  }
+
+  /**
+   * @return the number of lookups that found no primitive, and led to instantiating one.
+   */
+  public synchronized long missCount() {
+    return missCount;
+  }
+
+  /**
+   * @return the number of primitives that were evicted because the cache was full or because
+   * they expired, or by {@link #clear}.
+   */
+  public synchronized long evictionCount() {
+    return evictionCount;
+  }
+
+  /**
+   * Evicts the expired primitives at the least recently used end of the cache, up to the first
+   * one that hasn't expired. Expired primitives behind it are evicted when looked up, or when
+   * they reach that end.
+   */
+  private void removeEldestExpired(long nowNanos) {
+    Iterator<CacheEntry> it = entries.values().iterator();
+    while (it.hasNext()) {
+      CacheEntry entry = it.next();
+      if (!entry.isExpired(nowNanos)) {
+        return;
+      }
+      it.remove();
+      evict(entry);
+    }
+  }
+
+  private void evict(CacheEntry entry) {
+    entry.key.destroy();
+    if (entry.primitive instanceof Destroyable) {
+      try {
+        ((Destroyable) entry.primitive).destroy();
+      } catch (DestroyFailedException e) {
+        // The primitive keeps its key material, which is released to the garbage collector.
+      }
+    }
+    evictionCount++;
+  }
+}
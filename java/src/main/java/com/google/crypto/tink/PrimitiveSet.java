@@ -16,18 +16,21 @@
 
 package com.google.crypto.tink;
 
+import com.google.crypto.tink.TinkProto.KeyData;
 import com.google.crypto.tink.TinkProto.KeyStatusType;
 import com.google.crypto.tink.TinkProto.Keyset;
 import com.google.crypto.tink.TinkProto.OutputPrefixType;
 import com.google.crypto.tink.subtle.ImmutableByteArray;
 import com.google.errorprone.annotations.Immutable;
-import java.nio.charset.Charset;
+import java.nio.ByteBuffer;
 import java.security.GeneralSecurityException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
+import java.util.Map;
 
 /**
  * A container class for a set of primitives (i.e. implementations of cryptographic
@@ -43,10 +46,14 @@ import java.util.concurrent.ConcurrentMap;
  * Aead-primitive from the set is used, and upon decryption the ciphertext's prefix
  * determines the id of the primitive from the set. <p>
  *
+ * The content of a PrimitiveSet is held in an immutable snapshot, which readers load with a
+ * single volatile read. {@link Registry#updatePrimitives} rotates the set to a new keyset by
+ * swapping in a new snapshot, so that all primitives that wrap the set pick up the new keys with
+ * their next operation, without any locking on the read path. <p>
+ *
  * PrimitiveSet is a public class to allow its use in implementations of custom primitives.
  */
 public final class PrimitiveSet<P> {
-  private static final Charset UTF_8 = Charset.forName("UTF-8");
   /**
    * A single entry in the set. In addition to the actual primitive it holds also
    * some extra information about the primitive.
@@ -92,7 +99,7 @@ public final class PrimitiveSet<P> {
    * @return the entry with the primary primitive.
    */
   public Entry<P> getPrimary() {
-    return primary;
+    return snapshot().primary;
   }
 
   /**
@@ -107,21 +114,86 @@ public final class PrimitiveSet<P> {
    */
   public List<Entry<P>> getPrimitive(final byte[] identifier)
       throws GeneralSecurityException {
-    List<Entry<P>> found = primitives.get(new String(identifier, UTF_8));
-    return found != null ? found : Collections.<Entry<P>>emptyList();
+    if (identifier.length == CryptoFormat.RAW_PREFIX_SIZE) {
+      return snapshot().rawPrimitives;
+    }
+    if (identifier.length != CryptoFormat.NON_RAW_PREFIX_SIZE) {
+      return Collections.<Entry<P>>emptyList();
+    }
+    return getPrimitive(identifier, 0);
+  }
+
+  /**
+   * @return the entries with primitive identified by the non-RAW prefix
+   * {@code ciphertext[offset..offset+5)}, or an empty list if there are fewer than 5 bytes.
+   * This does not allocate, and is meant to be called on every decryption or verification.
+   */
+  public List<Entry<P>> getPrimitive(final byte[] ciphertext, int offset) {
+    if (offset < 0 || offset > ciphertext.length - CryptoFormat.NON_RAW_PREFIX_SIZE) {
+      return Collections.<Entry<P>>emptyList();
+    }
+    return snapshot().index.get(toLong(ciphertext, offset));
   }
 
   /**
-   * The primitives are stored in a hash map of (ciphertext prefix, list of primivies sharing
-   * the prefix).
-   * This allows quickly retrieving the list of primitives sharing some particular prefix.
-   * Because all RAW keys are using an empty prefix, this also quickly allows retrieving them.
+   * @return the entries with primitive identified by the non-RAW prefix at the current position
+   * of {@code ciphertext}, or an empty list if fewer than 5 bytes remain. The position of
+   * {@code ciphertext} is not changed.
    */
-  private ConcurrentMap<java.lang.String, List<Entry<P>>> primitives =
-    new ConcurrentHashMap<java.lang.String, List<Entry<P>>>();
+  public List<Entry<P>> getPrimitive(ByteBuffer ciphertext) {
+    if (ciphertext.remaining() < CryptoFormat.NON_RAW_PREFIX_SIZE) {
+      return Collections.<Entry<P>>emptyList();
+    }
+    int pos = ciphertext.position();
+    long key = ((ciphertext.get(pos) & 0xffL) << 32)
+        | ((ciphertext.get(pos + 1) & 0xffL) << 24)
+        | ((ciphertext.get(pos + 2) & 0xffL) << 16)
+        | ((ciphertext.get(pos + 3) & 0xffL) << 8)
+        | (ciphertext.get(pos + 4) & 0xffL);
+    return snapshot().index.get(key);
+  }
+
+  /**
+   * @return all entries, grouped by their identifier.
+   */
+  public Collection<List<Entry<P>>> getAll() {
+    Snapshot<P> current = snapshot();
+    List<List<Entry<P>>> all = new ArrayList<List<Entry<P>>>();
+    current.index.addValuesTo(all);
+    if (!current.rawPrimitives.isEmpty()) {
+      all.add(current.rawPrimitives);
+    }
+    return Collections.unmodifiableList(all);
+  }
 
+  /**
+   * The current content of the set. It is replaced rather than modified when the set is rotated,
+   * so that readers always see a consistent set. Adding a primitive or setting the primary only
+   * drops it, and it is rebuilt once when it is next read, so that building a set of n keys
+   * takes O(n) time.
+   */
+  private volatile Snapshot<P> snapshot = new Snapshot<P>(
+      Collections.<Entry<P>>emptyList(), Collections.<KeyData>emptyList(), null);
+  // The content of the set from which the snapshot is built. Guarded by this.
+  private List<Entry<P>> entries = new ArrayList<Entry<P>>();
+  private List<KeyData> keyDatas = new ArrayList<KeyData>();
   private Entry<P> primary;
 
+  private Snapshot<P> snapshot() {
+    Snapshot<P> current = snapshot;
+    if (current != null) {
+      return current;
+    }
+    return buildSnapshot();
+  }
+
+  private synchronized Snapshot<P> buildSnapshot() {
+    if (snapshot == null) {
+      snapshot = new Snapshot<P>(entries, keyDatas, primary);
+    }
+    return snapshot;
+  }
+
   protected static <P> PrimitiveSet<P> newPrimitiveSet() {
     return new PrimitiveSet<P>();
   }
@@ -137,29 +209,160 @@ public final class PrimitiveSet<P> {
   /**
    * Sets given Entry {@code primary} as the primary one.
    */
-  protected void setPrimary(final Entry<P> primary) {
+  protected synchronized void setPrimary(final Entry<P> primary) {
     this.primary = primary;
+    this.snapshot = null;
   }
 
   /**
     * Creates an entry in the primitive table.
     * @return the added entry
     */
-  protected Entry<P> addPrimitive(final P primitive, Keyset.Key key)
+  protected synchronized Entry<P> addPrimitive(final P primitive, Keyset.Key key)
       throws GeneralSecurityException {
     Entry<P> entry = new Entry<P>(primitive, CryptoFormat.getOutputPrefix(key), key.getStatus(),
         key.getOutputPrefixType());
-    List<Entry<P>> list = new ArrayList<Entry<P>>();
-    list.add(entry);
-    // Cannot use [] as keys in hash map, convert to string.
-    String identifier = new String(entry.getIdentifier(), UTF_8);
-    List<Entry<P>> existing = primitives.put(identifier, Collections.unmodifiableList(list));
-    if (existing != null) {
-      List<Entry<P>> newList = new ArrayList<Entry<P>>();
-      newList.addAll(existing);
-      newList.add(entry);
-      primitives.put(identifier, Collections.unmodifiableList(newList));
-    }
+    entries.add(entry);
+    keyDatas.add(key.getKeyData());
+    this.snapshot = null;
     return entry;
   }
+
+  /**
+   * @return the primitive instantiated for {@code keyData}, or null if no key in the set has
+   * {@code keyData}.
+   */
+  P getInstantiatedPrimitive(KeyData keyData) {
+    return snapshot().primitivesByKeyData.get(keyData);
+  }
+
+  /**
+   * Atomically replaces the content of this set with the content of {@code primitives}.
+   */
+  void replaceWith(PrimitiveSet<P> primitives) {
+    Snapshot<P> newSnapshot = primitives.snapshot();
+    synchronized (this) {
+      this.entries = new ArrayList<Entry<P>>(newSnapshot.entries);
+      this.keyDatas = new ArrayList<KeyData>(newSnapshot.keyDatas);
+      this.primary = newSnapshot.primary;
+      this.snapshot = newSnapshot;
+    }
+  }
+
+  /**
+   * An immutable content of a {@link PrimitiveSet}.
+   *
+   * <p>The primitives with a non-RAW prefix are stored in an open-addressing hash table of
+   * (ciphertext prefix, list of primitives sharing the prefix). The 5 byte prefix is packed into
+   * a long, so that a lookup straight from a ciphertext doesn't need to allocate.
+   * Because all RAW keys are using an empty prefix, they are kept in a separate list.
+   */
+  private static final class Snapshot<P> {
+    final PrefixIndex<P> index;
+    final List<Entry<P>> rawPrimitives;
+    final Entry<P> primary;
+    // The primitive of each key, so that a rotation only has to instantiate new keys.
+    final Map<KeyData, P> primitivesByKeyData;
+    // All entries and their KeyData, in the order they were added.
+    final List<Entry<P>> entries;
+    final List<KeyData> keyDatas;
+
+    Snapshot(List<Entry<P>> entries, List<KeyData> keyDatas, Entry<P> primary) {
+      this.entries = Collections.unmodifiableList(new ArrayList<Entry<P>>(entries));
+      this.keyDatas = Collections.unmodifiableList(new ArrayList<KeyData>(keyDatas));
+      this.primary = primary;
+      Map<KeyData, P> primitives = new HashMap<KeyData, P>();
+      List<Entry<P>> raw = new ArrayList<Entry<P>>();
+      Map<Long, List<Entry<P>>> byPrefix = new LinkedHashMap<Long, List<Entry<P>>>();
+      for (int i = 0; i < entries.size(); i++) {
+        Entry<P> entry = entries.get(i);
+        primitives.put(keyDatas.get(i), entry.getPrimitive());
+        if (entry.getOutputPrefixType() == OutputPrefixType.RAW) {
+          raw.add(entry);
+          continue;
+        }
+        Long prefix = toLong(entry.getIdentifier(), 0);
+        List<Entry<P>> list = byPrefix.get(prefix);
+        if (list == null) {
+          list = new ArrayList<Entry<P>>();
+          byPrefix.put(prefix, list);
+        }
+        list.add(entry);
+      }
+      this.primitivesByKeyData = Collections.unmodifiableMap(primitives);
+      this.rawPrimitives = Collections.unmodifiableList(raw);
+      this.index = new PrefixIndex<P>(byPrefix);
+    }
+  }
+
+  /**
+   * Packs the 5 byte prefix {@code in[offset..offset+5)} into a long.
+   */
+  private static long toLong(final byte[] in, int offset) {
+    return ((in[offset] & 0xffL) << 32)
+        | ((in[offset + 1] & 0xffL) << 24)
+        | ((in[offset + 2] & 0xffL) << 16)
+        | ((in[offset + 3] & 0xffL) << 8)
+        | (in[offset + 4] & 0xffL);
+  }
+
+  /**
+   * An immutable hash table with linear probing from packed 5 byte prefixes to lists of entries.
+   * The table is at most half full, so that a lookup usually inspects one or two slots.
+   */
+  private static final class PrefixIndex<P> {
+    private final long[] keys;
+    // values[i] is null for empty slots.
+    private final List<Entry<P>>[] values;
+
+    @SuppressWarnings("unchecked")
+    PrefixIndex(Map<Long, List<Entry<P>>> entries) {
+      int capacity = 8;
+      while (2 * entries.size() > capacity) {
+        capacity *= 2;
+      }
+      this.keys = new long[capacity];
+      this.values = (List<Entry<P>>[]) new List<?>[capacity];
+      for (Map.Entry<Long, List<Entry<P>>> entry : entries.entrySet()) {
+        put(entry.getKey(), Collections.unmodifiableList(entry.getValue()));
+      }
+    }
+
+    private static int slot(long key, int mask) {
+      long h = key * 0x9E3779B97F4A7C15L;
+      return (int) (h >>> 32) & mask;
+    }
+
+    List<Entry<P>> get(long key) {
+      int mask = keys.length - 1;
+      for (int i = slot(key, mask); ; i = (i + 1) & mask) {
+        List<Entry<P>> value = values[i];
+        if (value == null) {
+          return Collections.<Entry<P>>emptyList();
+        }
+        if (keys[i] == key) {
+          return value;
+        }
+      }
+    }
+
+    /** Only called while building a new table. */
+    private void put(long key, List<Entry<P>> value) {
+      int mask = keys.length - 1;
+      int i = slot(key, mask);
+      while (values[i] != null) {
+        i = (i + 1) & mask;
+      }
+      keys[i] = key;
+      values[i] = value;
+    }
+
+    void addValuesTo(List<List<Entry<P>>> all) {
+      for (List<Entry<P>> value : values) {
+        if (value != null) {
+          all.add(value);
+        }
+      }
+    }
+  }
 }
@@ -23,6 +23,7 @@ import com.google.crypto.tink.TinkProto.Keyset;
 import com.google.protobuf.ByteString;
 import com.google.protobuf.MessageLite;
 import java.security.GeneralSecurityException;
+import java.util.Arrays;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
@@ -49,6 +50,7 @@ public final class Registry {
   private final ConcurrentMap<String, KeyManager> keyManager =
       new ConcurrentHashMap<String, KeyManager>();         // typeUrl -> KeyManager mapping
 
+  private volatile PrimitiveCache primitiveCache = null;  // null if primitives are not cached
 
   /**
    * Creates an empty registry.
@@ -91,6 +93,29 @@ public final class Registry {
     return manager;
   }
 
+  /**
+   * Makes {@code getPrimitive} reuse the primitives cached in {@code cache}, instead of
+   * instantiating a new primitive for each call. The primitives of key managers passed to
+   * {@link #getPrimitives(KeysetHandle, KeyManager)} are not cached. The previous cache, if any,
+   * is cleared.
+   *
+   * @param cache the cache to use, or null to disable caching.
+   */
+  public void setPrimitiveCache(PrimitiveCache cache) {
+    PrimitiveCache previous = primitiveCache;
+    primitiveCache = cache;
+    if (previous != null && previous != cache) {
+      previous.clear();
+    }
+  }
+
+  /**
+   * @return the cache set by {@link #setPrimitiveCache}, or null if primitives are not cached.
+   */
+  public PrimitiveCache getPrimitiveCache() {
+    return primitiveCache;
+  }
+
   /**
    * Convenience method for generating a new {@code KeyData} for the specified
    * {@code template}.
@@ -132,12 +157,16 @@ public final class Registry {
   /**
    * Convenience method for creating a new primitive for the key given in {@code proto}.
    * It looks up a KeyManager identified by {@code type_url}, and calls
-   * managers {@code getPrimitive(proto)}-method.
+   * managers {@code getPrimitive(proto)}-method. If a {@link PrimitiveCache} is set, the key is
+   * serialized and looked up in the cache, as in {@link #getPrimitive(String, ByteString)}.
    *
-   * @return a new primitive.
+   * @return a new primitive, or a cached one.
    */
   @SuppressWarnings("TypeParameterUnusedInFormals")
   public <P> P getPrimitive(String typeUrl, MessageLite key) throws GeneralSecurityException {
+    if (primitiveCache != null) {
+      return getPrimitive(typeUrl, key.toByteString());
+    }
     KeyManager<P> manager = getKeyManager(typeUrl);
     return manager.getPrimitive(key);
   }
@@ -147,13 +176,30 @@ public final class Registry {
    * It looks up a KeyManager identified by {@code type_url}, and calls
    * managers {@code getPrimitive(serialized)}-method.
    *
-   * @return a new primitive.
+   * If a {@link PrimitiveCache} is set, the primitive is looked up in the cache first, and
+   * added to it if it is not there yet.
+   *
+   * @return a new primitive, or a cached one.
    */
-  @SuppressWarnings("TypeParameterUnusedInFormals")
+  @SuppressWarnings({"TypeParameterUnusedInFormals", "unchecked"})
   public <P> P getPrimitive(String typeUrl, ByteString serialized)
       throws GeneralSecurityException {
     KeyManager<P> manager = getKeyManager(typeUrl);
-    return manager.getPrimitive(serialized);
+    PrimitiveCache cache = primitiveCache;
+    if (cache == null) {
+      return manager.getPrimitive(serialized);
+    }
+    byte[] cacheKey = KeyData.newBuilder()
+        .setTypeUrl(typeUrl)
+        .setValue(serialized)
+        .build()
+        .toByteArray();
+    P primitive = (P) cache.get(cacheKey);
+    if (primitive != null) {
+      Arrays.fill(cacheKey, (byte) 0);
+      return primitive;
+    }
+    return (P) cache.put(cacheKey, manager.getPrimitive(serialized));
   }
 
   /**
@@ -212,23 +258,57 @@ public final class Registry {
     public <P> PrimitiveSet<P> getPrimitives(
         KeysetHandle keysetHandle, final KeyManager<P> customManager)
         throws GeneralSecurityException {
-      Util.validateKeyset(keysetHandle.getKeyset());
-      PrimitiveSet<P> primitives = PrimitiveSet.newPrimitiveSet();
-      for (Keyset.Key key : keysetHandle.getKeyset().getKeyList()) {
-        if (key.getStatus() == KeyStatusType.ENABLED) {
-          P primitive;
+      return getPrimitives(keysetHandle, customManager, null /* previous */);
+  }
+
+  /**
+   * Rotates {@code primitives}, which was created by {@link #getPrimitives}, to the keys with
+   * status=ENABLED in the keyset given in {@code keysetHandle}. {@code customManager} is used as
+   * in {@link #getPrimitives(KeysetHandle, KeyManager)}, and should be the same as when the set
+   * was created.
+   *
+   * Only keys that are not in {@code primitives} yet, or whose {@code KeyData} has changed, are
+   * instantiated; the primitives of the other keys are reused. The new keys are published
+   * atomically: primitives that wrap {@code primitives}, e.g. those returned by
+   * {@code AeadFactory.getPrimitive(PrimitiveSet)}, either see the old or the new keyset in each
+   * operation, and reads never block. If the keyset is invalid, {@code primitives} is left
+   * unchanged.
+   */
+  public <P> void updatePrimitives(PrimitiveSet<P> primitives, KeysetHandle keysetHandle,
+      final KeyManager<P> customManager) throws GeneralSecurityException {
+    // Serializes concurrent updates of the same set, so that the last keyset wins.
+    synchronized (primitives) {
+      primitives.replaceWith(getPrimitives(keysetHandle, customManager, primitives));
+    }
+  }
+
+  /**
+   * Creates a set of primitives for {@code keysetHandle}, reusing the primitives of
+   * {@code previous} (if not null) for keys whose {@code KeyData} is unchanged. {@code previous}
+   * itself is not changed.
+   */
+  <P> PrimitiveSet<P> getPrimitives(KeysetHandle keysetHandle,
+      final KeyManager<P> customManager, PrimitiveSet<P> previous)
+      throws GeneralSecurityException {
+    Util.validateKeyset(keysetHandle.getKeyset());
+    PrimitiveSet<P> primitives = PrimitiveSet.newPrimitiveSet();
+    for (Keyset.Key key : keysetHandle.getKeyset().getKeyList()) {
+      if (key.getStatus() == KeyStatusType.ENABLED) {
+        P primitive = previous == null ? null : previous.getInstantiatedPrimitive(key.getKeyData());
+        if (primitive == null) {
           if (customManager != null && customManager.doesSupport(key.getKeyData().getTypeUrl())) {
             primitive = customManager.getPrimitive(key.getKeyData().getValue());
           } else {
             primitive = getPrimitive(key.getKeyData().getTypeUrl(),
                 key.getKeyData().getValue());
           }
-          PrimitiveSet.Entry<P> entry = primitives.addPrimitive(primitive, key);
-          if (key.getKeyId() == keysetHandle.getKeyset().getPrimaryKeyId()) {
-            primitives.setPrimary(entry);
-          }
+        }
+        PrimitiveSet.Entry<P> entry = primitives.addPrimitive(primitive, key);
+        if (key.getKeyId() == keysetHandle.getKeyset().getPrimaryKeyId()) {
+          primitives.setPrimary(entry);
         }
       }
-      return primitives;
+    }
+    return primitives;
   }
 }
@@ -0,0 +1,99 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.security.GeneralSecurityException;
+
+/**
+ * An interface for streaming authenticated encryption with associated data.
+ * Streaming encryption is typically used for encrypting large plaintexts such as large files.
+ * Tink may eventually contain multiple interfaces for streaming encryption depending on the
+ * supported properties. This interface supports a streaming interface for symmetric encryption
+ * with authentication. The underlying encryption modes are selected so that partial plaintext
+ * can be obtained fast by decrypting and authenticating just a part of the ciphertext.
+ *
+ * <p>Instances of {@code StreamingAead} must follow the OAE2 definition as proposed in the paper
+ * "Online Authenticated-Encryption and its Nonce-Reuse Misuse-Resistance" by Hoang, Reyhanitabar,
+ * Rogaway and Vizár: https://eprint.iacr.org/2015/189.pdf
+ *
+ * <p>The plaintext is encrypted in segments of fixed size, each of which is authenticated on its
+ * own, so memory use is independent of the size of the plaintext. Plaintext returned by a
+ * decrypting stream or channel has been authenticated, but a truncated or otherwise modified
+ * ciphertext is only detected when the affected segment is read; callers must read until the end
+ * of the stream before trusting that they have seen the whole plaintext.
+ */
+public interface StreamingAead {
+  /**
+   * Returns a WritableByteChannel for plaintext. Any data written to the returned channel will
+   * be encrypted and the resulting ciphertext written to {@code ciphertextDestination}. The
+   * encryption is finalized, and the last segment written, when the returned channel is closed.
+   *
+   * @param ciphertextDestination the channel to which the ciphertext is written.
+   * @param associatedData data associated with the plaintext. This data is authenticated but not
+   *     encrypted. It must be passed into the decryption.
+   */
+  WritableByteChannel newEncryptingChannel(
+      WritableByteChannel ciphertextDestination, byte[] associatedData)
+      throws GeneralSecurityException, IOException;
+
+  /**
+   * Returns a ReadableByteChannel that allows to read the plaintext.
+   *
+   * @param ciphertextSource the channel containing the ciphertext.
+   * @param associatedData data associated with the ciphertext.
+   */
+  ReadableByteChannel newDecryptingChannel(
+      ReadableByteChannel ciphertextSource, byte[] associatedData)
+      throws GeneralSecurityException, IOException;
+
+  /**
+   * Returns a SeekableByteChannel that allows to access the plaintext.
+   *
+   * <p>Reading at a given position only reads and decrypts the ciphertext segments that contain
+   * the requested plaintext. The size of the plaintext is computed from the size of
+   * {@code ciphertextSource}, and a read only returns -1 once the last segment has been
+   * authenticated.
+   *
+   * @param ciphertextSource the channel containing the ciphertext.
+   * @param associatedData data associated with the ciphertext.
+   */
+  SeekableByteChannel newSeekableDecryptingChannel(
+      SeekableByteChannel ciphertextSource, byte[] associatedData)
+      throws GeneralSecurityException, IOException;
+
+  /**
+   * Returns a wrapper around {@code ciphertextDestination}, such that any write-operation via
+   * the wrapper results in AEAD-encryption of the written data, using {@code associatedData}
+   * as associated authenticated data. The encryption is finalized when the wrapper is closed.
+   */
+  OutputStream newEncryptingStream(OutputStream ciphertextDestination, byte[] associatedData)
+      throws GeneralSecurityException, IOException;
+
+  /**
+   * Returns a wrapper around {@code ciphertextSource}, such that any read-operation via the
+   * wrapper results in AEAD-decryption of the underlying ciphertext, using
+   * {@code associatedData} as associated authenticated data.
+   */
+  InputStream newDecryptingStream(InputStream ciphertextSource, byte[] associatedData)
+      throws GeneralSecurityException, IOException;
+}
@@ -24,6 +24,7 @@ import com.google.crypto.tink.TinkProto.Keyset;
 import com.google.crypto.tink.TinkProto.KeysetInfo;
 import com.google.crypto.tink.TinkProto.OutputPrefixType;
 import com.google.crypto.tink.subtle.EcUtil;
+import com.google.crypto.tink.subtle.EngineFactory;
 import java.math.BigInteger;
 import java.security.GeneralSecurityException;
 import java.security.KeyFactory;
@@ -78,19 +79,55 @@ public class Util {
     }
   }
 
+  // null if public keys are not cached.
+  private static volatile EcPublicKeyCache ecPublicKeyCache = null;
+
+  /**
+   * Makes {@link #getEcPublicKey} reuse the keys cached in {@code cache}, instead of validating
+   * and building a new key for each call. The previous cache, if any, is cleared.
+   *
+   * @param cache the cache to use, or null to disable caching.
+   */
+  public static void setEcPublicKeyCache(EcPublicKeyCache cache) {
+    EcPublicKeyCache previous = ecPublicKeyCache;
+    ecPublicKeyCache = cache;
+    if (previous != null && previous != cache) {
+      previous.clear();
+    }
+  }
+
+  /**
+   * @return the cache set by {@link #setEcPublicKeyCache}, or null if public keys are not cached.
+   */
+  public static EcPublicKeyCache getEcPublicKeyCache() {
+    return ecPublicKeyCache;
+  }
+
   /**
    * Returns an {@code ECPublicKey} from {@code curve} type and {@code x} and {@code y} coordinates.
+   * If an {@link EcPublicKeyCache} is set, the key is looked up in the cache first.
    */
   public static ECPublicKey getEcPublicKey(EllipticCurveType curve, final byte[] x, final byte[] y)
       throws GeneralSecurityException {
+    EcPublicKeyCache cache = ecPublicKeyCache;
+    if (cache != null) {
+      ECPublicKey key = cache.get(curve, x, y);
+      if (key != null) {
+        return key;
+      }
+    }
     ECParameterSpec ecParams = getCurveSpec(curve);
     BigInteger pubX = new BigInteger(1, x);
     BigInteger pubY = new BigInteger(1, y);
     ECPoint w = new ECPoint(pubX, pubY);
     EcUtil.checkPointOnCurve(w, ecParams.getCurve());
     ECPublicKeySpec spec = new ECPublicKeySpec(w, ecParams);
-    KeyFactory kf = KeyFactory.getInstance("EC");
-    return (ECPublicKey) kf.generatePublic(spec);
+    KeyFactory kf = EngineFactory.KEY_FACTORY.getCachedInstance("EC");
+    ECPublicKey key = (ECPublicKey) kf.generatePublic(spec);
+    if (cache != null) {
+      cache.put(curve, x, y, key);
+    }
+    return key;
   }
 
   /** Returns an {@code ECPrivateKey} from {@code curve} type and {@code keyValue}. */
@@ -99,7 +136,7 @@ public class Util {
     ECParameterSpec ecParams = getCurveSpec(curve);
     BigInteger privValue = new BigInteger(1, keyValue);
     ECPrivateKeySpec spec = new ECPrivateKeySpec(privValue, ecParams);
-    KeyFactory kf = KeyFactory.getInstance("EC");
+    KeyFactory kf = EngineFactory.KEY_FACTORY.getCachedInstance("EC");
     return (ECPrivateKey) kf.generatePrivate(spec);
   }
 
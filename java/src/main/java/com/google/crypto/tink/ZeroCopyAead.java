@@ -0,0 +1,91 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink;
+
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+
+/**
+ * An {@link Aead} that can also encrypt into and decrypt from a range of a caller-provided array
+ * or a {@link ByteBuffer}, which saves wrappers such as {@code AeadFactory} and callers holding
+ * direct buffers a copy per call.
+ *
+ * <p>This interface is optional. Use {@code com.google.crypto.tink.subtle.ZeroCopyUtil} to call
+ * these methods on any {@code Aead}; it falls back to the methods of {@code Aead} and copies if
+ * the primitive does not implement this interface.
+ */
+public interface ZeroCopyAead extends Aead {
+  /**
+   * Encrypts {@code plaintext} with {@code additionalData} as additional authenticated data,
+   * and writes the resulting ciphertext into {@code ciphertext}, starting at {@code offset}.
+   * The ciphertext is the same as the one returned by {@link #encrypt(byte[], byte[])}.
+   *
+   * @return the number of bytes written.
+   * @throws javax.crypto.ShortBufferException if {@code ciphertext} is too small to hold the
+   * resulting ciphertext; see {@link #ciphertextSize}.
+   */
+  int encrypt(final byte[] plaintext, final byte[] additionalData, byte[] ciphertext, int offset)
+      throws GeneralSecurityException;
+
+  /**
+   * Decrypts the {@code length} bytes of {@code ciphertext} starting at {@code offset}, with
+   * {@code additionalData} as additional authenticated data.
+   *
+   * @return resulting plaintext.
+   */
+  byte[] decrypt(final byte[] ciphertext, int offset, int length, final byte[] additionalData)
+      throws GeneralSecurityException;
+
+  /**
+   * @return the length of the ciphertext produced for a plaintext of {@code plaintextSize}
+   * bytes, or -1 if it is only known after encryption (e.g. when a remote service encrypts).
+   */
+  int ciphertextSize(int plaintextSize);
+
+  /**
+   * Encrypts the remaining bytes of {@code plaintext} with the remaining bytes of
+   * {@code additionalData} as additional authenticated data, and writes the resulting ciphertext
+   * into {@code ciphertext}, starting at its current position.
+   * The ciphertext is the same as the one returned by {@link #encrypt(byte[], byte[])}.
+   * Both heap and direct buffers are supported.
+   *
+   * Upon success, the positions of {@code plaintext} and {@code additionalData} are advanced to
+   * their limits, and the position of {@code ciphertext} is advanced by the length of the
+   * ciphertext. Upon failure, the positions and the content of the buffers are unspecified.
+   *
+   * @throws javax.crypto.ShortBufferException if {@code ciphertext} is too small to hold the
+   * resulting ciphertext.
+   */
+  void encrypt(ByteBuffer plaintext, ByteBuffer additionalData, ByteBuffer ciphertext)
+      throws GeneralSecurityException;
+
+  /**
+   * Decrypts the remaining bytes of {@code ciphertext} with the remaining bytes of
+   * {@code additionalData} as additional authenticated data, and writes the resulting plaintext
+   * into {@code plaintext}, starting at its current position.
+   * Both heap and direct buffers are supported.
+   *
+   * Upon success, the positions of {@code ciphertext} and {@code additionalData} are advanced to
+   * their limits, and the position of {@code plaintext} is advanced by the length of the
+   * plaintext. Upon failure, the positions and the content of the buffers are unspecified.
+   *
+   * @throws javax.crypto.ShortBufferException if {@code plaintext} is too small to hold the
+   * resulting plaintext.
+   */
+  void decrypt(ByteBuffer ciphertext, ByteBuffer additionalData, ByteBuffer plaintext)
+      throws GeneralSecurityException;
+}
@@ -0,0 +1,58 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink;
+
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+
+/**
+ * A {@link Mac} that can also verify a tag stored in a range of a larger array, and authenticate
+ * data held in a {@link ByteBuffer}.
+ *
+ * <p>This interface is optional. Use {@code com.google.crypto.tink.subtle.ZeroCopyUtil} to call
+ * these methods on any {@code Mac}.
+ */
+public interface ZeroCopyMac extends Mac {
+  /**
+   * Verifies whether the {@code length} bytes of {@code mac} starting at {@code offset} are a
+   * correct authentication code (MAC) for {@code data}.
+   *
+   * @throws GeneralSecurityException If the MAC is not correct for {@code data} then a
+   * GeneralSecurityException is thrown.
+   */
+  void verifyMac(final byte[] mac, int offset, int length, final byte[] data)
+      throws GeneralSecurityException;
+
+  /**
+   * Computes message authentication code (MAC) for the remaining bytes of {@code data}, and
+   * advances the position of {@code data} to its limit.
+   * Both heap and direct buffers are supported.
+   *
+   * @return MAC value.
+   */
+  byte[] computeMac(ByteBuffer data) throws GeneralSecurityException;
+
+  /**
+   * Verifies whether {@code mac} is a correct authentication code (MAC) for the remaining bytes
+   * of {@code data}, and advances the position of {@code data} to its limit.
+   * Both heap and direct buffers are supported.
+   *
+   * @throws GeneralSecurityException If {@code mac} is not a correct MAC for {@code data} then a
+   * GeneralSecurityException is thrown.
+   */
+  void verifyMac(final byte[] mac, ByteBuffer data) throws GeneralSecurityException;
+}
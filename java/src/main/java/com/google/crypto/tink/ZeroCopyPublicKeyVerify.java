@@ -0,0 +1,36 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink;
+
+import java.security.GeneralSecurityException;
+
+/**
+ * A {@link PublicKeyVerify} that can also verify a signature stored in a range of a larger array.
+ *
+ * <p>This interface is optional. Use {@code com.google.crypto.tink.subtle.ZeroCopyUtil} to call
+ * these methods on any {@code PublicKeyVerify}.
+ */
+public interface ZeroCopyPublicKeyVerify extends PublicKeyVerify {
+  /**
+   * Verifies whether the {@code length} bytes of {@code signature} starting at {@code offset}
+   * are a valid signature for {@code data}.
+   *
+   * @throws GeneralSecurityException If the signature is not valid for {@code data}.
+   */
+  void verify(final byte[] signature, int offset, int length, final byte[] data)
+      throws GeneralSecurityException;
+}
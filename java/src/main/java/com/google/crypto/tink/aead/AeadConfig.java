@@ -46,6 +46,7 @@ public final class AeadConfig {
     registerKeyManager(new AesGcmKeyManager());
     registerKeyManager(new AesEaxKeyManager());
     registerKeyManager(new ChaCha20Poly1305KeyManager());
+    registerKeyManager(new XChaCha20Poly1305KeyManager());
   }
 
   /**
@@ -17,14 +17,17 @@
 package com.google.crypto.tink.aead;
 
 import com.google.crypto.tink.Aead;
+import com.google.crypto.tink.BatchAead;
 import com.google.crypto.tink.CryptoFormat;
 import com.google.crypto.tink.KeyManager;
 import com.google.crypto.tink.KeysetHandle;
 import com.google.crypto.tink.PrimitiveSet;
 import com.google.crypto.tink.Registry;
+import com.google.crypto.tink.subtle.AeadBatch;
 import com.google.crypto.tink.subtle.SubtleUtil;
+import com.google.crypto.tink.subtle.ZeroCopyUtil;
+import java.nio.ByteBuffer;
 import java.security.GeneralSecurityException;
-import java.util.Arrays;
 import java.util.List;
 import java.util.logging.Logger;
 
@@ -66,30 +69,67 @@ public final class AeadFactory {
    */
   public static Aead getPrimitive(KeysetHandle keysetHandle, final KeyManager<Aead> keyManager)
       throws GeneralSecurityException {
-    final PrimitiveSet<Aead> primitives =
-        Registry.INSTANCE.getPrimitives(keysetHandle, keyManager);
-    return new Aead() {
+    PrimitiveSet<Aead> primitives = Registry.INSTANCE.getPrimitives(keysetHandle, keyManager);
+    return getPrimitive(primitives);
+  }
+
+  /**
+   * @return a Aead primitive that uses the keys in {@code primitives}. Every operation uses the
+   * keys that are in the set when it starts, so that the primitive picks up a rotation with
+   * {@code Registry.updatePrimitives}. The primitive implements {@link BatchAead}, so that
+   * {@link AeadBatch} encrypts a batch with a single lookup of the primary key.
+   */
+  public static Aead getPrimitive(final PrimitiveSet<Aead> primitives) {
+    return new BatchAead() {
       @Override
       public byte[] encrypt(final byte[] plaintext, final byte[] aad)
           throws GeneralSecurityException {
-        return SubtleUtil.concat(
-            primitives.getPrimary().getIdentifier(),
-            primitives.getPrimary().getPrimitive().encrypt(plaintext, aad));
+        PrimitiveSet.Entry<Aead> primary = primitives.getPrimary();
+        int ciphertextSize = ciphertextSize(primary, plaintext.length);
+        if (ciphertextSize < 0) {
+          return SubtleUtil.concat(
+              primary.getIdentifier(), primary.getPrimitive().encrypt(plaintext, aad));
+        }
+        byte[] ciphertext = new byte[ciphertextSize];
+        int unusedWritten = encrypt(primary, plaintext, aad, ciphertext, 0);
+        return ciphertext;
       }
 
       @Override
       public byte[] decrypt(final byte[] ciphertext, final byte[] aad)
           throws GeneralSecurityException {
-        if (ciphertext.length > CryptoFormat.NON_RAW_PREFIX_SIZE) {
-          byte[] prefix = Arrays.copyOfRange(ciphertext, 0, CryptoFormat.NON_RAW_PREFIX_SIZE);
-          byte[] ciphertextNoPrefix = Arrays.copyOfRange(
-              ciphertext,
-              CryptoFormat.NON_RAW_PREFIX_SIZE,
-              ciphertext.length);
-          List<PrimitiveSet.Entry<Aead>> entries = primitives.getPrimitive(prefix);
+        return decrypt(ciphertext, 0, ciphertext.length, aad);
+      }
+
+      @Override
+      public int encrypt(final byte[] plaintext, final byte[] aad, byte[] ciphertext,
+          int offset) throws GeneralSecurityException {
+        return encrypt(primitives.getPrimary(), plaintext, aad, ciphertext, offset);
+      }
+
+      private int encrypt(PrimitiveSet.Entry<Aead> primary, final byte[] plaintext,
+          final byte[] aad, byte[] ciphertext, int offset) throws GeneralSecurityException {
+        byte[] identifier = primary.getIdentifier();
+        SubtleUtil.checkOutputSize(ciphertext, offset, identifier.length);
+        System.arraycopy(identifier, 0, ciphertext, offset, identifier.length);
+        return identifier.length + ZeroCopyUtil.encrypt(
+            primary.getPrimitive(), plaintext, aad, ciphertext, offset + identifier.length);
+      }
+
+      @Override
+      public byte[] decrypt(final byte[] ciphertext, int offset, int length, final byte[] aad)
+          throws GeneralSecurityException {
+        SubtleUtil.checkRange(ciphertext, offset, length);
+        if (length > CryptoFormat.NON_RAW_PREFIX_SIZE) {
+          List<PrimitiveSet.Entry<Aead>> entries = primitives.getPrimitive(ciphertext, offset);
           for (PrimitiveSet.Entry<Aead> entry : entries) {
             try {
-              return entry.getPrimitive().decrypt(ciphertextNoPrefix, aad);
+              return ZeroCopyUtil.decrypt(
+                  entry.getPrimitive(),
+                  ciphertext,
+                  offset + CryptoFormat.NON_RAW_PREFIX_SIZE,
+                  length - CryptoFormat.NON_RAW_PREFIX_SIZE,
+                  aad);
             } catch (GeneralSecurityException e) {
               logger.info("ciphertext prefix matches a key, but cannot decrypt: " + e.toString());
               continue;
@@ -101,7 +141,7 @@ public final class AeadFactory {
         List<PrimitiveSet.Entry<Aead>> entries = primitives.getRawPrimitives();
         for (PrimitiveSet.Entry<Aead> entry : entries) {
           try {
-            return entry.getPrimitive().decrypt(ciphertext, aad);
+            return ZeroCopyUtil.decrypt(entry.getPrimitive(), ciphertext, offset, length, aad);
           } catch (GeneralSecurityException e) {
             continue;
           }
@@ -109,6 +149,105 @@ public final class AeadFactory {
         // nothing works.
         throw new GeneralSecurityException("decryption failed");
       }
+
+      @Override
+      public int ciphertextSize(int plaintextSize) {
+        return ciphertextSize(primitives.getPrimary(), plaintextSize);
+      }
+
+      private int ciphertextSize(PrimitiveSet.Entry<Aead> primary, int plaintextSize) {
+        int size = ZeroCopyUtil.ciphertextSize(primary.getPrimitive(), plaintextSize);
+        int prefixSize = primary.getIdentifier().length;
+        if (size < 0 || size > Integer.MAX_VALUE - prefixSize) {
+          return -1;
+        }
+        return prefixSize + size;
+      }
+
+      @Override
+      public void encrypt(ByteBuffer plaintext, ByteBuffer aad, ByteBuffer ciphertext)
+          throws GeneralSecurityException {
+        PrimitiveSet.Entry<Aead> primary = primitives.getPrimary();
+        SubtleUtil.put(ciphertext, primary.getIdentifier());
+        ZeroCopyUtil.encrypt(primary.getPrimitive(), plaintext, aad, ciphertext);
+      }
+
+      @Override
+      public void decrypt(ByteBuffer ciphertext, ByteBuffer aad, ByteBuffer plaintext)
+          throws GeneralSecurityException {
+        if (ciphertext.remaining() > CryptoFormat.NON_RAW_PREFIX_SIZE) {
+          List<PrimitiveSet.Entry<Aead>> entries = primitives.getPrimitive(ciphertext);
+          for (PrimitiveSet.Entry<Aead> entry : entries) {
+            ByteBuffer ciphertextNoPrefix = ciphertext.duplicate();
+            ciphertextNoPrefix.position(ciphertext.position() + CryptoFormat.NON_RAW_PREFIX_SIZE);
+            try {
+              tryDecrypt(entry.getPrimitive(), ciphertextNoPrefix, aad, plaintext);
+              ciphertext.position(ciphertext.limit());
+              return;
+            } catch (GeneralSecurityException e) {
+              logger.info("ciphertext prefix matches a key, but cannot decrypt: " + e.toString());
+              continue;
+            }
+          }
+        }
+
+        // Let's try all RAW keys.
+        List<PrimitiveSet.Entry<Aead>> entries = primitives.getRawPrimitives();
+        for (PrimitiveSet.Entry<Aead> entry : entries) {
+          try {
+            tryDecrypt(entry.getPrimitive(), ciphertext.duplicate(), aad, plaintext);
+            ciphertext.position(ciphertext.limit());
+            return;
+          } catch (GeneralSecurityException e) {
+            continue;
+          }
+        }
+        // nothing works.
+        throw new GeneralSecurityException("decryption failed");
+      }
+
+      /**
+       * Resolves the primary key once for the whole batch, writes its prefix in front of each
+       * record, and lets its primitive encrypt all records in place behind the prefixes.
+       */
+      @Override
+      public void encryptBatch(final byte[][] plaintexts, final byte[] aad, byte[] ciphertext,
+          final int[] ciphertextOffsets) throws GeneralSecurityException {
+        AeadBatch.checkStartOffsets(plaintexts, ciphertextOffsets);
+        PrimitiveSet.Entry<Aead> primary = primitives.getPrimary();
+        byte[] identifier = primary.getIdentifier();
+        int[] rawOffsets = new int[plaintexts.length];
+        for (int i = 0; i < plaintexts.length; i++) {
+          SubtleUtil.checkOutputSize(ciphertext, ciphertextOffsets[i], identifier.length);
+          System.arraycopy(identifier, 0, ciphertext, ciphertextOffsets[i], identifier.length);
+          rawOffsets[i] = ciphertextOffsets[i] + identifier.length;
+        }
+        AeadBatch.encrypt(primary.getPrimitive(), plaintexts, aad, ciphertext, rawOffsets);
+      }
+
+      /**
+       * Decrypts the records one by one, since each of them may have been encrypted with a
+       * different key.
+       */
+      @Override
+      public byte[][] decryptBatch(final byte[] ciphertext, final int[] ciphertextOffsets,
+          final byte[] aad) throws GeneralSecurityException {
+        return AeadBatch.decryptEach(this, ciphertext, ciphertextOffsets, aad);
+      }
     };
   }
+
+  /**
+   * Attempts to decrypt with {@code aead}, leaving {@code aad} and {@code plaintext} untouched
+   * on failure, so that the next key can be tried.
+   */
+  private static void tryDecrypt(
+      Aead aead, ByteBuffer ciphertext, ByteBuffer aad, ByteBuffer plaintext)
+      throws GeneralSecurityException {
+    ByteBuffer aadCopy = aad.duplicate();
+    ByteBuffer plaintextCopy = plaintext.duplicate();
+    ZeroCopyUtil.decrypt(aead, ciphertext, aadCopy, plaintextCopy);
+    aad.position(aad.limit());
+    plaintext.position(plaintextCopy.position());
+  }
 }
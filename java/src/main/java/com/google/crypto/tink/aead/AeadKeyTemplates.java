@@ -101,6 +101,14 @@ public final class AeadKeyTemplates {
         .setTypeUrl(ChaCha20Poly1305KeyManager.TYPE_URL)
         .build();
 
+  /**
+   * A {@code KeyTemplate} that generates new instances of {@code XChaCha20Poly1305Key}.
+   */
+  public static final KeyTemplate XCHACHA20_POLY1305 =
+      KeyTemplate.newBuilder()
+        .setTypeUrl(XChaCha20Poly1305KeyManager.TYPE_URL)
+        .build();
+
   /**
    * @return a {@code KeyTemplate} containing a {@code AesGcmKeyFormat} with some specified
    * parameters.
@@ -34,14 +34,37 @@ import com.google.protobuf.ByteString;
 import com.google.protobuf.InvalidProtocolBufferException;
 import com.google.protobuf.MessageLite;
 import java.security.GeneralSecurityException;
+import java.util.concurrent.Executor;
 import java.util.logging.Logger;
 
 /**
  * This key manager generates new {@code AesCtrHmacAeadKey} keys and produces new instances
  * of {@code EncryptThenAuthenticate}.
+ *
+ * <p>The key manager registered by {@code AeadConfig} encrypts sequentially. To encrypt long
+ * messages in parallel, pass a key manager with an executor to the factory, e.g.
+ * <pre>   {@code
+ *   Aead aead = AeadFactory.getPrimitive(keysetHandle, new AesCtrHmacAeadKeyManager(pool));
+ *  }</pre>
  */
 public final class AesCtrHmacAeadKeyManager implements KeyManager<Aead> {
-  AesCtrHmacAeadKeyManager() {}
+  private final Executor executor;
+
+  AesCtrHmacAeadKeyManager() {
+    this.executor = null;
+  }
+
+  /**
+   * Creates a key manager whose primitives encrypt and decrypt the AES-CTR part of long messages
+   * in parallel on {@code executor}, e.g. a {@link java.util.concurrent.ForkJoinPool}. The HMAC
+   * is still computed sequentially.
+   */
+  public AesCtrHmacAeadKeyManager(Executor executor) {
+    if (executor == null) {
+      throw new NullPointerException("executor must be non-null.");
+    }
+    this.executor = executor;
+  }
 
   private static final Logger logger =
       Logger.getLogger(AesCtrHmacAeadKeyManager.class.getName());
@@ -84,9 +107,14 @@ public final class AesCtrHmacAeadKeyManager implements KeyManager<Aead> {
     }
     AesCtrHmacAeadKey keyProto = (AesCtrHmacAeadKey) key;
     validate(keyProto);
+    IndCpaCipher cipher;
+    if (executor == null) {
+      cipher = Registry.INSTANCE.getPrimitive(AesCtrKeyManager.TYPE_URL, keyProto.getAesCtrKey());
+    } else {
+      cipher = new AesCtrKeyManager(executor).getPrimitive(keyProto.getAesCtrKey());
+    }
     return new EncryptThenAuthenticate(
-        (IndCpaCipher) Registry.INSTANCE.getPrimitive(
-            AesCtrKeyManager.TYPE_URL, keyProto.getAesCtrKey()),
+        cipher,
         (Mac) Registry.INSTANCE.getPrimitive(HmacKeyManager.TYPE_URL, keyProto.getHmacKey()),
         keyProto.getHmacKey().getParams().getTagSize());
   }
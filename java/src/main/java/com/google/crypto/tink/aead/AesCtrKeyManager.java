@@ -29,6 +29,7 @@ import com.google.protobuf.ByteString;
 import com.google.protobuf.InvalidProtocolBufferException;
 import com.google.protobuf.MessageLite;
 import java.security.GeneralSecurityException;
+import java.util.concurrent.Executor;
 
 /**
  * This key manager generates new {@code AesCtrKey} keys and produces new instances
@@ -49,6 +50,20 @@ class AesCtrKeyManager implements KeyManager<IndCpaCipher> {
   // 2^-33 (i.e., less than one in eight billion).
   private static final int MIN_IV_SIZE_IN_BYTES = 12;
 
+  private final Executor executor;
+
+  AesCtrKeyManager() {
+    this(null);
+  }
+
+  /**
+   * Creates a key manager whose ciphers encrypt and decrypt long messages in parallel on
+   * {@code executor}; see {@link AesCtrJceCipher#AesCtrJceCipher(byte[], int, Executor)}.
+   */
+  AesCtrKeyManager(Executor executor) {
+    this.executor = executor;
+  }
+
   /**
    * @param serializedKey  serialized {@code AesCtrKey} proto
    */
@@ -73,7 +88,7 @@ class AesCtrKeyManager implements KeyManager<IndCpaCipher> {
     AesCtrKey keyProto = (AesCtrKey) key;
     validate(keyProto);
     return new AesCtrJceCipher(keyProto.getKeyValue().toByteArray(),
-        keyProto.getParams().getIvSize());
+        keyProto.getParams().getIvSize(), executor);
   }
 
   /**
@@ -19,9 +19,19 @@ package com.google.crypto.tink.aead; // instead of subtle, because it depends on
 import com.google.crypto.tink.Aead;
 import com.google.crypto.tink.Registry;
 import com.google.crypto.tink.TinkProto.KeyTemplate;
+import com.google.crypto.tink.ZeroCopyAead;
+import com.google.crypto.tink.subtle.SubtleUtil;
+import com.google.crypto.tink.subtle.ZeroCopyUtil;
+import com.google.protobuf.ByteString;
 import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
 import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.crypto.ShortBufferException;
 
 /**
  * This primitive implements <a href="https://cloud.google.com/kms/docs/data-encryption-keys">
@@ -33,50 +43,250 @@ import java.security.GeneralSecurityException;
  *   - Length of encrypted DEK: 4 bytes.
  *   - Encrypted DEK: variable length that is equal to the value specified in the last 4 bytes.
  *   - AEAD payload: variable length.
+ *
+ * Since each call to the KMS is a remote call, the number of calls can be reduced at the price of
+ * using each DEK for more data: encryption can reuse a DEK for up to {@code dekMaxUses} messages
+ * and {@code dekMaxAgeSeconds}, and decryption can keep the last {@code decryptedDekCacheSize}
+ * decrypted DEKs for {@code decryptedDekMaxAgeSeconds}, so that messages that share a DEK need
+ * only one call. The age limit of decrypted DEKs bounds how long ciphertexts keep decrypting
+ * after access to the KMS key has been revoked. These limits are set in
+ * {@code KmsEnvelopeAeadParams}, and by default every message gets its own DEK.
  */
-public final class KmsEnvelopeAead implements Aead {
+public final class KmsEnvelopeAead implements ZeroCopyAead {
   private static final byte[] EMPTY_AAD = new byte[0];
   private final KeyTemplate dekTemplate;
   private final Aead remote;
   private static final int LENGTH_ENCRYPTED_DEK = 4;
 
+  /** A DEK, wrapped by the KMS, and the primitive that encrypts with it. */
+  private static final class Dek {
+    final byte[] encryptedDek;
+    final Aead aead;
+    final long creationNanos;
+    int remainingUses;  // Guarded by the KmsEnvelopeAead that reuses the DEK.
+
+    Dek(byte[] encryptedDek, Aead aead) {
+      this.encryptedDek = encryptedDek;
+      this.aead = aead;
+      this.creationNanos = System.nanoTime();
+    }
+
+    /**
+     * @return true if the DEK has been used for as many messages as allowed (if limited), or is
+     * older than {@code maxAgeNanos} (if positive).
+     */
+    boolean isExhausted(long maxAgeNanos) {
+      return remainingUses == 0
+          || (maxAgeNanos > 0 && System.nanoTime() - creationNanos >= maxAgeNanos);
+    }
+  }
+
+  /** The primitive of a decrypted DEK, and when it must be decrypted by the KMS again. */
+  private static final class DecryptedDek {
+    final Aead aead;
+    final long expirationNanos;
+
+    DecryptedDek(Aead aead, long expirationNanos) {
+      this.aead = aead;
+      this.expirationNanos = expirationNanos;
+    }
+
+    boolean isExpired() {
+      return System.nanoTime() - expirationNanos >= 0;
+    }
+  }
+
+  private final int dekMaxUses;
+  private final long dekMaxAgeNanos;
+  private final long decryptedDekMaxAgeNanos;
+  // The DEK that is reused for encryption, or null. Guarded by this.
+  private Dek currentDek = null;
+  // Encrypted DEK -> primitive of the DEK, or null if decrypted DEKs are not kept.
+  private final Map<ByteString, DecryptedDek> decryptedDeks;
+
   KmsEnvelopeAead(KeyTemplate dekTemplate, Aead remote) {
+    this(dekTemplate, remote, 0 /* dekMaxUses */, 0 /* dekMaxAgeSeconds */,
+        0 /* decryptedDekCacheSize */, 0 /* decryptedDekMaxAgeSeconds */);
+  }
+
+  /**
+   * @param dekMaxUses the number of messages encrypted with the same DEK, or 0 for no limit if
+   * {@code dekMaxAgeSeconds} is positive. Every message gets a new DEK if this is 1, or if both
+   * are 0.
+   * @param dekMaxAgeSeconds the number of seconds after which a reused DEK is replaced, or 0 for
+   * no limit.
+   * @param decryptedDekCacheSize the number of decrypted DEKs that are kept, or 0 to call the KMS
+   * for every message.
+   * @param decryptedDekMaxAgeSeconds the number of seconds after which a kept decrypted DEK is
+   * dropped, so that the KMS is called again. Must be positive if {@code decryptedDekCacheSize}
+   * is.
+   */
+  KmsEnvelopeAead(KeyTemplate dekTemplate, Aead remote, int dekMaxUses, long dekMaxAgeSeconds,
+      final int decryptedDekCacheSize, long decryptedDekMaxAgeSeconds) {
+    if (decryptedDekCacheSize > 0 && decryptedDekMaxAgeSeconds <= 0) {
+      throw new IllegalArgumentException(
+          "decryptedDekMaxAgeSeconds must be positive if decrypted DEKs are kept");
+    }
     this.dekTemplate = dekTemplate;
     this.remote = remote;
+    this.dekMaxUses = dekMaxUses;
+    this.dekMaxAgeNanos = TimeUnit.SECONDS.toNanos(dekMaxAgeSeconds);
+    this.decryptedDekMaxAgeNanos = TimeUnit.SECONDS.toNanos(decryptedDekMaxAgeSeconds);
+    if (decryptedDekCacheSize > 0) {
+      // Access order, so that the least recently used DEK is evicted first.
+      this.decryptedDeks = Collections.synchronizedMap(
+          new LinkedHashMap<ByteString, DecryptedDek>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ByteString, DecryptedDek> eldest) {
+              return size() > decryptedDekCacheSize;
+            }
+          });
+    } else {
+      this.decryptedDeks = null;
+    }
   }
 
   @Override
   public byte[] encrypt(final byte[] plaintext, final byte[] aad) throws GeneralSecurityException {
-    // Generate a new DEK.
-    byte[] dek = Registry.INSTANCE.newKey(dekTemplate).toByteArray();
-    // Wrap it with remote.
-    byte[] encryptedDek = remote.encrypt(dek, EMPTY_AAD);
+    Dek dek = acquireDek(plaintext.length, Integer.MAX_VALUE);
     // Use DEK to encrypt plaintext.
-    Aead aead = Registry.INSTANCE.getPrimitive(dekTemplate.getTypeUrl(), dek);
-    byte[] payload = aead.encrypt(plaintext, aad);
+    byte[] payload = dek.aead.encrypt(plaintext, aad);
     // Build ciphertext protobuf and return result.
-    return buildCiphertext(encryptedDek, payload);
+    return buildCiphertext(dek.encryptedDek, payload);
+  }
+
+  /**
+   * @return the DEK to encrypt the next message with. The message has {@code plaintextSize}
+   * bytes, and its ciphertext must fit into {@code outputSize} bytes.
+   * @throws ShortBufferException if the ciphertext doesn't fit. A reused DEK is not counted as
+   * used then, and the KMS is not called if the payload alone doesn't fit.
+   */
+  private Dek acquireDek(int plaintextSize, int outputSize) throws GeneralSecurityException {
+    if (dekMaxUses == 1 || (dekMaxUses == 0 && dekMaxAgeNanos == 0)) {
+      Dek dek = newDek(plaintextSize, outputSize);
+      checkCiphertextSize(dek.aead, dek.encryptedDek.length, plaintextSize, outputSize);
+      return dek;
+    }
+    synchronized (this) {
+      if (currentDek == null || currentDek.isExhausted(dekMaxAgeNanos)) {
+        // Concurrent callers wait for the new DEK, rather than each wrapping a DEK of its own.
+        currentDek = newDek(plaintextSize, outputSize);
+        // -1 never reaches 0, so that the DEK is only replaced by age.
+        currentDek.remainingUses = dekMaxUses > 0 ? dekMaxUses : -1;
+        if (decryptedDeks != null) {
+          decryptedDeks.put(ByteString.copyFrom(currentDek.encryptedDek),
+              new DecryptedDek(
+                  currentDek.aead, currentDek.creationNanos + decryptedDekMaxAgeNanos));
+        }
+      }
+      checkCiphertextSize(
+          currentDek.aead, currentDek.encryptedDek.length, plaintextSize, outputSize);
+      if (currentDek.remainingUses > 0) {
+        currentDek.remainingUses--;
+      }
+      return currentDek;
+    }
+  }
+
+  /**
+   * Generates a new DEK, and wraps it with remote unless the payload of {@code plaintextSize}
+   * bytes alone doesn't fit into {@code outputSize} bytes.
+   */
+  private Dek newDek(int plaintextSize, int outputSize) throws GeneralSecurityException {
+    byte[] dek = Registry.INSTANCE.newKey(dekTemplate).toByteArray();
+    try {
+      Aead aead = Registry.INSTANCE.getPrimitive(dekTemplate.getTypeUrl(), dek);
+      // The size of the encrypted DEK is only known after the remote call.
+      checkCiphertextSize(aead, 0, plaintextSize, outputSize);
+      byte[] encryptedDek = remote.encrypt(dek, EMPTY_AAD);
+      return new Dek(encryptedDek, aead);
+    } finally {
+      Arrays.fill(dek, (byte) 0);
+    }
+  }
+
+  /**
+   * @throws ShortBufferException if the ciphertext of a plaintext of {@code plaintextSize} bytes,
+   * with an encrypted DEK of {@code encryptedDekSize} bytes, doesn't fit into {@code outputSize}
+   * bytes. Only the header is checked if {@code aead} doesn't know the size of its ciphertexts.
+   */
+  private static void checkCiphertextSize(Aead aead, int encryptedDekSize, int plaintextSize,
+      int outputSize) throws ShortBufferException {
+    long size = LENGTH_ENCRYPTED_DEK + (long) encryptedDekSize
+        + Math.max(ZeroCopyUtil.ciphertextSize(aead, plaintextSize), 0);
+    if (size > outputSize) {
+      throw new ShortBufferException(
+          String.format("output buffer too short: need at least %d bytes, have %d", size,
+              outputSize));
+    }
+  }
+
+  /**
+   * Uses remote to decrypt {@code encryptedDek}, unless it has been decrypted less than
+   * {@code decryptedDekMaxAgeSeconds} ago and is still kept.
+   *
+   * @return the primitive of the decrypted DEK.
+   */
+  private Aead decryptDek(final byte[] encryptedDek) throws GeneralSecurityException {
+    ByteString cacheKey = null;
+    if (decryptedDeks != null) {
+      cacheKey = ByteString.copyFrom(encryptedDek);
+      DecryptedDek decrypted = decryptedDeks.get(cacheKey);
+      if (decrypted != null) {
+        if (!decrypted.isExpired()) {
+          return decrypted.aead;
+        }
+        decryptedDeks.remove(cacheKey);
+      }
+    }
+    byte[] dek = remote.decrypt(encryptedDek, EMPTY_AAD);
+    try {
+      Aead aead = Registry.INSTANCE.getPrimitive(dekTemplate.getTypeUrl(), dek);
+      if (cacheKey != null) {
+        decryptedDeks.put(
+            cacheKey, new DecryptedDek(aead, System.nanoTime() + decryptedDekMaxAgeNanos));
+      }
+      return aead;
+    } finally {
+      Arrays.fill(dek, (byte) 0);
+    }
   }
 
   @Override
   public byte[] decrypt(final byte[] ciphertext, final byte[] aad)
       throws GeneralSecurityException {
+    return decrypt(ciphertext, 0, ciphertext.length, aad);
+  }
+
+  @Override
+  public int encrypt(final byte[] plaintext, final byte[] aad, byte[] ciphertext, int offset)
+      throws GeneralSecurityException {
+    SubtleUtil.checkOutputSize(ciphertext, offset, 0);
+    Dek dek = acquireDek(plaintext.length, ciphertext.length - offset);
+    int headerSize = LENGTH_ENCRYPTED_DEK + dek.encryptedDek.length;
+    ByteBuffer.wrap(ciphertext, offset, headerSize)
+        .putInt(dek.encryptedDek.length)
+        .put(dek.encryptedDek);
+    // Use DEK to encrypt plaintext in place.
+    return headerSize
+        + ZeroCopyUtil.encrypt(dek.aead, plaintext, aad, ciphertext, offset + headerSize);
+  }
+
+  @Override
+  public byte[] decrypt(final byte[] ciphertext, int offset, int length, final byte[] aad)
+      throws GeneralSecurityException {
+    SubtleUtil.checkRange(ciphertext, offset, length);
     try {
-      // TODO(thaidn): more efficient parsing?
-      ByteBuffer buffer = ByteBuffer.wrap(ciphertext);
+      ByteBuffer buffer = ByteBuffer.wrap(ciphertext, offset, length);
       int encryptedDekSize = buffer.getInt();
-      if (encryptedDekSize <= 0 || encryptedDekSize > (ciphertext.length - LENGTH_ENCRYPTED_DEK)) {
+      if (encryptedDekSize <= 0 || encryptedDekSize > (length - LENGTH_ENCRYPTED_DEK)) {
         throw new GeneralSecurityException("invalid ciphertext");
       }
       byte[] encryptedDek = new byte[encryptedDekSize];
       buffer.get(encryptedDek, 0, encryptedDekSize);
-      byte[] payload = new byte[buffer.remaining()];
-      buffer.get(payload, 0, buffer.remaining());
-      // Use remote to decrypt encryptedDek.
-      byte[] dek = remote.decrypt(encryptedDek, EMPTY_AAD);
-      // Use DEK to decrypt payload.
-      Aead aead = Registry.INSTANCE.getPrimitive(dekTemplate.getTypeUrl(), dek);
-      return aead.decrypt(payload, aad);
+      // Use DEK to decrypt the payload in place.
+      Aead aead = decryptDek(encryptedDek);
+      return ZeroCopyUtil.decrypt(aead, ciphertext, buffer.position(), buffer.remaining(), aad);
     } catch (IndexOutOfBoundsException
              | BufferUnderflowException
              | NegativeArraySizeException e) {
@@ -84,6 +294,12 @@ public final class KmsEnvelopeAead implements Aead {
     }
   }
 
+  /** Returns -1, as the size of the encrypted DEK is only known after wrapping it. */
+  @Override
+  public int ciphertextSize(int plaintextSize) {
+    return -1;
+  }
+
   private byte[] buildCiphertext(final byte[] encryptedDek, final byte[] payload) {
     return ByteBuffer.allocate(LENGTH_ENCRYPTED_DEK + encryptedDek.length + payload.length)
         .putInt(encryptedDek.length)
@@ -91,4 +307,33 @@ public final class KmsEnvelopeAead implements Aead {
         .put(payload)
         .array();
   }
+
+  @Override
+  public void encrypt(ByteBuffer plaintext, ByteBuffer aad, ByteBuffer ciphertext)
+      throws GeneralSecurityException {
+    Dek dek = acquireDek(plaintext.remaining(), ciphertext.remaining());
+    ciphertext.putInt(dek.encryptedDek.length).put(dek.encryptedDek);
+    // Use DEK to encrypt plaintext directly into ciphertext.
+    ZeroCopyUtil.encrypt(dek.aead, plaintext, aad, ciphertext);
+  }
+
+  @Override
+  public void decrypt(ByteBuffer ciphertext, ByteBuffer aad, ByteBuffer plaintext)
+      throws GeneralSecurityException {
+    try {
+      ByteBuffer buffer = ciphertext.duplicate();
+      int encryptedDekSize = buffer.getInt();
+      if (encryptedDekSize <= 0 || encryptedDekSize > buffer.remaining()) {
+        throw new GeneralSecurityException("invalid ciphertext");
+      }
+      // Only the encrypted DEK is copied, to decrypt it.
+      byte[] encryptedDek = new byte[encryptedDekSize];
+      buffer.get(encryptedDek);
+      Aead aead = decryptDek(encryptedDek);
+      ZeroCopyUtil.decrypt(aead, buffer, aad, plaintext);
+      ciphertext.position(buffer.position());
+    } catch (BufferUnderflowException e) {
+      throw new GeneralSecurityException("invalid ciphertext", e);
+    }
+  }
 }
@@ -20,6 +20,7 @@ import com.google.crypto.tink.Aead;
 import com.google.crypto.tink.KeyManager;
 import com.google.crypto.tink.KmsEnvelopeProto.KmsEnvelopeAeadKey;
 import com.google.crypto.tink.KmsEnvelopeProto.KmsEnvelopeAeadKeyFormat;
+import com.google.crypto.tink.KmsEnvelopeProto.KmsEnvelopeAeadParams;
 import com.google.crypto.tink.Registry;
 import com.google.crypto.tink.TinkProto.KeyData;
 import com.google.crypto.tink.subtle.SubtleUtil;
@@ -63,8 +64,11 @@ public final class KmsEnvelopeAeadKeyManager implements KeyManager<Aead> {
     }
     KmsEnvelopeAeadKey keyProto = (KmsEnvelopeAeadKey) key;
     validate(keyProto);
-    Aead remote = Registry.INSTANCE.getPrimitive(keyProto.getParams().getKmsKey());
-    return new KmsEnvelopeAead(keyProto.getParams().getDekTemplate(), remote);
+    KmsEnvelopeAeadParams params = keyProto.getParams();
+    Aead remote = Registry.INSTANCE.getPrimitive(params.getKmsKey());
+    return new KmsEnvelopeAead(params.getDekTemplate(), remote, params.getDekMaxUses(),
+        params.getDekMaxAgeSeconds(), params.getDecryptedDekCacheSize(),
+        params.getDecryptedDekMaxAgeSeconds());
   }
 
   /**
@@ -124,5 +128,22 @@ public final class KmsEnvelopeAeadKeyManager implements KeyManager<Aead> {
 
   private void validate(KmsEnvelopeAeadKey key) throws GeneralSecurityException {
     SubtleUtil.validateVersion(key.getVersion(), VERSION);
+    // uint32 fields are read as signed ints.
+    KmsEnvelopeAeadParams params = key.getParams();
+    if (params.getDekMaxUses() < 0
+        || params.getDekMaxAgeSeconds() < 0
+        || params.getDecryptedDekCacheSize() < 0
+        || params.getDecryptedDekMaxAgeSeconds() < 0) {
+      throw new GeneralSecurityException("invalid KmsEnvelopeAeadParams: limit too large");
+    }
+    if (params.getDekMaxUses() == 1 && params.getDekMaxAgeSeconds() > 0) {
+      throw new GeneralSecurityException(
+          "invalid KmsEnvelopeAeadParams: dek_max_age_seconds requires dek_max_uses != 1");
+    }
+    if (params.getDecryptedDekCacheSize() > 0 && params.getDecryptedDekMaxAgeSeconds() == 0) {
+      throw new GeneralSecurityException(
+          "invalid KmsEnvelopeAeadParams: decrypted_dek_cache_size requires "
+          + "decrypted_dek_max_age_seconds");
+    }
   }
 }
@@ -16,6 +16,7 @@
 
 package com.google.crypto.tink.hybrid;
 
+import com.google.crypto.tink.CommonProto.EllipticCurveType;
 import com.google.crypto.tink.EciesAeadHkdfProto.EciesAeadHkdfKeyFormat;
 import com.google.crypto.tink.EciesAeadHkdfProto.EciesAeadHkdfParams;
 import com.google.crypto.tink.EciesAeadHkdfProto.EciesAeadHkdfPrivateKey;
@@ -25,8 +26,10 @@ import com.google.crypto.tink.HybridDecrypt;
 import com.google.crypto.tink.KeyManager;
 import com.google.crypto.tink.TinkProto.KeyData;
 import com.google.crypto.tink.Util;
+import com.google.crypto.tink.subtle.Curve25519;
 import com.google.crypto.tink.subtle.EciesAeadHkdfDemHelper;
 import com.google.crypto.tink.subtle.EciesAeadHkdfHybridDecrypt;
+import com.google.crypto.tink.subtle.EciesX25519AeadHkdfHybridDecrypt;
 import com.google.crypto.tink.subtle.SubtleUtil;
 import com.google.protobuf.ByteString;
 import com.google.protobuf.InvalidProtocolBufferException;
@@ -39,7 +42,8 @@ import java.security.spec.ECPoint;
 
 /**
  * This key manager generates new {@code EciesAeadHkdfPrivateKey} keys and produces new instances
- * of {@code EciesAeadHkdfHybridDecrypt}.
+ * of {@code EciesAeadHkdfHybridDecrypt}, or of {@code EciesX25519AeadHkdfHybridDecrypt} for keys
+ * over Curve25519.
  */
 public final class EciesAeadHkdfPrivateKeyManager implements KeyManager<HybridDecrypt> {
   EciesAeadHkdfPrivateKeyManager() {}
@@ -74,11 +78,17 @@ public final class EciesAeadHkdfPrivateKeyManager implements KeyManager<HybridDe
     validate(recipientKeyProto);
     EciesAeadHkdfParams eciesParams = recipientKeyProto.getPublicKey().getParams();
     EciesHkdfKemParams kemParams = eciesParams.getKemParams();
+    EciesAeadHkdfDemHelper demHelper = new RegistryEciesAeadHkdfDemHelper(
+        eciesParams.getDemParams().getAeadDem());
+    if (kemParams.getCurveType() == EllipticCurveType.CURVE25519) {
+      return new EciesX25519AeadHkdfHybridDecrypt(recipientKeyProto.getKeyValue().toByteArray(),
+          kemParams.getHkdfSalt().toByteArray(),
+          kemParams.getHkdfHashType(),
+          demHelper);
+    }
 
     ECPrivateKey recipientPrivateKey = Util.getEcPrivateKey(kemParams.getCurveType(),
         recipientKeyProto.getKeyValue().toByteArray());
-    EciesAeadHkdfDemHelper demHelper = new RegistryEciesAeadHkdfDemHelper(
-        eciesParams.getDemParams().getAeadDem());
     return new EciesAeadHkdfHybridDecrypt(recipientPrivateKey,
         kemParams.getHkdfSalt().toByteArray(),
         kemParams.getHkdfHashType(),
@@ -112,6 +122,9 @@ public final class EciesAeadHkdfPrivateKeyManager implements KeyManager<HybridDe
     EciesAeadHkdfKeyFormat eciesKeyFormat = (EciesAeadHkdfKeyFormat) keyFormat;
     HybridUtil.validate(eciesKeyFormat.getParams());
     EciesHkdfKemParams kemParams = eciesKeyFormat.getParams().getKemParams();
+    if (kemParams.getCurveType() == EllipticCurveType.CURVE25519) {
+      return newX25519Key(eciesKeyFormat.getParams());
+    }
     KeyPair keyPair = Util.generateKeyPair(kemParams.getCurveType());
     ECPublicKey pubKey = (ECPublicKey) keyPair.getPublic();
     ECPrivateKey privKey = (ECPrivateKey) keyPair.getPrivate();
@@ -133,6 +146,24 @@ public final class EciesAeadHkdfPrivateKeyManager implements KeyManager<HybridDe
         .build();
   }
 
+  /**
+   * @return new {@code EciesAeadHkdfPrivateKey} proto over Curve25519, whose public key has the
+   * 32-byte public value as {@code x}, and no {@code y}.
+   */
+  private static EciesAeadHkdfPrivateKey newX25519Key(EciesAeadHkdfParams params) {
+    byte[] privateKey = Curve25519.generatePrivateKey();
+    EciesAeadHkdfPublicKey eciesPublicKey = EciesAeadHkdfPublicKey.newBuilder()
+        .setVersion(VERSION)
+        .setParams(params)
+        .setX(ByteString.copyFrom(Curve25519.x25519PublicFromPrivate(privateKey)))
+        .build();
+    return EciesAeadHkdfPrivateKey.newBuilder()
+        .setVersion(VERSION)
+        .setPublicKey(eciesPublicKey)
+        .setKeyValue(ByteString.copyFrom(privateKey))
+        .build();
+  }
+
   /**
    * @param serializedKeyFormat  serialized {@code EciesAeadHkdfKeyFormat} proto
    * @return {@code KeyData} with a new {@code EciesAeadHkdfPrivateKey} proto
@@ -16,6 +16,7 @@
 
 package com.google.crypto.tink.hybrid;
 
+import com.google.crypto.tink.CommonProto.EllipticCurveType;
 import com.google.crypto.tink.EciesAeadHkdfProto.EciesAeadHkdfParams;
 import com.google.crypto.tink.EciesAeadHkdfProto.EciesAeadHkdfPublicKey;
 import com.google.crypto.tink.EciesAeadHkdfProto.EciesHkdfKemParams;
@@ -25,6 +26,7 @@ import com.google.crypto.tink.TinkProto.KeyData;
 import com.google.crypto.tink.Util;
 import com.google.crypto.tink.subtle.EciesAeadHkdfDemHelper;
 import com.google.crypto.tink.subtle.EciesAeadHkdfHybridEncrypt;
+import com.google.crypto.tink.subtle.EciesX25519AeadHkdfHybridEncrypt;
 import com.google.crypto.tink.subtle.SubtleUtil;
 import com.google.protobuf.ByteString;
 import com.google.protobuf.InvalidProtocolBufferException;
@@ -33,7 +35,8 @@ import java.security.GeneralSecurityException;
 import java.security.interfaces.ECPublicKey;
 
 /**
- * This key manager produces new instances of {@code EciesAeadHkdfHybridEncrypt}.
+ * This key manager produces new instances of {@code EciesAeadHkdfHybridEncrypt}, or of
+ * {@code EciesX25519AeadHkdfHybridEncrypt} for keys over Curve25519.
  * It doesn't support key generation.
  */
 public final class EciesAeadHkdfPublicKeyManager implements KeyManager<HybridEncrypt> {
@@ -69,10 +72,16 @@ public final class EciesAeadHkdfPublicKeyManager implements KeyManager<HybridEnc
     validate(recipientKeyProto);
     EciesAeadHkdfParams eciesParams = recipientKeyProto.getParams();
     EciesHkdfKemParams kemParams = eciesParams.getKemParams();
-    ECPublicKey recipientPublicKey = Util.getEcPublicKey(kemParams.getCurveType(),
-        recipientKeyProto.getX().toByteArray(), recipientKeyProto.getY().toByteArray());
     EciesAeadHkdfDemHelper demHelper = new RegistryEciesAeadHkdfDemHelper(
         eciesParams.getDemParams().getAeadDem());
+    if (kemParams.getCurveType() == EllipticCurveType.CURVE25519) {
+      return new EciesX25519AeadHkdfHybridEncrypt(recipientKeyProto.getX().toByteArray(),
+          kemParams.getHkdfSalt().toByteArray(),
+          kemParams.getHkdfHashType(),
+          demHelper);
+    }
+    ECPublicKey recipientPublicKey = Util.getEcPublicKey(kemParams.getCurveType(),
+        recipientKeyProto.getX().toByteArray(), recipientKeyProto.getY().toByteArray());
     return new EciesAeadHkdfHybridEncrypt(recipientPublicKey,
         kemParams.getHkdfSalt().toByteArray(),
         kemParams.getHkdfHashType(),
@@ -21,8 +21,10 @@ import com.google.crypto.tink.KeyManager;
 import com.google.crypto.tink.KeysetHandle;
 import com.google.crypto.tink.PrimitiveSet;
 import com.google.crypto.tink.Registry;
+import com.google.crypto.tink.ZeroCopyHybridDecrypt;
+import com.google.crypto.tink.subtle.SubtleUtil;
+import com.google.crypto.tink.subtle.ZeroCopyUtil;
 import java.security.GeneralSecurityException;
-import java.util.Arrays;
 import java.util.List;
 import java.util.logging.Logger;
 
@@ -63,23 +65,39 @@ public final class HybridDecryptFactory {
   public static HybridDecrypt getPrimitive(
       KeysetHandle keysetHandle, final KeyManager<HybridDecrypt> keyManager)
       throws GeneralSecurityException {
-    final PrimitiveSet<HybridDecrypt> primitives =
+    PrimitiveSet<HybridDecrypt> primitives =
         Registry.INSTANCE.getPrimitives(keysetHandle, keyManager);
-    return new HybridDecrypt() {
+    return getPrimitive(primitives);
+  }
+
+  /**
+   * @return a HybridDecrypt primitive that uses the keys in {@code primitives}.
+   * Every operation uses the keys that are in the set when it starts, so that the primitive picks
+   * up a rotation with {@code Registry.updatePrimitives}.
+   */
+  public static HybridDecrypt getPrimitive(final PrimitiveSet<HybridDecrypt> primitives) {
+    return new ZeroCopyHybridDecrypt() {
       @Override
       public byte[] decrypt(final byte[] ciphertext, final byte[] contextInfo)
           throws GeneralSecurityException {
-        if (ciphertext.length > CryptoFormat.NON_RAW_PREFIX_SIZE) {
-          byte[] prefix = Arrays.copyOfRange(ciphertext, 0, CryptoFormat.NON_RAW_PREFIX_SIZE);
-          byte[] ciphertextNoPrefix = Arrays.copyOfRange(
-              ciphertext,
-              CryptoFormat.NON_RAW_PREFIX_SIZE,
-              ciphertext.length);
+        return decrypt(ciphertext, 0, ciphertext.length, contextInfo);
+      }
+
+      @Override
+      public byte[] decrypt(final byte[] ciphertext, int offset, int length,
+          final byte[] contextInfo) throws GeneralSecurityException {
+        SubtleUtil.checkRange(ciphertext, offset, length);
+        if (length > CryptoFormat.NON_RAW_PREFIX_SIZE) {
           List<PrimitiveSet.Entry<HybridDecrypt>> entries =
-              primitives.getPrimitive(prefix);
+              primitives.getPrimitive(ciphertext, offset);
           for (PrimitiveSet.Entry<HybridDecrypt> entry : entries) {
             try {
-              return entry.getPrimitive().decrypt(ciphertextNoPrefix, contextInfo);
+              return ZeroCopyUtil.decrypt(
+                  entry.getPrimitive(),
+                  ciphertext,
+                  offset + CryptoFormat.NON_RAW_PREFIX_SIZE,
+                  length - CryptoFormat.NON_RAW_PREFIX_SIZE,
+                  contextInfo);
             } catch (GeneralSecurityException e) {
               logger.info("ciphertext prefix matches a key, but cannot decrypt: " + e.toString());
               continue;
@@ -91,7 +109,8 @@ public final class HybridDecryptFactory {
             primitives.getRawPrimitives();
         for (PrimitiveSet.Entry<HybridDecrypt> entry : entries) {
           try {
-            return entry.getPrimitive().decrypt(ciphertext, contextInfo);
+            return ZeroCopyUtil.decrypt(
+                entry.getPrimitive(), ciphertext, offset, length, contextInfo);
           } catch (GeneralSecurityException e) {
             continue;
           }
@@ -86,15 +86,24 @@ public final class HybridEncryptFactory {
   public static HybridEncrypt getPrimitive(
       KeysetHandle keysetHandle, final KeyManager<HybridEncrypt> keyManager)
       throws GeneralSecurityException {
-    final PrimitiveSet<HybridEncrypt> primitives =
+    PrimitiveSet<HybridEncrypt> primitives =
         Registry.INSTANCE.getPrimitives(keysetHandle, keyManager);
+    return getPrimitive(primitives);
+  }
+
+  /**
+   * @return a HybridEncrypt primitive that uses the keys in {@code primitives}.
+   * Every operation uses the keys that are in the set when it starts, so that the primitive picks
+   * up a rotation with {@code Registry.updatePrimitives}.
+   */
+  public static HybridEncrypt getPrimitive(final PrimitiveSet<HybridEncrypt> primitives) {
     return new HybridEncrypt() {
       @Override
       public byte[] encrypt(final byte[] plaintext, final byte[] contextInfo)
           throws GeneralSecurityException {
+        PrimitiveSet.Entry<HybridEncrypt> primary = primitives.getPrimary();
         return SubtleUtil.concat(
-            primitives.getPrimary().getIdentifier(),
-            primitives.getPrimary().getPrimitive().encrypt(plaintext, contextInfo));
+            primary.getIdentifier(), primary.getPrimitive().encrypt(plaintext, contextInfo));
       }
     };
   }
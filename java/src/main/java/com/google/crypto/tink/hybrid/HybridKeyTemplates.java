@@ -70,6 +70,35 @@ public final class HybridKeyTemplates {
               EllipticCurveType.NIST_P256, HashType.SHA256, EcPointFormat.UNCOMPRESSED,
               AeadKeyTemplates.AES128_CTR_HMAC_SHA256, EMPTY_SALT);
 
+  /**
+   * A {@code KeyTemplate} that generates new instances of {@code EciesAeadHkdfPrivateKey}
+   * with the following parameters:
+   *   - KEM: X25519 over Curve25519
+   *   - DEM: AES128-GCM
+   *   - KDF: HKDF-HMAC-SHA256 with empty salt
+   */
+  public static final KeyTemplate ECIES_X25519_HKDF_HMAC_SHA256_AES128_GCM =
+      createEciesAeadHkdfKeyTemplate(
+          EllipticCurveType.CURVE25519, HashType.SHA256, EcPointFormat.COMPRESSED,
+          AeadKeyTemplates.AES128_GCM, EMPTY_SALT);
+
+  /**
+   * A {@code KeyTemplate} that generates new instances of {@code EciesAeadHkdfPrivateKey}
+   * with the following parameters:
+   *   - KEM: X25519 over Curve25519
+   *   - DEM: AES128-CTR-HMAC-SHA256 with the following parameters:
+   *     - AES key size: 128 bits
+   *     - IV size: 128 bits
+   *     - HMAC key size: 256 bits
+   *     - HMAC tag size: 128 bits
+   *   - KDF: HKDF-HMAC-SHA256 with empty salt
+   */
+  public static final KeyTemplate
+      ECIES_X25519_HKDF_HMAC_SHA256_AES128_CTR_HMAC_SHA256 =
+          createEciesAeadHkdfKeyTemplate(
+              EllipticCurveType.CURVE25519, HashType.SHA256, EcPointFormat.COMPRESSED,
+              AeadKeyTemplates.AES128_CTR_HMAC_SHA256, EMPTY_SALT);
+
   /**
    *  @return a {@code KeyTemplate} containing a {code EciesAeadHkdfKeyFormat}.
    */
@@ -17,6 +17,7 @@
 package com.google.crypto.tink.hybrid;
 
 import com.google.crypto.tink.CommonProto.EcPointFormat;
+import com.google.crypto.tink.CommonProto.EllipticCurveType;
 import com.google.crypto.tink.EciesAeadHkdfProto.EciesAeadHkdfParams;
 import com.google.crypto.tink.Registry;
 import com.google.crypto.tink.Util;
@@ -30,7 +31,14 @@ final class HybridUtil {
    * @throws GeneralSecurityException iff it's invalid.
    */
   public static void validate(EciesAeadHkdfParams params) throws GeneralSecurityException {
-    Util.getCurveSpec(params.getKemParams().getCurveType());
+    if (params.getKemParams().getCurveType() == EllipticCurveType.CURVE25519) {
+      // X25519 points have a single encoding.
+      if (params.getEcPointFormat() != EcPointFormat.COMPRESSED) {
+        throw new GeneralSecurityException("X25519 only supports compressed points");
+      }
+    } else {
+      Util.getCurveSpec(params.getKemParams().getCurveType());
+    }
     Util.hashToHmacAlgorithmName(params.getKemParams().getHkdfHashType());
     if (params.getEcPointFormat() == EcPointFormat.UNKNOWN_FORMAT) {
       throw new GeneralSecurityException("unknown EC point format");
@@ -23,7 +23,10 @@ import com.google.crypto.tink.Mac;
 import com.google.crypto.tink.PrimitiveSet;
 import com.google.crypto.tink.Registry;
 import com.google.crypto.tink.TinkProto.OutputPrefixType;
+import com.google.crypto.tink.ZeroCopyMac;
 import com.google.crypto.tink.subtle.SubtleUtil;
+import com.google.crypto.tink.subtle.ZeroCopyUtil;
+import java.nio.ByteBuffer;
 import java.security.GeneralSecurityException;
 import java.util.Arrays;
 import java.util.List;
@@ -67,41 +70,54 @@ public final class MacFactory {
   public static Mac getPrimitive(
       KeysetHandle keysetHandle, final KeyManager<Mac> keyManager)
       throws GeneralSecurityException {
-    final PrimitiveSet<Mac> primitives =
-        Registry.INSTANCE.getPrimitives(keysetHandle, keyManager);
+    PrimitiveSet<Mac> primitives = Registry.INSTANCE.getPrimitives(keysetHandle, keyManager);
+    return getPrimitive(primitives);
+  }
+
+  /**
+   * @return a Mac primitive that uses the keys in {@code primitives}. Every operation uses the
+   * keys that are in the set when it starts, so that the primitive picks up a rotation with
+   * {@code Registry.updatePrimitives}.
+   */
+  public static Mac getPrimitive(final PrimitiveSet<Mac> primitives) {
     final byte[] formatVersion = new byte[] {CryptoFormat.LEGACY_START_BYTE};
-    return new Mac() {
+    return new ZeroCopyMac() {
       @Override
       public byte[] computeMac(final byte[] data) throws GeneralSecurityException {
-        if (primitives.getPrimary().getOutputPrefixType().equals(OutputPrefixType.LEGACY)) {
+        PrimitiveSet.Entry<Mac> primary = primitives.getPrimary();
+        if (primary.getOutputPrefixType().equals(OutputPrefixType.LEGACY)) {
           return SubtleUtil.concat(
-              primitives.getPrimary().getIdentifier(),
-              primitives.getPrimary().getPrimitive().computeMac(
-                  SubtleUtil.concat(data, formatVersion)));
+              primary.getIdentifier(),
+              primary.getPrimitive().computeMac(SubtleUtil.concat(data, formatVersion)));
         }
-        return SubtleUtil.concat(
-            primitives.getPrimary().getIdentifier(),
-            primitives.getPrimary().getPrimitive().computeMac(data));
+        return SubtleUtil.concat(primary.getIdentifier(), primary.getPrimitive().computeMac(data));
       }
 
       @Override
       public void verifyMac(final byte[] mac, final byte[] data) throws GeneralSecurityException {
-        if (mac.length <= CryptoFormat.NON_RAW_PREFIX_SIZE) {
+        verifyMac(mac, 0, mac.length, data);
+      }
+
+      @Override
+      public void verifyMac(final byte[] mac, int offset, int length, final byte[] data)
+          throws GeneralSecurityException {
+        SubtleUtil.checkRange(mac, offset, length);
+        if (length <= CryptoFormat.NON_RAW_PREFIX_SIZE) {
           // This also rejects raw MAC with size of 4 bytes or fewer. Those MACs are
           // clearly insecure, thus should be discouraged.
           throw new GeneralSecurityException("tag too short");
         }
-        byte[] prefix = Arrays.copyOfRange(mac, 0, CryptoFormat.NON_RAW_PREFIX_SIZE);
-        byte[] macNoPrefix = Arrays.copyOfRange(mac, CryptoFormat.NON_RAW_PREFIX_SIZE,
-              mac.length);
-        List<PrimitiveSet.Entry<Mac>> entries = primitives.getPrimitive(prefix);
+        int macNoPrefixOffset = offset + CryptoFormat.NON_RAW_PREFIX_SIZE;
+        int macNoPrefixLength = length - CryptoFormat.NON_RAW_PREFIX_SIZE;
+        List<PrimitiveSet.Entry<Mac>> entries = primitives.getPrimitive(mac, offset);
         for (PrimitiveSet.Entry<Mac> entry : entries) {
             try {
               if (entry.getOutputPrefixType().equals(OutputPrefixType.LEGACY)) {
-                entry.getPrimitive().verifyMac(macNoPrefix,
-                    SubtleUtil.concat(data, formatVersion));
+                ZeroCopyUtil.verifyMac(entry.getPrimitive(), mac, macNoPrefixOffset,
+                    macNoPrefixLength, SubtleUtil.concat(data, formatVersion));
               } else {
-                entry.getPrimitive().verifyMac(macNoPrefix, data);
+                ZeroCopyUtil.verifyMac(
+                    entry.getPrimitive(), mac, macNoPrefixOffset, macNoPrefixLength, data);
               }
               // If there is no exception, the MAC is valid and we can return.
               return;
@@ -115,7 +131,7 @@ public final class MacFactory {
         entries = primitives.getRawPrimitives();
         for (PrimitiveSet.Entry<Mac> entry : entries) {
           try {
-            entry.getPrimitive().verifyMac(mac, data);
+            ZeroCopyUtil.verifyMac(entry.getPrimitive(), mac, offset, length, data);
             // If there is no exception, the MAC is valid and we can return.
             return;
           } catch (GeneralSecurityException ignored) {
@@ -125,6 +141,55 @@ public final class MacFactory {
         // nothing works.
         throw new GeneralSecurityException("invalid MAC");
       }
+
+      @Override
+      public byte[] computeMac(ByteBuffer data) throws GeneralSecurityException {
+        PrimitiveSet.Entry<Mac> primary = primitives.getPrimary();
+        if (primary.getOutputPrefixType().equals(OutputPrefixType.LEGACY)) {
+          // LEGACY tags cover data || formatVersion, which needs a copy.
+          return computeMac(SubtleUtil.toByteArray(data));
+        }
+        return SubtleUtil.concat(primary.getIdentifier(),
+            ZeroCopyUtil.computeMac(primary.getPrimitive(), data));
+      }
+
+      @Override
+      public void verifyMac(final byte[] mac, ByteBuffer data) throws GeneralSecurityException {
+        if (mac.length <= CryptoFormat.NON_RAW_PREFIX_SIZE) {
+          throw new GeneralSecurityException("tag too short");
+        }
+        List<PrimitiveSet.Entry<Mac>> entries = primitives.getPrimitive(mac, 0);
+        for (PrimitiveSet.Entry<Mac> entry : entries) {
+          byte[] macNoPrefix = Arrays.copyOfRange(mac, CryptoFormat.NON_RAW_PREFIX_SIZE,
+              mac.length);
+          try {
+            if (entry.getOutputPrefixType().equals(OutputPrefixType.LEGACY)) {
+              entry.getPrimitive().verifyMac(macNoPrefix,
+                  SubtleUtil.concat(SubtleUtil.toByteArray(data.duplicate()), formatVersion));
+            } else {
+              ZeroCopyUtil.verifyMac(entry.getPrimitive(), macNoPrefix, data.duplicate());
+            }
+            data.position(data.limit());
+            return;
+          } catch (GeneralSecurityException e) {
+            logger.info("tag prefix matches a key, but cannot verify: " + e.toString());
+            // Ignored as we want to continue verification with the remaining keys.
+          }
+        }
+
+        entries = primitives.getRawPrimitives();
+        for (PrimitiveSet.Entry<Mac> entry : entries) {
+          try {
+            ZeroCopyUtil.verifyMac(entry.getPrimitive(), mac, data.duplicate());
+            data.position(data.limit());
+            return;
+          } catch (GeneralSecurityException ignored) {
+            // Ignored as we want to continue verification with other raw keys.
+          }
+        }
+        // nothing works.
+        throw new GeneralSecurityException("invalid MAC");
+      }
     };
   }
 }
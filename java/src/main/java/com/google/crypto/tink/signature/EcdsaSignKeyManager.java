@@ -16,6 +16,7 @@
 
 package com.google.crypto.tink.signature;
 
+import com.google.crypto.tink.CommonProto.EllipticCurveType;
 import com.google.crypto.tink.EcdsaProto.EcdsaKeyFormat;
 import com.google.crypto.tink.EcdsaProto.EcdsaParams;
 import com.google.crypto.tink.EcdsaProto.EcdsaPrivateKey;
@@ -25,6 +26,8 @@ import com.google.crypto.tink.PublicKeySign;
 import com.google.crypto.tink.TinkProto.KeyData;
 import com.google.crypto.tink.Util;
 import com.google.crypto.tink.subtle.EcdsaSignJce;
+import com.google.crypto.tink.subtle.EcdsaSignP256;
+import com.google.crypto.tink.subtle.P256;
 import com.google.crypto.tink.subtle.SubtleUtil;
 import com.google.protobuf.ByteString;
 import com.google.protobuf.InvalidProtocolBufferException;
@@ -37,7 +40,8 @@ import java.security.spec.ECPoint;
 
 /**
  * This key manager generates new {@code EcdsaPrivateKey} keys and produces new instances
- * of {@code EcdsaSignJce}.
+ * of {@code EcdsaSignJce}, or of {@code EcdsaSignP256} for P-256 keys if {@code P256} is
+ * enabled.
  */
 public final class EcdsaSignKeyManager implements KeyManager<PublicKeySign> {
   EcdsaSignKeyManager() {}
@@ -80,8 +84,13 @@ public final class EcdsaSignKeyManager implements KeyManager<PublicKeySign> {
     ECPrivateKey privateKey = Util.getEcPrivateKey(
         keyProto.getPublicKey().getParams().getCurve(),
         keyProto.getKeyValue().toByteArray());
-    return new EcdsaSignJce(privateKey,
-        SigUtil.hashToEcdsaAlgorithmName(keyProto.getPublicKey().getParams().getHashType()));
+    String signatureAlgorithm =
+        SigUtil.hashToEcdsaAlgorithmName(keyProto.getPublicKey().getParams().getHashType());
+    if (P256.isEnabled()
+        && keyProto.getPublicKey().getParams().getCurve() == EllipticCurveType.NIST_P256) {
+      return new EcdsaSignP256(privateKey, signatureAlgorithm);
+    }
+    return new EcdsaSignJce(privateKey, signatureAlgorithm);
   }
 
   /**
@@ -16,12 +16,15 @@
 
 package com.google.crypto.tink.signature;
 
+import com.google.crypto.tink.CommonProto.EllipticCurveType;
 import com.google.crypto.tink.EcdsaProto.EcdsaPublicKey;
 import com.google.crypto.tink.KeyManager;
 import com.google.crypto.tink.PublicKeyVerify;
 import com.google.crypto.tink.TinkProto.KeyData;
 import com.google.crypto.tink.Util;
 import com.google.crypto.tink.subtle.EcdsaVerifyJce;
+import com.google.crypto.tink.subtle.EcdsaVerifyP256;
+import com.google.crypto.tink.subtle.P256;
 import com.google.crypto.tink.subtle.SubtleUtil;
 import com.google.protobuf.ByteString;
 import com.google.protobuf.InvalidProtocolBufferException;
@@ -30,7 +33,8 @@ import java.security.GeneralSecurityException;
 import java.security.interfaces.ECPublicKey;
 
 /**
- * This key manager produces new instances of {@code EcdsaVerifyJce}.
+ * This key manager produces new instances of {@code EcdsaVerifyJce}, or of
+ * {@code EcdsaVerifyP256} for P-256 keys if {@code P256} is enabled.
  * It doesn't support key generation.
  */
 public final class EcdsaVerifyKeyManager implements KeyManager<PublicKeyVerify> {
@@ -69,8 +73,12 @@ public final class EcdsaVerifyKeyManager implements KeyManager<PublicKeyVerify>
     validateKey(keyProto);
     ECPublicKey publicKey = Util.getEcPublicKey(keyProto.getParams().getCurve(),
         keyProto.getX().toByteArray(), keyProto.getY().toByteArray());
-    return new EcdsaVerifyJce(publicKey,
-        SigUtil.hashToEcdsaAlgorithmName(keyProto.getParams().getHashType()));
+    String signatureAlgorithm =
+        SigUtil.hashToEcdsaAlgorithmName(keyProto.getParams().getHashType());
+    if (P256.isEnabled() && keyProto.getParams().getCurve() == EllipticCurveType.NIST_P256) {
+      return new EcdsaVerifyP256(publicKey, signatureAlgorithm);
+    }
+    return new EcdsaVerifyJce(publicKey, signatureAlgorithm);
   }
 
   /**
@@ -62,22 +62,29 @@ public final class PublicKeySignFactory {
   public static PublicKeySign getPrimitive(
       KeysetHandle keysetHandle, final KeyManager<PublicKeySign> keyManager)
       throws GeneralSecurityException {
-        final PrimitiveSet<PublicKeySign> primitives =
-            Registry.INSTANCE.getPrimitives(keysetHandle, keyManager);
-        return new PublicKeySign() {
-          @Override
-          public byte[] sign(final byte[] data) throws GeneralSecurityException {
-            if (primitives.getPrimary().getOutputPrefixType().equals(OutputPrefixType.LEGACY)) {
-              byte[] formatVersion = new byte[] {CryptoFormat.LEGACY_START_BYTE};
-              return SubtleUtil.concat(
-                  primitives.getPrimary().getIdentifier(),
-                  primitives.getPrimary().getPrimitive().sign(
-                      SubtleUtil.concat(data, formatVersion)));
-            }
-            return SubtleUtil.concat(
-                primitives.getPrimary().getIdentifier(),
-                primitives.getPrimary().getPrimitive().sign(data));
-          }
-        };
+    PrimitiveSet<PublicKeySign> primitives =
+        Registry.INSTANCE.getPrimitives(keysetHandle, keyManager);
+    return getPrimitive(primitives);
+  }
+
+  /**
+   * @return a PublicKeySign primitive that uses the keys in {@code primitives}.
+   * Every operation uses the keys that are in the set when it starts, so that the primitive picks
+   * up a rotation with {@code Registry.updatePrimitives}.
+   */
+  public static PublicKeySign getPrimitive(final PrimitiveSet<PublicKeySign> primitives) {
+    return new PublicKeySign() {
+      @Override
+      public byte[] sign(final byte[] data) throws GeneralSecurityException {
+        PrimitiveSet.Entry<PublicKeySign> primary = primitives.getPrimary();
+        if (primary.getOutputPrefixType().equals(OutputPrefixType.LEGACY)) {
+          byte[] formatVersion = new byte[] {CryptoFormat.LEGACY_START_BYTE};
+          return SubtleUtil.concat(
+              primary.getIdentifier(),
+              primary.getPrimitive().sign(SubtleUtil.concat(data, formatVersion)));
+        }
+        return SubtleUtil.concat(primary.getIdentifier(), primary.getPrimitive().sign(data));
       }
+    };
+  }
 }
@@ -23,9 +23,10 @@ import com.google.crypto.tink.PrimitiveSet;
 import com.google.crypto.tink.PublicKeyVerify;
 import com.google.crypto.tink.Registry;
 import com.google.crypto.tink.TinkProto.OutputPrefixType;
+import com.google.crypto.tink.ZeroCopyPublicKeyVerify;
 import com.google.crypto.tink.subtle.SubtleUtil;
+import com.google.crypto.tink.subtle.ZeroCopyUtil;
 import java.security.GeneralSecurityException;
-import java.util.Arrays;
 import java.util.List;
 import java.util.logging.Logger;
 
@@ -67,30 +68,47 @@ public final class PublicKeyVerifyFactory {
   public static PublicKeyVerify getPrimitive(
       KeysetHandle keysetHandle, final KeyManager<PublicKeyVerify> keyManager)
       throws GeneralSecurityException {
-    final PrimitiveSet<PublicKeyVerify> primitives =
+    PrimitiveSet<PublicKeyVerify> primitives =
         Registry.INSTANCE.getPrimitives(keysetHandle, keyManager);
-    return new PublicKeyVerify() {
+    return getPrimitive(primitives);
+  }
+
+  /**
+   * @return a PublicKeyVerify primitive that uses the keys in {@code primitives}.
+   * Every operation uses the keys that are in the set when it starts, so that the primitive picks
+   * up a rotation with {@code Registry.updatePrimitives}.
+   */
+  public static PublicKeyVerify getPrimitive(final PrimitiveSet<PublicKeyVerify> primitives) {
+    return new ZeroCopyPublicKeyVerify() {
       @Override
       public void verify(final byte[] signature, final byte[] data)
       throws GeneralSecurityException {
-        if (signature.length <= CryptoFormat.NON_RAW_PREFIX_SIZE) {
+        verify(signature, 0, signature.length, data);
+      }
+
+      @Override
+      public void verify(final byte[] signature, int offset, int length, final byte[] data)
+      throws GeneralSecurityException {
+        SubtleUtil.checkRange(signature, offset, length);
+        if (length <= CryptoFormat.NON_RAW_PREFIX_SIZE) {
           // This also rejects raw signatures with size of 4 bytes or fewer. We're not aware of any
           // schemes that output signatures that small.
           throw new GeneralSecurityException("signature too short");
         }
-        byte[] prefix = Arrays.copyOfRange(signature, 0, CryptoFormat.NON_RAW_PREFIX_SIZE);
-        byte[] sigNoPrefix = Arrays.copyOfRange(signature, CryptoFormat.NON_RAW_PREFIX_SIZE,
-            signature.length);
+        int sigNoPrefixOffset = offset + CryptoFormat.NON_RAW_PREFIX_SIZE;
+        int sigNoPrefixLength = length - CryptoFormat.NON_RAW_PREFIX_SIZE;
         List<PrimitiveSet.Entry<PublicKeyVerify>> entries =
-            primitives.getPrimitive(prefix);
+            primitives.getPrimitive(signature, offset);
         for (PrimitiveSet.Entry<PublicKeyVerify> entry : entries) {
           try {
             if (entry.getOutputPrefixType().equals(OutputPrefixType.LEGACY)) {
               final byte[] formatVersion = new byte[] {CryptoFormat.LEGACY_START_BYTE};
               final byte[] dataWithFormatVersion = SubtleUtil.concat(data, formatVersion);
-              entry.getPrimitive().verify(sigNoPrefix, dataWithFormatVersion);
+              ZeroCopyUtil.verify(entry.getPrimitive(), signature, sigNoPrefixOffset,
+                  sigNoPrefixLength, dataWithFormatVersion);
             } else {
-              entry.getPrimitive().verify(sigNoPrefix, data);
+              ZeroCopyUtil.verify(
+                  entry.getPrimitive(), signature, sigNoPrefixOffset, sigNoPrefixLength, data);
             }
             // If there is no exception, the signature is valid and we can return.
             return;
@@ -104,7 +122,7 @@ public final class PublicKeyVerifyFactory {
         entries = primitives.getRawPrimitives();
         for (PrimitiveSet.Entry<PublicKeyVerify> entry : entries) {
           try {
-            entry.getPrimitive().verify(signature, data);
+            ZeroCopyUtil.verify(entry.getPrimitive(), signature, offset, length, data);
             // If there is no exception, the signature is valid and we can return.
             return;
           } catch (GeneralSecurityException e) {
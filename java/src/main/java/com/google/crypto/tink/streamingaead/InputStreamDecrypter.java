@@ -0,0 +1,110 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+package com.google.crypto.tink.streamingaead;
+
+import com.google.crypto.tink.PrimitiveSet;
+import com.google.crypto.tink.StreamingAead;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.GeneralSecurityException;
+import java.util.List;
+
+/**
+ * A decrypter for ciphertext given in an {@link InputStream}.
+ *
+ * <p>Streaming ciphertexts carry no key identifier, so the first read tries every key in the
+ * set until one of them authenticates the first segment. The ciphertext is marked at its start
+ * and reset for every attempt; once a key matches the mark is dropped, so only the first segment
+ * is ever buffered.
+ */
+final class InputStreamDecrypter extends InputStream {
+  private final PrimitiveSet<StreamingAead> primitives;
+  private final InputStream ciphertextStream;
+  private final byte[] associatedData;
+  private InputStream matchingStream;
+
+  public InputStreamDecrypter(PrimitiveSet<StreamingAead> primitives,
+      InputStream ciphertextStream, final byte[] associatedData) {
+    this.primitives = primitives;
+    if (ciphertextStream.markSupported()) {
+      this.ciphertextStream = ciphertextStream;
+    } else {
+      this.ciphertextStream = new BufferedInputStream(ciphertextStream);
+    }
+    this.ciphertextStream.mark(Integer.MAX_VALUE);
+    this.associatedData = associatedData.clone();
+    this.matchingStream = null;
+  }
+
+  @Override
+  public int read() throws IOException {
+    byte[] oneByte = new byte[1];
+    int ret = read(oneByte, 0, 1);
+    if (ret == 1) {
+      return oneByte[0] & 0xff;
+    }
+    return ret;
+  }
+
+  @Override
+  public int read(byte[] b) throws IOException {
+    return read(b, 0, b.length);
+  }
+
+  @Override
+  public synchronized int read(byte[] b, int offset, int len) throws IOException {
+    if (len == 0) {
+      return 0;
+    }
+    if (matchingStream != null) {
+      return matchingStream.read(b, offset, len);
+    }
+    for (List<PrimitiveSet.Entry<StreamingAead>> entries : primitives.getAll()) {
+      for (PrimitiveSet.Entry<StreamingAead> entry : entries) {
+        ciphertextStream.reset();
+        InputStream attempt;
+        int read;
+        try {
+          attempt = entry.getPrimitive().newDecryptingStream(ciphertextStream, associatedData);
+          read = attempt.read(b, offset, len);
+        } catch (IOException e) {
+          continue;
+        } catch (GeneralSecurityException e) {
+          continue;
+        }
+        matchingStream = attempt;
+        // Drops the mark, which releases the buffered ciphertext.
+        ciphertextStream.mark(0);
+        return read;
+      }
+    }
+    throw new IOException("No matching key found for the ciphertext in the stream.");
+  }
+
+  @Override
+  public synchronized int available() throws IOException {
+    if (matchingStream == null) {
+      return 0;
+    }
+    return matchingStream.available();
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    ciphertextStream.close();
+  }
+}
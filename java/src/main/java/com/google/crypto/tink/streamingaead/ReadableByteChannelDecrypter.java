@@ -0,0 +1,90 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+package com.google.crypto.tink.streamingaead;
+
+import com.google.crypto.tink.PrimitiveSet;
+import com.google.crypto.tink.StreamingAead;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.security.GeneralSecurityException;
+import java.util.List;
+
+/**
+ * A decrypter for ciphertext given in a {@link ReadableByteChannel}.
+ *
+ * <p>Streaming ciphertexts carry no key identifier, so the first read tries every key in the
+ * set until one of them authenticates the first segment. Only the ciphertext needed for that
+ * segment is buffered; once a key matches the remaining ciphertext is read without buffering.
+ */
+final class ReadableByteChannelDecrypter implements ReadableByteChannel {
+  private final PrimitiveSet<StreamingAead> primitives;
+  private final RewindableReadableByteChannel ciphertextChannel;
+  private final byte[] associatedData;
+  private ReadableByteChannel matchingChannel;
+
+  public ReadableByteChannelDecrypter(PrimitiveSet<StreamingAead> primitives,
+      ReadableByteChannel ciphertextChannel, final byte[] associatedData) {
+    this.primitives = primitives;
+    this.ciphertextChannel = new RewindableReadableByteChannel(ciphertextChannel);
+    this.associatedData = associatedData.clone();
+    this.matchingChannel = null;
+  }
+
+  @Override
+  public synchronized int read(ByteBuffer dst) throws IOException {
+    if (dst.remaining() == 0) {
+      return 0;
+    }
+    if (matchingChannel != null) {
+      return matchingChannel.read(dst);
+    }
+    for (List<PrimitiveSet.Entry<StreamingAead>> entries : primitives.getAll()) {
+      for (PrimitiveSet.Entry<StreamingAead> entry : entries) {
+        ciphertextChannel.rewind();
+        ReadableByteChannel attempt;
+        int read;
+        try {
+          attempt = entry.getPrimitive().newDecryptingChannel(ciphertextChannel, associatedData);
+          read = attempt.read(dst);
+        } catch (IOException e) {
+          continue;
+        } catch (GeneralSecurityException e) {
+          continue;
+        }
+        if (read == 0) {
+          // Not enough ciphertext is available yet to tell whether the key matches.
+          ciphertextChannel.rewind();
+          return 0;
+        }
+        matchingChannel = attempt;
+        ciphertextChannel.disableRewinding();
+        return read;
+      }
+    }
+    throw new IOException("No matching key found for the ciphertext in the stream.");
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    ciphertextChannel.close();
+  }
+
+  @Override
+  public synchronized boolean isOpen() {
+    return ciphertextChannel.isOpen();
+  }
+}
@@ -0,0 +1,112 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+package com.google.crypto.tink.streamingaead;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * A ReadableByteChannel that can be rewound to its start as long as rewinding has not been
+ * disabled.
+ *
+ * <p>All bytes read from the underlying channel are kept until {@link #disableRewinding} is
+ * called. Afterwards the buffered bytes are served first and reads then go directly to the
+ * underlying channel.
+ */
+final class RewindableReadableByteChannel implements ReadableByteChannel {
+  private final ReadableByteChannel baseChannel;
+
+  /**
+   * Bytes read from {@code baseChannel} so far. Bytes in the range buffer.position() ..
+   * buffer.limit() - 1 have not been returned since the last rewind.
+   */
+  private ByteBuffer buffer;
+
+  private boolean canRewind;
+
+  public RewindableReadableByteChannel(ReadableByteChannel baseChannel) {
+    this.baseChannel = baseChannel;
+    this.buffer = null;
+    this.canRewind = true;
+  }
+
+  /** Disables rewinding and allows the buffered bytes to be released once they have been read. */
+  public synchronized void disableRewinding() {
+    canRewind = false;
+  }
+
+  /**
+   * Rewinds this channel to the beginning of the underlying channel.
+   *
+   * @throws IOException if rewinding has been disabled.
+   */
+  public synchronized void rewind() throws IOException {
+    if (!canRewind) {
+      throw new IOException("Cannot rewind anymore.");
+    }
+    if (buffer != null) {
+      buffer.position(0);
+    }
+  }
+
+  @Override
+  public synchronized int read(ByteBuffer dst) throws IOException {
+    if (buffer != null && buffer.remaining() > 0) {
+      int sliceSize = Math.min(buffer.remaining(), dst.remaining());
+      ByteBuffer slice = buffer.duplicate();
+      slice.limit(slice.position() + sliceSize);
+      dst.put(slice);
+      buffer.position(buffer.position() + sliceSize);
+      return sliceSize;
+    }
+    if (!canRewind) {
+      buffer = null;
+      return baseChannel.read(dst);
+    }
+    if (dst.remaining() == 0) {
+      return 0;
+    }
+    // Grow the buffer so that it can hold the new bytes and read them into it.
+    int contentSize = buffer == null ? 0 : buffer.limit();
+    ByteBuffer newBuffer = ByteBuffer.allocate(contentSize + dst.remaining());
+    if (buffer != null) {
+      buffer.position(0);
+      newBuffer.put(buffer);
+    }
+    int read = baseChannel.read(newBuffer);
+    newBuffer.flip();
+    newBuffer.position(contentSize);
+    buffer = newBuffer;
+    if (read <= 0) {
+      return read;
+    }
+    dst.put(buffer);
+    return read;
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    canRewind = false;
+    buffer = null;
+    baseChannel.close();
+  }
+
+  @Override
+  public synchronized boolean isOpen() {
+    return baseChannel.isOpen();
+  }
+}
@@ -0,0 +1,141 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+package com.google.crypto.tink.streamingaead;
+
+import com.google.crypto.tink.PrimitiveSet;
+import com.google.crypto.tink.StreamingAead;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.security.GeneralSecurityException;
+import java.util.List;
+
+/**
+ * A decrypter for ciphertext given in a {@link SeekableByteChannel}.
+ *
+ * <p>Streaming ciphertexts carry no key identifier, so the first read tries every key in the
+ * set until one of them authenticates the segment at the current position. Since the ciphertext
+ * is seekable, nothing needs to be buffered between attempts. {@link #size} selects the key by
+ * reading the first byte of the plaintext if no read has happened yet.
+ */
+final class SeekableByteChannelDecrypter implements SeekableByteChannel {
+  private final PrimitiveSet<StreamingAead> primitives;
+  private final SeekableByteChannel ciphertextChannel;
+  private final byte[] associatedData;
+  private SeekableByteChannel matchingChannel;
+  private long cachedPosition;
+  private boolean isopen;
+
+  public SeekableByteChannelDecrypter(PrimitiveSet<StreamingAead> primitives,
+      SeekableByteChannel ciphertextChannel, final byte[] associatedData) {
+    this.primitives = primitives;
+    this.ciphertextChannel = ciphertextChannel;
+    this.associatedData = associatedData.clone();
+    this.matchingChannel = null;
+    this.cachedPosition = 0;
+    this.isopen = true;
+  }
+
+  @Override
+  public synchronized int read(ByteBuffer dst) throws IOException {
+    if (!isopen) {
+      throw new ClosedChannelException();
+    }
+    if (matchingChannel != null) {
+      return matchingChannel.read(dst);
+    }
+    if (dst.remaining() == 0) {
+      return 0;
+    }
+    for (List<PrimitiveSet.Entry<StreamingAead>> entries : primitives.getAll()) {
+      for (PrimitiveSet.Entry<StreamingAead> entry : entries) {
+        SeekableByteChannel attempt;
+        int read;
+        try {
+          attempt = entry.getPrimitive().newSeekableDecryptingChannel(
+              ciphertextChannel, associatedData);
+          attempt.position(cachedPosition);
+          read = attempt.read(dst);
+        } catch (IOException e) {
+          continue;
+        } catch (GeneralSecurityException e) {
+          continue;
+        }
+        matchingChannel = attempt;
+        return read;
+      }
+    }
+    throw new IOException("No matching key found for the ciphertext in the stream.");
+  }
+
+  @Override
+  public synchronized long position() throws IOException {
+    if (matchingChannel != null) {
+      return matchingChannel.position();
+    }
+    return cachedPosition;
+  }
+
+  @Override
+  public synchronized SeekableByteChannel position(long newPosition) throws IOException {
+    if (matchingChannel != null) {
+      matchingChannel.position(newPosition);
+    } else {
+      if (newPosition < 0) {
+        throw new IllegalArgumentException("Position must be non-negative");
+      }
+      cachedPosition = newPosition;
+    }
+    return this;
+  }
+
+  @Override
+  public synchronized long size() throws IOException {
+    if (matchingChannel == null) {
+      long oldPosition = cachedPosition;
+      cachedPosition = 0;
+      try {
+        read(ByteBuffer.allocate(1));
+      } finally {
+        position(oldPosition);
+      }
+    }
+    return matchingChannel.size();
+  }
+
+  @Override
+  public SeekableByteChannel truncate(long size) {
+    throw new NonWritableChannelException();
+  }
+
+  @Override
+  public int write(ByteBuffer src) {
+    throw new NonWritableChannelException();
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    ciphertextChannel.close();
+    isopen = false;
+  }
+
+  @Override
+  public synchronized boolean isOpen() {
+    return isopen;
+  }
+}
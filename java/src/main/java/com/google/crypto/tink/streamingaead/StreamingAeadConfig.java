@@ -0,0 +1,54 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.streamingaead;
+
+import com.google.crypto.tink.KeyManager;
+import com.google.crypto.tink.Registry;
+import com.google.crypto.tink.StreamingAead;
+import java.security.GeneralSecurityException;
+
+/**
+ * StreamingAeadConfig offers convenience methods for initializing {@code StreamingAeadFactory}
+ * and the underlying {@code Registry.INSTANCE}.  In particular, it  allows for initalizing the
+ * {@code Registry} with native key types and their managers that Tink supports out of the box.
+ *
+ * For more information on how to obtain and use StreamingAead primitives, see
+ * {@code StreamingAeadFactory}.
+ */
+public final class StreamingAeadConfig {
+
+  /**
+   * Registers standard StreamingAead key types and their managers with the
+   * {@code Registry.INSTANCE}.
+   * @throws GeneralSecurityException
+   */
+  public static void registerStandardKeyTypes() throws GeneralSecurityException {
+    registerKeyManager(new AesCtrHmacStreamingKeyManager());
+    registerKeyManager(new AesGcmHkdfStreamingKeyManager());
+  }
+
+  /**
+   * Registers the given {@code keyManager} for the key type {@code keyManager.getKeyType()}.
+   * @return true if registration of {@code keyManager} was successful, false if
+   *         there already exisits a key manager for {@code keyManager.getKeyType()}.
+   * @throws GeneralSecurityException
+   */
+  public static boolean registerKeyManager(final KeyManager<StreamingAead> keyManager)
+      throws GeneralSecurityException {
+    return Registry.INSTANCE.registerKeyManager(keyManager.getKeyType(), keyManager);
+  }
+}
@@ -0,0 +1,118 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+package com.google.crypto.tink.streamingaead;
+
+import com.google.crypto.tink.KeyManager;
+import com.google.crypto.tink.KeysetHandle;
+import com.google.crypto.tink.PrimitiveSet;
+import com.google.crypto.tink.Registry;
+import com.google.crypto.tink.StreamingAead;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.security.GeneralSecurityException;
+
+/**
+ * StreamingAeadFactory allows obtaining a primitive from a {@code KeysetHandle}.
+ *
+ * StreamingAeadFactory gets primitives from the {@code Registry.INSTANCE}, which can be
+ * initialized via convenience methods from {@code StreamingAeadConfig}. Here is an example how
+ * one can obtain and use a StreamingAead primitive:
+ * <pre>   {@code
+ *   KeysetHandle keysetHandle = ...;
+ *   StreamingAeadConfig.registerStandardKeyTypes();
+ *   StreamingAead streamingAead = StreamingAeadFactory.getPrimitive(keysetHandle);
+ *   byte[] aad = ...;
+ *   OutputStream ciphertextStream = ...;
+ *   OutputStream plaintextStream = streamingAead.newEncryptingStream(ciphertextStream, aad);
+ *  }</pre>
+ * The returned primitive works with a keyset (rather than a single key). To encrypt a plaintext,
+ * it uses the primary key in the keyset. Streaming ciphertexts are not prefixed with a key
+ * identifier, so to decrypt, the primitive tries all keys in the keyset until one of them
+ * authenticates the first segment of the ciphertext.
+ */
+public final class StreamingAeadFactory {
+  /**
+   * @return a StreamingAead primitive from a {@code keysetHandle}.
+   * @throws GeneralSecurityException
+   */
+  public static StreamingAead getPrimitive(KeysetHandle keysetHandle)
+      throws GeneralSecurityException {
+    return getPrimitive(keysetHandle, null /* keyManager */);
+  }
+
+  /**
+   * @return a StreamingAead primitive from a {@code keysetHandle} and a custom
+   * {@code keyManager}.
+   * @throws GeneralSecurityException
+   */
+  public static StreamingAead getPrimitive(
+      KeysetHandle keysetHandle, final KeyManager<StreamingAead> keyManager)
+      throws GeneralSecurityException {
+    PrimitiveSet<StreamingAead> primitives =
+        Registry.INSTANCE.getPrimitives(keysetHandle, keyManager);
+    return getPrimitive(primitives);
+  }
+
+  /**
+   * @return a StreamingAead primitive that uses the keys in {@code primitives}.
+   * Every operation uses the keys that are in the set when it starts, so that the primitive picks
+   * up a rotation with {@code Registry.updatePrimitives}.
+   */
+  public static StreamingAead getPrimitive(final PrimitiveSet<StreamingAead> primitives) {
+    return new StreamingAead() {
+      @Override
+      public WritableByteChannel newEncryptingChannel(
+          WritableByteChannel ciphertextDestination, byte[] associatedData)
+          throws GeneralSecurityException, IOException {
+        return primitives.getPrimary().getPrimitive()
+            .newEncryptingChannel(ciphertextDestination, associatedData);
+      }
+
+      @Override
+      public ReadableByteChannel newDecryptingChannel(
+          ReadableByteChannel ciphertextSource, byte[] associatedData)
+          throws GeneralSecurityException, IOException {
+        return new ReadableByteChannelDecrypter(primitives, ciphertextSource, associatedData);
+      }
+
+      @Override
+      public SeekableByteChannel newSeekableDecryptingChannel(
+          SeekableByteChannel ciphertextSource, byte[] associatedData)
+          throws GeneralSecurityException, IOException {
+        return new SeekableByteChannelDecrypter(primitives, ciphertextSource, associatedData);
+      }
+
+      @Override
+      public OutputStream newEncryptingStream(
+          OutputStream ciphertextDestination, byte[] associatedData)
+          throws GeneralSecurityException, IOException {
+        return primitives.getPrimary().getPrimitive()
+            .newEncryptingStream(ciphertextDestination, associatedData);
+      }
+
+      @Override
+      public InputStream newDecryptingStream(
+          InputStream ciphertextSource, byte[] associatedData)
+          throws GeneralSecurityException, IOException {
+        return new InputStreamDecrypter(primitives, ciphertextSource, associatedData);
+      }
+    };
+  }
+}
@@ -0,0 +1,135 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.streamingaead;
+
+import com.google.crypto.tink.AesCtrHmacStreamingProto.AesCtrHmacStreamingKeyFormat;
+import com.google.crypto.tink.AesCtrHmacStreamingProto.AesCtrHmacStreamingParams;
+import com.google.crypto.tink.AesGcmHkdfStreamingProto.AesGcmHkdfStreamingKeyFormat;
+import com.google.crypto.tink.AesGcmHkdfStreamingProto.AesGcmHkdfStreamingParams;
+import com.google.crypto.tink.CommonProto.HashType;
+import com.google.crypto.tink.HmacProto.HmacParams;
+import com.google.crypto.tink.TinkProto.KeyTemplate;
+
+/**
+ * Pre-generated {@code KeyTemplate} for {@code StreamingAead} keys. One can use these templates
+ * to generate new {@code Keyset}, using either {@code CleartextKeysetHandle} or
+ * {@code EncryptedKeysetHandle}. To generate a new keyset that contains a single
+ * {@code AesGcmHkdfStreamingKey}, one can do:
+ * <pre>
+ *   StreamingAeadConfig.registerStandardKeyTypes();
+ *   KeysetHandle handle = CleartextKeysetHandle.generateNew(
+ *       StreamingAeadKeyTemplates.AES128_GCM_HKDF_4KB);
+ *   StreamingAead streamingAead = StreamingAeadFactory.getPrimitive(handle);
+ * </pre>
+ */
+public final class StreamingAeadKeyTemplates {
+  /**
+   * A {@code KeyTemplate} that generates new instances of {@code AesCtrHmacStreamingKey} with
+   * the following parameters:
+   *   - Size of the main key: 16 bytes
+   *   - HKDF algo: HMAC-SHA256
+   *   - Size of AES-CTR derived keys: 16 bytes
+   *   - Tag algo: HMAC-SHA256
+   *   - Tag size: 32 bytes
+   *   - Ciphertext segment size: 4096 bytes
+   */
+  public static final KeyTemplate AES128_CTR_HMAC_SHA256_4KB =
+      createAesCtrHmacStreamingKeyTemplate(16, HashType.SHA256, 16, HashType.SHA256, 32, 4096);
+
+  /**
+   * A {@code KeyTemplate} that generates new instances of {@code AesCtrHmacStreamingKey} with
+   * the following parameters:
+   *   - Size of the main key: 32 bytes
+   *   - HKDF algo: HMAC-SHA256
+   *   - Size of AES-CTR derived keys: 32 bytes
+   *   - Tag algo: HMAC-SHA256
+   *   - Tag size: 32 bytes
+   *   - Ciphertext segment size: 4096 bytes
+   */
+  public static final KeyTemplate AES256_CTR_HMAC_SHA256_4KB =
+      createAesCtrHmacStreamingKeyTemplate(32, HashType.SHA256, 32, HashType.SHA256, 32, 4096);
+
+  /**
+   * A {@code KeyTemplate} that generates new instances of {@code AesGcmHkdfStreamingKey} with
+   * the following parameters:
+   *   - Size of the main key: 16 bytes
+   *   - HKDF algo: HMAC-SHA256
+   *   - Size of AES-GCM derived keys: 16 bytes
+   *   - Ciphertext segment size: 4096 bytes
+   */
+  public static final KeyTemplate AES128_GCM_HKDF_4KB =
+      createAesGcmHkdfStreamingKeyTemplate(16, HashType.SHA256, 16, 4096);
+
+  /**
+   * A {@code KeyTemplate} that generates new instances of {@code AesGcmHkdfStreamingKey} with
+   * the following parameters:
+   *   - Size of the main key: 32 bytes
+   *   - HKDF algo: HMAC-SHA256
+   *   - Size of AES-GCM derived keys: 32 bytes
+   *   - Ciphertext segment size: 4096 bytes
+   */
+  public static final KeyTemplate AES256_GCM_HKDF_4KB =
+      createAesGcmHkdfStreamingKeyTemplate(32, HashType.SHA256, 32, 4096);
+
+  /**
+   * @return a {@code KeyTemplate} containing a {@code AesCtrHmacStreamingKeyFormat} with some
+   * specified parameters.
+   */
+  public static KeyTemplate createAesCtrHmacStreamingKeyTemplate(
+      int mainKeySize, HashType hkdfHashType, int derivedKeySize,
+      HashType macHashType, int tagSize, int ciphertextSegmentSize) {
+    HmacParams hmacParams = HmacParams.newBuilder()
+        .setHash(macHashType)
+        .setTagSize(tagSize)
+        .build();
+    AesCtrHmacStreamingParams params = AesCtrHmacStreamingParams.newBuilder()
+        .setCiphertextSegmentSize(ciphertextSegmentSize)
+        .setDerivedKeySize(derivedKeySize)
+        .setHkdfHashType(hkdfHashType)
+        .setHmacParams(hmacParams)
+        .build();
+    AesCtrHmacStreamingKeyFormat format = AesCtrHmacStreamingKeyFormat.newBuilder()
+        .setParams(params)
+        .setKeySize(mainKeySize)
+        .build();
+    return KeyTemplate.newBuilder()
+        .setValue(format.toByteString())
+        .setTypeUrl(AesCtrHmacStreamingKeyManager.TYPE_URL)
+        .build();
+  }
+
+  /**
+   * @return a {@code KeyTemplate} containing a {@code AesGcmHkdfStreamingKeyFormat} with some
+   * specified parameters.
+   */
+  public static KeyTemplate createAesGcmHkdfStreamingKeyTemplate(
+      int mainKeySize, HashType hkdfHashType, int derivedKeySize, int ciphertextSegmentSize) {
+    AesGcmHkdfStreamingParams params = AesGcmHkdfStreamingParams.newBuilder()
+        .setCiphertextSegmentSize(ciphertextSegmentSize)
+        .setDerivedKeySize(derivedKeySize)
+        .setHkdfHashType(hkdfHashType)
+        .build();
+    AesGcmHkdfStreamingKeyFormat format = AesGcmHkdfStreamingKeyFormat.newBuilder()
+        .setParams(params)
+        .setKeySize(mainKeySize)
+        .build();
+    return KeyTemplate.newBuilder()
+        .setValue(format.toByteString())
+        .setTypeUrl(AesGcmHkdfStreamingKeyManager.TYPE_URL)
+        .build();
+  }
+}
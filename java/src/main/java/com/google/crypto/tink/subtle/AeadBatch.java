@@ -0,0 +1,206 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.subtle;
+
+import com.google.crypto.tink.Aead;
+import com.google.crypto.tink.BatchAead;
+import com.google.crypto.tink.ZeroCopyAead;
+import java.security.GeneralSecurityException;
+
+/**
+ * Encrypts and decrypts batches of records with any {@link Aead}. Primitives that implement
+ * {@link BatchAead} process a batch at once; the records are processed one by one with other
+ * primitives.
+ *
+ * <p>A batch of ciphertexts is stored back to back in a single array, and is described by an
+ * offset index: the ciphertext of record {@code i} occupies
+ * {@code [ciphertextOffsets[i], ciphertextOffsets[i + 1])}, so that {@code ciphertextOffsets}
+ * holds one more entry than there are records.
+ */
+public final class AeadBatch {
+  private AeadBatch() {}
+
+  /**
+   * Fills {@code ciphertextOffsets} with the layout of the ciphertexts of {@code plaintexts}, as
+   * encrypted by {@code aead}, starting at offset 0.
+   *
+   * @return the total size of the ciphertexts, or -1 if {@code aead} does not know the size of
+   * its ciphertexts in advance; see {@link ZeroCopyAead#ciphertextSize}.
+   * @throws GeneralSecurityException if {@code ciphertextOffsets} does not have
+   * {@code plaintexts.length + 1} entries, or if the ciphertexts do not fit into a single array.
+   */
+  public static int layout(Aead aead, final byte[][] plaintexts, int[] ciphertextOffsets)
+      throws GeneralSecurityException {
+    checkOffsetsLength(plaintexts, ciphertextOffsets);
+    int size = 0;
+    ciphertextOffsets[0] = 0;
+    for (int i = 0; i < plaintexts.length; i++) {
+      int ciphertextSize = ZeroCopyUtil.ciphertextSize(aead, plaintexts[i].length);
+      if (ciphertextSize < 0) {
+        return -1;
+      }
+      if (ciphertextSize > Integer.MAX_VALUE - size) {
+        throw new GeneralSecurityException("batch too long");
+      }
+      size += ciphertextSize;
+      ciphertextOffsets[i + 1] = size;
+    }
+    return size;
+  }
+
+  /**
+   * Encrypts each of {@code plaintexts} with {@code aead}, and writes the ciphertexts back to
+   * back into a single array. Each ciphertext is the same as one returned by
+   * {@link Aead#encrypt(byte[], byte[])}.
+   *
+   * @param ciphertextOffsets an array of {@code plaintexts.length + 1} entries, which receives
+   * the offset index of the ciphertexts.
+   * @return the array holding all ciphertexts.
+   */
+  public static byte[] encrypt(Aead aead, final byte[][] plaintexts,
+      final byte[] additionalData, int[] ciphertextOffsets) throws GeneralSecurityException {
+    int size = layout(aead, plaintexts, ciphertextOffsets);
+    if (size < 0) {
+      return concat(encryptEach(aead, plaintexts, additionalData), ciphertextOffsets);
+    }
+    byte[] ciphertext = new byte[size];
+    encrypt(aead, plaintexts, additionalData, ciphertext, ciphertextOffsets);
+    return ciphertext;
+  }
+
+  /**
+   * Encrypts each of {@code plaintexts} with {@code aead}, and writes the ciphertext of
+   * {@code plaintexts[i]} into {@code ciphertext}, starting at {@code ciphertextOffsets[i]};
+   * see {@link BatchAead#encryptBatch}. {@code aead} must know the size of its ciphertexts in
+   * advance.
+   */
+  public static void encrypt(Aead aead, final byte[][] plaintexts, final byte[] additionalData,
+      byte[] ciphertext, final int[] ciphertextOffsets) throws GeneralSecurityException {
+    checkStartOffsets(plaintexts, ciphertextOffsets);
+    if (aead instanceof BatchAead) {
+      ((BatchAead) aead).encryptBatch(plaintexts, additionalData, ciphertext, ciphertextOffsets);
+      return;
+    }
+    for (int i = 0; i < plaintexts.length; i++) {
+      int unusedWritten = ZeroCopyUtil.encrypt(
+          aead, plaintexts[i], additionalData, ciphertext, ciphertextOffsets[i]);
+    }
+  }
+
+  /**
+   * Decrypts each of the ciphertexts described by {@code ciphertextOffsets} with {@code aead}.
+   *
+   * @return the plaintext of each record.
+   * @throws GeneralSecurityException if any of the records cannot be decrypted.
+   */
+  public static byte[][] decrypt(Aead aead, final byte[] ciphertext,
+      final int[] ciphertextOffsets, final byte[] additionalData)
+      throws GeneralSecurityException {
+    if (aead instanceof BatchAead) {
+      return ((BatchAead) aead).decryptBatch(ciphertext, ciphertextOffsets, additionalData);
+    }
+    return decryptEach(aead, ciphertext, ciphertextOffsets, additionalData);
+  }
+
+  /**
+   * Decrypts the ciphertexts described by {@code ciphertextOffsets} one by one with {@code aead}.
+   * This is the implementation of {@link BatchAead#decryptBatch} for primitives that cannot
+   * share any work between the records.
+   */
+  public static byte[][] decryptEach(Aead aead, final byte[] ciphertext,
+      final int[] ciphertextOffsets, final byte[] additionalData)
+      throws GeneralSecurityException {
+    checkOffsets(ciphertext, ciphertextOffsets);
+    byte[][] plaintexts = new byte[ciphertextOffsets.length - 1][];
+    for (int i = 0; i < plaintexts.length; i++) {
+      plaintexts[i] = ZeroCopyUtil.decrypt(aead, ciphertext, ciphertextOffsets[i],
+          ciphertextOffsets[i + 1] - ciphertextOffsets[i], additionalData);
+    }
+    return plaintexts;
+  }
+
+  /**
+   * @return the ciphertext of each of {@code plaintexts}, encrypted with {@code aead}.
+   */
+  private static byte[][] encryptEach(Aead aead, final byte[][] plaintexts,
+      final byte[] additionalData) throws GeneralSecurityException {
+    byte[][] ciphertexts = new byte[plaintexts.length][];
+    for (int i = 0; i < plaintexts.length; i++) {
+      ciphertexts[i] = aead.encrypt(plaintexts[i], additionalData);
+    }
+    return ciphertexts;
+  }
+
+  /**
+   * Concatenates {@code ciphertexts}, and fills {@code ciphertextOffsets} with their layout.
+   */
+  private static byte[] concat(final byte[][] ciphertexts, int[] ciphertextOffsets)
+      throws GeneralSecurityException {
+    checkOffsetsLength(ciphertexts, ciphertextOffsets);
+    int size = 0;
+    ciphertextOffsets[0] = 0;
+    for (int i = 0; i < ciphertexts.length; i++) {
+      if (ciphertexts[i].length > Integer.MAX_VALUE - size) {
+        throw new GeneralSecurityException("batch too long");
+      }
+      size += ciphertexts[i].length;
+      ciphertextOffsets[i + 1] = size;
+    }
+    byte[] result = new byte[size];
+    for (int i = 0; i < ciphertexts.length; i++) {
+      System.arraycopy(ciphertexts[i], 0, result, ciphertextOffsets[i], ciphertexts[i].length);
+    }
+    return result;
+  }
+
+  /**
+   * @throws GeneralSecurityException if {@code ciphertextOffsets} is not a non-decreasing
+   * sequence of offsets into {@code ciphertext}.
+   */
+  public static void checkOffsets(final byte[] ciphertext, final int[] ciphertextOffsets)
+      throws GeneralSecurityException {
+    if (ciphertextOffsets.length == 0) {
+      throw new GeneralSecurityException("ciphertextOffsets must not be empty");
+    }
+    for (int i = 0; i < ciphertextOffsets.length - 1; i++) {
+      SubtleUtil.checkRange(ciphertext, ciphertextOffsets[i],
+          ciphertextOffsets[i + 1] - ciphertextOffsets[i]);
+    }
+  }
+
+  /**
+   * @throws GeneralSecurityException if {@code ciphertextOffsets} has fewer entries than there
+   * are {@code plaintexts}.
+   */
+  public static void checkStartOffsets(final byte[][] plaintexts, final int[] ciphertextOffsets)
+      throws GeneralSecurityException {
+    if (ciphertextOffsets.length < plaintexts.length) {
+      throw new GeneralSecurityException(String.format(
+          "ciphertextOffsets must have at least %d entries, has %d", plaintexts.length,
+          ciphertextOffsets.length));
+    }
+  }
+
+  private static void checkOffsetsLength(final byte[][] records, final int[] ciphertextOffsets)
+      throws GeneralSecurityException {
+    if (ciphertextOffsets.length != records.length + 1) {
+      throw new GeneralSecurityException(String.format(
+          "ciphertextOffsets must have %d entries, has %d", records.length + 1,
+          ciphertextOffsets.length));
+    }
+  }
+}
@@ -0,0 +1,301 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.subtle;
+
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.InvalidAlgorithmParameterException;
+import java.util.Arrays;
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Streaming encryption using AES-CTR and HMAC.
+ *
+ * <p>Each ciphertext uses new AES-CTR and HMAC keys. These keys are derived using HKDF from the
+ * key derivation key, a randomly chosen salt of the same size as the AES key and the associated
+ * data.
+ *
+ * <p>The format of a ciphertext is
+ *   header || segment_0 || segment_1 || ... || segment_k.
+ * The format of the header is
+ *   headerLength || salt || noncePrefix
+ * where headerLength is 1 byte determining the size of the header and noncePrefix is 7 bytes.
+ *
+ * <p>Segment i is encrypted with AES-CTR using the IV
+ *   noncePrefix || i (4 bytes, big endian) || b || 0x00000000
+ * where b is 1 for the last segment and 0 otherwise, and is followed by the tag
+ * HMAC(hmacKey, IV || ciphertext) truncated to tagSizeInBytes.
+ */
+public final class AesCtrHmacStreaming extends NonceBasedStreamingAead {
+  private static final int NONCE_SIZE_IN_BYTES = 16;
+  private static final int NONCE_PREFIX_IN_BYTES = 7;
+  private static final int HMAC_KEY_SIZE_IN_BYTES = 32;
+
+  private final int keySizeInBytes;
+  private final String tagAlgo;
+  private final int tagSizeInBytes;
+  private final int ciphertextSegmentSize;
+  private final int plaintextSegmentSize;
+  private final String hkdfAlgo;
+  private final byte[] ikm;
+
+  /**
+   * Initializes a streaming primitive with a key derivation key and encryption parameters.
+   *
+   * @param ikm input keying material used to derive sub keys.
+   * @param hkdfAlgo the JCE MAC algorithm name, e.g. HmacSha256, used for the HKDF key
+   *     derivation.
+   * @param keySizeInBytes the key size of the AES sub keys
+   * @param tagAlgo the JCE MAC algorithm name, e.g. HmacSha256, used for authentication.
+   * @param tagSizeInBytes the size of the authentication tags
+   * @param ciphertextSegmentSize the size of ciphertext segments.
+   * @throws InvalidAlgorithmParameterException if ikm is too short, the key size not supported,
+   *     the tag size invalid or ciphertextSegmentSize too short.
+   */
+  public AesCtrHmacStreaming(byte[] ikm, String hkdfAlgo, int keySizeInBytes, String tagAlgo,
+      int tagSizeInBytes, int ciphertextSegmentSize) throws GeneralSecurityException {
+    if (ikm.length < keySizeInBytes) {
+      throw new InvalidAlgorithmParameterException("ikm too short, must be >= " + keySizeInBytes);
+    }
+    if (keySizeInBytes != 16 && keySizeInBytes != 32) {
+      throw new InvalidAlgorithmParameterException("invalid key size " + keySizeInBytes);
+    }
+    int maxTagSize = EngineFactory.MAC.getInstance(tagAlgo).getMacLength();
+    if (tagSizeInBytes < 10 || tagSizeInBytes > maxTagSize) {
+      throw new InvalidAlgorithmParameterException("tag size invalid " + tagSizeInBytes);
+    }
+    if (ciphertextSegmentSize <= headerLength(keySizeInBytes) + tagSizeInBytes) {
+      throw new InvalidAlgorithmParameterException("ciphertextSegmentSize too small");
+    }
+    this.ikm = ikm.clone();
+    this.hkdfAlgo = hkdfAlgo;
+    this.keySizeInBytes = keySizeInBytes;
+    this.tagAlgo = tagAlgo;
+    this.tagSizeInBytes = tagSizeInBytes;
+    this.ciphertextSegmentSize = ciphertextSegmentSize;
+    this.plaintextSegmentSize = ciphertextSegmentSize - tagSizeInBytes;
+  }
+
+  private static int headerLength(int keySizeInBytes) {
+    return 1 + keySizeInBytes + NONCE_PREFIX_IN_BYTES;
+  }
+
+  @Override
+  public AesCtrHmacStreamEncrypter newStreamSegmentEncrypter(byte[] aad)
+      throws GeneralSecurityException {
+    return new AesCtrHmacStreamEncrypter(aad);
+  }
+
+  @Override
+  public AesCtrHmacStreamDecrypter newStreamSegmentDecrypter() throws GeneralSecurityException {
+    return new AesCtrHmacStreamDecrypter();
+  }
+
+  @Override
+  public int getPlaintextSegmentSize() {
+    return plaintextSegmentSize;
+  }
+
+  @Override
+  public int getCiphertextSegmentSize() {
+    return ciphertextSegmentSize;
+  }
+
+  @Override
+  public int getHeaderLength() {
+    return headerLength(keySizeInBytes);
+  }
+
+  @Override
+  public int getCiphertextOffset() {
+    return getHeaderLength();
+  }
+
+  @Override
+  public int getCiphertextOverhead() {
+    return tagSizeInBytes;
+  }
+
+  /**
+   * Returns the expected size of the ciphertext for a given plaintext.
+   * The returned value includes the header and the tags of all segments.
+   */
+  public long expectedCiphertextSize(long plaintextSize) {
+    long offset = getCiphertextOffset();
+    long fullSegments = (plaintextSize + offset) / plaintextSegmentSize;
+    long ciphertextSize = fullSegments * ciphertextSegmentSize;
+    long lastSegmentSize = (plaintextSize + offset) % plaintextSegmentSize;
+    if (lastSegmentSize > 0) {
+      ciphertextSize += lastSegmentSize + tagSizeInBytes;
+    }
+    return ciphertextSize;
+  }
+
+  private static Cipher cipherInstance() throws GeneralSecurityException {
+    return EngineFactory.CIPHER.getInstance("AES/CTR/NoPadding");
+  }
+
+  private Mac macInstance() throws GeneralSecurityException {
+    return EngineFactory.MAC.getInstance(tagAlgo);
+  }
+
+  private static byte[] nonceForSegment(byte[] prefix, int segmentNr, boolean last) {
+    ByteBuffer nonce = ByteBuffer.allocate(NONCE_SIZE_IN_BYTES);
+    nonce.put(prefix);
+    nonce.putInt(segmentNr);
+    nonce.put((byte) (last ? 1 : 0));
+    return nonce.array();
+  }
+
+  /** Derives the AES key followed by the HMAC key. */
+  private byte[] deriveKeyMaterial(byte[] salt, byte[] aad) throws GeneralSecurityException {
+    return Hkdf.computeHkdf(hkdfAlgo, ikm, salt, aad, keySizeInBytes + HMAC_KEY_SIZE_IN_BYTES);
+  }
+
+  private SecretKeySpec deriveKeySpec(byte[] keyMaterial) {
+    return new SecretKeySpec(keyMaterial, 0, keySizeInBytes, "AES");
+  }
+
+  private SecretKeySpec deriveHmacKeySpec(byte[] keyMaterial) {
+    return new SecretKeySpec(keyMaterial, keySizeInBytes, HMAC_KEY_SIZE_IN_BYTES, tagAlgo);
+  }
+
+  /**
+   * An instance of a StreamSegmentEncrypter that encrypts the segments of a single ciphertext
+   * with AES-CTR and authenticates them with HMAC.
+   */
+  class AesCtrHmacStreamEncrypter implements StreamSegmentEncrypter {
+    private final SecretKeySpec keySpec;
+    private final SecretKeySpec hmacKeySpec;
+    private final Cipher cipher;
+    private final Mac mac;
+    private final byte[] noncePrefix;
+    private ByteBuffer header;
+    private int encryptedSegments = 0;
+
+    public AesCtrHmacStreamEncrypter(byte[] aad) throws GeneralSecurityException {
+      cipher = cipherInstance();
+      mac = macInstance();
+      byte[] salt = Random.randBytes(keySizeInBytes);
+      noncePrefix = Random.randBytes(NONCE_PREFIX_IN_BYTES);
+      header = ByteBuffer.allocate(getHeaderLength());
+      header.put((byte) getHeaderLength());
+      header.put(salt);
+      header.put(noncePrefix);
+      header.flip();
+      byte[] keyMaterial = deriveKeyMaterial(salt, aad);
+      keySpec = deriveKeySpec(keyMaterial);
+      hmacKeySpec = deriveHmacKeySpec(keyMaterial);
+      mac.init(hmacKeySpec);
+    }
+
+    @Override
+    public ByteBuffer getHeader() {
+      return header.asReadOnlyBuffer();
+    }
+
+    @Override
+    public synchronized void encryptSegment(
+        ByteBuffer plaintext, boolean isLastSegment, ByteBuffer ciphertext)
+        throws GeneralSecurityException {
+      SubtleUtil.checkRemaining(ciphertext, plaintext.remaining() + tagSizeInBytes);
+      int position = ciphertext.position();
+      byte[] nonce = nonceForSegment(noncePrefix, encryptedSegments, isLastSegment);
+      cipher.init(Cipher.ENCRYPT_MODE, keySpec, new IvParameterSpec(nonce));
+      encryptedSegments++;
+      int unusedWritten = cipher.doFinal(plaintext, ciphertext);
+      ByteBuffer ctCopy = ciphertext.duplicate();
+      ctCopy.flip();
+      ctCopy.position(position);
+      mac.update(nonce);
+      mac.update(ctCopy);
+      byte[] tag = mac.doFinal();
+      ciphertext.put(tag, 0, tagSizeInBytes);
+    }
+  }
+
+  /**
+   * An instance of a StreamSegmentDecrypter that verifies and decrypts the segments of a single
+   * ciphertext.
+   */
+  class AesCtrHmacStreamDecrypter implements StreamSegmentDecrypter {
+    private SecretKeySpec keySpec;
+    private SecretKeySpec hmacKeySpec;
+    private Cipher cipher;
+    private Mac mac;
+    private byte[] noncePrefix;
+
+    AesCtrHmacStreamDecrypter() {}
+
+    @Override
+    public synchronized void init(ByteBuffer header, byte[] aad)
+        throws GeneralSecurityException {
+      if (header.remaining() != getHeaderLength()) {
+        throw new InvalidAlgorithmParameterException("Invalid header length");
+      }
+      byte firstByte = header.get();
+      if (firstByte != getHeaderLength()) {
+        throw new GeneralSecurityException("Invalid ciphertext");
+      }
+      noncePrefix = new byte[NONCE_PREFIX_IN_BYTES];
+      byte[] salt = new byte[keySizeInBytes];
+      header.get(salt);
+      header.get(noncePrefix);
+      byte[] keyMaterial = deriveKeyMaterial(salt, aad);
+      keySpec = deriveKeySpec(keyMaterial);
+      hmacKeySpec = deriveHmacKeySpec(keyMaterial);
+      cipher = cipherInstance();
+      mac = macInstance();
+      mac.init(hmacKeySpec);
+    }
+
+    @Override
+    public synchronized void decryptSegment(
+        ByteBuffer ciphertext, int segmentNr, boolean isLastSegment, ByteBuffer plaintext)
+        throws GeneralSecurityException {
+      if (cipher == null) {
+        throw new GeneralSecurityException("decrypter not initialized");
+      }
+      if (ciphertext.remaining() < tagSizeInBytes) {
+        throw new GeneralSecurityException("Ciphertext too short");
+      }
+      int ctLength = ciphertext.remaining() - tagSizeInBytes;
+      SubtleUtil.checkRemaining(plaintext, ctLength);
+      int tagPosition = ciphertext.position() + ctLength;
+      ByteBuffer ct = ciphertext.duplicate();
+      ct.limit(tagPosition);
+      ByteBuffer tagBuffer = ciphertext.duplicate();
+      tagBuffer.position(tagPosition);
+      byte[] tag = new byte[tagSizeInBytes];
+      tagBuffer.get(tag);
+
+      byte[] nonce = nonceForSegment(noncePrefix, segmentNr, isLastSegment);
+      mac.update(nonce);
+      mac.update(ct.duplicate());
+      byte[] computedTag = Arrays.copyOf(mac.doFinal(), tagSizeInBytes);
+      if (!SubtleUtil.arrayEquals(tag, computedTag)) {
+        throw new GeneralSecurityException("Tag mismatch");
+      }
+      cipher.init(Cipher.DECRYPT_MODE, keySpec, new IvParameterSpec(nonce));
+      int unusedWritten = cipher.doFinal(ct, plaintext);
+      ciphertext.position(ciphertext.limit());
+    }
+  }
+}
@@ -16,7 +16,9 @@
 
 package com.google.crypto.tink.subtle;
 
+import java.nio.ByteBuffer;
 import java.security.GeneralSecurityException;
+import java.util.concurrent.Executor;
 import javax.crypto.Cipher;
 import javax.crypto.spec.IvParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
@@ -25,8 +27,12 @@ import javax.crypto.spec.SecretKeySpec;
  * The primitive implements AES counter mode with random IVs, using JCE. It is safe against
  * chosen-plaintext attacks, but does not provide ciphertext integrity, thus is unsafe
  * against chosen-ciphertext attacks.
+ *
+ * <p>If constructed with an {@link Executor}, long messages are split into chunks that are
+ * encrypted in parallel. The chunks start at block boundaries and use the counter of their first
+ * block, so that the ciphertext is identical to that of the sequential encryption.
  */
-public final class AesCtrJceCipher implements IndCpaCipher {
+public final class AesCtrJceCipher implements ZeroCopyIndCpaCipher {
   private static final String KEY_ALGORITHM = "AES";
   private static final String CIPHER_ALGORITHM = "AES/CTR/NoPadding";
 
@@ -42,10 +48,25 @@ public final class AesCtrJceCipher implements IndCpaCipher {
   private final SecretKeySpec keySpec;
   private final int ivSize;
   private final int blockSize;
+  private final Executor executor;
 
   public AesCtrJceCipher(final byte[] key, int ivSize) throws GeneralSecurityException {
+    this(key, ivSize, null);
+  }
+
+  /**
+   * Constructs a cipher that encrypts and decrypts long messages in parallel on
+   * {@code executor}, e.g. a {@link java.util.concurrent.ForkJoinPool}. The calling thread takes
+   * part in the work. If {@code executor} is null, messages are processed sequentially.
+   *
+   * <p>The input and output buffers of a single call must not partially overlap, unless they are
+   * backed by the same array, in which case the message is processed sequentially.
+   */
+  public AesCtrJceCipher(final byte[] key, int ivSize, Executor executor)
+      throws GeneralSecurityException {
+    this.executor = executor;
     this.keySpec = new SecretKeySpec(key, KEY_ALGORITHM);
-    this.blockSize = EngineFactory.CIPHER.getInstance(CIPHER_ALGORITHM).getBlockSize();
+    this.blockSize = EngineFactory.CIPHER.getCachedInstance(CIPHER_ALGORITHM).getBlockSize();
     if (ivSize < MIN_IV_SIZE_IN_BYTES || ivSize > blockSize) {
       throw new GeneralSecurityException("invalid IV size");
     }
@@ -67,9 +88,9 @@ public final class AesCtrJceCipher implements IndCpaCipher {
           + (Integer.MAX_VALUE - ivSize));
     }
     byte[] ciphertext = new byte[ivSize + plaintext.length];
-    byte[] iv = Random.randBytes(ivSize);
-    System.arraycopy(iv, 0, ciphertext, 0, ivSize);
-    doCtr(plaintext, 0, plaintext.length, ciphertext, ivSize, iv, true);
+    // The iv is generated in place, and read from the head of ciphertext.
+    Random.randBytes(ciphertext, 0, ivSize);
+    doCtr(plaintext, 0, plaintext.length, ciphertext, ivSize, ciphertext, true);
     return ciphertext;
   }
 
@@ -86,19 +107,128 @@ public final class AesCtrJceCipher implements IndCpaCipher {
     if (ciphertext.length < ivSize) {
       throw new GeneralSecurityException("ciphertext too short");
     }
-    byte[] iv = new byte[ivSize];
-    System.arraycopy(ciphertext, 0, iv, 0, ivSize);
     byte[] plaintext = new byte[ciphertext.length - ivSize];
-    doCtr(ciphertext, ivSize, ciphertext.length - ivSize, plaintext, 0, iv, false);
+    // The iv is read from the head of ciphertext.
+    doCtr(ciphertext, ivSize, ciphertext.length - ivSize, plaintext, 0, ciphertext, false);
     return plaintext;
   }
 
+  /**
+   * Encrypts the remaining bytes of {@code plaintext} with counter mode encryption using randomly
+   * generated iv, and writes iv || raw ciphertext into {@code ciphertext}.
+   */
+  @Override
+  public void encrypt(ByteBuffer plaintext, ByteBuffer ciphertext)
+      throws GeneralSecurityException {
+    if (plaintext.remaining() > Integer.MAX_VALUE - ivSize) {
+      throw new GeneralSecurityException("plaintext length can not exceed "
+          + (Integer.MAX_VALUE - ivSize));
+    }
+    SubtleUtil.checkRemaining(ciphertext, ivSize + plaintext.remaining());
+    byte[] iv = Random.randBytes(ivSize);
+    ciphertext.put(iv);
+    doCtr(plaintext, ciphertext, iv, true);
+  }
+
+  /**
+   * Decrypts the remaining bytes of {@code ciphertext}, whose format is iv || raw ciphertext,
+   * and writes the plaintext into {@code plaintext}.
+   */
+  @Override
+  public void decrypt(ByteBuffer ciphertext, ByteBuffer plaintext)
+      throws GeneralSecurityException {
+    if (ciphertext.remaining() < ivSize) {
+      throw new GeneralSecurityException("ciphertext too short");
+    }
+    SubtleUtil.checkRemaining(plaintext, ciphertext.remaining() - ivSize);
+    byte[] iv = new byte[ivSize];
+    ciphertext.get(iv);
+    doCtr(ciphertext, plaintext, iv, false);
+  }
+
+  @Override
+  public int ciphertextSize(int plaintextSize) {
+    return ivSize + plaintextSize;
+  }
+
+  private void doCtr(final byte[] input, final int inputOffset, int inputLen,
+      final byte[] output, final int outputOffset, final byte[] iv, final boolean encrypt)
+      throws GeneralSecurityException {
+    if (ParallelCtr.shouldSplit(executor, inputLen) && !ParallelCtr.mayOverlap(
+        ByteBuffer.wrap(input, inputOffset, inputLen),
+        ByteBuffer.wrap(output, outputOffset, inputLen))) {
+      ParallelCtr.run(executor, inputLen, new ParallelCtr.Chunk() {
+        @Override
+        public void process(int offset, int length) throws GeneralSecurityException {
+          doCtr(input, inputOffset + offset, length, output, outputOffset + offset, iv,
+              offset / blockSize, encrypt);
+        }
+      });
+      return;
+    }
+    doCtr(input, inputOffset, inputLen, output, outputOffset, iv, 0, encrypt);
+  }
+
   private void doCtr(final byte[] input, int inputOffset, int inputLen, byte[] output,
-      int outputOffset, final byte[] iv, boolean encrypt) throws GeneralSecurityException {
-    Cipher cipher = EngineFactory.CIPHER.getInstance(CIPHER_ALGORITHM);
+      int outputOffset, final byte[] iv, long blockIndex, boolean encrypt)
+      throws GeneralSecurityException {
+    Cipher cipher = initCipher(iv, blockIndex, encrypt);
+    int numBytes = cipher.doFinal(input, inputOffset, inputLen, output, outputOffset);
+    if (numBytes != inputLen) {
+      throw new GeneralSecurityException("stored output's length does not match input's length");
+    }
+  }
+
+  private void doCtr(ByteBuffer input, ByteBuffer output, final byte[] iv, final boolean encrypt)
+      throws GeneralSecurityException {
+    int inputLen = input.remaining();
+    if (ParallelCtr.shouldSplit(executor, inputLen) && !ParallelCtr.mayOverlap(input, output)) {
+      final ByteBuffer in = input.slice();
+      final ByteBuffer out = output.slice();
+      ParallelCtr.run(executor, inputLen, new ParallelCtr.Chunk() {
+        @Override
+        public void process(int offset, int length) throws GeneralSecurityException {
+          ByteBuffer chunkInput = in.duplicate();
+          chunkInput.limit(offset + length);
+          chunkInput.position(offset);
+          ByteBuffer chunkOutput = out.duplicate();
+          chunkOutput.position(offset);
+          doCtr(chunkInput, chunkOutput, iv, offset / blockSize, encrypt);
+        }
+      });
+      input.position(input.limit());
+      output.position(output.position() + inputLen);
+      return;
+    }
+    doCtr(input, output, iv, 0, encrypt);
+  }
+
+  private void doCtr(ByteBuffer input, ByteBuffer output, final byte[] iv, long blockIndex,
+      boolean encrypt) throws GeneralSecurityException {
+    Cipher cipher = initCipher(iv, blockIndex, encrypt);
+    int inputLen = input.remaining();
+    int numBytes = cipher.doFinal(input, output);
+    if (numBytes != inputLen) {
+      throw new GeneralSecurityException("stored output's length does not match input's length");
+    }
+  }
+
+  /**
+   * Returns a cipher initialized with the counter of the block {@code blockIndex} of a message
+   * encrypted with {@code iv}.
+   */
+  private Cipher initCipher(final byte[] iv, long blockIndex, boolean encrypt)
+      throws GeneralSecurityException {
+    Cipher cipher = EngineFactory.CIPHER.getCachedInstance(CIPHER_ALGORITHM);
     // The counter is big-endian. The counter is composed of iv and (blockSize - ivSize) of zeros.
     byte[] counter = new byte[blockSize];
     System.arraycopy(iv, 0, counter, 0, ivSize);
+    // Adds blockIndex, carrying over the whole block like the JCE does when incrementing.
+    for (int i = blockSize - 1; i >= 0 && blockIndex != 0; i--) {
+      int sum = (counter[i] & 0xff) + (int) (blockIndex & 0xff);
+      counter[i] = (byte) sum;
+      blockIndex = (blockIndex >>> 8) + (sum >>> 8);
+    }
 
     IvParameterSpec paramSpec = new IvParameterSpec(counter);
     if (encrypt) {
@@ -106,9 +236,6 @@ public final class AesCtrJceCipher implements IndCpaCipher {
     } else {
       cipher.init(Cipher.DECRYPT_MODE, keySpec, paramSpec);
     }
-    int numBytes = cipher.doFinal(input, inputOffset, inputLen, output, outputOffset);
-    if (numBytes != inputLen) {
-      throw new GeneralSecurityException("stored output's length does not match input's length");
-    }
+    return cipher;
   }
 }
@@ -16,13 +16,12 @@
 
 package com.google.crypto.tink.subtle;
 
-import com.google.crypto.tink.Aead;
+import com.google.crypto.tink.BatchAead;
+import java.nio.ByteBuffer;
 import java.security.GeneralSecurityException;
 import java.util.Arrays;
 import javax.crypto.AEADBadTagException;
-import javax.crypto.BadPaddingException;
 import javax.crypto.Cipher;
-import javax.crypto.IllegalBlockSizeException;
 import javax.crypto.spec.IvParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
 
@@ -41,14 +40,17 @@ import javax.crypto.spec.SecretKeySpec;
  *        12 or 16 bytes.
  * </ul>
  *
- * <p>Plans: The current implementation is slow since it uses JCA and only assumes
- *   that the encryption modes "AES/ECB/NOPADDING" and "AES/CTR/NOPADDING" are
- *   implemented. Our plan is to implement a native version of EAX.
+ * <p>The OMACs are computed with a per-thread "AES/CBC/NOPADDING" cipher that is initialized
+ *   once with the key and a zero IV, so that a whole message is authenticated with a few calls to
+ *   update() instead of one doFinal() per block. Encryption uses "AES/CTR/NOPADDING".
  */
-public final class AesEaxJce implements Aead {
+public final class AesEaxJce implements BatchAead {
   static final int BLOCK_SIZE_IN_BYTES = 16;
   static final int TAG_SIZE_IN_BYTES = 16;
 
+  /** Number of bytes passed to a single update() call while computing an OMAC. */
+  private static final int OMAC_CHUNK_SIZE_IN_BYTES = 4096;
+
   // The constants B and P derived from the key. These constants are used for computing an OMAC.
   private final byte[] b;
   private final byte[] p;
@@ -56,6 +58,27 @@ public final class AesEaxJce implements Aead {
   private final SecretKeySpec keySpec;
   private final int ivSizeInBytes;
 
+  /** Per-thread ciphers and buffers, initialized with the key of this instance. */
+  private final ThreadLocal<State> localState = new ThreadLocal<State>();
+
+  /**
+   * The state used by one thread. {@code cbc} is reset to a zero IV after every doFinal(), so
+   * that it can be reused for the next OMAC without re-initialization.
+   */
+  private static final class State {
+    final Cipher cbc;
+    final Cipher ctr;
+    final byte[] block = new byte[BLOCK_SIZE_IN_BYTES];
+    final byte[] chunk = new byte[OMAC_CHUNK_SIZE_IN_BYTES];
+
+    @SuppressWarnings("InsecureCryptoUsage")
+    State(SecretKeySpec keySpec) throws GeneralSecurityException {
+      cbc = EngineFactory.CIPHER.getInstance("AES/CBC/NOPADDING");
+      cbc.init(Cipher.ENCRYPT_MODE, keySpec, new IvParameterSpec(new byte[BLOCK_SIZE_IN_BYTES]));
+      ctr = EngineFactory.CIPHER.getInstance("AES/CTR/NOPADDING");
+    }
+  }
+
   @SuppressWarnings("InsecureCryptoUsage")
   public AesEaxJce(final byte[] key, int ivSizeInBytes) throws GeneralSecurityException {
     if (ivSizeInBytes != 12 && ivSizeInBytes != 16) {
@@ -63,24 +86,20 @@ public final class AesEaxJce implements Aead {
     }
     this.ivSizeInBytes = ivSizeInBytes;
     keySpec = new SecretKeySpec(key, "AES");
-    Cipher ecb = Cipher.getInstance("AES/ECB/NOPADDING");
+    Cipher ecb = EngineFactory.CIPHER.getInstance("AES/ECB/NOPADDING");
     ecb.init(Cipher.ENCRYPT_MODE, keySpec);
     byte[] block = ecb.doFinal(new byte[BLOCK_SIZE_IN_BYTES]);
     b = multiplyByX(block);
     p = multiplyByX(b);
   }
 
-  /**
-   * Computes the xor of two byte arrays of equal size.
-   */
-  private static byte[] xor(final byte[] x, final byte[] y) {
-    assert x.length == y.length;
-    int len = x.length;
-    byte[] res = new byte[len];
-    for (int i = 0; i < len; i++) {
-      res[i] = (byte) (x[i] ^ y[i]);
+  private State getState() throws GeneralSecurityException {
+    State state = localState.get();
+    if (state == null) {
+      state = new State(keySpec);
+      localState.set(state);
     }
-    return res;
+    return state;
   }
 
   /**
@@ -100,109 +119,299 @@ public final class AesEaxJce implements Aead {
   }
 
   /**
-   * Pads the last block for OMAC. If the last block is smaller than 16 bytes then a bitstring
-   * starting with 1 and followed by 0's is appended and the result is XORed with p.
+   * Pads the last block for OMAC in place. If the last block is smaller than 16 bytes then a
+   * bitstring starting with 1 and followed by 0's is appended and the result is XORed with p.
    * If the last block is 16 bytes long then the last block is XORed with b.
    *
-   * @param data A block or partial block of size 1 .. 16 bytes.
-   * @return The padded block.
+   * @param block The output block.
+   * @param data The array containing the last block or partial block of size 0 .. 16 bytes.
+   * @param offset The start of the last block in {@code data}.
+   * @param length The size of the last block.
    */
-  private byte[] pad(final byte[] data) {
-    if (data.length == BLOCK_SIZE_IN_BYTES) {
-      return xor(data, b);
+  private void pad(byte[] block, final byte[] data, int offset, int length) {
+    if (length == BLOCK_SIZE_IN_BYTES) {
+      for (int i = 0; i < BLOCK_SIZE_IN_BYTES; i++) {
+        block[i] = (byte) (data[offset + i] ^ b[i]);
+      }
     } else {
-      byte[] res = Arrays.copyOf(p, BLOCK_SIZE_IN_BYTES);
-      for (int i = 0; i < data.length; i++) {
-        res[i] ^= data[i];
+      System.arraycopy(p, 0, block, 0, BLOCK_SIZE_IN_BYTES);
+      for (int i = 0; i < length; i++) {
+        block[i] ^= data[offset + i];
       }
-      res[data.length] = (byte) (res[data.length] ^ 0x80);
-      return res;
+      block[length] = (byte) (block[length] ^ 0x80);
     }
   }
 
   /**
-   * Computes an OMAC.
-   * @param ecb A cipher initialized with the key of this class using AES/ECB/NOPadding and
-   *            encryption mode.
+   * Computes an OMAC, i.e. the last block of the CBC encryption of the tag block followed by
+   * the padded data.
+   *
+   * @param state The state of the current thread.
    * @param tag The OMAC tag (0 for nonce, 1 for aad, 2 for ciphertext)
    * @param data The array containing the data to MAC.
    * @param offset The start of the data to MAC.
    * @param length The length of the data to MAC.
-   * @return The 16 byte long OMAC
-   * @throws IllegalBlockSizeException, BadPaddingException This should not happen.
+   * @param mac The array receiving the 16 byte long OMAC.
+   * @throws GeneralSecurityException This should not happen.
    */
-  private byte[] omac(Cipher ecb, int tag, final byte[] data, int offset, int length)
-      throws IllegalBlockSizeException, BadPaddingException {
+  private void omac(State state, int tag, final byte[] data, int offset, int length, byte[] mac)
+      throws GeneralSecurityException {
     assert length >= 0;
     assert 0 <= tag && tag <= 3;
-    byte[] block = new byte[BLOCK_SIZE_IN_BYTES];
+    byte[] block = state.block;
+    Arrays.fill(block, (byte) 0);
     block[BLOCK_SIZE_IN_BYTES - 1] = (byte) tag;
     if (length == 0) {
-      return ecb.doFinal(xor(block, b));
+      pad(block, block, 0, BLOCK_SIZE_IN_BYTES);
+      state.cbc.doFinal(block, 0, BLOCK_SIZE_IN_BYTES, mac, 0);
+      return;
     }
-    block = ecb.doFinal(block);
-    int position = 0;
-    while (length - position > BLOCK_SIZE_IN_BYTES) {
-      for (int i = 0; i < BLOCK_SIZE_IN_BYTES; i++) {
-        block[i] ^= data[offset + position + i];
-      }
-      block = ecb.doFinal(block);
-      position += BLOCK_SIZE_IN_BYTES;
+    state.cbc.update(block, 0, BLOCK_SIZE_IN_BYTES, state.chunk, 0);
+    // All blocks but the last one are processed in chunks. The last block is padded.
+    int end = offset + ((length - 1) / BLOCK_SIZE_IN_BYTES) * BLOCK_SIZE_IN_BYTES;
+    while (offset < end) {
+      int chunkLength = Math.min(end - offset, OMAC_CHUNK_SIZE_IN_BYTES);
+      state.cbc.update(data, offset, chunkLength, state.chunk, 0);
+      offset += chunkLength;
+      length -= chunkLength;
     }
-    byte[] padded = pad(Arrays.copyOfRange(data, offset + position, offset + length));
-    block = xor(block, padded);
-    return ecb.doFinal(block);
+    pad(block, data, offset, length);
+    state.cbc.doFinal(block, 0, BLOCK_SIZE_IN_BYTES, mac, 0);
+  }
+
+  /**
+   * Computes an OMAC of the remaining bytes of {@code data}, and advances the position of
+   * {@code data} to its limit. Buffers that are not backed by an array, e.g. direct buffers, are
+   * fed to the CBC cipher directly; only the last block is copied for padding.
+   *
+   * @see #omac(State, int, byte[], int, int, byte[])
+   */
+  private void omac(State state, int tag, ByteBuffer data, byte[] mac)
+      throws GeneralSecurityException {
+    if (data.hasArray()) {
+      omac(state, tag, data.array(), data.arrayOffset() + data.position(), data.remaining(), mac);
+      data.position(data.limit());
+      return;
+    }
+    int length = data.remaining();
+    if (length == 0) {
+      omac(state, tag, state.chunk, 0, 0, mac);
+      return;
+    }
+    byte[] block = state.block;
+    Arrays.fill(block, (byte) 0);
+    block[BLOCK_SIZE_IN_BYTES - 1] = (byte) tag;
+    state.cbc.update(block, 0, BLOCK_SIZE_IN_BYTES, state.chunk, 0);
+    int limit = data.limit();
+    int end = data.position() + ((length - 1) / BLOCK_SIZE_IN_BYTES) * BLOCK_SIZE_IN_BYTES;
+    ByteBuffer chunk = ByteBuffer.wrap(state.chunk);
+    while (data.position() < end) {
+      data.limit(Math.min(end, data.position() + OMAC_CHUNK_SIZE_IN_BYTES));
+      chunk.clear();
+      state.cbc.update(data, chunk);
+    }
+    data.limit(limit);
+    int lastLength = limit - end;
+    data.get(state.chunk, 0, lastLength);
+    pad(block, state.chunk, 0, lastLength);
+    state.cbc.doFinal(block, 0, BLOCK_SIZE_IN_BYTES, mac, 0);
   }
 
-  @SuppressWarnings("InsecureCryptoUsage")
   @Override
   public byte[] encrypt(final byte[] plaintext, final byte[] aad) throws GeneralSecurityException {
     // Check that ciphertext is not longer than the max. size of a Java array.
     if (plaintext.length > Integer.MAX_VALUE - ivSizeInBytes - TAG_SIZE_IN_BYTES) {
       throw new GeneralSecurityException("plaintext too long");
     }
-    byte[] ciphertext = new byte[ivSizeInBytes + plaintext.length + TAG_SIZE_IN_BYTES];
-    byte[] iv = Random.randBytes(ivSizeInBytes);
-    System.arraycopy(iv, 0, ciphertext, 0, ivSizeInBytes);
+    byte[] ciphertext = new byte[ciphertextSize(plaintext.length)];
+    int unusedWritten = encrypt(plaintext, aad, ciphertext, 0);
+    return ciphertext;
+  }
 
-    Cipher ecb = Cipher.getInstance("AES/ECB/NOPADDING");
-    ecb.init(Cipher.ENCRYPT_MODE, keySpec);
-    byte[] n = omac(ecb, 0, iv, 0, iv.length);
-    byte[] h = omac(ecb, 1, aad, 0, aad.length);
-    Cipher ctr = Cipher.getInstance("AES/CTR/NOPADDING");
-    ctr.init(Cipher.ENCRYPT_MODE, keySpec, new IvParameterSpec(n));
-    ctr.doFinal(plaintext, 0, plaintext.length, ciphertext, ivSizeInBytes);
-    byte[] t = omac(ecb, 2, ciphertext, ivSizeInBytes, plaintext.length);
-    int offset = plaintext.length + ivSizeInBytes;
+  @Override
+  public int encrypt(final byte[] plaintext, final byte[] aad, byte[] ciphertext, int offset)
+      throws GeneralSecurityException {
+    if (plaintext.length > Integer.MAX_VALUE - ivSizeInBytes - TAG_SIZE_IN_BYTES) {
+      throw new GeneralSecurityException("plaintext too long");
+    }
+    int ciphertextSize = ciphertextSize(plaintext.length);
+    SubtleUtil.checkOutputSize(ciphertext, offset, ciphertextSize);
+    // The nonce is generated in place, so that no temporary array is needed.
+    Random.randBytes(ciphertext, offset, ivSizeInBytes);
+    State state = getState();
+    byte[] h = new byte[BLOCK_SIZE_IN_BYTES];
+    omac(state, 1, aad, 0, aad.length, h);
+    encrypt(state, plaintext, h, ciphertext, offset, ciphertext, offset);
+    return ciphertextSize;
+  }
+
+  /**
+   * Encrypts {@code plaintext} with the nonce {@code ivs[ivOffset..ivOffset+ivSizeInBytes)}, and
+   * writes nonce || ciphertext || tag into {@code ciphertext} at {@code offset}, which must be
+   * large enough.
+   *
+   * @param h The OMAC of the additional data.
+   */
+  private void encrypt(State state, final byte[] plaintext, final byte[] h, final byte[] ivs,
+      int ivOffset, byte[] ciphertext, int offset) throws GeneralSecurityException {
+    System.arraycopy(ivs, ivOffset, ciphertext, offset, ivSizeInBytes);
+    byte[] n = new byte[BLOCK_SIZE_IN_BYTES];
+    byte[] t = new byte[BLOCK_SIZE_IN_BYTES];
+    omac(state, 0, ivs, ivOffset, ivSizeInBytes, n);
+    state.ctr.init(Cipher.ENCRYPT_MODE, keySpec, new IvParameterSpec(n));
+    state.ctr.doFinal(plaintext, 0, plaintext.length, ciphertext, offset + ivSizeInBytes);
+    omac(state, 2, ciphertext, offset + ivSizeInBytes, plaintext.length, t);
+    int tagOffset = offset + plaintext.length + ivSizeInBytes;
     for (int i = 0; i < TAG_SIZE_IN_BYTES; i++) {
-      ciphertext[offset + i] = (byte) (h[i] ^ n[i] ^ t[i]);
+      ciphertext[tagOffset + i] = (byte) (h[i] ^ n[i] ^ t[i]);
     }
-    return ciphertext;
   }
 
-  @SuppressWarnings("InsecureCryptoUsage")
   @Override
   public byte[] decrypt(final byte[] ciphertext, final byte[] aad)
       throws GeneralSecurityException {
-    int plaintextLength = ciphertext.length - ivSizeInBytes - TAG_SIZE_IN_BYTES;
+    return decrypt(ciphertext, 0, ciphertext.length, aad);
+  }
+
+  @Override
+  public byte[] decrypt(final byte[] ciphertext, int offset, int length, final byte[] aad)
+      throws GeneralSecurityException {
+    SubtleUtil.checkRange(ciphertext, offset, length);
+    State state = getState();
+    byte[] h = new byte[BLOCK_SIZE_IN_BYTES];
+    omac(state, 1, aad, 0, aad.length, h);
+    return decrypt(state, ciphertext, offset, length, h);
+  }
+
+  /**
+   * Decrypts {@code ciphertext[offset..offset+length)}.
+   *
+   * @param h The OMAC of the additional data.
+   */
+  private byte[] decrypt(State state, final byte[] ciphertext, int offset, int length,
+      final byte[] h) throws GeneralSecurityException {
+    int plaintextLength = length - ivSizeInBytes - TAG_SIZE_IN_BYTES;
     if (plaintextLength < 0) {
       throw new GeneralSecurityException("ciphertext too short");
     }
-    Cipher ecb = Cipher.getInstance("AES/ECB/NOPADDING");
-    ecb.init(Cipher.ENCRYPT_MODE, keySpec);
-    byte[] n = omac(ecb, 0, ciphertext, 0, ivSizeInBytes);
-    byte[] h = omac(ecb, 1, aad, 0, aad.length);
-    byte[] t = omac(ecb, 2, ciphertext, ivSizeInBytes, plaintextLength);
+    byte[] n = new byte[BLOCK_SIZE_IN_BYTES];
+    byte[] t = new byte[BLOCK_SIZE_IN_BYTES];
+    omac(state, 0, ciphertext, offset, ivSizeInBytes, n);
+    omac(state, 2, ciphertext, offset + ivSizeInBytes, plaintextLength, t);
+    byte res = 0;
+    int tagOffset = offset + length - TAG_SIZE_IN_BYTES;
+    for (int i = 0; i < TAG_SIZE_IN_BYTES; i++) {
+      res = (byte) (res | (ciphertext[tagOffset + i] ^ h[i] ^ n[i] ^ t[i]));
+    }
+    if (res != 0) {
+      throw new AEADBadTagException("tag mismatch");
+    }
+    state.ctr.init(Cipher.ENCRYPT_MODE, keySpec, new IvParameterSpec(n));
+    return state.ctr.doFinal(ciphertext, offset + ivSizeInBytes, plaintextLength);
+  }
+
+  /**
+   * Draws the nonces of all records from the random number generator at once, and computes the
+   * OMAC of {@code aad} only once for all records.
+   */
+  @Override
+  public void encryptBatch(final byte[][] plaintexts, final byte[] aad, byte[] ciphertext,
+      final int[] ciphertextOffsets) throws GeneralSecurityException {
+    AeadBatch.checkStartOffsets(plaintexts, ciphertextOffsets);
+    for (int i = 0; i < plaintexts.length; i++) {
+      if (plaintexts[i].length > Integer.MAX_VALUE - ivSizeInBytes - TAG_SIZE_IN_BYTES) {
+        throw new GeneralSecurityException("plaintext too long");
+      }
+      SubtleUtil.checkOutputSize(
+          ciphertext, ciphertextOffsets[i], ciphertextSize(plaintexts[i].length));
+    }
+    byte[] nonces = Random.randBytes(plaintexts.length * ivSizeInBytes);
+    State state = getState();
+    byte[] h = new byte[BLOCK_SIZE_IN_BYTES];
+    omac(state, 1, aad, 0, aad.length, h);
+    for (int i = 0; i < plaintexts.length; i++) {
+      encrypt(state, plaintexts[i], h, nonces, i * ivSizeInBytes, ciphertext,
+          ciphertextOffsets[i]);
+    }
+  }
+
+  /**
+   * Computes the OMAC of {@code aad} only once.
+   */
+  @Override
+  public byte[][] decryptBatch(final byte[] ciphertexts, final int[] ciphertextOffsets,
+      final byte[] aad) throws GeneralSecurityException {
+    AeadBatch.checkOffsets(ciphertexts, ciphertextOffsets);
+    State state = getState();
+    byte[] h = new byte[BLOCK_SIZE_IN_BYTES];
+    omac(state, 1, aad, 0, aad.length, h);
+    byte[][] plaintexts = new byte[ciphertextOffsets.length - 1][];
+    for (int i = 0; i < plaintexts.length; i++) {
+      plaintexts[i] = decrypt(state, ciphertexts, ciphertextOffsets[i],
+          ciphertextOffsets[i + 1] - ciphertextOffsets[i], h);
+    }
+    return plaintexts;
+  }
+
+  @Override
+  public int ciphertextSize(int plaintextSize) {
+    return ivSizeInBytes + plaintextSize + TAG_SIZE_IN_BYTES;
+  }
+
+  @Override
+  public void encrypt(ByteBuffer plaintext, ByteBuffer aad, ByteBuffer ciphertext)
+      throws GeneralSecurityException {
+    int plaintextLength = plaintext.remaining();
+    if (plaintextLength > Integer.MAX_VALUE - ivSizeInBytes - TAG_SIZE_IN_BYTES) {
+      throw new GeneralSecurityException("plaintext too long");
+    }
+    SubtleUtil.checkRemaining(ciphertext, ciphertextSize(plaintextLength));
+    State state = getState();
+    byte[] h = new byte[BLOCK_SIZE_IN_BYTES];
+    omac(state, 1, aad, h);
+    byte[] nonce = Random.randBytes(ivSizeInBytes);
+    byte[] n = new byte[BLOCK_SIZE_IN_BYTES];
+    byte[] t = new byte[BLOCK_SIZE_IN_BYTES];
+    omac(state, 0, nonce, 0, ivSizeInBytes, n);
+    ciphertext.put(nonce);
+    ByteBuffer rawCiphertext = ciphertext.duplicate();
+    state.ctr.init(Cipher.ENCRYPT_MODE, keySpec, new IvParameterSpec(n));
+    state.ctr.doFinal(plaintext, ciphertext);
+    rawCiphertext.limit(ciphertext.position());
+    omac(state, 2, rawCiphertext, t);
+    for (int i = 0; i < TAG_SIZE_IN_BYTES; i++) {
+      ciphertext.put((byte) (h[i] ^ n[i] ^ t[i]));
+    }
+  }
+
+  @Override
+  public void decrypt(ByteBuffer ciphertext, ByteBuffer aad, ByteBuffer plaintext)
+      throws GeneralSecurityException {
+    int plaintextLength = ciphertext.remaining() - ivSizeInBytes - TAG_SIZE_IN_BYTES;
+    if (plaintextLength < 0) {
+      throw new GeneralSecurityException("ciphertext too short");
+    }
+    SubtleUtil.checkRemaining(plaintext, plaintextLength);
+    State state = getState();
+    byte[] h = new byte[BLOCK_SIZE_IN_BYTES];
+    omac(state, 1, aad, h);
+    byte[] nonce = new byte[ivSizeInBytes];
+    ciphertext.get(nonce);
+    byte[] n = new byte[BLOCK_SIZE_IN_BYTES];
+    byte[] t = new byte[BLOCK_SIZE_IN_BYTES];
+    omac(state, 0, nonce, 0, ivSizeInBytes, n);
+    ByteBuffer rawCiphertext = ciphertext.duplicate();
+    rawCiphertext.limit(ciphertext.position() + plaintextLength);
+    omac(state, 2, rawCiphertext.duplicate(), t);
+    ciphertext.position(rawCiphertext.limit());
     byte res = 0;
-    int offset = ciphertext.length - TAG_SIZE_IN_BYTES;
     for (int i = 0; i < TAG_SIZE_IN_BYTES; i++) {
-      res = (byte) (res | (ciphertext[offset + i] ^ h[i] ^ n[i] ^ t[i]));
+      res = (byte) (res | (ciphertext.get() ^ h[i] ^ n[i] ^ t[i]));
     }
     if (res != 0) {
       throw new AEADBadTagException("tag mismatch");
     }
-    Cipher ctr = Cipher.getInstance("AES/CTR/NOPADDING");
-    ctr.init(Cipher.ENCRYPT_MODE, keySpec, new IvParameterSpec(n));
-    return ctr.doFinal(ciphertext, ivSizeInBytes, plaintextLength);
+    state.ctr.init(Cipher.ENCRYPT_MODE, keySpec, new IvParameterSpec(n));
+    state.ctr.doFinal(rawCiphertext, plaintext);
   }
 }
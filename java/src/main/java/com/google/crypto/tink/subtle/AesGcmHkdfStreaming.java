@@ -0,0 +1,260 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.subtle;
+
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.InvalidAlgorithmParameterException;
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Streaming encryption using AES-GCM with HKDF as key derivation function.
+ *
+ * <p>Each ciphertext uses a new AES-GCM key that is derived from the key derivation key, a
+ * randomly chosen salt of the same size as the key and a nonce prefix, using HKDF with the
+ * associated data as info.
+ *
+ * <p>The format of a ciphertext is
+ *   header || segment_0 || segment_1 || ... || segment_k.
+ * where:
+ * <ul>
+ *   <li> segment_i is the i-th segment of the ciphertext.
+ *   <li> the size of segment_1 .. segment_{k-1} is ciphertextSegmentSize.
+ *   <li> segment_0 is shorter, so that segment_0, the header and other information of size
+ *        offset align with ciphertextSegmentSize.
+ * </ul>
+ *
+ * <p>The format of the header is
+ *   headerLength || salt || prefix
+ * where:
+ * <ul>
+ *   <li> headerLength is 1 byte determining the size of the header
+ *   <li> salt is a salt used in the key derivation
+ *   <li> prefix is the prefix of the nonce
+ * </ul>
+ *
+ * <p>The nonce of segment i is prefix || i (4 bytes, big endian) || b, where b is 1 for the last
+ * segment and 0 otherwise. Each segment carries a 16 byte tag.
+ */
+public final class AesGcmHkdfStreaming extends NonceBasedStreamingAead {
+  private static final int NONCE_SIZE_IN_BYTES = 12;
+  private static final int NONCE_PREFIX_IN_BYTES = 7;
+  private static final int TAG_SIZE_IN_BYTES = 16;
+
+  private final int keySizeInBytes;
+  private final int ciphertextSegmentSize;
+  private final int plaintextSegmentSize;
+  private final String hkdfAlg;
+  private final byte[] ikm;
+
+  /**
+   * Initializes a streaming primitive with a key derivation key and encryption parameters.
+   *
+   * @param ikm input keying material used to derive sub keys.
+   * @param hkdfAlg the JCE MAC algorithm name, e.g. HmacSha256, used for the HKDF key derivation.
+   * @param keySizeInBytes the key size of the sub keys
+   * @param ciphertextSegmentSize the size of ciphertext segments.
+   * @throws InvalidAlgorithmParameterException if ikm is too short, the key size not supported or
+   *     ciphertextSegmentSize too short.
+   */
+  public AesGcmHkdfStreaming(byte[] ikm, String hkdfAlg, int keySizeInBytes,
+      int ciphertextSegmentSize) throws InvalidAlgorithmParameterException {
+    if (ikm.length < keySizeInBytes) {
+      throw new InvalidAlgorithmParameterException("ikm too short, must be >= " + keySizeInBytes);
+    }
+    if (keySizeInBytes != 16 && keySizeInBytes != 32) {
+      throw new InvalidAlgorithmParameterException("invalid key size " + keySizeInBytes);
+    }
+    if (ciphertextSegmentSize <= headerLength(keySizeInBytes) + TAG_SIZE_IN_BYTES) {
+      throw new InvalidAlgorithmParameterException("ciphertextSegmentSize too small");
+    }
+    this.ikm = ikm.clone();
+    this.hkdfAlg = hkdfAlg;
+    this.keySizeInBytes = keySizeInBytes;
+    this.ciphertextSegmentSize = ciphertextSegmentSize;
+    this.plaintextSegmentSize = ciphertextSegmentSize - TAG_SIZE_IN_BYTES;
+  }
+
+  private static int headerLength(int keySizeInBytes) {
+    return 1 + keySizeInBytes + NONCE_PREFIX_IN_BYTES;
+  }
+
+  @Override
+  public AesGcmHkdfStreamEncrypter newStreamSegmentEncrypter(byte[] aad)
+      throws GeneralSecurityException {
+    return new AesGcmHkdfStreamEncrypter(aad);
+  }
+
+  @Override
+  public AesGcmHkdfStreamDecrypter newStreamSegmentDecrypter() throws GeneralSecurityException {
+    return new AesGcmHkdfStreamDecrypter();
+  }
+
+  @Override
+  public int getPlaintextSegmentSize() {
+    return plaintextSegmentSize;
+  }
+
+  @Override
+  public int getCiphertextSegmentSize() {
+    return ciphertextSegmentSize;
+  }
+
+  @Override
+  public int getHeaderLength() {
+    return headerLength(keySizeInBytes);
+  }
+
+  @Override
+  public int getCiphertextOffset() {
+    return getHeaderLength();
+  }
+
+  @Override
+  public int getCiphertextOverhead() {
+    return TAG_SIZE_IN_BYTES;
+  }
+
+  /**
+   * Returns the expected size of the ciphertext for a given plaintext.
+   * The returned value includes the header and the tags of all segments.
+   */
+  public long expectedCiphertextSize(long plaintextSize) {
+    long offset = getCiphertextOffset();
+    long fullSegments = (plaintextSize + offset) / plaintextSegmentSize;
+    long ciphertextSize = fullSegments * ciphertextSegmentSize;
+    long lastSegmentSize = (plaintextSize + offset) % plaintextSegmentSize;
+    if (lastSegmentSize > 0) {
+      ciphertextSize += lastSegmentSize + TAG_SIZE_IN_BYTES;
+    }
+    return ciphertextSize;
+  }
+
+  private static Cipher cipherInstance() throws GeneralSecurityException {
+    return EngineFactory.CIPHER.getInstance("AES/GCM/NoPadding");
+  }
+
+  private byte[] randomSalt() {
+    return Random.randBytes(keySizeInBytes);
+  }
+
+  private GCMParameterSpec paramsForSegment(byte[] prefix, int segmentNr, boolean last) {
+    ByteBuffer nonce = ByteBuffer.allocate(NONCE_SIZE_IN_BYTES);
+    nonce.put(prefix);
+    nonce.putInt(segmentNr);
+    nonce.put((byte) (last ? 1 : 0));
+    return new GCMParameterSpec(8 * TAG_SIZE_IN_BYTES, nonce.array());
+  }
+
+  private static byte[] randomNonce() {
+    return Random.randBytes(NONCE_PREFIX_IN_BYTES);
+  }
+
+  private SecretKeySpec deriveKeySpec(byte[] salt, byte[] aad) throws GeneralSecurityException {
+    byte[] key = Hkdf.computeHkdf(hkdfAlg, ikm, salt, aad, keySizeInBytes);
+    return new SecretKeySpec(key, "AES");
+  }
+
+  /**
+   * An instance of a StreamSegmentEncrypter that encrypts the segments of a single ciphertext
+   * with AES-GCM.
+   */
+  class AesGcmHkdfStreamEncrypter implements StreamSegmentEncrypter {
+    private final SecretKeySpec keySpec;
+    private final Cipher cipher;
+    private final byte[] noncePrefix;
+    private ByteBuffer header;
+    private int encryptedSegments = 0;
+
+    public AesGcmHkdfStreamEncrypter(byte[] aad) throws GeneralSecurityException {
+      cipher = cipherInstance();
+      encryptedSegments = 0;
+      byte[] salt = randomSalt();
+      noncePrefix = randomNonce();
+      header = ByteBuffer.allocate(getHeaderLength());
+      header.put((byte) getHeaderLength());
+      header.put(salt);
+      header.put(noncePrefix);
+      header.flip();
+      keySpec = deriveKeySpec(salt, aad);
+    }
+
+    @Override
+    public ByteBuffer getHeader() {
+      return header.asReadOnlyBuffer();
+    }
+
+    @Override
+    public synchronized void encryptSegment(
+        ByteBuffer plaintext, boolean isLastSegment, ByteBuffer ciphertext)
+        throws GeneralSecurityException {
+      cipher.init(
+          Cipher.ENCRYPT_MODE,
+          keySpec,
+          paramsForSegment(noncePrefix, encryptedSegments, isLastSegment));
+      encryptedSegments++;
+      int unusedWritten = cipher.doFinal(plaintext, ciphertext);
+    }
+  }
+
+  /**
+   * An instance of a StreamSegmentDecrypter that decrypts the segments of a single ciphertext
+   * with AES-GCM.
+   */
+  class AesGcmHkdfStreamDecrypter implements StreamSegmentDecrypter {
+    private SecretKeySpec keySpec;
+    private Cipher cipher;
+    private byte[] noncePrefix;
+
+    AesGcmHkdfStreamDecrypter() {}
+
+    @Override
+    public synchronized void init(ByteBuffer header, byte[] aad)
+        throws GeneralSecurityException {
+      if (header.remaining() != getHeaderLength()) {
+        throw new InvalidAlgorithmParameterException("Invalid header length");
+      }
+      byte firstByte = header.get();
+      if (firstByte != getHeaderLength()) {
+        // We expect the first byte to be the length of the header.
+        // If this is not the case then either the ciphertext is incorrectly
+        // aligned or invalid.
+        throw new GeneralSecurityException("Invalid ciphertext");
+      }
+      noncePrefix = new byte[NONCE_PREFIX_IN_BYTES];
+      byte[] salt = new byte[keySizeInBytes];
+      header.get(salt);
+      header.get(noncePrefix);
+      keySpec = deriveKeySpec(salt, aad);
+      cipher = cipherInstance();
+    }
+
+    @Override
+    public synchronized void decryptSegment(
+        ByteBuffer ciphertext, int segmentNr, boolean isLastSegment, ByteBuffer plaintext)
+        throws GeneralSecurityException {
+      if (cipher == null) {
+        throw new GeneralSecurityException("decrypter not initialized");
+      }
+      GCMParameterSpec params = paramsForSegment(noncePrefix, segmentNr, isLastSegment);
+      cipher.init(Cipher.DECRYPT_MODE, keySpec, params);
+      int unusedWritten = cipher.doFinal(ciphertext, plaintext);
+    }
+  }
+}
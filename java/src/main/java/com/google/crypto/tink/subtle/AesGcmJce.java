@@ -16,7 +16,8 @@
 
 package com.google.crypto.tink.subtle;
 
-import com.google.crypto.tink.Aead;
+import com.google.crypto.tink.BatchAead;
+import java.nio.ByteBuffer;
 import java.security.GeneralSecurityException;
 import javax.crypto.Cipher;
 import javax.crypto.spec.GCMParameterSpec;
@@ -25,7 +26,7 @@ import javax.crypto.spec.SecretKeySpec;
 /**
  * This primitive implements AesGcm using JCE.
  */
-public final class AesGcmJce implements Aead {
+public final class AesGcmJce implements BatchAead {
 
   // All instances of this class use a 12 byte IV and a 16 byte tag.
   private static final int IV_SIZE_IN_BYTES = 12;
@@ -38,7 +39,7 @@ public final class AesGcmJce implements Aead {
   }
 
   private static Cipher instance() throws GeneralSecurityException {
-    return EngineFactory.CIPHER.getInstance("AES/GCM/NoPadding");
+    return EngineFactory.CIPHER.getCachedInstance("AES/GCM/NoPadding");
   }
 
   @Override
@@ -48,31 +49,128 @@ public final class AesGcmJce implements Aead {
     if (plaintext.length > Integer.MAX_VALUE - IV_SIZE_IN_BYTES - TAG_SIZE_IN_BYTES) {
       throw new GeneralSecurityException("plaintext too long");
     }
-    byte[] ciphertext = new byte[IV_SIZE_IN_BYTES + plaintext.length + TAG_SIZE_IN_BYTES];
-    byte[] iv = Random.randBytes(IV_SIZE_IN_BYTES);
-    System.arraycopy(iv, 0, ciphertext, 0, IV_SIZE_IN_BYTES);
+    byte[] ciphertext = new byte[ciphertextSize(plaintext.length)];
+    int unusedWritten = encrypt(plaintext, aad, ciphertext, 0);
+    return ciphertext;
+  }
 
-    Cipher cipher = instance();
-    GCMParameterSpec params = new GCMParameterSpec(8 * TAG_SIZE_IN_BYTES, iv);
+  @Override
+  public int encrypt(final byte[] plaintext, final byte[] aad, byte[] ciphertext, int offset)
+      throws GeneralSecurityException {
+    if (plaintext.length > Integer.MAX_VALUE - IV_SIZE_IN_BYTES - TAG_SIZE_IN_BYTES) {
+      throw new GeneralSecurityException("plaintext too long");
+    }
+    int ciphertextSize = ciphertextSize(plaintext.length);
+    SubtleUtil.checkOutputSize(ciphertext, offset, ciphertextSize);
+    // The IV is generated in place, so that no temporary array is needed.
+    Random.randBytes(ciphertext, offset, IV_SIZE_IN_BYTES);
+    encrypt(instance(), plaintext, aad, ciphertext, offset, ciphertext, offset);
+    return ciphertextSize;
+  }
+
+  /**
+   * Encrypts {@code plaintext} with the IV {@code ivs[ivOffset..ivOffset+12)}, and writes
+   * iv || ciphertext || tag into {@code ciphertext} at {@code offset}, which must be large
+   * enough.
+   */
+  private void encrypt(Cipher cipher, final byte[] plaintext, final byte[] aad, final byte[] ivs,
+      int ivOffset, byte[] ciphertext, int offset) throws GeneralSecurityException {
+    System.arraycopy(ivs, ivOffset, ciphertext, offset, IV_SIZE_IN_BYTES);
+    GCMParameterSpec params =
+        new GCMParameterSpec(8 * TAG_SIZE_IN_BYTES, ivs, ivOffset, IV_SIZE_IN_BYTES);
     cipher.init(Cipher.ENCRYPT_MODE, keySpec, params);
     cipher.updateAAD(aad);
     int unusedWritten = cipher.doFinal(plaintext, 0, plaintext.length, ciphertext,
-        IV_SIZE_IN_BYTES);
-    return ciphertext;
+        offset + IV_SIZE_IN_BYTES);
+  }
+
+  /**
+   * Draws the IVs of all records from the random number generator at once, and encrypts the
+   * records with the same cipher engine.
+   */
+  @Override
+  public void encryptBatch(final byte[][] plaintexts, final byte[] aad, byte[] ciphertext,
+      final int[] ciphertextOffsets) throws GeneralSecurityException {
+    AeadBatch.checkStartOffsets(plaintexts, ciphertextOffsets);
+    for (int i = 0; i < plaintexts.length; i++) {
+      if (plaintexts[i].length > Integer.MAX_VALUE - IV_SIZE_IN_BYTES - TAG_SIZE_IN_BYTES) {
+        throw new GeneralSecurityException("plaintext too long");
+      }
+      SubtleUtil.checkOutputSize(
+          ciphertext, ciphertextOffsets[i], ciphertextSize(plaintexts[i].length));
+    }
+    byte[] ivs = Random.randBytes(plaintexts.length * IV_SIZE_IN_BYTES);
+    Cipher cipher = instance();
+    for (int i = 0; i < plaintexts.length; i++) {
+      encrypt(cipher, plaintexts[i], aad, ivs, i * IV_SIZE_IN_BYTES, ciphertext,
+          ciphertextOffsets[i]);
+    }
+  }
+
+  @Override
+  public byte[][] decryptBatch(final byte[] ciphertext, final int[] ciphertextOffsets,
+      final byte[] aad) throws GeneralSecurityException {
+    return AeadBatch.decryptEach(this, ciphertext, ciphertextOffsets, aad);
   }
 
   @Override
   public byte[] decrypt(final byte[] ciphertext, final byte[] aad)
       throws GeneralSecurityException {
-    if (ciphertext.length < IV_SIZE_IN_BYTES + TAG_SIZE_IN_BYTES) {
+    return decrypt(ciphertext, 0, ciphertext.length, aad);
+  }
+
+  @Override
+  public byte[] decrypt(final byte[] ciphertext, int offset, int length, final byte[] aad)
+      throws GeneralSecurityException {
+    SubtleUtil.checkRange(ciphertext, offset, length);
+    if (length < IV_SIZE_IN_BYTES + TAG_SIZE_IN_BYTES) {
       throw new GeneralSecurityException("ciphertext too short");
     }
     GCMParameterSpec params =
-        new GCMParameterSpec(8 * TAG_SIZE_IN_BYTES, ciphertext, 0, IV_SIZE_IN_BYTES);
+        new GCMParameterSpec(8 * TAG_SIZE_IN_BYTES, ciphertext, offset, IV_SIZE_IN_BYTES);
+    Cipher cipher = instance();
+    cipher.init(Cipher.DECRYPT_MODE, keySpec, params);
+    cipher.updateAAD(aad);
+    return cipher.doFinal(ciphertext, offset + IV_SIZE_IN_BYTES, length - IV_SIZE_IN_BYTES);
+  }
+
+  @Override
+  public int ciphertextSize(int plaintextSize) {
+    return IV_SIZE_IN_BYTES + plaintextSize + TAG_SIZE_IN_BYTES;
+  }
+
+  @Override
+  public void encrypt(ByteBuffer plaintext, ByteBuffer aad, ByteBuffer ciphertext)
+      throws GeneralSecurityException {
+    if (plaintext.remaining() > Integer.MAX_VALUE - IV_SIZE_IN_BYTES - TAG_SIZE_IN_BYTES) {
+      throw new GeneralSecurityException("plaintext too long");
+    }
+    SubtleUtil.checkRemaining(
+        ciphertext, IV_SIZE_IN_BYTES + plaintext.remaining() + TAG_SIZE_IN_BYTES);
+    byte[] iv = Random.randBytes(IV_SIZE_IN_BYTES);
+    ciphertext.put(iv);
+
+    Cipher cipher = instance();
+    GCMParameterSpec params = new GCMParameterSpec(8 * TAG_SIZE_IN_BYTES, iv);
+    cipher.init(Cipher.ENCRYPT_MODE, keySpec, params);
+    cipher.updateAAD(aad);
+    int unusedWritten = cipher.doFinal(plaintext, ciphertext);
+  }
+
+  @Override
+  public void decrypt(ByteBuffer ciphertext, ByteBuffer aad, ByteBuffer plaintext)
+      throws GeneralSecurityException {
+    if (ciphertext.remaining() < IV_SIZE_IN_BYTES + TAG_SIZE_IN_BYTES) {
+      throw new GeneralSecurityException("ciphertext too short");
+    }
+    SubtleUtil.checkRemaining(
+        plaintext, ciphertext.remaining() - IV_SIZE_IN_BYTES - TAG_SIZE_IN_BYTES);
+    byte[] iv = new byte[IV_SIZE_IN_BYTES];
+    ciphertext.get(iv);
+    GCMParameterSpec params = new GCMParameterSpec(8 * TAG_SIZE_IN_BYTES, iv);
     Cipher cipher = instance();
     cipher.init(Cipher.DECRYPT_MODE, keySpec, params);
     cipher.updateAAD(aad);
-    return cipher.doFinal(
-        ciphertext, IV_SIZE_IN_BYTES, ciphertext.length - IV_SIZE_IN_BYTES);
+    int unusedWritten = cipher.doFinal(ciphertext, plaintext);
   }
 };
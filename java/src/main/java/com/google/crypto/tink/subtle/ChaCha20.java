@@ -17,6 +17,7 @@
 package com.google.crypto.tink.subtle;
 
 import java.nio.ByteBuffer;
+import java.util.concurrent.Executor;
 
 /**
  * DJB's {@link ChaCha20} stream cipher based on RFC7539 (i.e., uses 96-bit random nonces).
@@ -37,6 +38,17 @@ public class ChaCha20 extends DJBCipher {
     super(key);
   }
 
+  /**
+   * Constructs a new ChaCha20 cipher with the supplied {@code key}, which processes long
+   * messages in parallel on {@code executor}; see {@link DJBCipher#DJBCipher(byte[], Executor)}.
+   *
+   * @throws IllegalArgumentException when {@code key} length is not
+   * {@link DJBCipher#KEY_SIZE_IN_BYTES}.
+   */
+  public ChaCha20(final byte[] key, Executor executor) {
+    super(key, executor);
+  }
+
   static void quarterRound(int[] x, int a, int b, int c, int d) {
     x[a] += x[b]; x[d] = rotateLeft(x[d] ^ x[a], 16);
     x[c] += x[d]; x[b] = rotateLeft(x[b] ^ x[c], 12);
@@ -46,6 +58,10 @@ public class ChaCha20 extends DJBCipher {
 
   @Override
   void shuffle(final int[] state) {
+    shuffleInternal(state);
+  }
+
+  static void shuffleInternal(final int[] state) {
     for (int i = 0; i < 10; i++) {
       quarterRound(state, 0, 4, 8, 12);
       quarterRound(state, 1, 5, 9, 13);
@@ -21,28 +21,49 @@ import java.nio.ByteOrder;
 import java.nio.IntBuffer;
 import java.security.GeneralSecurityException;
 import java.util.Arrays;
+import java.util.concurrent.Executor;
 
 /**
  * Abstract base class for class of DJB's ciphers.
+ *
+ * <p>If constructed with an {@link Executor}, long messages are split into chunks that are
+ * processed in parallel. Each chunk starts at a block boundary and uses the counter of its first
+ * block, so that the output is identical to that of the sequential processing.
  */
-public abstract class DJBCipher implements IndCpaCipher {
+public abstract class DJBCipher implements ZeroCopyIndCpaCipher {
 
   static final int BLOCK_SIZE_IN_INTS = 16;
   public static final int BLOCK_SIZE_IN_BYTES = BLOCK_SIZE_IN_INTS * 4;
   static final int KEY_SIZE_IN_INTS = 8;
   public static final int KEY_SIZE_IN_BYTES = KEY_SIZE_IN_INTS * 4;
+  /** Number of key stream blocks generated before they are XORed with the input. */
+  static final int BLOCKS_PER_ITERATION = 4;
 
   static final int[] SIGMA = toIntArray(ByteBuffer.wrap(
       new byte[]{'e', 'x', 'p', 'a', 'n', 'd', ' ', '3', '2', '-', 'b', 'y', 't', 'e', ' ', 'k' }));
 
   // TODO(anergiz): change this to ImmutableByteArray.
   protected final byte[] key;
+  private final Executor executor;
 
   public DJBCipher(final byte[] key) {
+    this(key, null);
+  }
+
+  /**
+   * Constructs a cipher that processes long messages in parallel on {@code executor}, e.g. a
+   * {@link java.util.concurrent.ForkJoinPool}. The calling thread takes part in the work. If
+   * {@code executor} is null, messages are processed sequentially.
+   *
+   * <p>The input and output buffers of a single call must not partially overlap, unless they are
+   * backed by the same array, in which case the message is processed sequentially.
+   */
+  public DJBCipher(final byte[] key, Executor executor) {
     if (key.length != KEY_SIZE_IN_BYTES) {
       throw new IllegalArgumentException("The key length in bytes must be 32.");
     }
     this.key = Arrays.copyOf(key, key.length);
+    this.executor = executor;
   }
 
   static int rotateLeft(int x, int y) {
@@ -59,12 +80,21 @@ public abstract class DJBCipher implements IndCpaCipher {
   abstract void shuffle(final int[] state);
 
   int[] shuffleAdd(final int[] state) {
-    int[] x = Arrays.copyOf(state, state.length);
-    shuffle(x);
+    int[] x = new int[state.length];
+    shuffleAdd(state, x);
+    return x;
+  }
+
+  /**
+   * Writes the shuffled {@code state} added to {@code state} into {@code output}, which must have
+   * the same length as {@code state}.
+   */
+  void shuffleAdd(final int[] state, int[] output) {
+    System.arraycopy(state, 0, output, 0, state.length);
+    shuffle(output);
     for (int i = 0; i < state.length; i++) {
-      x[i] += state[i];
+      output[i] += state[i];
     }
-    return x;
   }
 
   abstract int[] initialState(byte[] nonce, int counter);
@@ -94,7 +124,8 @@ public abstract class DJBCipher implements IndCpaCipher {
       cachedShuffledState = new int[BLOCK_SIZE_IN_INTS];
       currentPos = 0;
       state = djbCipher.initialState(nonce, counter);
-      shuffledState = djbCipher.shuffleAdd(state);
+      shuffledState = new int[BLOCK_SIZE_IN_INTS];
+      djbCipher.shuffleAdd(state, shuffledState);
       readCalled = false;
     }
 
@@ -112,37 +143,103 @@ public abstract class DJBCipher implements IndCpaCipher {
     }
 
     int[] next() {
+      next(cachedShuffledState, 0);
+      return cachedShuffledState;
+    }
+
+    /**
+     * Writes the next block of the key stream into {@code output} at {@code outputPos}, without
+     * allocating.
+     */
+    void next(int[] output, int outputPos) {
       readCalled = true;
       System.arraycopy(
-          shuffledState, currentPos, cachedShuffledState, 0, BLOCK_SIZE_IN_INTS - currentPos);
+          shuffledState, currentPos, output, outputPos, BLOCK_SIZE_IN_INTS - currentPos);
       djbCipher.incrementCounter(state);
-      shuffledState = djbCipher.shuffleAdd(state);
+      djbCipher.shuffleAdd(state, shuffledState);
       System.arraycopy(
-          shuffledState, 0, cachedShuffledState, BLOCK_SIZE_IN_INTS - currentPos, currentPos);
-      return cachedShuffledState;
+          shuffledState, 0, output, outputPos + BLOCK_SIZE_IN_INTS - currentPos, currentPos);
     }
   }
 
-  void process(ByteBuffer output, final byte[] input, int inPos, StateGen stateGen) {
-    // xor the underlying cipher stream with the input.
-    ByteBuffer buf = ByteBuffer.allocate(BLOCK_SIZE_IN_BYTES).order(ByteOrder.LITTLE_ENDIAN);
-    int pos = inPos;
-    int inLen = input.length - inPos;
-    int todo;
-    while (inLen > 0) {
-      todo = inLen < BLOCK_SIZE_IN_BYTES ? inLen : BLOCK_SIZE_IN_BYTES;
-      buf.asIntBuffer().put(stateGen.next());
-      for (int j = 0; j < todo; j++, pos++) {
-        output.put((byte) (input[pos] ^ buf.get(j)));
+  /**
+   * XORs the key stream of {@code stateGen} with {@code input} into {@code output}.
+   *
+   * <p>The key stream is generated {@link #BLOCKS_PER_ITERATION} blocks at a time into a single
+   * int[], and is XORed with the input eight bytes at a time.
+   */
+  void process(ByteBuffer output, ByteBuffer input, StateGen stateGen) {
+    process(output, input, stateGen, new int[BLOCKS_PER_ITERATION * BLOCK_SIZE_IN_INTS]);
+  }
+
+  /**
+   * Same as {@link #process(ByteBuffer, ByteBuffer, StateGen)}, but uses {@code keyStream}, of
+   * {@code BLOCKS_PER_ITERATION * BLOCK_SIZE_IN_INTS} ints, as scratch space for the key stream.
+   * This lets callers that process a message in pieces avoid an allocation per piece.
+   */
+  void process(ByteBuffer output, ByteBuffer input, StateGen stateGen, int[] keyStream) {
+    int length = input.remaining();
+    // Absolute, little endian views, so that two key stream ints make up one long.
+    ByteBuffer in = input.slice().order(ByteOrder.LITTLE_ENDIAN);
+    ByteBuffer out = output.slice().order(ByteOrder.LITTLE_ENDIAN);
+    int pos = 0;
+    while (pos < length) {
+      int todo = Math.min(length - pos, BLOCKS_PER_ITERATION * BLOCK_SIZE_IN_BYTES);
+      for (int i = 0; i < todo; i += BLOCK_SIZE_IN_BYTES) {
+        stateGen.next(keyStream, i / 4);
       }
-      inLen -= todo;
+      int j = 0;
+      for (; j + 8 <= todo; j += 8) {
+        long k = ((long) keyStream[(j >> 2) + 1] << 32) | (keyStream[j >> 2] & 0xffffffffL);
+        out.putLong(pos + j, in.getLong(pos + j) ^ k);
+      }
+      for (; j < todo; j++) {
+        out.put(pos + j, (byte) (in.get(pos + j) ^ (keyStream[j >> 2] >> ((j & 3) * 8))));
+      }
+      pos += todo;
     }
+    input.position(input.position() + length);
+    output.position(output.position() + length);
+  }
+
+  void process(ByteBuffer output, final byte[] input, int inPos, StateGen stateGen) {
+    process(output, ByteBuffer.wrap(input, inPos, input.length - inPos), stateGen);
   }
 
   void process(ByteBuffer output, final byte[] input, int inPos, final byte[] nonce, int counter) {
     process(output, input, inPos, new StateGen(this, nonce, counter));
   }
 
+  /**
+   * XORs the key stream for {@code nonce}, starting at the block {@code counter}, with the
+   * remaining bytes of {@code input} into {@code output}. Long messages are processed in parallel
+   * if this cipher has an executor.
+   */
+  void process(ByteBuffer output, ByteBuffer input, final byte[] nonce, final int counter)
+      throws GeneralSecurityException {
+    int inputLength = input.remaining();
+    if (!ParallelCtr.shouldSplit(executor, inputLength) || ParallelCtr.mayOverlap(input, output)) {
+      process(output, input, new StateGen(this, nonce, counter));
+      return;
+    }
+    final ByteBuffer in = input.slice();
+    final ByteBuffer out = output.slice();
+    ParallelCtr.run(executor, inputLength, new ParallelCtr.Chunk() {
+      @Override
+      public void process(int offset, int length) {
+        ByteBuffer chunkInput = in.duplicate();
+        chunkInput.limit(offset + length);
+        chunkInput.position(offset);
+        ByteBuffer chunkOutput = out.duplicate();
+        chunkOutput.position(offset);
+        DJBCipher.this.process(chunkOutput, chunkInput,
+            new StateGen(DJBCipher.this, nonce, counter + offset / BLOCK_SIZE_IN_BYTES));
+      }
+    });
+    input.position(input.limit());
+    output.position(output.position() + inputLength);
+  }
+
   @Override
   public byte[] encrypt(final byte[] plaintext) throws GeneralSecurityException {
     if (plaintext.length > Integer.MAX_VALUE - nonceSizeInBytes()) {
@@ -151,7 +248,7 @@ public abstract class DJBCipher implements IndCpaCipher {
     byte[] nonce = Random.randBytes(nonceSizeInBytes());
     ByteBuffer ciphertext = ByteBuffer.allocate(plaintext.length + nonceSizeInBytes());
     ciphertext.put(nonce);
-    process(ciphertext, plaintext, 0, nonce, 1);
+    process(ciphertext, ByteBuffer.wrap(plaintext), nonce, 1);
     return ciphertext.array();
   }
 
@@ -162,7 +259,8 @@ public abstract class DJBCipher implements IndCpaCipher {
     byte[] nonce = new byte[nonceSizeInBytes()];
     System.arraycopy(ciphertext, startPos, nonce, 0, nonceSizeInBytes());
     ByteBuffer plaintext = ByteBuffer.allocate(ciphertext.length - nonceSizeInBytes() - startPos);
-    process(plaintext, ciphertext, startPos + nonceSizeInBytes(), nonce, 1);
+    process(plaintext, ByteBuffer.wrap(ciphertext, startPos + nonceSizeInBytes(),
+        ciphertext.length - startPos - nonceSizeInBytes()), nonce, 1);
     return plaintext.array();
   }
 
@@ -170,4 +268,33 @@ public abstract class DJBCipher implements IndCpaCipher {
   public byte[] decrypt(final byte[] ciphertext) throws GeneralSecurityException {
     return decrypt(ciphertext, 0);
   }
+
+  @Override
+  public int ciphertextSize(int plaintextSize) {
+    return nonceSizeInBytes() + plaintextSize;
+  }
+
+  @Override
+  public void encrypt(ByteBuffer plaintext, ByteBuffer ciphertext)
+      throws GeneralSecurityException {
+    if (plaintext.remaining() > Integer.MAX_VALUE - nonceSizeInBytes()) {
+      throw new GeneralSecurityException("plaintext too long");
+    }
+    SubtleUtil.checkRemaining(ciphertext, nonceSizeInBytes() + plaintext.remaining());
+    byte[] nonce = Random.randBytes(nonceSizeInBytes());
+    ciphertext.put(nonce);
+    process(ciphertext, plaintext, nonce, 1);
+  }
+
+  @Override
+  public void decrypt(ByteBuffer ciphertext, ByteBuffer plaintext)
+      throws GeneralSecurityException {
+    if (ciphertext.remaining() < nonceSizeInBytes()) {
+      throw new GeneralSecurityException("ciphertext too short");
+    }
+    SubtleUtil.checkRemaining(plaintext, ciphertext.remaining() - nonceSizeInBytes());
+    byte[] nonce = new byte[nonceSizeInBytes()];
+    ciphertext.get(nonce);
+    process(plaintext, ciphertext, nonce, 1);
+  }
 }
\ No newline at end of file
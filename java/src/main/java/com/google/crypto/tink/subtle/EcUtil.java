@@ -39,43 +39,50 @@ public final class EcUtil {
     UNCOMPRESSED
   }
 
+  // ECParameterSpec is immutable, so each curve is parsed only once and shared by all callers.
+  private static final ECParameterSpec NIST_P256_PARAMS = getNistCurveSpec(
+      "115792089210356248762697446949407573530086143415290314195533631308867097853951",
+      "115792089210356248762697446949407573529996955224135760342422259061068512044369",
+      "5ac635d8aa3a93e7b3ebbd55769886bc651d06b0cc53b0f63bce3c3e27d2604b",
+      "6b17d1f2e12c4247f8bce6e563a440f277037d812deb33a0f4a13945d898c296",
+      "4fe342e2fe1a7f9b8ee7eb4a7c0f9e162bce33576b315ececbb6406837bf51f5");
+
   public static ECParameterSpec getNistP256Params() {
-    return getNistCurveSpec(
-        "115792089210356248762697446949407573530086143415290314195533631308867097853951",
-        "115792089210356248762697446949407573529996955224135760342422259061068512044369",
-        "5ac635d8aa3a93e7b3ebbd55769886bc651d06b0cc53b0f63bce3c3e27d2604b",
-        "6b17d1f2e12c4247f8bce6e563a440f277037d812deb33a0f4a13945d898c296",
-        "4fe342e2fe1a7f9b8ee7eb4a7c0f9e162bce33576b315ececbb6406837bf51f5");
+    return NIST_P256_PARAMS;
   }
 
+  private static final ECParameterSpec NIST_P384_PARAMS = getNistCurveSpec(
+      "3940200619639447921227904010014361380507973927046544666794829340"
+      + "4245721771496870329047266088258938001861606973112319",
+      "3940200619639447921227904010014361380507973927046544666794690527"
+      + "9627659399113263569398956308152294913554433653942643",
+      "b3312fa7e23ee7e4988e056be3f82d19181d9c6efe8141120314088f5013875a"
+      + "c656398d8a2ed19d2a85c8edd3ec2aef",
+      "aa87ca22be8b05378eb1c71ef320ad746e1d3b628ba79b9859f741e082542a38"
+      + "5502f25dbf55296c3a545e3872760ab7",
+      "3617de4a96262c6f5d9e98bf9292dc29f8f41dbd289a147ce9da3113b5f0b8c0"
+      + "0a60b1ce1d7e819d7a431d7c90ea0e5f");
+
   public static ECParameterSpec getNistP384Params() {
-    return getNistCurveSpec(
-        "3940200619639447921227904010014361380507973927046544666794829340"
-        + "4245721771496870329047266088258938001861606973112319",
-        "3940200619639447921227904010014361380507973927046544666794690527"
-        + "9627659399113263569398956308152294913554433653942643",
-        "b3312fa7e23ee7e4988e056be3f82d19181d9c6efe8141120314088f5013875a"
-        + "c656398d8a2ed19d2a85c8edd3ec2aef",
-        "aa87ca22be8b05378eb1c71ef320ad746e1d3b628ba79b9859f741e082542a38"
-        + "5502f25dbf55296c3a545e3872760ab7",
-        "3617de4a96262c6f5d9e98bf9292dc29f8f41dbd289a147ce9da3113b5f0b8c0"
-        + "0a60b1ce1d7e819d7a431d7c90ea0e5f");
+    return NIST_P384_PARAMS;
   }
 
+  private static final ECParameterSpec NIST_P521_PARAMS = getNistCurveSpec(
+      "6864797660130609714981900799081393217269435300143305409394463459"
+      + "18554318339765605212255964066145455497729631139148085803712198"
+      + "7999716643812574028291115057151",
+      "6864797660130609714981900799081393217269435300143305409394463459"
+      + "18554318339765539424505774633321719753296399637136332111386476"
+      + "8612440380340372808892707005449",
+      "051953eb9618e1c9a1f929a21a0b68540eea2da725b99b315f3b8b489918ef10"
+      + "9e156193951ec7e937b1652c0bd3bb1bf073573df883d2c34f1ef451fd46b503f00",
+      "c6858e06b70404e9cd9e3ecb662395b4429c648139053fb521f828af606b4d3d"
+      + "baa14b5e77efe75928fe1dc127a2ffa8de3348b3c1856a429bf97e7e31c2e5bd66",
+      "11839296a789a3bc0045c8a5fb42c7d1bd998f54449579b446817afbd17273e6"
+      + "62c97ee72995ef42640c550b9013fad0761353c7086a272c24088be94769fd16650");
+
   public static ECParameterSpec getNistP521Params() {
-    return getNistCurveSpec(
-        "6864797660130609714981900799081393217269435300143305409394463459"
-        + "18554318339765605212255964066145455497729631139148085803712198"
-        + "7999716643812574028291115057151",
-        "6864797660130609714981900799081393217269435300143305409394463459"
-        + "18554318339765539424505774633321719753296399637136332111386476"
-        + "8612440380340372808892707005449",
-        "051953eb9618e1c9a1f929a21a0b68540eea2da725b99b315f3b8b489918ef10"
-        + "9e156193951ec7e937b1652c0bd3bb1bf073573df883d2c34f1ef451fd46b503f00",
-        "c6858e06b70404e9cd9e3ecb662395b4429c648139053fb521f828af606b4d3d"
-        + "baa14b5e77efe75928fe1dc127a2ffa8de3348b3c1856a429bf97e7e31c2e5bd66",
-        "11839296a789a3bc0045c8a5fb42c7d1bd998f54449579b446817afbd17273e6"
-        + "62c97ee72995ef42640c550b9013fad0761353c7086a272c24088be94769fd16650");
+    return NIST_P521_PARAMS;
   }
 
   /**
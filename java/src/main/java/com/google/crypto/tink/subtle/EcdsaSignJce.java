@@ -35,7 +35,7 @@ public final class EcdsaSignJce implements PublicKeySign {
 
   @Override
   public byte[] sign(final byte[] data) throws GeneralSecurityException {
-    Signature signer = EngineFactory.SIGNATURE.getInstance(signatureAlgorithm);
+    Signature signer = EngineFactory.SIGNATURE.getCachedInstance(signatureAlgorithm);
     signer.initSign(privateKey);
     signer.update(data);
     return signer.sign();
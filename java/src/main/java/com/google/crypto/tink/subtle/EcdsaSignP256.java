@@ -0,0 +1,46 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.subtle;
+
+import com.google.crypto.tink.PublicKeySign;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.interfaces.ECPrivateKey;
+
+/**
+ * Ecdsa signature's signing over P-256 with {@link P256}, instead of the JCE. It produces the
+ * same DER-encoded signatures as {@link EcdsaSignJce}.
+ */
+public final class EcdsaSignP256 implements PublicKeySign {
+  private final byte[] privateScalar;
+  private final String hashAlgorithm;
+
+  public EcdsaSignP256(final ECPrivateKey priv, String signatureAlgorithm)
+      throws GeneralSecurityException {
+    if (!P256.isP256(priv.getParams())) {
+      throw new GeneralSecurityException("EcdsaSignP256 only supports the curve P-256");
+    }
+    this.hashAlgorithm = EcdsaVerifyP256.toHashAlgorithm(signatureAlgorithm);
+    this.privateScalar = P256.toScalar(priv.getS());
+  }
+
+  @Override
+  public byte[] sign(final byte[] data) throws GeneralSecurityException {
+    MessageDigest digest = EngineFactory.MESSAGE_DIGEST.getInstance(hashAlgorithm);
+    return P256.sign(digest.digest(data), privateScalar);
+  }
+}
@@ -16,7 +16,7 @@
 
 package com.google.crypto.tink.subtle;
 
-import com.google.crypto.tink.PublicKeyVerify;
+import com.google.crypto.tink.ZeroCopyPublicKeyVerify;
 import java.security.GeneralSecurityException;
 import java.security.Signature;
 import java.security.interfaces.ECPublicKey;
@@ -24,7 +24,7 @@ import java.security.interfaces.ECPublicKey;
 /**
  * Ecdsa signature's verification in JCE.
  */
-public final class EcdsaVerifyJce implements PublicKeyVerify {
+public final class EcdsaVerifyJce implements ZeroCopyPublicKeyVerify {
   private final ECPublicKey publicKey;
   private final String signatureAlgorithm;
 
@@ -38,12 +38,19 @@ public final class EcdsaVerifyJce implements PublicKeyVerify {
   @Override
   public void verify(final byte[] signature, final byte[] data)
       throws GeneralSecurityException {
-    Signature verifier = EngineFactory.SIGNATURE.getInstance(signatureAlgorithm);
+    verify(signature, 0, signature.length, data);
+  }
+
+  @Override
+  public void verify(final byte[] signature, int offset, int length, final byte[] data)
+      throws GeneralSecurityException {
+    SubtleUtil.checkRange(signature, offset, length);
+    Signature verifier = EngineFactory.SIGNATURE.getCachedInstance(signatureAlgorithm);
     verifier.initVerify(publicKey);
     verifier.update(data);
     boolean verified = false;
     try {
-      verified = verifier.verify(signature);
+      verified = verifier.verify(signature, offset, length);
     } catch (java.lang.RuntimeException ex) {
       verified = false;
     }
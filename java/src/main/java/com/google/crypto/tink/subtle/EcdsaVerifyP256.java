@@ -0,0 +1,73 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.subtle;
+
+import com.google.crypto.tink.ZeroCopyPublicKeyVerify;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.interfaces.ECPublicKey;
+
+/**
+ * Ecdsa signature's verification over P-256 with {@link P256}, instead of the JCE. It accepts
+ * the DER-encoded signatures produced by {@link EcdsaSignJce}, and rejects encodings that are
+ * not strict DER.
+ */
+public final class EcdsaVerifyP256 implements ZeroCopyPublicKeyVerify {
+  private final P256.Table publicKeyTable;
+  private final String hashAlgorithm;
+
+  public EcdsaVerifyP256(final ECPublicKey pubKey, String signatureAlgorithm)
+      throws GeneralSecurityException {
+    if (!P256.isP256(pubKey.getParams())) {
+      throw new GeneralSecurityException("EcdsaVerifyP256 only supports the curve P-256");
+    }
+    this.hashAlgorithm = toHashAlgorithm(signatureAlgorithm);
+    // Checks that the point is on the curve, and precomputes its multiples once for all
+    // verifications.
+    this.publicKeyTable = new P256.Table(P256.decodePoint(pubKey.getW()));
+  }
+
+  @Override
+  public void verify(final byte[] signature, final byte[] data)
+      throws GeneralSecurityException {
+    verify(signature, 0, signature.length, data);
+  }
+
+  @Override
+  public void verify(final byte[] signature, int offset, int length, final byte[] data)
+      throws GeneralSecurityException {
+    SubtleUtil.checkRange(signature, offset, length);
+    MessageDigest digest = EngineFactory.MESSAGE_DIGEST.getInstance(hashAlgorithm);
+    if (!P256.verify(digest.digest(data), signature, offset, length, publicKeyTable)) {
+      throw new GeneralSecurityException("Invalid signature");
+    }
+  }
+
+  /**
+   * @return the name of the hash function used by a JCE ECDSA algorithm, e.g. "SHA-256" for
+   * "SHA256WithECDSA".
+   */
+  static String toHashAlgorithm(String signatureAlgorithm) throws NoSuchAlgorithmException {
+    if (signatureAlgorithm.equalsIgnoreCase("SHA256WithECDSA")) {
+      return "SHA-256";
+    } else if (signatureAlgorithm.equalsIgnoreCase("SHA512WithECDSA")) {
+      return "SHA-512";
+    }
+    throw new NoSuchAlgorithmException("unsupported signature algorithm: " + signatureAlgorithm);
+  }
+}
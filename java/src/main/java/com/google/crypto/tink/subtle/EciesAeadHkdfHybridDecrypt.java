@@ -19,8 +19,8 @@ package com.google.crypto.tink.subtle;
 import com.google.crypto.tink.Aead;
 import com.google.crypto.tink.CommonProto.EcPointFormat;
 import com.google.crypto.tink.CommonProto.HashType;
-import com.google.crypto.tink.HybridDecrypt;
 import com.google.crypto.tink.Util;
+import com.google.crypto.tink.ZeroCopyHybridDecrypt;
 import java.security.GeneralSecurityException;
 import java.security.interfaces.ECPrivateKey;
 import java.security.spec.EllipticCurve;
@@ -30,7 +30,7 @@ import java.util.Arrays;
  * ECIES encryption with HKDF-KEM (key encapsulation mechanism) and
  * AEAD-DEM (data encapsulation mechanism).
  */
-public final class EciesAeadHkdfHybridDecrypt implements HybridDecrypt {
+public final class EciesAeadHkdfHybridDecrypt implements ZeroCopyHybridDecrypt {
   private static final byte[] EMPTY_AAD = new byte[0];
   private final ECPrivateKey recipientPrivateKey;
   private final EciesHkdfRecipientKem recipientKem;
@@ -54,15 +54,23 @@ public final class EciesAeadHkdfHybridDecrypt implements HybridDecrypt {
   @Override
   public byte[] decrypt(final byte[] ciphertext, final byte[] contextInfo)
       throws GeneralSecurityException {
+    return decrypt(ciphertext, 0, ciphertext.length, contextInfo);
+  }
+
+  @Override
+  public byte[] decrypt(final byte[] ciphertext, int offset, int length,
+      final byte[] contextInfo) throws GeneralSecurityException {
+    SubtleUtil.checkRange(ciphertext, offset, length);
     EllipticCurve curve = recipientPrivateKey.getParams().getCurve();
     int headerSize = EcUtil.encodingSizeInBytes(curve, ecPointFormat);
-    if (ciphertext.length < headerSize) {
+    if (length < headerSize) {
       throw new GeneralSecurityException("ciphertext too short");
     }
-    byte[] kemBytes = Arrays.copyOfRange(ciphertext, 0, headerSize);
+    byte[] kemBytes = Arrays.copyOfRange(ciphertext, offset, offset + headerSize);
     byte[] symmetricKey = recipientKem.generateKey(kemBytes, hkdfHmacAlgo, hkdfSalt,
         contextInfo, demHelper.getSymmetricKeySizeInBytes(), ecPointFormat);
     Aead aead = demHelper.getAead(symmetricKey);
-    return aead.decrypt(Arrays.copyOfRange(ciphertext, headerSize, ciphertext.length), EMPTY_AAD);
+    return ZeroCopyUtil.decrypt(
+        aead, ciphertext, offset + headerSize, length - headerSize, EMPTY_AAD);
   }
 }
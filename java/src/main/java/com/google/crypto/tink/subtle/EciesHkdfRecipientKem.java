@@ -23,6 +23,7 @@ import java.security.interfaces.ECPublicKey;
 import java.security.spec.ECParameterSpec;
 import java.security.spec.ECPoint;
 import java.security.spec.ECPublicKeySpec;
+import java.util.Arrays;
 import javax.crypto.KeyAgreement;
 
 /**
@@ -39,6 +40,9 @@ public final class EciesHkdfRecipientKem {
      final byte[] hkdfInfo, int keySizeInBytes, EcUtil.PointFormat pointFormat)
        throws GeneralSecurityException {
     ECParameterSpec spec = recipientPrivateKey.getParams();
+    if (P256.isEnabled() && P256.isP256(spec)) {
+      return generateP256Key(kemBytes, hmacAlgo, hkdfSalt, hkdfInfo, keySizeInBytes, pointFormat);
+    }
     ECPoint ephemeralPublicPoint = EcUtil.ecPointDecode(spec.getCurve(), pointFormat, kemBytes);
     ECPublicKeySpec publicKeySpec = new ECPublicKeySpec(ephemeralPublicPoint, spec);
     KeyFactory kf = EngineFactory.KEY_FACTORY.getInstance("EC");
@@ -48,6 +52,24 @@ public final class EciesHkdfRecipientKem {
         sharedSecret, hmacAlgo, hkdfSalt, hkdfInfo, keySizeInBytes);
   }
 
+  /**
+   * Same as {@link #generateKey}, with {@link P256} instead of the JCE.
+   */
+  private byte[] generateP256Key(byte[] kemBytes, String hmacAlgo, final byte[] hkdfSalt,
+      final byte[] hkdfInfo, int keySizeInBytes, EcUtil.PointFormat pointFormat)
+      throws GeneralSecurityException {
+    // Decoding checks that the ephemeral public key is on the curve.
+    P256.Table table = new P256.Table(P256.decodePoint(kemBytes, pointFormat));
+    byte[] scalar = P256.toScalar(recipientPrivateKey.getS());
+    try {
+      byte[] sharedSecret = P256.computeSharedSecret(scalar, table);
+      return Hkdf.computeEciesHkdfSymmetricKey(kemBytes,
+          sharedSecret, hmacAlgo, hkdfSalt, hkdfInfo, keySizeInBytes);
+    } finally {
+      Arrays.fill(scalar, (byte) 0);
+    }
+  }
+
   private byte[] getSharedSecret(final ECPublicKey publicKey)
       throws GeneralSecurityException {
     ECParameterSpec spec = recipientPrivateKey.getParams();
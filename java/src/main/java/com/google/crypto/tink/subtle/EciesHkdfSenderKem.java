@@ -24,6 +24,7 @@ import java.security.interfaces.ECPrivateKey;
 import java.security.interfaces.ECPublicKey;
 import java.security.spec.ECParameterSpec;
 import java.security.spec.ECPoint;
+import java.util.Arrays;
 import javax.crypto.KeyAgreement;
 
 /**
@@ -31,6 +32,9 @@ import javax.crypto.KeyAgreement;
  */
 public final class EciesHkdfSenderKem {
   private ECPublicKey recipientPublicKey;
+  private final EphemeralKeyPairProducer producer;
+  // The multiples of the recipient's public key, if P256 is used. Computed on first use.
+  private volatile P256.Table recipientTable;
 
   /**
    * A container for key parts generated by the KEM.
@@ -59,12 +63,29 @@ public final class EciesHkdfSenderKem {
     }
   }
 
+  /**
+   * Creates a KEM that takes its ephemeral keys from {@code EphemeralKeyPairProducer.getDefault()}
+   * if it is set, and otherwise generates them inline.
+   */
   public EciesHkdfSenderKem(final ECPublicKey recipientPublicKey) {
+    this(recipientPublicKey, null /* producer */);
+  }
+
+  /**
+   * Creates a KEM that takes its ephemeral keys from {@code producer}, or from
+   * {@code EphemeralKeyPairProducer.getDefault()} if {@code producer} is null.
+   */
+  public EciesHkdfSenderKem(final ECPublicKey recipientPublicKey,
+      EphemeralKeyPairProducer producer) {
     this.recipientPublicKey = recipientPublicKey;
+    this.producer = producer;
   }
 
   public KemKey generateKey(String hmacAlgo, final byte[] hkdfSalt, final byte[] hkdfInfo,
       int keySizeInBytes, EcUtil.PointFormat pointFormat) throws GeneralSecurityException {
+    if (P256.isEnabled() && P256.isP256(recipientPublicKey.getParams())) {
+      return generateP256Key(hmacAlgo, hkdfSalt, hkdfInfo, keySizeInBytes, pointFormat);
+    }
     KeyPair ephemeralKeyPair = generateEphemeralKey();
     ECPublicKey ephemeralPublicKey = (ECPublicKey) ephemeralKeyPair.getPublic();
     ECPrivateKey ephemeralPrivateKey = (ECPrivateKey) ephemeralKeyPair.getPrivate();
@@ -77,9 +98,37 @@ public final class EciesHkdfSenderKem {
     return new KemKey(kemBytes, symmetricKey);
   }
 
+  /**
+   * Same as {@link #generateKey}, with {@link P256} instead of the JCE. The ephemeral key is
+   * generated inline, since this takes a single multiplication of the base point.
+   */
+  private KemKey generateP256Key(String hmacAlgo, final byte[] hkdfSalt, final byte[] hkdfInfo,
+      int keySizeInBytes, EcUtil.PointFormat pointFormat) throws GeneralSecurityException {
+    P256.Table table = recipientTable;
+    if (table == null) {
+      table = new P256.Table(P256.decodePoint(recipientPublicKey.getW()));
+      recipientTable = table;
+    }
+    byte[] ephemeralScalar = P256.newScalar();
+    try {
+      byte[] kemBytes = P256.encodePoint(P256.scalarMultBase(ephemeralScalar), pointFormat);
+      byte[] sharedSecret = P256.computeSharedSecret(ephemeralScalar, table);
+      byte[] symmetricKey = Hkdf.computeEciesHkdfSymmetricKey(kemBytes, sharedSecret,
+          hmacAlgo, hkdfSalt, hkdfInfo, keySizeInBytes);
+      return new KemKey(kemBytes, symmetricKey);
+    } finally {
+      Arrays.fill(ephemeralScalar, (byte) 0);
+    }
+  }
+
   private KeyPair generateEphemeralKey()
       throws GeneralSecurityException {
     ECParameterSpec spec = recipientPublicKey.getParams();
+    EphemeralKeyPairProducer producer =
+        this.producer != null ? this.producer : EphemeralKeyPairProducer.getDefault();
+    if (producer != null) {
+      return producer.take(spec);
+    }
     KeyPairGenerator keyGen = EngineFactory.KEY_PAIR_GENERATOR.getInstance("EC");
     keyGen.initialize(spec);
     return keyGen.generateKeyPair();
@@ -0,0 +1,67 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.subtle;
+
+import com.google.crypto.tink.Aead;
+import com.google.crypto.tink.CommonProto.HashType;
+import com.google.crypto.tink.Util;
+import com.google.crypto.tink.ZeroCopyHybridDecrypt;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+
+/**
+ * ECIES decryption over Curve25519, with HKDF-KEM (key encapsulation mechanism) and
+ * AEAD-DEM (data encapsulation mechanism).
+ */
+public final class EciesX25519AeadHkdfHybridDecrypt implements ZeroCopyHybridDecrypt {
+  private static final byte[] EMPTY_AAD = new byte[0];
+  private final EciesX25519HkdfRecipientKem recipientKem;
+  private final String hkdfHmacAlgo;
+  private final byte[] hkdfSalt;
+  private final EciesAeadHkdfDemHelper demHelper;
+
+  public EciesX25519AeadHkdfHybridDecrypt(final byte[] recipientPrivateKey,
+      final byte[] hkdfSalt, HashType hkdfHashType, EciesAeadHkdfDemHelper demHelper)
+      throws GeneralSecurityException {
+    this.recipientKem = new EciesX25519HkdfRecipientKem(recipientPrivateKey);
+    this.hkdfSalt = hkdfSalt;
+    this.hkdfHmacAlgo = Util.hashToHmacAlgorithmName(hkdfHashType);
+    this.demHelper = demHelper;
+  }
+
+  @Override
+  public byte[] decrypt(final byte[] ciphertext, final byte[] contextInfo)
+      throws GeneralSecurityException {
+    return decrypt(ciphertext, 0, ciphertext.length, contextInfo);
+  }
+
+  @Override
+  public byte[] decrypt(final byte[] ciphertext, int offset, int length,
+      final byte[] contextInfo) throws GeneralSecurityException {
+    SubtleUtil.checkRange(ciphertext, offset, length);
+    int headerSize = Curve25519.FIELD_LEN;
+    if (length < headerSize) {
+      throw new GeneralSecurityException("ciphertext too short");
+    }
+    byte[] kemBytes = Arrays.copyOfRange(ciphertext, offset, offset + headerSize);
+    byte[] symmetricKey = recipientKem.generateKey(kemBytes, hkdfHmacAlgo, hkdfSalt,
+        contextInfo, demHelper.getSymmetricKeySizeInBytes());
+    Aead aead = demHelper.getAead(symmetricKey);
+    return ZeroCopyUtil.decrypt(
+        aead, ciphertext, offset + headerSize, length - headerSize, EMPTY_AAD);
+  }
+}
@@ -0,0 +1,68 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.subtle;
+
+import java.security.GeneralSecurityException;
+import java.security.InvalidKeyException;
+import java.util.Arrays;
+
+/**
+ * HKDF-based KEM (key encapsulation mechanism) for ECIES recipient, over Curve25519. The KEM
+ * bytes are the 32-byte public value of the sender's ephemeral key (cf. RFC 7748).
+ */
+public final class EciesX25519HkdfRecipientKem {
+  private final byte[] recipientPrivateKey;
+
+  public EciesX25519HkdfRecipientKem(final byte[] recipientPrivateKey)
+      throws GeneralSecurityException {
+    if (recipientPrivateKey.length != Curve25519.FIELD_LEN) {
+      throw new InvalidKeyException("private key must have 32 bytes");
+    }
+    this.recipientPrivateKey = Arrays.copyOf(recipientPrivateKey, Curve25519.FIELD_LEN);
+  }
+
+  public byte[] generateKey(byte[] kemBytes, String hmacAlgo, final byte[] hkdfSalt,
+      final byte[] hkdfInfo, int keySizeInBytes) throws GeneralSecurityException {
+    if (kemBytes.length != Curve25519.FIELD_LEN) {
+      throw new GeneralSecurityException("invalid KEM bytes");
+    }
+    byte[] sharedSecret = getSharedSecret(recipientPrivateKey, kemBytes);
+    try {
+      return Hkdf.computeEciesHkdfSymmetricKey(kemBytes,
+          sharedSecret, hmacAlgo, hkdfSalt, hkdfInfo, keySizeInBytes);
+    } finally {
+      Arrays.fill(sharedSecret, (byte) 0);
+    }
+  }
+
+  /**
+   * Computes X25519 of {@code privateKey} and {@code publicKey}, and rejects public keys of small
+   * order, for which the shared secret doesn't depend on {@code privateKey}.
+   */
+  static byte[] getSharedSecret(final byte[] privateKey, final byte[] publicKey)
+      throws GeneralSecurityException {
+    byte[] sharedSecret = Curve25519.x25519(privateKey, publicKey);
+    int acc = 0;
+    for (int i = 0; i < sharedSecret.length; i++) {
+      acc |= sharedSecret[i];
+    }
+    if (acc == 0) {
+      throw new InvalidKeyException("invalid public key: small order point");
+    }
+    return sharedSecret;
+  }
+}
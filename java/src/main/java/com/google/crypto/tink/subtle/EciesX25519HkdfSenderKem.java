@@ -0,0 +1,57 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.subtle;
+
+import java.security.GeneralSecurityException;
+import java.security.InvalidKeyException;
+import java.util.Arrays;
+
+/**
+ * HKDF-based KEM (key encapsulation mechanism) for ECIES sender, over Curve25519. The KEM bytes
+ * are the 32-byte public value of a fresh ephemeral key (cf. RFC 7748), instead of an encoded
+ * point on a NIST curve as in {@link EciesHkdfSenderKem}.
+ */
+public final class EciesX25519HkdfSenderKem {
+  private final byte[] recipientPublicKey;
+
+  public EciesX25519HkdfSenderKem(final byte[] recipientPublicKey)
+      throws GeneralSecurityException {
+    if (recipientPublicKey.length != Curve25519.FIELD_LEN) {
+      throw new InvalidKeyException("public key must have 32 bytes");
+    }
+    this.recipientPublicKey = Arrays.copyOf(recipientPublicKey, Curve25519.FIELD_LEN);
+  }
+
+  public EciesHkdfSenderKem.KemKey generateKey(String hmacAlgo, final byte[] hkdfSalt,
+      final byte[] hkdfInfo, int keySizeInBytes) throws GeneralSecurityException {
+    byte[] ephemeralPrivateKey = Curve25519.generatePrivateKey();
+    byte[] sharedSecret = null;
+    try {
+      byte[] kemBytes = Curve25519.x25519PublicFromPrivate(ephemeralPrivateKey);
+      sharedSecret =
+          EciesX25519HkdfRecipientKem.getSharedSecret(ephemeralPrivateKey, recipientPublicKey);
+      byte[] symmetricKey = Hkdf.computeEciesHkdfSymmetricKey(kemBytes, sharedSecret,
+          hmacAlgo, hkdfSalt, hkdfInfo, keySizeInBytes);
+      return new EciesHkdfSenderKem.KemKey(kemBytes, symmetricKey);
+    } finally {
+      Arrays.fill(ephemeralPrivateKey, (byte) 0);
+      if (sharedSecret != null) {
+        Arrays.fill(sharedSecret, (byte) 0);
+      }
+    }
+  }
+}
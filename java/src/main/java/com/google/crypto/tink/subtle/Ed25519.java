@@ -24,9 +24,15 @@ import static com.google.crypto.tink.subtle.Ed25519Constants.D;
 import static com.google.crypto.tink.subtle.Ed25519Constants.D2;
 import static com.google.crypto.tink.subtle.Ed25519Constants.SQRTM1;
 
+import java.nio.ByteBuffer;
 import java.security.GeneralSecurityException;
 import java.security.MessageDigest;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * This implementation is based on the ed25519/ref10 implementation in NaCl.
@@ -640,6 +646,35 @@ public final class Ed25519 {
     return r;
   }
 
+  /**
+   * Returns point, 3*point, 5*point, ..., 15*point, i.e. the multiples of {@code point} that
+   * are needed for the odd digits in [-15, 15] produced by {@link #slide(byte[])}.
+   */
+  private static CachedXYZT[] oddMultiples(XYZT point) {
+    CachedXYZT[] multiples = new CachedXYZT[8];
+    multiples[0] = new CachedXYZT(point);
+    PartialXYZT t = new PartialXYZT();
+    doubleXYZT(t, point);
+    XYZT doublePoint = new XYZT(t);
+    for (int i = 1; i < multiples.length; i++) {
+      add(t, doublePoint, multiples[i - 1]);
+      multiples[i] = new CachedXYZT(new XYZT(t));
+    }
+    return multiples;
+  }
+
+  /**
+   * Adds {@code digit}*P to {@code t}, where {@code multiples} are the odd multiples of P and
+   * {@code digit} is an odd value in [-15, 15] or zero.
+   */
+  private static void addDigit(PartialXYZT t, XYZT u, byte digit, CachedXYT[] multiples) {
+    if (digit > 0) {
+      add(t, XYZT.fromPartialXYZT(u, t), multiples[digit / 2]);
+    } else if (digit < 0) {
+      sub(t, XYZT.fromPartialXYZT(u, t), multiples[-digit / 2]);
+    }
+  }
+
   /**
    * Computes {@code a}*{@code pointA}+{@code b}*B
    * where a = a[0]+256*a[1]+...+256^31*a[31].
@@ -650,20 +685,10 @@ public final class Ed25519 {
    * of signatures.
    */
   private static XYZ doubleScalarMultVarTime(byte[] a, XYZT pointA, byte[] b) {
-    // pointA, 3*pointA, 5*pointA, 7*pointA, 9*pointA, 11*pointA, 13*pointA, 15*pointA
-    CachedXYZT[] pointAArray = new CachedXYZT[8];
-    pointAArray[0] = new CachedXYZT(pointA);
-    PartialXYZT t = new PartialXYZT();
-    doubleXYZT(t, pointA);
-    XYZT doubleA = new XYZT(t);
-    for (int i = 1; i < pointAArray.length; i++) {
-      add(t, doubleA, pointAArray[i - 1]);
-      pointAArray[i] = new CachedXYZT(new XYZT(t));
-    }
-
+    CachedXYZT[] pointAArray = oddMultiples(pointA);
     byte[] aSlide = slide(a);
     byte[] bSlide = slide(b);
-    t = new PartialXYZT(NEUTRAL);
+    PartialXYZT t = new PartialXYZT(NEUTRAL);
     XYZT u = new XYZT();
     int i = 255;
     for (; i >= 0; i--) {
@@ -673,16 +698,8 @@ public final class Ed25519 {
     }
     for (; i >= 0; i--) {
       doubleXYZ(t, new XYZ(t));
-      if (aSlide[i] > 0) {
-        add(t, XYZT.fromPartialXYZT(u, t), pointAArray[aSlide[i] / 2]);
-      } else if (aSlide[i] < 0) {
-        sub(t, XYZT.fromPartialXYZT(u, t), pointAArray[-aSlide[i] / 2]);
-      }
-      if (bSlide[i] > 0) {
-        add(t, XYZT.fromPartialXYZT(u, t), B2[bSlide[i] / 2]);
-      } else if (bSlide[i] < 0) {
-        sub(t, XYZT.fromPartialXYZT(u, t), B2[-bSlide[i] / 2]);
-      }
+      addDigit(t, u, aSlide[i], pointAArray);
+      addDigit(t, u, bSlide[i], B2);
     }
 
     return new XYZ(t);
@@ -1461,7 +1478,8 @@ public final class Ed25519 {
 
   static byte[] getHashedScalar(final byte[] privateKey)
       throws GeneralSecurityException {
-    MessageDigest digest = EngineFactory.MESSAGE_DIGEST.getInstance("SHA-512");
+    MessageDigest digest = EngineFactory.MESSAGE_DIGEST.getCachedInstance("SHA-512");
+    digest.reset();
     digest.update(privateKey, 0, FIELD_LEN);
     byte[] h = digest.digest();
     // https://tools.ietf.org/html/rfc8032#section-5.1.2.
@@ -1486,7 +1504,8 @@ public final class Ed25519 {
    */
   static byte[] sign(final byte[] message, final byte[] publicKey, final byte[] hashedPrivateKey)
       throws GeneralSecurityException {
-    MessageDigest digest = EngineFactory.MESSAGE_DIGEST.getInstance("SHA-512");
+    MessageDigest digest = EngineFactory.MESSAGE_DIGEST.getCachedInstance("SHA-512");
+    digest.reset();
     digest.update(hashedPrivateKey, FIELD_LEN, FIELD_LEN);
     digest.update(message);
     byte[] r = digest.digest();
@@ -1499,8 +1518,11 @@ public final class Ed25519 {
     digest.update(message);
     byte[] hram = digest.digest();
     reduce(hram);
-    mulAdd(hashedPrivateKey, hram, hashedPrivateKey, r);
-    return SubtleUtil.concat(rB, Arrays.copyOfRange(hashedPrivateKey, 0, FIELD_LEN));
+    // hashedPrivateKey belongs to the caller and is used again for the next signature, so the
+    // result must not be written into it.
+    byte[] s = new byte[FIELD_LEN];
+    mulAdd(s, hram, hashedPrivateKey, r);
+    return SubtleUtil.concat(rB, s);
   }
 
   /**
@@ -1512,7 +1534,8 @@ public final class Ed25519 {
    */
   static boolean verify(final byte[] message, final byte[] signature,
       final byte[] publicKey) throws GeneralSecurityException {
-    MessageDigest digest = EngineFactory.MESSAGE_DIGEST.getInstance("SHA-512");
+    MessageDigest digest = EngineFactory.MESSAGE_DIGEST.getCachedInstance("SHA-512");
+    digest.reset();
     digest.update(signature, 0, FIELD_LEN);
     digest.update(publicKey);
     digest.update(message);
@@ -1530,4 +1553,259 @@ public final class Ed25519 {
     }
     return true;
   }
+
+  /**
+   * Number of signatures that {@link #verifyBatch} checks with one multi-scalar multiplication.
+   * Longer batches are split into chunks of this size, which bounds the memory used by the
+   * precomputed multiples while keeping almost all of the speedup.
+   */
+  private static final int BATCH_CHUNK_SIZE = 64;
+
+  /**
+   * Length in bytes of the random coefficients z_i of the batch verification equation.
+   */
+  private static final int BATCH_COEFFICIENT_LEN = 16;
+
+  /**
+   * Marks encodings in {@link #verifyBatch} that are not valid points, or points of small order.
+   */
+  private static final CachedXYZT[] NOT_BATCHABLE = new CachedXYZT[0];
+
+  /**
+   * A signature in a batch, with everything that {@link #verifyBatch} precomputes for it.
+   */
+  private static final class BatchEntry {
+    final int index;
+    // s and the hash h of the signature, and the random coefficient z used for it.
+    final byte[] s;
+    final byte[] h;
+    final byte[] z;
+    final byte[] zSlide;
+    // The odd multiples of -R, where R is the first half of the signature, and of -A, where A is
+    // the public key. Signatures with the same public key share negA.
+    final CachedXYZT[] negR;
+    final CachedXYZT[] negA;
+
+    BatchEntry(int index, byte[] s, byte[] h, byte[] z, CachedXYZT[] negR, CachedXYZT[] negA) {
+      this.index = index;
+      this.s = s;
+      this.h = h;
+      this.z = z;
+      this.zSlide = slide(z);
+      this.negR = negR;
+      this.negA = negA;
+    }
+  }
+
+  /**
+   * Returns whether each EdDSA {@code signatures[i]} of {@code messages[i]} can be verified with
+   * {@code publicKeys[i]}. The results are those of {@link #verify(byte[], byte[], byte[])},
+   * except for signatures whose R or public key has a small-order component (see below).
+   *
+   * <p>Instead of computing R' = S*B - h*A for each signature and comparing it with R, the
+   * signatures are checked together by picking random 128-bit z_i and checking that
+   * 8*((sum z_i*S_i)*B - sum z_i*R_i - sum (z_i*h_i)*A_i) is the neutral point, with one
+   * interleaved multi-scalar multiplication (Straus' method) that shares the point doublings
+   * between all signatures. The terms of signatures with the same public key are merged into
+   * one. If the equation does not hold, the batch is split in halves that are checked again,
+   * until the invalid signatures are found.
+   *
+   * <p>This is the cofactored verification equation of RFC 8032, Section 5.1.7, which is
+   * implied by the equation checked by {@code verify}. So every valid signature is accepted, and
+   * an invalid one is only accepted with probability 2^-128, unless its R or its public key has
+   * a small-order component. Such signatures can only be created by the owner of the private
+   * key. Signatures whose R or public key has small order are verified one at a time.
+   *
+   * <p>Preconditions: all signatures are 64 bytes with the 3 most significant bits of the last
+   * byte cleared, and all public keys are 32 bytes.
+   *
+   * @throws GeneralSecurityException if there is no SHA-512 algorithm defined in
+   * {@link EngineFactory}.MESSAGE_DIGEST.
+   */
+  static boolean[] verifyBatch(final byte[][] messages, final byte[][] signatures,
+      final byte[][] publicKeys) throws GeneralSecurityException {
+    boolean[] valid = new boolean[signatures.length];
+    MessageDigest digest = EngineFactory.MESSAGE_DIGEST.getCachedInstance("SHA-512");
+    Map<ByteBuffer, CachedXYZT[]> negAs = new HashMap<ByteBuffer, CachedXYZT[]>();
+    List<BatchEntry> batch = new ArrayList<BatchEntry>();
+    for (int i = 0; i < signatures.length; i++) {
+      byte[] signature = signatures[i];
+      byte[] publicKey = publicKeys[i];
+      CachedXYZT[] negA = negAs.get(ByteBuffer.wrap(publicKey));
+      if (negA == null) {
+        negA = decodeForBatch(publicKey);
+        negAs.put(ByteBuffer.wrap(publicKey), negA);
+      }
+      byte[] r = Arrays.copyOf(signature, FIELD_LEN);
+      if (!isCanonicalVarTime(r)) {
+        // verify compares R with an encoding computed by toBytes, which is canonical.
+        continue;
+      }
+      CachedXYZT[] negR = decodeForBatch(r);
+      if (negA == NOT_BATCHABLE || negR == NOT_BATCHABLE) {
+        try {
+          valid[i] = verify(messages[i], signature, publicKey);
+        } catch (IllegalArgumentException e) {
+          // The public key is not a valid point.
+        }
+        continue;
+      }
+
+      digest.reset();
+      digest.update(signature, 0, FIELD_LEN);
+      digest.update(publicKey);
+      digest.update(messages[i]);
+      byte[] h = digest.digest();
+      reduce(h);
+      byte[] z = new byte[FIELD_LEN];
+      System.arraycopy(Random.randBytes(BATCH_COEFFICIENT_LEN), 0, z, 0, BATCH_COEFFICIENT_LEN);
+      batch.add(new BatchEntry(i, Arrays.copyOfRange(signature, FIELD_LEN, SIGNATURE_LEN),
+          Arrays.copyOf(h, FIELD_LEN), z, negR, negA));
+
+      if (batch.size() == BATCH_CHUNK_SIZE) {
+        verifyBatchRange(batch, 0, batch.size(), valid);
+        batch.clear();
+      }
+    }
+    verifyBatchRange(batch, 0, batch.size(), valid);
+    return valid;
+  }
+
+  /**
+   * Returns the odd multiples of the negation of the point encoded in {@code s}, or
+   * {@link #NOT_BATCHABLE} if {@code s} is not a valid point or the point has small order.
+   */
+  private static CachedXYZT[] decodeForBatch(byte[] s) {
+    XYZT point;
+    try {
+      point = XYZT.fromBytesNegateVarTime(s);
+    } catch (IllegalArgumentException e) {
+      return NOT_BATCHABLE;
+    }
+    if (isNeutralVarTime(multiplyByCofactor(point))) {
+      return NOT_BATCHABLE;
+    }
+    return oddMultiples(point);
+  }
+
+  /**
+   * Sets {@code valid} for the signatures in {@code batch[from, to)}, by checking the batch
+   * equation for the whole range, and for its halves if it doesn't hold.
+   */
+  private static void verifyBatchRange(List<BatchEntry> batch, int from, int to,
+      boolean[] valid) {
+    if (from == to) {
+      return;
+    }
+    if (batchEquationHoldsVarTime(batch, from, to)) {
+      for (int i = from; i < to; i++) {
+        valid[batch.get(i).index] = true;
+      }
+      return;
+    }
+    if (to - from > 1) {
+      int mid = (from + to) >>> 1;
+      verifyBatchRange(batch, from, mid, valid);
+      verifyBatchRange(batch, mid, to, valid);
+    }
+  }
+
+  /**
+   * Returns true if 8*((sum z_i*S_i)*B + sum z_i*(-R_i) + sum (z_i*h_i)*(-A_i)) is the neutral
+   * point, where the sums are over the signatures in {@code batch[from, to)}.
+   */
+  private static boolean batchEquationHoldsVarTime(List<BatchEntry> batch, int from, int to) {
+    // The scalars of B and of each distinct public key.
+    byte[] s = new byte[FIELD_LEN];
+    Map<CachedXYZT[], byte[]> keyScalars = new IdentityHashMap<CachedXYZT[], byte[]>();
+    for (int j = from; j < to; j++) {
+      BatchEntry entry = batch.get(j);
+      mulAdd(s, entry.z, entry.s, s);
+      byte[] keyScalar = keyScalars.get(entry.negA);
+      if (keyScalar == null) {
+        keyScalar = new byte[FIELD_LEN];
+        keyScalars.put(entry.negA, keyScalar);
+      }
+      mulAdd(keyScalar, entry.z, entry.h, keyScalar);
+    }
+    byte[] sSlide = slide(s);
+    int i = topDigit(sSlide);
+    List<CachedXYZT[]> keys = new ArrayList<CachedXYZT[]>(keyScalars.size());
+    List<byte[]> keySlides = new ArrayList<byte[]>(keyScalars.size());
+    for (Map.Entry<CachedXYZT[], byte[]> keyScalar : keyScalars.entrySet()) {
+      byte[] keySlide = slide(keyScalar.getValue());
+      keys.add(keyScalar.getKey());
+      keySlides.add(keySlide);
+      i = Math.max(i, topDigit(keySlide));
+    }
+    for (int j = from; j < to; j++) {
+      i = Math.max(i, topDigit(batch.get(j).zSlide));
+    }
+
+    PartialXYZT t = new PartialXYZT(NEUTRAL);
+    XYZT u = new XYZT();
+    for (; i >= 0; i--) {
+      doubleXYZ(t, new XYZ(t));
+      addDigit(t, u, sSlide[i], B2);
+      for (int k = 0; k < keys.size(); k++) {
+        addDigit(t, u, keySlides.get(k)[i], keys.get(k));
+      }
+      for (int j = from; j < to; j++) {
+        BatchEntry entry = batch.get(j);
+        addDigit(t, u, entry.zSlide[i], entry.negR);
+      }
+    }
+    return isNeutralVarTime(multiplyByCofactor(new XYZT(t)));
+  }
+
+  /**
+   * Returns the index of the most significant nonzero digit in {@code slide}, or -1 if all
+   * digits are zero.
+   */
+  private static int topDigit(byte[] slide) {
+    int i = slide.length - 1;
+    while (i >= 0 && slide[i] == 0) {
+      i--;
+    }
+    return i;
+  }
+
+  /**
+   * Returns 8*{@code point}.
+   */
+  private static XYZ multiplyByCofactor(XYZT point) {
+    PartialXYZT t = new PartialXYZT();
+    doubleXYZT(t, point);
+    doubleXYZ(t, new XYZ(t));
+    doubleXYZ(t, new XYZ(t));
+    return new XYZ(t);
+  }
+
+  /**
+   * Returns true if {@code point} is the neutral point (0, 1).
+   */
+  private static boolean isNeutralVarTime(XYZ point) {
+    byte[] x = Curve25519.contract(point.x);
+    for (byte b : x) {
+      if (b != 0) {
+        return false;
+      }
+    }
+    return Arrays.equals(Curve25519.contract(point.y), Curve25519.contract(point.z));
+  }
+
+  /**
+   * Returns true if the y-coordinate encoded in {@code s} is less than 2^255-19.
+   */
+  private static boolean isCanonicalVarTime(byte[] s) {
+    if ((s[31] & 0x7f) != 0x7f) {
+      return true;
+    }
+    for (int i = 30; i > 0; i--) {
+      if ((s[i] & 0xff) != 0xff) {
+        return true;
+      }
+    }
+    return (s[0] & 0xff) < 0xed;
+  }
 }
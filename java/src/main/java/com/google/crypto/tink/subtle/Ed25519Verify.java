@@ -16,10 +16,13 @@
 
 package com.google.crypto.tink.subtle;
 
-import com.google.crypto.tink.PublicKeyVerify;
+import com.google.crypto.tink.ZeroCopyPublicKeyVerify;
 import com.google.errorprone.annotations.Immutable;
 import java.security.GeneralSecurityException;
 import java.security.SignatureException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * Ed25519 verifying.
@@ -34,9 +37,12 @@ import java.security.SignatureException;
  * } catch (GeneralSecurityException e) {
  *   // all the rest of security exceptions.
  * }
+ *
+ * // Many signatures, possibly from different keys, can be verified at once.
+ * List<Integer> failed = Ed25519Verify.verifyBatch(messages, signatures, publicKeys);
  */
 @Immutable
-public final class Ed25519Verify implements PublicKeyVerify {
+public final class Ed25519Verify implements ZeroCopyPublicKeyVerify {
 
   public static final int PUBLIC_KEY_LEN = Curve25519.FIELD_LEN;
   public static final int SIGNATURE_LEN = Curve25519.FIELD_LEN * 2;
@@ -65,4 +71,96 @@ public final class Ed25519Verify implements PublicKeyVerify {
       throw new SignatureException("Signature check failed.");
     }
   }
+
+  @Override
+  public void verify(byte[] signature, int offset, int length, byte[] data)
+      throws GeneralSecurityException {
+    SubtleUtil.checkRange(signature, offset, length);
+    if (offset == 0 && length == signature.length) {
+      verify(signature, data);
+    } else {
+      // Signatures are only 64 bytes; Ed25519.verify needs them in their own array.
+      verify(Arrays.copyOfRange(signature, offset, offset + length), data);
+    }
+  }
+
+  /**
+   * Verifies a batch of signatures: {@code signatures[i]} is checked against {@code messages[i]}
+   * with the public key {@code publicKeys[i]}. The signatures may have been created with
+   * different keys.
+   *
+   * <p>This is several times faster than verifying the signatures one at a time, because the
+   * signatures are checked together with a randomized multi-scalar multiplication. Valid
+   * signatures are always accepted, and invalid ones are rejected like {@link #verify} does,
+   * with one exception: the batch check uses the cofactored verification equation, so it
+   * accepts signatures whose R or public key has a small-order component that makes
+   * {@code verify} reject them. Such signatures can only be created deliberately by the owner of
+   * the private key; callers that need exactly the results of {@code verify} must verify the
+   * signatures one at a time. For this reason, the primitives of {@code PublicKeyVerifyFactory}
+   * never use the batch check, and callers have to opt in by calling this method.
+   *
+   * @return the indices of the invalid signatures, in increasing order; the list is empty if
+   * all signatures are valid. A signature or public key with the wrong length is invalid.
+   * @throws IllegalArgumentException if the arrays don't have the same length.
+   */
+  public static List<Integer> verifyBatch(final byte[][] messages, final byte[][] signatures,
+      final byte[][] publicKeys) throws GeneralSecurityException {
+    if (messages.length != signatures.length || publicKeys.length != signatures.length) {
+      throw new IllegalArgumentException(
+          "messages, signatures and publicKeys must have the same length.");
+    }
+    // Only well-formed entries are given to Ed25519.verifyBatch.
+    int[] indices = new int[signatures.length];
+    int count = 0;
+    for (int i = 0; i < signatures.length; i++) {
+      if (isWellFormed(signatures[i], publicKeys[i])) {
+        indices[count++] = i;
+      }
+    }
+    byte[][] batchMessages = new byte[count][];
+    byte[][] batchSignatures = new byte[count][];
+    byte[][] batchPublicKeys = new byte[count][];
+    for (int j = 0; j < count; j++) {
+      batchMessages[j] = messages[indices[j]];
+      batchSignatures[j] = signatures[indices[j]];
+      batchPublicKeys[j] = publicKeys[indices[j]];
+    }
+    boolean[] valid = Ed25519.verifyBatch(batchMessages, batchSignatures, batchPublicKeys);
+
+    List<Integer> failed = new ArrayList<Integer>();
+    for (int i = 0, j = 0; i < signatures.length; i++) {
+      if (j < count && indices[j] == i) {
+        if (!valid[j]) {
+          failed.add(i);
+        }
+        j++;
+      } else {
+        failed.add(i);
+      }
+    }
+    return failed;
+  }
+
+  /**
+   * Verifies a batch of signatures: {@code signatures[i]} is checked against {@code messages[i]}
+   * with {@code verifiers[i]}. See {@link #verifyBatch(byte[][], byte[][], byte[][])}.
+   *
+   * @return the indices of the invalid signatures, in increasing order; the list is empty if
+   * all signatures are valid.
+   * @throws IllegalArgumentException if the arrays don't have the same length.
+   */
+  public static List<Integer> verifyBatch(final byte[][] messages, final byte[][] signatures,
+      final Ed25519Verify[] verifiers) throws GeneralSecurityException {
+    byte[][] publicKeys = new byte[verifiers.length][];
+    for (int i = 0; i < verifiers.length; i++) {
+      publicKeys[i] = verifiers[i].publicKey.getBytes();
+    }
+    return verifyBatch(messages, signatures, publicKeys);
+  }
+
+  private static boolean isWellFormed(byte[] signature, byte[] publicKey) {
+    return signature.length == SIGNATURE_LEN
+        && ((signature[SIGNATURE_LEN - 1] & 0xff) & 224) == 0
+        && publicKey.length == PUBLIC_KEY_LEN;
+  }
 }
@@ -16,11 +16,10 @@
 
 package com.google.crypto.tink.subtle;
 
-import com.google.crypto.tink.Aead;
 import com.google.crypto.tink.Mac;
+import com.google.crypto.tink.ZeroCopyAead;
 import java.nio.ByteBuffer;
 import java.security.GeneralSecurityException;
-import java.util.Arrays;
 
 /**
  * This primitive performs an encrypt-then-Mac operation on plaintext and additional
@@ -29,8 +28,15 @@ import java.util.Arrays;
  * Horton Principle</a>. This implementation is based on
  * <a href="http://tools.ietf.org/html/draft-mcgrew-aead-aes-cbc-hmac-sha2-05">Authenticated
  * Encryption with AES-CBC and HMAC-SHA</a>.
+ *
+ * <p>To encrypt long messages on several cores, use a cipher that was constructed with an
+ * {@link java.util.concurrent.Executor}, e.g. {@link AesCtrJceCipher}. Only the encryption is
+ * parallelized; the MAC is computed sequentially.
+ *
+ * <p>The {@code ByteBuffer} and offset methods avoid intermediate arrays if the cipher is a
+ * {@link ZeroCopyIndCpaCipher}, and otherwise copy the input of the cipher.
  */
-public final class EncryptThenAuthenticate implements Aead {
+public final class EncryptThenAuthenticate implements ZeroCopyAead {
   private final IndCpaCipher cipher;
   private final Mac mac;
   private final int macLength;
@@ -54,11 +60,18 @@ public final class EncryptThenAuthenticate implements Aead {
    */
   @Override
   public byte[] encrypt(final byte[] plaintext, final byte[] aad) throws GeneralSecurityException {
-    byte[] ciphertext = cipher.encrypt(plaintext);
-    byte[] aadLengthInBits = Arrays.copyOf(ByteBuffer.allocate(8).putLong(8L * aad.length).array(),
-        8);
-    byte[] macValue = mac.computeMac(SubtleUtil.concat(aad, ciphertext, aadLengthInBits));
-    return SubtleUtil.concat(ciphertext, macValue);
+    if (!(cipher instanceof ZeroCopyIndCpaCipher)) {
+      byte[] ciphertext = cipher.encrypt(plaintext);
+      return SubtleUtil.concat(ciphertext,
+          computeMac(ByteBuffer.wrap(aad), ByteBuffer.wrap(ciphertext)));
+    }
+    int ciphertextSize = ciphertextSize(plaintext.length);
+    if (ciphertextSize < 0) {
+      throw new GeneralSecurityException("plaintext too long");
+    }
+    byte[] ciphertext = new byte[ciphertextSize];
+    int unusedWritten = encrypt(plaintext, aad, ciphertext, 0);
+    return ciphertext;
   }
 
   /**
@@ -75,15 +88,111 @@ public final class EncryptThenAuthenticate implements Aead {
   @Override
   public byte[] decrypt(final byte[] ciphertext, final byte[] aad)
       throws GeneralSecurityException {
-    if (ciphertext.length < macLength) {
+    return decrypt(ciphertext, 0, ciphertext.length, aad);
+  }
+
+  @Override
+  public int encrypt(final byte[] plaintext, final byte[] aad, byte[] ciphertext, int offset)
+      throws GeneralSecurityException {
+    SubtleUtil.checkOutputSize(ciphertext, offset, Math.max(ciphertextSize(plaintext.length), 0));
+    ByteBuffer output = ByteBuffer.wrap(ciphertext, offset, ciphertext.length - offset);
+    encrypt(ByteBuffer.wrap(plaintext), ByteBuffer.wrap(aad), output);
+    return output.position() - offset;
+  }
+
+  @Override
+  public byte[] decrypt(final byte[] ciphertext, int offset, int length, final byte[] aad)
+      throws GeneralSecurityException {
+    SubtleUtil.checkRange(ciphertext, offset, length);
+    if (!(cipher instanceof ZeroCopyIndCpaCipher)) {
+      ByteBuffer rawCiphertext =
+          verifyMac(ByteBuffer.wrap(ciphertext, offset, length), ByteBuffer.wrap(aad));
+      return cipher.decrypt(SubtleUtil.toByteArray(rawCiphertext));
+    }
+    int plaintextSize = length - ciphertextSize(0);
+    if (plaintextSize < 0) {
+      throw new GeneralSecurityException("ciphertext too short");
+    }
+    byte[] plaintext = new byte[plaintextSize];
+    decrypt(ByteBuffer.wrap(ciphertext, offset, length), ByteBuffer.wrap(aad),
+        ByteBuffer.wrap(plaintext));
+    return plaintext;
+  }
+
+  /**
+   * @return the length of the ciphertext, or -1 if the cipher is not a
+   * {@link ZeroCopyIndCpaCipher}.
+   */
+  @Override
+  public int ciphertextSize(int plaintextSize) {
+    if (!(cipher instanceof ZeroCopyIndCpaCipher)) {
+      return -1;
+    }
+    return ((ZeroCopyIndCpaCipher) cipher).ciphertextSize(plaintextSize) + macLength;
+  }
+
+  @Override
+  public void encrypt(ByteBuffer plaintext, ByteBuffer aad, ByteBuffer ciphertext)
+      throws GeneralSecurityException {
+    ByteBuffer rawCiphertext = ciphertext.duplicate();
+    if (cipher instanceof ZeroCopyIndCpaCipher) {
+      ((ZeroCopyIndCpaCipher) cipher).encrypt(plaintext, ciphertext);
+    } else {
+      SubtleUtil.put(ciphertext, cipher.encrypt(SubtleUtil.toByteArray(plaintext)));
+    }
+    rawCiphertext.limit(ciphertext.position());
+    byte[] macValue = computeMac(aad, rawCiphertext);
+    SubtleUtil.put(ciphertext, macValue);
+  }
+
+  @Override
+  public void decrypt(ByteBuffer ciphertext, ByteBuffer aad, ByteBuffer plaintext)
+      throws GeneralSecurityException {
+    ByteBuffer rawCiphertext = verifyMac(ciphertext, aad);
+    if (cipher instanceof ZeroCopyIndCpaCipher) {
+      ((ZeroCopyIndCpaCipher) cipher).decrypt(rawCiphertext, plaintext);
+    } else {
+      SubtleUtil.put(plaintext, cipher.decrypt(SubtleUtil.toByteArray(rawCiphertext)));
+    }
+    ciphertext.position(ciphertext.limit());
+  }
+
+  /**
+   * Verifies the MAC at the end of the remaining bytes of {@code ciphertext}.
+   *
+   * @return a view of the ind-cpa ciphertext in front of the MAC.
+   */
+  private ByteBuffer verifyMac(ByteBuffer ciphertext, ByteBuffer aad)
+      throws GeneralSecurityException {
+    if (ciphertext.remaining() < macLength) {
       throw new GeneralSecurityException("ciphertext too short");
     }
-    byte[] rawCiphertext = Arrays.copyOfRange(ciphertext, 0, ciphertext.length - macLength);
-    byte[] macValue = Arrays.copyOfRange(ciphertext, ciphertext.length - macLength,
-        ciphertext.length);
-    byte[] aadLengthInBits = Arrays.copyOf(
-        ByteBuffer.allocate(8).putLong(8L * aad.length).array(), 8);
-    mac.verifyMac(macValue, SubtleUtil.concat(aad, rawCiphertext, aadLengthInBits));
-    return cipher.decrypt(rawCiphertext);
+    ByteBuffer rawCiphertext = ciphertext.duplicate();
+    rawCiphertext.limit(ciphertext.limit() - macLength);
+    byte[] macValue = new byte[macLength];
+    ByteBuffer macBuf = ciphertext.duplicate();
+    macBuf.position(rawCiphertext.limit());
+    macBuf.get(macValue);
+    if (!SubtleUtil.arrayEquals(computeMac(aad, rawCiphertext.duplicate()), macValue)) {
+      throw new GeneralSecurityException("invalid MAC");
+    }
+    return rawCiphertext;
+  }
+
+  /**
+   * Computes the MAC over (aad || rawCiphertext || t). Feeds the buffers directly to the
+   * underlying JCE engine when possible.
+   */
+  private byte[] computeMac(ByteBuffer aad, ByteBuffer rawCiphertext)
+      throws GeneralSecurityException {
+    ByteBuffer aadLengthInBits = ByteBuffer.allocate(8);
+    aadLengthInBits.putLong(8L * aad.remaining()).flip();
+    if (mac instanceof MacJce) {
+      return ((MacJce) mac).computeMac(aad, rawCiphertext, aadLengthInBits);
+    }
+    byte[] macData =
+        new byte[aad.remaining() + rawCiphertext.remaining() + aadLengthInBits.remaining()];
+    ByteBuffer.wrap(macData).put(aad).put(rawCiphertext).put(aadLengthInBits);
+    return mac.computeMac(macData);
   }
 }
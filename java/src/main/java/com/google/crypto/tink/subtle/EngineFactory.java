@@ -24,7 +24,12 @@ import java.security.Provider;
 import java.security.Security;
 import java.security.Signature;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 import javax.crypto.Cipher;
 import javax.crypto.KeyAgreement;
@@ -36,12 +41,37 @@ import javax.crypto.Mac;
  * This class contains a lot of static factories and static functions returning factories: these
  * allow customization and hide the typing complexity in this class. To use this class, import it,
  * and replace your `Cipher.getInstance(...` with `EngineFactory.CIPHER.getInstance(...`.
+ *
+ * Primitives that initialize, use and finish with an engine within a single call can use
+ * {@link #getCachedInstance} instead, which hands out an engine that is cached per thread. This
+ * avoids the provider lookup on every call. Caching can be turned off with
+ * {@link #setCachingEnabled}.
+ *
+ * Each factory remembers which provider of its policy serves an algorithm, so that the policy is
+ * only probed once per algorithm. {@link #getProviderMetrics} reports them. The memoized choices
+ * and the engines cached per thread are dropped when the list of installed providers in
+ * {@link Security} changes. Since copying that list is not free, it is compared with the last
+ * known one at most once per second; call {@link #providersChanged} after installing or removing
+ * a provider to make all factories pick up the change immediately.
  */
 public class EngineFactory<T_WRAPPER extends EngineWrapper<T_ENGINE>, T_ENGINE> {
   private static final Logger logger =
       Logger.getLogger(EngineFactory.class.getName());
   private static final List<Provider> defaultPolicy;
   private static final boolean DEFAULT_LET_FALLBACK = true;
+  /** Index stored in {@code resolvedProviders} when the default JCE provider lookup is used. */
+  private static final int FALLBACK = -1;
+  /** Name reported by {@link #getProviderMetrics} when the default JCE provider lookup is used. */
+  public static final String FALLBACK_PROVIDER_NAME = "<default>";
+  private static volatile boolean cachingEnabled = true;
+
+  /** How often the installed providers are compared with the last known ones. */
+  private static final long PROVIDER_CHECK_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+  private static volatile long nextProviderCheckNanos = System.nanoTime();
+  /** Incremented whenever the installed providers change. */
+  private static volatile int providersGeneration;
+  /** The installed providers when they were last checked. Guarded by EngineFactory.class. */
+  private static Provider[] installedProviders;
 
   // Warning: keep this above the initialization of static providers below. or you'll get null
   // pointer errors (due to this policy not being initialized).
@@ -161,25 +191,160 @@ public class EngineFactory<T_WRAPPER extends EngineWrapper<T_ENGINE>, T_ENGINE>
     this.letFallback = letFallback;
   }
 
+  /**
+   * Enables or disables the per-thread engine cache used by {@link #getCachedInstance} for all
+   * factories. When disabled, {@link #getCachedInstance} behaves like {@link #getInstance}.
+   * Caching is enabled by default.
+   */
+  public static void setCachingEnabled(boolean enabled) {
+    cachingEnabled = enabled;
+  }
+
+  /**
+   * @return whether {@link #getCachedInstance} returns engines cached per thread.
+   */
+  public static boolean isCachingEnabled() {
+    return cachingEnabled;
+  }
+
+  /**
+   * Drops the providers memoized by all factories and the engines cached per thread, so that a
+   * provider that was just installed or removed is taken into account by the next call. Without
+   * this, the change is picked up within a second.
+   */
+  public static synchronized void providersChanged() {
+    installedProviders = Security.getProviders();
+    providersGeneration++;
+    nextProviderCheckNanos = System.nanoTime() + PROVIDER_CHECK_INTERVAL_NANOS;
+  }
+
+  /**
+   * Returns an engine for {@code algorithm} that is cached for the current thread.
+   *
+   * <p>The same engine is returned on every call from the same thread, so callers must fully
+   * (re-)initialize it before use, must not keep a reference to it beyond the current operation
+   * and must not call into code that may use the same engine before they are done with it.
+   * Engines are cached separately for every factory, i.e. for every provider policy.
+   */
+  public T_ENGINE getCachedInstance(String algorithm) throws GeneralSecurityException {
+    if (!cachingEnabled) {
+      return getInstance(algorithm);
+    }
+    int generation = currentProvidersGeneration();
+    CachedEngines<T_ENGINE> cached = cache.get();
+    if (cached.generation != generation) {
+      cached.engines.clear();
+      cached.generation = generation;
+    }
+    T_ENGINE engine = cached.engines.get(algorithm);
+    if (engine == null) {
+      engine = getInstance(algorithm);
+      cached.engines.put(algorithm, engine);
+    }
+    return engine;
+  }
+
   public T_ENGINE getInstance(String algorithm) throws GeneralSecurityException {
-    for (Provider p : this.policy) {
+    int generation = currentProvidersGeneration();
+    if (generation != resolvedGeneration) {
+      resolvedProviders.clear();
+      resolvedGeneration = generation;
+    }
+    Integer index = resolvedProviders.get(algorithm);
+    if (index != null) {
+      if (index == FALLBACK) {
+        return this.instanceBuilder.getInstance(algorithm, null);
+      }
+      return this.instanceBuilder.getInstance(algorithm, this.policy.get(index));
+    }
+    for (int i = 0; i < this.policy.size(); i++) {
+      Provider p = this.policy.get(i);
       if (tryProvider(algorithm, p)) {
+        resolvedProviders.put(algorithm, i);
+        logger.fine(String.format("%s is served by %s", algorithm, p.getName()));
         return this.instanceBuilder.getInstance(algorithm, p);
       }
     }
     if (letFallback) {
-      return this.instanceBuilder.getInstance(algorithm, null);
+      T_ENGINE engine = this.instanceBuilder.getInstance(algorithm, null);
+      resolvedProviders.put(algorithm, FALLBACK);
+      logger.fine(String.format("%s is served by %s", algorithm, FALLBACK_PROVIDER_NAME));
+      return engine;
     }
     throw new GeneralSecurityException("No good Provider found.");
   }
 
+  /**
+   * Returns, for every algorithm this factory has served since the installed providers last
+   * changed, the name of the provider of its policy that serves it, or
+   * {@link #FALLBACK_PROVIDER_NAME} if the algorithm is served by the default JCE lookup.
+   */
+  public Map<String, String> getProviderMetrics() {
+    Map<String, String> metrics = new HashMap<String, String>();
+    for (Map.Entry<String, Integer> entry : resolvedProviders.entrySet()) {
+      int index = entry.getValue();
+      metrics.put(
+          entry.getKey(),
+          index == FALLBACK ? FALLBACK_PROVIDER_NAME : this.policy.get(index).getName());
+    }
+    return Collections.unmodifiableMap(metrics);
+  }
+
+  /**
+   * Returns a number that changes whenever the installed providers change, comparing them with
+   * the last known ones if that hasn't been done for {@code PROVIDER_CHECK_INTERVAL_NANOS}.
+   */
+  private static int currentProvidersGeneration() {
+    if (System.nanoTime() - nextProviderCheckNanos >= 0) {
+      checkProviders();
+    }
+    return providersGeneration;
+  }
+
+  private static synchronized void checkProviders() {
+    long now = System.nanoTime();
+    if (now - nextProviderCheckNanos < 0) {
+      // Another thread has just checked.
+      return;
+    }
+    Provider[] installed = Security.getProviders();
+    Provider[] known = installedProviders;
+    boolean same = known != null && known.length == installed.length;
+    for (int i = 0; same && i < installed.length; i++) {
+      same = known[i] == installed[i];
+    }
+    if (!same) {
+      installedProviders = installed;
+      providersGeneration++;
+    }
+    nextProviderCheckNanos = now + PROVIDER_CHECK_INTERVAL_NANOS;
+  }
+
+  /** The engines cached for one thread, valid for one generation of installed providers. */
+  private static final class CachedEngines<T> {
+    final Map<String, T> engines = new HashMap<String, T>();
+    int generation = -1;
+  }
+
   private T_WRAPPER instanceBuilder;
   private List<Provider> policy;
   private boolean letFallback;
+  /** Algorithm to the index in {@code policy} of the provider serving it, or FALLBACK. */
+  private final ConcurrentHashMap<String, Integer> resolvedProviders =
+      new ConcurrentHashMap<String, Integer>();
+  /** The providers generation for which {@code resolvedProviders} is valid. */
+  private volatile int resolvedGeneration = -1;
+  private final ThreadLocal<CachedEngines<T_ENGINE>> cache =
+      new ThreadLocal<CachedEngines<T_ENGINE>>() {
+        @Override
+        protected CachedEngines<T_ENGINE> initialValue() {
+          return new CachedEngines<T_ENGINE>();
+        }
+      };
 
   private boolean tryProvider(String algorithm, Provider provider) {
     try {
-      this.instanceBuilder.getInstance(algorithm, provider);;
+      this.instanceBuilder.getInstance(algorithm, provider);
       return true;
     } catch (Exception e) { // Don't care which one specifically.
       return false;
@@ -0,0 +1,203 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.subtle;
+
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.spec.ECParameterSpec;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Generates ephemeral EC key pairs ahead of time, so that {@link EciesHkdfSenderKem} doesn't have
+ * to generate one inline for every encryption. <p>
+ *
+ * For every curve it is asked for, the producer keeps a queue of up to {@code capacity} fresh key
+ * pairs, which is refilled on {@code executor} whenever a key pair is taken from it. Each key pair
+ * is handed out exactly once. If the queue of a curve is empty, e.g. because of a burst of
+ * encryptions, {@link #take} generates a key pair inline, as without a producer. <p>
+ *
+ * To make all {@code EciesHkdfSenderKem} instances use a producer:
+ * <pre>   {@code
+ *   ExecutorService executor = Executors.newSingleThreadExecutor();
+ *   EphemeralKeyPairProducer.setDefault(new EphemeralKeyPairProducer(executor, 64));
+ *  }</pre>
+ * The queued key pairs are private keys held in memory until they are used, so {@code capacity}
+ * should be no larger than what is needed to absorb bursts.
+ */
+public final class EphemeralKeyPairProducer {
+  private static final Logger logger = Logger.getLogger(EphemeralKeyPairProducer.class.getName());
+
+  private static volatile EphemeralKeyPairProducer defaultProducer = null;
+
+  /**
+   * Identifies a curve and its base point. {@code ECParameterSpec} doesn't implement equals.
+   */
+  private static final class CurveKey {
+    private final ECParameterSpec spec;
+
+    CurveKey(ECParameterSpec spec) {
+      this.spec = spec;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof CurveKey)) {
+        return false;
+      }
+      ECParameterSpec other = ((CurveKey) o).spec;
+      return spec.getCurve().equals(other.getCurve())
+          && spec.getGenerator().equals(other.getGenerator())
+          && spec.getOrder().equals(other.getOrder())
+          && spec.getCofactor() == other.getCofactor();
+    }
+
+    @Override
+    public int hashCode() {
+      return spec.getCurve().hashCode() ^ spec.getGenerator().hashCode();
+    }
+  }
+
+  /** The queued key pairs of one curve. */
+  private final class Pool implements Runnable {
+    private final ECParameterSpec spec;
+    private final BlockingQueue<KeyPair> keyPairs = new ArrayBlockingQueue<KeyPair>(capacity);
+    // Whether a refill is scheduled or running, so that at most one runs per curve.
+    private final AtomicBoolean refilling = new AtomicBoolean(false);
+
+    Pool(ECParameterSpec spec) {
+      this.spec = spec;
+    }
+
+    void scheduleRefill() {
+      if (keyPairs.remainingCapacity() == 0 || !refilling.compareAndSet(false, true)) {
+        return;
+      }
+      try {
+        executor.execute(this);
+      } catch (RejectedExecutionException e) {
+        refilling.set(false);
+        logger.log(Level.WARNING, "cannot schedule the generation of ephemeral keys", e);
+      }
+    }
+
+    @Override
+    public void run() {
+      try {
+        while (keyPairs.remainingCapacity() > 0) {
+          if (!keyPairs.offer(generateKeyPair(spec))) {
+            break;
+          }
+        }
+      } catch (GeneralSecurityException e) {
+        logger.log(Level.WARNING, "cannot generate ephemeral keys", e);
+      } finally {
+        refilling.set(false);
+      }
+    }
+  }
+
+  private final Executor executor;
+  private final int capacity;
+  private final ConcurrentMap<CurveKey, Pool> pools = new ConcurrentHashMap<CurveKey, Pool>();
+
+  /**
+   * Creates a producer that keeps up to {@code capacity} key pairs per curve, generated on
+   * {@code executor}.
+   *
+   * @throws IllegalArgumentException if {@code capacity} is not positive.
+   */
+  public EphemeralKeyPairProducer(Executor executor, int capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("capacity must be positive");
+    }
+    this.executor = executor;
+    this.capacity = capacity;
+  }
+
+  /**
+   * Sets the producer that {@link EciesHkdfSenderKem} uses when it is not given one explicitly.
+   *
+   * @param producer the producer, or null to generate all ephemeral keys inline.
+   */
+  public static void setDefault(EphemeralKeyPairProducer producer) {
+    defaultProducer = producer;
+  }
+
+  /**
+   * @return the producer set by {@link #setDefault}, or null.
+   */
+  public static EphemeralKeyPairProducer getDefault() {
+    return defaultProducer;
+  }
+
+  /**
+   * @return a fresh key pair on the curve given by {@code spec}, which is not handed out again.
+   */
+  public KeyPair take(ECParameterSpec spec) throws GeneralSecurityException {
+    Pool pool = getPool(spec);
+    KeyPair keyPair = pool.keyPairs.poll();
+    pool.scheduleRefill();
+    if (keyPair == null) {
+      keyPair = generateKeyPair(spec);
+    }
+    return keyPair;
+  }
+
+  /**
+   * Starts filling the queue of the curve given by {@code spec}, so that the first encryptions
+   * don't have to generate their keys inline.
+   */
+  public void prefill(ECParameterSpec spec) {
+    getPool(spec).scheduleRefill();
+  }
+
+  /**
+   * @return the number of key pairs that are queued for the curve given by {@code spec}.
+   */
+  public int available(ECParameterSpec spec) {
+    Pool pool = pools.get(new CurveKey(spec));
+    return pool == null ? 0 : pool.keyPairs.size();
+  }
+
+  private Pool getPool(ECParameterSpec spec) {
+    CurveKey key = new CurveKey(spec);
+    Pool pool = pools.get(key);
+    if (pool == null) {
+      Pool newPool = new Pool(spec);
+      pool = pools.putIfAbsent(key, newPool);
+      if (pool == null) {
+        pool = newPool;
+      }
+    }
+    return pool;
+  }
+
+  private static KeyPair generateKeyPair(ECParameterSpec spec) throws GeneralSecurityException {
+    KeyPairGenerator keyGen = EngineFactory.KEY_PAIR_GENERATOR.getInstance("EC");
+    keyGen.initialize(spec);
+    return keyGen.generateKeyPair();
+  }
+}
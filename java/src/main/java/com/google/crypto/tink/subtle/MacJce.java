@@ -16,13 +16,14 @@
 
 package com.google.crypto.tink.subtle;
 
-import com.google.crypto.tink.Mac;
+import com.google.crypto.tink.ZeroCopyMac;
+import java.nio.ByteBuffer;
 import java.security.GeneralSecurityException;
 
 /**
  * Mac implementations in JCE.
  */
-public final class MacJce implements Mac {
+public final class MacJce implements ZeroCopyMac {
   private javax.crypto.Mac mac;
   private final int digestSize;
   private final String algorithm;
@@ -39,19 +40,9 @@ public final class MacJce implements Mac {
 
   @Override
   public byte[] computeMac(final byte[] data) throws GeneralSecurityException {
-    javax.crypto.Mac tmp;
-    try {
-      // Cloning a mac is frequently fast and thread-safe.
-      tmp = (javax.crypto.Mac) this.mac.clone();
-    } catch (java.lang.CloneNotSupportedException ex) {
-      // Unfortunately, the Mac interface in certain versions of Android is not clonable.
-      tmp = EngineFactory.MAC.getInstance(this.algorithm);
-      tmp.init(this.key);
-    }
+    javax.crypto.Mac tmp = newMac();
     tmp.update(data);
-    byte[] digest = new byte[digestSize];
-    System.arraycopy(tmp.doFinal(), 0, digest, 0, digestSize);
-    return digest;
+    return truncate(tmp.doFinal());
   }
 
   @Override
@@ -60,4 +51,54 @@ public final class MacJce implements Mac {
       throw new GeneralSecurityException("invalid MAC");
     }
   }
+
+  @Override
+  public void verifyMac(final byte[] mac, int offset, int length, final byte[] data)
+      throws GeneralSecurityException {
+    if (!SubtleUtil.arrayEquals(computeMac(data), mac, offset, length)) {
+      throw new GeneralSecurityException("invalid MAC");
+    }
+  }
+
+  @Override
+  public byte[] computeMac(ByteBuffer data) throws GeneralSecurityException {
+    return computeMac(new ByteBuffer[] {data});
+  }
+
+  @Override
+  public void verifyMac(final byte[] mac, ByteBuffer data) throws GeneralSecurityException {
+    if (!SubtleUtil.arrayEquals(computeMac(data), mac)) {
+      throw new GeneralSecurityException("invalid MAC");
+    }
+  }
+
+  /**
+   * Computes the MAC over the concatenation of the remaining bytes of {@code chunks}, without
+   * copying them. Each chunk is advanced to its limit.
+   */
+  byte[] computeMac(ByteBuffer... chunks) throws GeneralSecurityException {
+    javax.crypto.Mac tmp = newMac();
+    for (ByteBuffer chunk : chunks) {
+      tmp.update(chunk);
+    }
+    return truncate(tmp.doFinal());
+  }
+
+  private javax.crypto.Mac newMac() throws GeneralSecurityException {
+    try {
+      // Cloning a mac is frequently fast and thread-safe.
+      return (javax.crypto.Mac) this.mac.clone();
+    } catch (java.lang.CloneNotSupportedException ex) {
+      // Unfortunately, the Mac interface in certain versions of Android is not clonable.
+      javax.crypto.Mac tmp = EngineFactory.MAC.getInstance(this.algorithm);
+      tmp.init(this.key);
+      return tmp;
+    }
+  }
+
+  private byte[] truncate(final byte[] fullDigest) {
+    byte[] digest = new byte[digestSize];
+    System.arraycopy(fullDigest, 0, digest, 0, digestSize);
+    return digest;
+  }
 };
@@ -0,0 +1,101 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.subtle;
+
+import com.google.crypto.tink.StreamingAead;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.security.GeneralSecurityException;
+
+/**
+ * An abstract class for StreamingAeads that encrypt a stream in segments, using a per-segment
+ * nonce derived from a random nonce prefix and the segment number.
+ *
+ * <p>The ciphertext consists of a header followed by a sequence of segments. Every ciphertext
+ * segment is {@link #getCiphertextSegmentSize} bytes long, except the first, which is shorter
+ * by {@link #getCiphertextOffset} bytes so that it lines up with the header, and the last, which
+ * may be shorter. Each segment is encrypted and authenticated on its own, together with its
+ * segment number and a flag marking the last segment, which protects against reordering and
+ * truncation.
+ */
+public abstract class NonceBasedStreamingAead implements StreamingAead {
+
+  /** @return a new encrypter for a single stream. */
+  public abstract StreamSegmentEncrypter newStreamSegmentEncrypter(byte[] associatedData)
+      throws GeneralSecurityException;
+
+  /** @return a new decrypter for a single stream. */
+  public abstract StreamSegmentDecrypter newStreamSegmentDecrypter()
+      throws GeneralSecurityException;
+
+  /** @return the size of a full plaintext segment. */
+  public abstract int getPlaintextSegmentSize();
+
+  /** @return the size of a full ciphertext segment. */
+  public abstract int getCiphertextSegmentSize();
+
+  /**
+   * @return the offset of the ciphertext of the first segment, i.e. the number of bytes the
+   * header takes out of the first segment.
+   */
+  public abstract int getCiphertextOffset();
+
+  /** @return the number of bytes each segment adds to its plaintext. */
+  public abstract int getCiphertextOverhead();
+
+  /** @return the size of the header. */
+  public abstract int getHeaderLength();
+
+  @Override
+  public WritableByteChannel newEncryptingChannel(
+      WritableByteChannel ciphertextChannel, byte[] associatedData)
+      throws GeneralSecurityException, IOException {
+    return new StreamingAeadEncryptingChannel(this, ciphertextChannel, associatedData);
+  }
+
+  @Override
+  public ReadableByteChannel newDecryptingChannel(
+      ReadableByteChannel ciphertextChannel, byte[] associatedData)
+      throws GeneralSecurityException, IOException {
+    return new StreamingAeadDecryptingChannel(this, ciphertextChannel, associatedData);
+  }
+
+  @Override
+  public SeekableByteChannel newSeekableDecryptingChannel(
+      SeekableByteChannel ciphertextSource, byte[] associatedData)
+      throws GeneralSecurityException, IOException {
+    return new StreamingAeadSeekableDecryptingChannel(this, ciphertextSource, associatedData);
+  }
+
+  @Override
+  public OutputStream newEncryptingStream(
+      OutputStream ciphertext, byte[] associatedData)
+      throws GeneralSecurityException, IOException {
+    return new StreamingAeadEncryptingStream(this, ciphertext, associatedData);
+  }
+
+  @Override
+  public InputStream newDecryptingStream(
+      InputStream ciphertextStream, byte[] associatedData)
+      throws GeneralSecurityException, IOException {
+    return new StreamingAeadDecryptingStream(this, ciphertextStream, associatedData);
+  }
+}
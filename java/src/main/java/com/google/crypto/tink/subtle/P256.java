@@ -0,0 +1,809 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.subtle;
+
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.spec.ECFieldFp;
+import java.security.spec.ECParameterSpec;
+import java.security.spec.ECPoint;
+import java.util.Arrays;
+
+/**
+ * Pure Java implementation of ECDH and ECDSA over NIST P-256. <p>
+ *
+ * Field elements and scalars are represented as eight 32-bit limbs in Montgomery form, and
+ * points in homogeneous projective coordinates, using the complete addition formulas from
+ * https://eprint.iacr.org/2015/1060 for a = -3. Scalar multiplications run in constant time: all
+ * table lookups touch every entry, and no branch depends on a secret scalar. Multiplications of
+ * the base point use a table of the multiples {@code j * 16^i * G}, computed once per process,
+ * so that they need no doublings at all. <p>
+ *
+ * The engine is disabled by default, in which case the ECDSA key managers and the ECIES KEMs use
+ * the JCE. It can be enabled with {@link #setEnabled}, and is only used for P-256 keys; other
+ * curves always go through the JCE.
+ */
+public final class P256 {
+  private static volatile boolean enabled = false;
+
+  /**
+   * Enables or disables the use of this engine, instead of the JCE, for P-256 keys. This only
+   * affects primitives that are created afterwards.
+   */
+  public static void setEnabled(boolean value) {
+    enabled = value;
+  }
+
+  /**
+   * @return true if P-256 keys should use this engine instead of the JCE.
+   */
+  public static boolean isEnabled() {
+    return enabled;
+  }
+
+  /** The size of a field element, a scalar, or an ECDH shared secret in bytes. */
+  static final int FIELD_SIZE_IN_BYTES = 32;
+
+  private static final int LIMBS = 8;
+  private static final long MASK32 = 0xffffffffL;
+  private static final ECParameterSpec SPEC = EcUtil.getNistP256Params();
+  private static final Modulus FIELD = new Modulus(((ECFieldFp) SPEC.getCurve().getField()).getP());
+  private static final Modulus ORDER = new Modulus(SPEC.getOrder());
+  private static final int[] B = FIELD.toMontgomery(toLimbs(SPEC.getCurve().getB()));
+  private static final int[] SQRT_EXPONENT =
+      toLimbs(FIELD.value.add(BigInteger.ONE).shiftRight(2));
+
+  /**
+   * @return true if {@code spec} describes P-256.
+   */
+  static boolean isP256(ECParameterSpec spec) {
+    return spec.getCurve().equals(SPEC.getCurve())
+        && spec.getGenerator().equals(SPEC.getGenerator())
+        && spec.getOrder().equals(SPEC.getOrder())
+        && spec.getCofactor() == SPEC.getCofactor();
+  }
+
+  /**
+   * Arithmetic modulo an odd 256-bit modulus, on values in Montgomery form with R = 2^256. All
+   * operations take inputs smaller than the modulus, and return outputs smaller than the
+   * modulus. Outputs may alias inputs.
+   */
+  private static final class Modulus {
+    final BigInteger value;
+    final int[] limbs;
+    final int[] minusTwo;
+    // -limbs^-1 mod 2^32.
+    final long inverse;
+    // R^2 mod value.
+    final int[] rSquared;
+    // R mod value, i.e. 1 in Montgomery form.
+    final int[] one;
+
+    Modulus(BigInteger value) {
+      BigInteger two32 = BigInteger.ONE.shiftLeft(32);
+      this.value = value;
+      this.limbs = toLimbs(value);
+      this.minusTwo = toLimbs(value.subtract(BigInteger.valueOf(2)));
+      this.inverse = value.mod(two32).modInverse(two32).negate().mod(two32).longValue();
+      this.rSquared = toLimbs(BigInteger.ONE.shiftLeft(512).mod(value));
+      this.one = toLimbs(BigInteger.ONE.shiftLeft(256).mod(value));
+    }
+
+    /** out = a * b / R, with coarsely integrated operand scanning (CIOS). */
+    void mul(int[] out, int[] a, int[] b) {
+      long[] t = new long[LIMBS + 2];
+      for (int i = 0; i < LIMBS; i++) {
+        // t += a * b[i]. The sums are at most 2^64 - 1, so they fit in an unsigned long.
+        long bi = b[i] & MASK32;
+        long carry = 0;
+        for (int j = 0; j < LIMBS; j++) {
+          long s = t[j] + (a[j] & MASK32) * bi + carry;
+          t[j] = s & MASK32;
+          carry = s >>> 32;
+        }
+        long s = t[LIMBS] + carry;
+        t[LIMBS] = s & MASK32;
+        t[LIMBS + 1] = s >>> 32;
+        // t = (t + u * modulus) / 2^32, where u is chosen so that the division is exact.
+        long u = (t[0] * inverse) & MASK32;
+        carry = (t[0] + u * (limbs[0] & MASK32)) >>> 32;
+        for (int j = 1; j < LIMBS; j++) {
+          s = t[j] + u * (limbs[j] & MASK32) + carry;
+          t[j - 1] = s & MASK32;
+          carry = s >>> 32;
+        }
+        s = t[LIMBS] + carry;
+        t[LIMBS - 1] = s & MASK32;
+        t[LIMBS] = t[LIMBS + 1] + (s >>> 32);
+      }
+      // t < 2 * modulus, so at most one subtraction is needed.
+      long borrow = 0;
+      for (int j = 0; j < LIMBS; j++) {
+        long s = t[j] - (limbs[j] & MASK32) - borrow;
+        out[j] = (int) s;
+        borrow = s >>> 63;
+      }
+      borrow = (t[LIMBS] - borrow) >>> 63;
+      // Keeps t if the subtraction borrowed, i.e. if t < modulus.
+      int keep = (int) -borrow;
+      for (int j = 0; j < LIMBS; j++) {
+        out[j] = ((int) t[j] & keep) | (out[j] & ~keep);
+      }
+    }
+
+    void square(int[] out, int[] a) {
+      mul(out, a, a);
+    }
+
+    /** out = a + b. */
+    void add(int[] out, int[] a, int[] b) {
+      long carry = 0;
+      for (int j = 0; j < LIMBS; j++) {
+        long s = (a[j] & MASK32) + (b[j] & MASK32) + carry;
+        out[j] = (int) s;
+        carry = s >>> 32;
+      }
+      long borrow = 0;
+      for (int j = 0; j < LIMBS; j++) {
+        borrow = ((out[j] & MASK32) - (limbs[j] & MASK32) - borrow) >>> 63;
+      }
+      // The sum is reduced if it overflowed, or if it is not smaller than the modulus.
+      subtractModulus(out, (int) -(carry | (borrow ^ 1)));
+    }
+
+    /** out = a - b. */
+    void sub(int[] out, int[] a, int[] b) {
+      long borrow = 0;
+      for (int j = 0; j < LIMBS; j++) {
+        long s = (a[j] & MASK32) - (b[j] & MASK32) - borrow;
+        out[j] = (int) s;
+        borrow = s >>> 63;
+      }
+      long carry = 0;
+      int mask = (int) -borrow;
+      for (int j = 0; j < LIMBS; j++) {
+        long s = (out[j] & MASK32) + (limbs[j] & mask & MASK32) + carry;
+        out[j] = (int) s;
+        carry = s >>> 32;
+      }
+    }
+
+    /** Reduces a value in [0, 2^256) that is smaller than twice the modulus. */
+    void reduce(int[] a) {
+      long borrow = 0;
+      for (int j = 0; j < LIMBS; j++) {
+        borrow = ((a[j] & MASK32) - (limbs[j] & MASK32) - borrow) >>> 63;
+      }
+      subtractModulus(a, (int) (borrow - 1));
+    }
+
+    /** Subtracts the modulus from a if mask is all ones, and does nothing if mask is 0. */
+    private void subtractModulus(int[] a, int mask) {
+      long borrow = 0;
+      for (int j = 0; j < LIMBS; j++) {
+        long s = (a[j] & MASK32) - (limbs[j] & mask & MASK32) - borrow;
+        a[j] = (int) s;
+        borrow = s >>> 63;
+      }
+    }
+
+    /** out = a^e, where e is public. */
+    void pow(int[] out, int[] a, int[] e) {
+      int[] result = one.clone();
+      for (int i = 255; i >= 0; i--) {
+        square(result, result);
+        if (((e[i / 32] >>> (i % 32)) & 1) != 0) {
+          mul(result, result, a);
+        }
+      }
+      System.arraycopy(result, 0, out, 0, LIMBS);
+    }
+
+    /** out = a^-1, or 0 if a is 0. */
+    void invert(int[] out, int[] a) {
+      pow(out, a, minusTwo);
+    }
+
+    int[] toMontgomery(int[] a) {
+      int[] out = new int[LIMBS];
+      mul(out, a, rSquared);
+      return out;
+    }
+
+    int[] fromMontgomery(int[] a) {
+      int[] plainOne = new int[LIMBS];
+      plainOne[0] = 1;
+      int[] out = new int[LIMBS];
+      mul(out, a, plainOne);
+      return out;
+    }
+
+    /** @return true if a is in [1, modulus). */
+    boolean isValidNonZero(int[] a) {
+      return !isZero(a) && isLessThan(a, limbs);
+    }
+  }
+
+  /** A point in homogeneous projective coordinates, in Montgomery form. */
+  static final class Point {
+    final int[] x = new int[LIMBS];
+    final int[] y = new int[LIMBS];
+    final int[] z = new int[LIMBS];
+
+    static Point infinity() {
+      Point p = new Point();
+      System.arraycopy(FIELD.one, 0, p.y, 0, LIMBS);
+      return p;
+    }
+
+    boolean isInfinity() {
+      return isZero(z);
+    }
+  }
+
+  /** Precomputed multiples of a point, for {@link #scalarMult}. */
+  static final class Table {
+    // points[j] = j * P, for j in [0, 16).
+    final Point[] points = new Point[16];
+
+    Table(Point p) {
+      points[0] = Point.infinity();
+      for (int j = 1; j < 16; j++) {
+        points[j] = add(points[j - 1], p);
+      }
+    }
+  }
+
+  /** Multiples of the base point. */
+  private static final class BaseTable {
+    // TABLE[i].points[j] = j * 16^i * G.
+    static final Table[] TABLE = new Table[64];
+
+    static {
+      Point p = new Point();
+      System.arraycopy(FIELD.toMontgomery(toLimbs(SPEC.getGenerator().getAffineX())), 0,
+          p.x, 0, LIMBS);
+      System.arraycopy(FIELD.toMontgomery(toLimbs(SPEC.getGenerator().getAffineY())), 0,
+          p.y, 0, LIMBS);
+      System.arraycopy(FIELD.one, 0, p.z, 0, LIMBS);
+      for (int i = 0; i < 64; i++) {
+        TABLE[i] = new Table(p);
+        for (int k = 0; k < 4; k++) {
+          p = twice(p);
+        }
+      }
+    }
+  }
+
+  /** Algorithm 4 of https://eprint.iacr.org/2015/1060, which is complete. */
+  static Point add(Point p, Point q) {
+    Point r = new Point();
+    int[] t0 = new int[LIMBS];
+    int[] t1 = new int[LIMBS];
+    int[] t2 = new int[LIMBS];
+    int[] t3 = new int[LIMBS];
+    int[] t4 = new int[LIMBS];
+    int[] x3 = r.x;
+    int[] y3 = r.y;
+    int[] z3 = r.z;
+    FIELD.mul(t0, p.x, q.x);
+    FIELD.mul(t1, p.y, q.y);
+    FIELD.mul(t2, p.z, q.z);
+    FIELD.add(t3, p.x, p.y);
+    FIELD.add(t4, q.x, q.y);
+    FIELD.mul(t3, t3, t4);
+    FIELD.add(t4, t0, t1);
+    FIELD.sub(t3, t3, t4);
+    FIELD.add(t4, p.y, p.z);
+    FIELD.add(x3, q.y, q.z);
+    FIELD.mul(t4, t4, x3);
+    FIELD.add(x3, t1, t2);
+    FIELD.sub(t4, t4, x3);
+    FIELD.add(x3, p.x, p.z);
+    FIELD.add(y3, q.x, q.z);
+    FIELD.mul(x3, x3, y3);
+    FIELD.add(y3, t0, t2);
+    FIELD.sub(y3, x3, y3);
+    FIELD.mul(z3, B, t2);
+    FIELD.sub(x3, y3, z3);
+    FIELD.add(z3, x3, x3);
+    FIELD.add(x3, x3, z3);
+    FIELD.sub(z3, t1, x3);
+    FIELD.add(x3, t1, x3);
+    FIELD.mul(y3, B, y3);
+    FIELD.add(t1, t2, t2);
+    FIELD.add(t2, t1, t2);
+    FIELD.sub(y3, y3, t2);
+    FIELD.sub(y3, y3, t0);
+    FIELD.add(t1, y3, y3);
+    FIELD.add(y3, t1, y3);
+    FIELD.add(t1, t0, t0);
+    FIELD.add(t0, t1, t0);
+    FIELD.sub(t0, t0, t2);
+    FIELD.mul(t1, t4, y3);
+    FIELD.mul(t2, t0, y3);
+    FIELD.mul(y3, x3, z3);
+    FIELD.add(y3, y3, t2);
+    FIELD.mul(x3, t3, x3);
+    FIELD.sub(x3, x3, t1);
+    FIELD.mul(z3, t4, z3);
+    FIELD.mul(t1, t3, t0);
+    FIELD.add(z3, z3, t1);
+    return r;
+  }
+
+  /** Algorithm 6 of https://eprint.iacr.org/2015/1060, which is complete. */
+  static Point twice(Point p) {
+    Point r = new Point();
+    int[] t0 = new int[LIMBS];
+    int[] t1 = new int[LIMBS];
+    int[] t2 = new int[LIMBS];
+    int[] t3 = new int[LIMBS];
+    int[] x3 = r.x;
+    int[] y3 = r.y;
+    int[] z3 = r.z;
+    FIELD.square(t0, p.x);
+    FIELD.square(t1, p.y);
+    FIELD.square(t2, p.z);
+    FIELD.mul(t3, p.x, p.y);
+    FIELD.add(t3, t3, t3);
+    FIELD.mul(z3, p.x, p.z);
+    FIELD.add(z3, z3, z3);
+    FIELD.mul(y3, B, t2);
+    FIELD.sub(y3, y3, z3);
+    FIELD.add(x3, y3, y3);
+    FIELD.add(y3, x3, y3);
+    FIELD.sub(x3, t1, y3);
+    FIELD.add(y3, t1, y3);
+    FIELD.mul(y3, x3, y3);
+    FIELD.mul(x3, x3, t3);
+    FIELD.add(t3, t2, t2);
+    FIELD.add(t2, t2, t3);
+    FIELD.mul(z3, B, z3);
+    FIELD.sub(z3, z3, t2);
+    FIELD.sub(z3, z3, t0);
+    FIELD.add(t3, z3, z3);
+    FIELD.add(z3, z3, t3);
+    FIELD.add(t3, t0, t0);
+    FIELD.add(t0, t3, t0);
+    FIELD.sub(t0, t0, t2);
+    FIELD.mul(t0, t0, z3);
+    FIELD.add(y3, y3, t0);
+    FIELD.mul(t0, p.y, p.z);
+    FIELD.add(t0, t0, t0);
+    FIELD.mul(z3, t0, z3);
+    FIELD.sub(x3, x3, z3);
+    FIELD.mul(z3, t0, t1);
+    FIELD.add(z3, z3, z3);
+    FIELD.add(z3, z3, z3);
+    return r;
+  }
+
+  /** Copies table.points[index] into out, reading all entries of the table. */
+  private static void select(Point out, Table table, int index) {
+    Arrays.fill(out.x, 0);
+    Arrays.fill(out.y, 0);
+    Arrays.fill(out.z, 0);
+    for (int j = 0; j < 16; j++) {
+      // mask is all ones if j == index, and 0 otherwise.
+      int mask = ((j ^ index) - 1) >> 31;
+      Point p = table.points[j];
+      for (int k = 0; k < LIMBS; k++) {
+        out.x[k] |= p.x[k] & mask;
+        out.y[k] |= p.y[k] & mask;
+        out.z[k] |= p.z[k] & mask;
+      }
+    }
+  }
+
+  /** @return the i-th 4-bit window of a big-endian 32-byte scalar, starting from the right. */
+  private static int window(byte[] scalar, int i) {
+    return (scalar[31 - i / 2] >>> (4 * (i % 2))) & 0xf;
+  }
+
+  /** @return scalar * P, where table was computed from P. */
+  static Point scalarMult(byte[] scalar, Table table) {
+    Point result = Point.infinity();
+    Point selected = new Point();
+    for (int i = 63; i >= 0; i--) {
+      for (int k = 0; k < 4; k++) {
+        result = twice(result);
+      }
+      select(selected, table, window(scalar, i));
+      result = add(result, selected);
+    }
+    return result;
+  }
+
+  /** @return scalar * G. */
+  static Point scalarMultBase(byte[] scalar) {
+    Point result = Point.infinity();
+    Point selected = new Point();
+    for (int i = 0; i < 64; i++) {
+      select(selected, BaseTable.TABLE[i], window(scalar, i));
+      result = add(result, selected);
+    }
+    return result;
+  }
+
+  /** @return the affine coordinates {x, y} of p, in normal form. */
+  private static int[][] toAffine(Point p) throws GeneralSecurityException {
+    if (p.isInfinity()) {
+      throw new GeneralSecurityException("point is at infinity");
+    }
+    int[] zInverse = new int[LIMBS];
+    FIELD.invert(zInverse, p.z);
+    int[] x = new int[LIMBS];
+    int[] y = new int[LIMBS];
+    FIELD.mul(x, p.x, zInverse);
+    FIELD.mul(y, p.y, zInverse);
+    return new int[][] {FIELD.fromMontgomery(x), FIELD.fromMontgomery(y)};
+  }
+
+  /** @return the point with affine coordinates x and y, after checking it's on the curve. */
+  private static Point fromAffine(int[] x, int[] y) throws GeneralSecurityException {
+    if (!isLessThan(x, FIELD.limbs)) {
+      throw new GeneralSecurityException("x is out of range");
+    }
+    if (!isLessThan(y, FIELD.limbs)) {
+      throw new GeneralSecurityException("y is out of range");
+    }
+    Point p = new Point();
+    System.arraycopy(FIELD.toMontgomery(x), 0, p.x, 0, LIMBS);
+    System.arraycopy(FIELD.toMontgomery(y), 0, p.y, 0, LIMBS);
+    System.arraycopy(FIELD.one, 0, p.z, 0, LIMBS);
+    int[] lhs = new int[LIMBS];
+    FIELD.square(lhs, p.y);
+    if (!Arrays.equals(lhs, rightHandSide(p.x))) {
+      throw new GeneralSecurityException("Point is not on curve");
+    }
+    return p;
+  }
+
+  /** @return x^3 - 3x + b, with x in Montgomery form. */
+  private static int[] rightHandSide(int[] x) {
+    int[] rhs = new int[LIMBS];
+    int[] threeX = new int[LIMBS];
+    FIELD.square(rhs, x);
+    FIELD.mul(rhs, rhs, x);
+    FIELD.add(threeX, x, x);
+    FIELD.add(threeX, threeX, x);
+    FIELD.sub(rhs, rhs, threeX);
+    FIELD.add(rhs, rhs, B);
+    return rhs;
+  }
+
+  /**
+   * Converts a public point, and checks that it is on the curve.
+   *
+   * @throws GeneralSecurityException if the point is not a valid P-256 point.
+   */
+  static Point decodePoint(ECPoint point) throws GeneralSecurityException {
+    if (point.getAffineX() == null || point.getAffineY() == null) {
+      throw new GeneralSecurityException("point is at infinity");
+    }
+    if (point.getAffineX().signum() == -1 || point.getAffineX().bitLength() > 256) {
+      throw new GeneralSecurityException("x is out of range");
+    }
+    if (point.getAffineY().signum() == -1 || point.getAffineY().bitLength() > 256) {
+      throw new GeneralSecurityException("y is out of range");
+    }
+    return fromAffine(toLimbs(point.getAffineX()), toLimbs(point.getAffineY()));
+  }
+
+  /**
+   * Decodes an encoded point, as {@link EcUtil#ecPointDecode} does, and checks that it is on the
+   * curve.
+   *
+   * @throws GeneralSecurityException if the encoding is invalid.
+   */
+  static Point decodePoint(byte[] encoded, EcUtil.PointFormat format)
+      throws GeneralSecurityException {
+    switch (format) {
+      case UNCOMPRESSED:
+        if (encoded.length != 2 * FIELD_SIZE_IN_BYTES + 1) {
+          throw new GeneralSecurityException("invalid point size");
+        }
+        if (encoded[0] != 4) {
+          throw new GeneralSecurityException("invalid point format");
+        }
+        return fromAffine(fromBytes(encoded, 1), fromBytes(encoded, 1 + FIELD_SIZE_IN_BYTES));
+      case COMPRESSED:
+        if (encoded.length != FIELD_SIZE_IN_BYTES + 1) {
+          throw new GeneralSecurityException("compressed point has wrong length");
+        }
+        if (encoded[0] != 2 && encoded[0] != 3) {
+          throw new GeneralSecurityException("invalid format");
+        }
+        int[] x = fromBytes(encoded, 1);
+        if (!isLessThan(x, FIELD.limbs)) {
+          throw new GeneralSecurityException("x is out of range");
+        }
+        // p = 3 mod 4, so a square root of rhs is rhs^((p + 1) / 4), if there is any.
+        int[] rhs = rightHandSide(FIELD.toMontgomery(x));
+        int[] y = new int[LIMBS];
+        FIELD.pow(y, rhs, SQRT_EXPONENT);
+        int[] ySquared = new int[LIMBS];
+        FIELD.square(ySquared, y);
+        if (!Arrays.equals(ySquared, rhs)) {
+          throw new GeneralSecurityException("Could not find a modular square root");
+        }
+        y = FIELD.fromMontgomery(y);
+        if ((y[0] & 1) != (encoded[0] & 1)) {
+          FIELD.sub(y, new int[LIMBS], y);
+        }
+        return fromAffine(x, y);
+      default:
+        throw new GeneralSecurityException("invalid format:" + format);
+    }
+  }
+
+  /** Encodes p, as {@link EcUtil#ecPointEncode} does. */
+  static byte[] encodePoint(Point p, EcUtil.PointFormat format)
+      throws GeneralSecurityException {
+    int[][] affine = toAffine(p);
+    switch (format) {
+      case UNCOMPRESSED:
+        {
+          byte[] encoded = new byte[2 * FIELD_SIZE_IN_BYTES + 1];
+          encoded[0] = 4;
+          toBytes(affine[0], encoded, 1);
+          toBytes(affine[1], encoded, 1 + FIELD_SIZE_IN_BYTES);
+          return encoded;
+        }
+      case COMPRESSED:
+        {
+          byte[] encoded = new byte[FIELD_SIZE_IN_BYTES + 1];
+          encoded[0] = (byte) (2 + (affine[1][0] & 1));
+          toBytes(affine[0], encoded, 1);
+          return encoded;
+        }
+      default:
+        throw new GeneralSecurityException("invalid format:" + format);
+    }
+  }
+
+  /**
+   * Converts a private key to a big-endian 32-byte scalar.
+   *
+   * @throws GeneralSecurityException if the key is not in [1, n).
+   */
+  static byte[] toScalar(BigInteger privateValue) throws GeneralSecurityException {
+    if (privateValue.signum() != 1 || privateValue.compareTo(SPEC.getOrder()) >= 0) {
+      throw new GeneralSecurityException("invalid private key");
+    }
+    byte[] scalar = new byte[FIELD_SIZE_IN_BYTES];
+    toBytes(toLimbs(privateValue), scalar, 0);
+    return scalar;
+  }
+
+  /** @return a uniformly random scalar in [1, n). */
+  static byte[] newScalar() {
+    while (true) {
+      byte[] scalar = Random.randBytes(FIELD_SIZE_IN_BYTES);
+      if (ORDER.isValidNonZero(fromBytes(scalar, 0))) {
+        return scalar;
+      }
+    }
+  }
+
+  /** @return the ECDH shared secret, i.e. the x-coordinate of scalar * P. */
+  static byte[] computeSharedSecret(byte[] scalar, Table table) throws GeneralSecurityException {
+    int[][] affine = toAffine(scalarMult(scalar, table));
+    byte[] secret = new byte[FIELD_SIZE_IN_BYTES];
+    toBytes(affine[0], secret, 0);
+    return secret;
+  }
+
+  /**
+   * Computes a DER-encoded ECDSA signature of a message digest. Only the leftmost 256 bits of
+   * the digest are used.
+   */
+  static byte[] sign(byte[] digest, byte[] scalar) throws GeneralSecurityException {
+    int[] e = ORDER.toMontgomery(digestToLimbs(digest));
+    int[] d = ORDER.toMontgomery(fromBytes(scalar, 0));
+    try {
+      while (true) {
+        byte[] k = newScalar();
+        int[] kInverse = ORDER.toMontgomery(fromBytes(k, 0));
+        int[] r = toAffine(scalarMultBase(k))[0];
+        Arrays.fill(k, (byte) 0);
+        ORDER.reduce(r);
+        // s = k^-1 * (e + r * d) mod n.
+        int[] s = ORDER.toMontgomery(r);
+        ORDER.mul(s, s, d);
+        ORDER.add(s, s, e);
+        ORDER.invert(kInverse, kInverse);
+        ORDER.mul(s, s, kInverse);
+        Arrays.fill(kInverse, 0);
+        s = ORDER.fromMontgomery(s);
+        if (!isZero(r) && !isZero(s)) {
+          return derEncode(r, s);
+        }
+      }
+    } finally {
+      Arrays.fill(d, 0);
+    }
+  }
+
+  /**
+   * Verifies a DER-encoded ECDSA signature of a message digest, with a public key for which
+   * table was computed.
+   *
+   * @return true if the signature is valid.
+   */
+  static boolean verify(byte[] digest, byte[] signature, int offset, int length, Table table)
+      throws GeneralSecurityException {
+    int[][] rs = derDecode(signature, offset, length);
+    if (rs == null) {
+      return false;
+    }
+    int[] r = rs[0];
+    int[] s = rs[1];
+    if (!ORDER.isValidNonZero(r) || !ORDER.isValidNonZero(s)) {
+      return false;
+    }
+    // u1 = e / s mod n, and u2 = r / s mod n.
+    int[] w = ORDER.toMontgomery(s);
+    ORDER.invert(w, w);
+    int[] u1 = ORDER.toMontgomery(digestToLimbs(digest));
+    ORDER.mul(u1, u1, w);
+    int[] u2 = ORDER.toMontgomery(r);
+    ORDER.mul(u2, u2, w);
+    byte[] u1Bytes = new byte[FIELD_SIZE_IN_BYTES];
+    byte[] u2Bytes = new byte[FIELD_SIZE_IN_BYTES];
+    toBytes(ORDER.fromMontgomery(u1), u1Bytes, 0);
+    toBytes(ORDER.fromMontgomery(u2), u2Bytes, 0);
+    Point point = add(scalarMultBase(u1Bytes), scalarMult(u2Bytes, table));
+    if (point.isInfinity()) {
+      return false;
+    }
+    int[] x = toAffine(point)[0];
+    ORDER.reduce(x);
+    return Arrays.equals(x, r);
+  }
+
+  /** @return the leftmost 256 bits of digest, reduced mod n. */
+  private static int[] digestToLimbs(byte[] digest) {
+    byte[] truncated = new byte[FIELD_SIZE_IN_BYTES];
+    if (digest.length >= FIELD_SIZE_IN_BYTES) {
+      System.arraycopy(digest, 0, truncated, 0, FIELD_SIZE_IN_BYTES);
+    } else {
+      System.arraycopy(digest, 0, truncated, FIELD_SIZE_IN_BYTES - digest.length, digest.length);
+    }
+    int[] e = fromBytes(truncated, 0);
+    ORDER.reduce(e);
+    return e;
+  }
+
+  private static byte[] derEncode(int[] r, int[] s) {
+    byte[] rBytes = derInteger(r);
+    byte[] sBytes = derInteger(s);
+    // Both integers are at most 35 bytes long, so all lengths fit in a single byte.
+    byte[] encoded = new byte[2 + rBytes.length + sBytes.length];
+    encoded[0] = 0x30;
+    encoded[1] = (byte) (rBytes.length + sBytes.length);
+    System.arraycopy(rBytes, 0, encoded, 2, rBytes.length);
+    System.arraycopy(sBytes, 0, encoded, 2 + rBytes.length, sBytes.length);
+    return encoded;
+  }
+
+  /** @return the DER encoding of a positive integer. */
+  private static byte[] derInteger(int[] value) {
+    byte[] bytes = new byte[FIELD_SIZE_IN_BYTES + 1];
+    toBytes(value, bytes, 1);
+    int start = 0;
+    // Skips leading zeros, but keeps one if the next byte has its top bit set.
+    while (start < FIELD_SIZE_IN_BYTES && bytes[start] == 0 && bytes[start + 1] >= 0) {
+      start++;
+    }
+    byte[] encoded = new byte[2 + bytes.length - start];
+    encoded[0] = 0x02;
+    encoded[1] = (byte) (bytes.length - start);
+    System.arraycopy(bytes, start, encoded, 2, bytes.length - start);
+    return encoded;
+  }
+
+  /** @return {r, s}, or null if the signature is not a strict DER encoding of two integers. */
+  private static int[][] derDecode(byte[] signature, int offset, int length) {
+    if (length < 2 || signature[offset] != 0x30 || (signature[offset + 1] & 0xff) != length - 2) {
+      return null;
+    }
+    int[][] rs = new int[2][];
+    int pos = offset + 2;
+    int end = offset + length;
+    for (int i = 0; i < 2; i++) {
+      if (end - pos < 2 || signature[pos] != 0x02) {
+        return null;
+      }
+      int size = signature[pos + 1] & 0xff;
+      pos += 2;
+      if (size == 0 || size > FIELD_SIZE_IN_BYTES + 1 || end - pos < size) {
+        return null;
+      }
+      // Rejects negative integers, and non-minimal encodings.
+      if (signature[pos] < 0 || (size > 1 && signature[pos] == 0 && signature[pos + 1] >= 0)) {
+        return null;
+      }
+      if (size == FIELD_SIZE_IN_BYTES + 1) {
+        if (signature[pos] != 0) {
+          return null;
+        }
+        pos++;
+        size--;
+      }
+      byte[] value = new byte[FIELD_SIZE_IN_BYTES];
+      System.arraycopy(signature, pos, value, FIELD_SIZE_IN_BYTES - size, size);
+      rs[i] = fromBytes(value, 0);
+      pos += size;
+    }
+    if (pos != end) {
+      return null;
+    }
+    return rs;
+  }
+
+  /** @return true if a < b, as unsigned 256-bit integers. */
+  private static boolean isLessThan(int[] a, int[] b) {
+    long borrow = 0;
+    for (int j = 0; j < LIMBS; j++) {
+      borrow = ((a[j] & MASK32) - (b[j] & MASK32) - borrow) >>> 63;
+    }
+    return borrow == 1;
+  }
+
+  private static boolean isZero(int[] a) {
+    int bits = 0;
+    for (int j = 0; j < LIMBS; j++) {
+      bits |= a[j];
+    }
+    return bits == 0;
+  }
+
+  /** Converts a non-negative integer smaller than 2^256 to little-endian limbs. */
+  private static int[] toLimbs(BigInteger value) {
+    int[] limbs = new int[LIMBS];
+    for (int j = 0; j < LIMBS; j++) {
+      limbs[j] = value.shiftRight(32 * j).intValue();
+    }
+    return limbs;
+  }
+
+  /** Converts 32 big-endian bytes at offset to little-endian limbs. */
+  private static int[] fromBytes(byte[] bytes, int offset) {
+    int[] limbs = new int[LIMBS];
+    for (int j = 0; j < LIMBS; j++) {
+      int pos = offset + FIELD_SIZE_IN_BYTES - 4 * (j + 1);
+      limbs[j] = ((bytes[pos] & 0xff) << 24) | ((bytes[pos + 1] & 0xff) << 16)
+          | ((bytes[pos + 2] & 0xff) << 8) | (bytes[pos + 3] & 0xff);
+    }
+    return limbs;
+  }
+
+  /** Writes little-endian limbs as 32 big-endian bytes at offset. */
+  private static void toBytes(int[] limbs, byte[] out, int offset) {
+    for (int j = 0; j < LIMBS; j++) {
+      int pos = offset + FIELD_SIZE_IN_BYTES - 4 * (j + 1);
+      out[pos] = (byte) (limbs[j] >>> 24);
+      out[pos + 1] = (byte) (limbs[j] >>> 16);
+      out[pos + 2] = (byte) (limbs[j] >>> 8);
+      out[pos + 3] = (byte) limbs[j];
+    }
+  }
+
+  private P256() {}
+}
@@ -0,0 +1,145 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.subtle;
+
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Splits counter mode work on a long message into chunks, and processes the chunks on an
+ * {@link Executor}.
+ *
+ * <p>The key stream of a chunk only depends on the position of its first block, so that every
+ * chunk can be encrypted independently, and the output is identical to processing the message
+ * in one go. The calling thread works on the chunks as well, and only waits for chunks that are
+ * being processed by other threads. This way, a call cannot deadlock even if it is made from a
+ * thread of {@code executor}, or if {@code executor} rejects some of the tasks.
+ */
+final class ParallelCtr {
+  /**
+   * The size of a chunk. This is a multiple of the block size of both AES and {@link DJBCipher},
+   * and large enough that the cost of handing a chunk to another thread is negligible.
+   */
+  static final int CHUNK_SIZE_IN_BYTES = 256 * 1024;
+
+  private ParallelCtr() {}
+
+  /** The work on the chunk of {@code length} bytes starting at {@code offset}. */
+  interface Chunk {
+    void process(int offset, int length) throws GeneralSecurityException;
+  }
+
+  /**
+   * @return true if a message of {@code length} bytes is split into chunks on {@code executor}.
+   */
+  static boolean shouldSplit(Executor executor, int length) {
+    return executor != null && length > CHUNK_SIZE_IN_BYTES;
+  }
+
+  /**
+   * @return true if the remaining bytes of {@code input} partially overlap with the bytes of
+   * {@code output} that they are processed into, in which case a chunk could overwrite input that
+   * another chunk has not read yet. Processing in place is fine. Buffers that are not backed by
+   * an array are assumed not to overlap.
+   */
+  static boolean mayOverlap(ByteBuffer input, ByteBuffer output) {
+    if (!input.hasArray() || !output.hasArray() || input.array() != output.array()) {
+      return false;
+    }
+    int inputStart = input.arrayOffset() + input.position();
+    int outputStart = output.arrayOffset() + output.position();
+    return inputStart != outputStart
+        && inputStart < outputStart + input.remaining()
+        && outputStart < inputStart + input.remaining();
+  }
+
+  /**
+   * Processes all chunks of a message of {@code length} bytes, and returns once all of them are
+   * done.
+   *
+   * @throws GeneralSecurityException if processing any of the chunks failed.
+   */
+  static void run(Executor executor, final int length, final Chunk chunk)
+      throws GeneralSecurityException {
+    final int numChunks = length == 0 ? 0 : (length - 1) / CHUNK_SIZE_IN_BYTES + 1;
+    final AtomicInteger nextChunk = new AtomicInteger();
+    final CountDownLatch done = new CountDownLatch(numChunks);
+    final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+    Runnable worker = new Runnable() {
+      @Override
+      public void run() {
+        int i;
+        while ((i = nextChunk.getAndIncrement()) < numChunks) {
+          try {
+            int offset = i * CHUNK_SIZE_IN_BYTES;
+            chunk.process(offset, Math.min(CHUNK_SIZE_IN_BYTES, length - offset));
+          } catch (Throwable t) {
+            failure.compareAndSet(null, t);
+          } finally {
+            done.countDown();
+          }
+        }
+      }
+    };
+    int numWorkers = Math.min(numChunks, Runtime.getRuntime().availableProcessors()) - 1;
+    for (int i = 0; i < numWorkers; i++) {
+      try {
+        executor.execute(worker);
+      } catch (RejectedExecutionException e) {
+        // The calling thread picks up the remaining chunks.
+        break;
+      }
+    }
+    worker.run();
+    awaitUninterruptibly(done);
+
+    Throwable t = failure.get();
+    if (t instanceof GeneralSecurityException) {
+      throw (GeneralSecurityException) t;
+    }
+    if (t instanceof RuntimeException) {
+      throw (RuntimeException) t;
+    }
+    if (t instanceof Error) {
+      throw (Error) t;
+    }
+  }
+
+  /**
+   * Waits until the other threads are done with their chunks, since they write into buffers that
+   * belong to the caller.
+   */
+  private static void awaitUninterruptibly(CountDownLatch latch) {
+    boolean interrupted = false;
+    while (true) {
+      try {
+        latch.await();
+        break;
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
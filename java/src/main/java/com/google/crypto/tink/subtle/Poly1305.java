@@ -0,0 +1,262 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.subtle;
+
+import java.nio.ByteBuffer;
+
+/**
+ * An incremental implementation of DJB's Poly1305 one-time authenticator, based on
+ * <a href="https://tools.ietf.org/html/rfc7539#section-2.5">RFC 7539, section 2.5</a>.
+ *
+ * The implementation is based on poly1305 implementation by Andrew Moon
+ * (https://github.com/floodyberry/poly1305-donna) and released as public domain.
+ *
+ * <p>Data is passed in with any number of calls to {@code update}, and the MAC is returned by
+ * {@link #finish}. Stateful and <b>not</b> thread-safe; a {@link Poly1305} must only be used for
+ * a single message, since the key is a one-time key.
+ */
+final class Poly1305 {
+  static final int BLOCK_SIZE_IN_BYTES = 16;
+  static final int KEY_SIZE_IN_BYTES = 32;
+  static final int MAC_SIZE_IN_BYTES = 16;
+
+  // r, clamped and in radix 2^26, and 5 * r.
+  private final long r0;
+  private final long r1;
+  private final long r2;
+  private final long r3;
+  private final long r4;
+  private final long s1;
+  private final long s2;
+  private final long s3;
+  private final long s4;
+
+  // The second half of the key, added to the accumulator at the end.
+  private final long pad0;
+  private final long pad1;
+  private final long pad2;
+  private final long pad3;
+
+  // The accumulator, in radix 2^26.
+  private long h0;
+  private long h1;
+  private long h2;
+  private long h3;
+  private long h4;
+
+  // Data that doesn't make up a full block yet.
+  private final byte[] buffer = new byte[BLOCK_SIZE_IN_BYTES];
+  private int bufferLength;
+  private boolean finished;
+  // Scratch space for copying data out of buffers that are not backed by an array.
+  private byte[] chunk;
+
+  /**
+   * Constructs a new {@link Poly1305} with the one-time {@code key}.
+   *
+   * @throws IllegalArgumentException when {@code key} is shorter than 32 bytes.
+   */
+  Poly1305(final byte[] key) {
+    if (key.length < KEY_SIZE_IN_BYTES) {
+      throw new IllegalArgumentException("The key length in bytes must be 32.");
+    }
+    // r &= 0xffffffc0ffffffc0ffffffc0fffffff
+    r0 = load26(key, 0, 0) & 0x3ffffff;
+    r1 = load26(key, 3, 2) & 0x3ffff03;
+    r2 = load26(key, 6, 4) & 0x3ffc0ff;
+    r3 = load26(key, 9, 6) & 0x3f03fff;
+    r4 = load26(key, 12, 8) & 0x00fffff;
+    s1 = r1 * 5;
+    s2 = r2 * 5;
+    s3 = r3 * 5;
+    s4 = r4 * 5;
+    pad0 = load32(key, 16);
+    pad1 = load32(key, 20);
+    pad2 = load32(key, 24);
+    pad3 = load32(key, 28);
+  }
+
+  /**
+   * Computes the Poly1305 MAC of {@code msg} in one go.
+   */
+  static byte[] computeMac(final byte[] key, final byte[] msg) {
+    Poly1305 mac = new Poly1305(key);
+    mac.update(msg, 0, msg.length);
+    return mac.finish();
+  }
+
+  private static long load32(byte[] in, int idx) {
+    return ((in[idx] & 0xff)
+        | ((in[idx + 1] & 0xff) << 8)
+        | ((in[idx + 2] & 0xff) << 16)
+        | ((in[idx + 3] & 0xff) << 24)) & 0xffffffffL;
+  }
+
+  private static long load26(byte[] in, int idx, int shift) {
+    return (load32(in, idx) >> shift) & 0x3ffffff;
+  }
+
+  private static void toByteArray(byte[] output, long num, int idx) {
+    for (int i = 0; i < 4; i++, num >>= 8) {
+      output[idx + i] = (byte) (num & 0xff);
+    }
+  }
+
+  /**
+   * Absorbs the 16 byte block {@code in[idx..idx+16)}. {@code hibit} is 1 << 24 for full blocks,
+   * and 0 for the padded last block.
+   */
+  private void processBlock(final byte[] in, int idx, long hibit) {
+    long d0;
+    long d1;
+    long d2;
+    long d3;
+    long d4;
+    long c;
+    h0 += load26(in, idx, 0);
+    h1 += load26(in, idx + 3, 2);
+    h2 += load26(in, idx + 6, 4);
+    h3 += load26(in, idx + 9, 6);
+    h4 += load26(in, idx + 12, 8) | hibit;
+
+    // d = r * h
+    d0 = h0 * r0 + h1 * s4 + h2 * s3 + h3 * s2 + h4 * s1;
+    d1 = h0 * r1 + h1 * r0 + h2 * s4 + h3 * s3 + h4 * s2;
+    d2 = h0 * r2 + h1 * r1 + h2 * r0 + h3 * s4 + h4 * s3;
+    d3 = h0 * r3 + h1 * r2 + h2 * r1 + h3 * r0 + h4 * s4;
+    d4 = h0 * r4 + h1 * r3 + h2 * r2 + h3 * r1 + h4 * r0;
+
+    // Partial reduction mod 2^130-5, resulting h1 might not be 26bits.
+    c = d0 >> 26; h0 = d0 & 0x3ffffff; d1 += c;
+    c = d1 >> 26; h1 = d1 & 0x3ffffff; d2 += c;
+    c = d2 >> 26; h2 = d2 & 0x3ffffff; d3 += c;
+    c = d3 >> 26; h3 = d3 & 0x3ffffff; d4 += c;
+    c = d4 >> 26; h4 = d4 & 0x3ffffff; h0 += c * 5;
+    c = h0 >> 26; h0 = h0 & 0x3ffffff; h1 += c;
+  }
+
+  /**
+   * Absorbs {@code in[offset..offset+length)}.
+   */
+  void update(final byte[] in, int offset, int length) {
+    if (finished) {
+      throw new IllegalStateException("Poly1305 has already been finished");
+    }
+    if (bufferLength > 0) {
+      int todo = Math.min(BLOCK_SIZE_IN_BYTES - bufferLength, length);
+      System.arraycopy(in, offset, buffer, bufferLength, todo);
+      bufferLength += todo;
+      offset += todo;
+      length -= todo;
+      if (bufferLength < BLOCK_SIZE_IN_BYTES) {
+        return;
+      }
+      processBlock(buffer, 0, 1 << 24);
+      bufferLength = 0;
+    }
+    while (length >= BLOCK_SIZE_IN_BYTES) {
+      processBlock(in, offset, 1 << 24);
+      offset += BLOCK_SIZE_IN_BYTES;
+      length -= BLOCK_SIZE_IN_BYTES;
+    }
+    System.arraycopy(in, offset, buffer, 0, length);
+    bufferLength = length;
+  }
+
+  /**
+   * Absorbs the remaining bytes of {@code in}, and moves its position to its limit.
+   */
+  void update(ByteBuffer in) {
+    if (in.hasArray()) {
+      update(in.array(), in.arrayOffset() + in.position(), in.remaining());
+      in.position(in.limit());
+      return;
+    }
+    if (chunk == null) {
+      chunk = new byte[64 * BLOCK_SIZE_IN_BYTES];
+    }
+    while (in.hasRemaining()) {
+      int todo = Math.min(in.remaining(), chunk.length);
+      in.get(chunk, 0, todo);
+      update(chunk, 0, todo);
+    }
+  }
+
+  /**
+   * Returns the 16 byte MAC of all data passed to {@code update}. The {@link Poly1305} cannot be
+   * used afterwards.
+   */
+  byte[] finish() {
+    if (finished) {
+      throw new IllegalStateException("Poly1305 has already been finished");
+    }
+    finished = true;
+    if (bufferLength > 0) {
+      byte[] last = new byte[BLOCK_SIZE_IN_BYTES];
+      System.arraycopy(buffer, 0, last, 0, bufferLength);
+      last[bufferLength] = 1;
+      processBlock(last, 0, 0);
+    }
+    long c;
+    // Do final reduction mod 2^130-5
+    c = h1 >> 26; h1 = h1 & 0x3ffffff; h2 += c;
+    c = h2 >> 26; h2 = h2 & 0x3ffffff; h3 += c;
+    c = h3 >> 26; h3 = h3 & 0x3ffffff; h4 += c;
+    c = h4 >> 26; h4 = h4 & 0x3ffffff; h0 += c * 5;  // c * 5 can be at most 5
+    c = h0 >> 26; h0 = h0 & 0x3ffffff; h1 += c;
+
+    // Compute h - p
+    long g0 = h0 + 5; c = g0 >> 26; g0 &= 0x3ffffff;
+    long g1 = h1 + c; c = g1 >> 26; g1 &= 0x3ffffff;
+    long g2 = h2 + c; c = g2 >> 26; g2 &= 0x3ffffff;
+    long g3 = h3 + c; c = g3 >> 26; g3 &= 0x3ffffff;
+    long g4 = h4 + c - (1 << 26);
+
+    // Select h if h < p, or h - p if h >= p
+    long mask = g4 >> 63;  // mask is either 0 (h >= p) or -1 (h < p)
+    h0 &= mask;
+    h1 &= mask;
+    h2 &= mask;
+    h3 &= mask;
+    h4 &= mask;
+    mask = ~mask;
+    h0 |= g0 & mask;
+    h1 |= g1 & mask;
+    h2 |= g2 & mask;
+    h3 |= g3 & mask;
+    h4 |= g4 & mask;
+
+    // h = h % (2^128)
+    h0 = (h0 | (h1 << 26)) & 0xffffffffL;
+    h1 = ((h1 >>  6) | (h2 << 20)) & 0xffffffffL;
+    h2 = ((h2 >> 12) | (h3 << 14)) & 0xffffffffL;
+    h3 = ((h3 >> 18) | (h4 <<  8)) & 0xffffffffL;
+
+    // mac = (h + pad) % (2^128)
+    c = h0 + pad0; h0 = c & 0xffffffffL;
+    c = h1 + pad1 + (c >> 32); h1 = c & 0xffffffffL;
+    c = h2 + pad2 + (c >> 32); h2 = c & 0xffffffffL;
+    c = h3 + pad3 + (c >> 32); h3 = c & 0xffffffffL;
+
+    byte[] mac = new byte[MAC_SIZE_IN_BYTES];
+    toByteArray(mac, h0, 0);
+    toByteArray(mac, h1, 4);
+    toByteArray(mac, h2, 8);
+    toByteArray(mac, h3, 12);
+    return mac;
+  }
+}
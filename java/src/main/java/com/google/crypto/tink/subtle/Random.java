@@ -17,29 +17,82 @@
 package com.google.crypto.tink.subtle;
 
 import java.security.SecureRandom;
+import java.util.Arrays;
 
 /**
  * A simple wrapper of SecureRandom.
+ *
+ * <p>Every thread has its own {@link SecureRandom}, so that threads do not contend for a shared
+ * instance. Small requests such as IVs and nonces are served from a per-thread buffer that is
+ * refilled with a single call to the {@link SecureRandom}. Bytes are wiped from the buffer as
+ * soon as they are handed out, so that the buffer does not keep copies of generated keys.
  */
 public final class Random {
-  private static final SecureRandom secureRandom = new SecureRandom();
+  /** The size of the per-thread buffer. */
+  private static final int BUFFER_SIZE_IN_BYTES = 1024;
+
+  /** The per-thread generator and buffer. */
+  private static final class State {
+    final SecureRandom secureRandom = new SecureRandom();
+    final byte[] buffer = new byte[BUFFER_SIZE_IN_BYTES];
+    // The buffer is empty initially.
+    int position = BUFFER_SIZE_IN_BYTES;
+  }
+
+  private static final ThreadLocal<State> localState = new ThreadLocal<State>() {
+    @Override
+    protected State initialValue() {
+      return new State();
+    }
+  };
 
   /**
    * @return a random byte array of size {@code size}.
    */
   public static byte[] randBytes(int size) {
     byte[] rand = new byte[size];
-    secureRandom.nextBytes(rand);
+    randBytes(rand, 0, size);
     return rand;
   }
 
+  /**
+   * Fills {@code output[offset..offset+length)} with random bytes.
+   *
+   * @throws IllegalArgumentException if {@code offset} and {@code length} do not describe a
+   * valid range of {@code output}.
+   */
+  public static void randBytes(byte[] output, int offset, int length) {
+    if (offset < 0 || length < 0 || offset > output.length - length) {
+      throw new IllegalArgumentException("invalid offset or length");
+    }
+    State state = localState.get();
+    if (length >= BUFFER_SIZE_IN_BYTES && offset == 0 && length == output.length) {
+      // Large requests do not benefit from buffering.
+      state.secureRandom.nextBytes(output);
+      return;
+    }
+    while (length > 0) {
+      if (state.position == BUFFER_SIZE_IN_BYTES) {
+        state.secureRandom.nextBytes(state.buffer);
+        state.position = 0;
+      }
+      int todo = Math.min(length, BUFFER_SIZE_IN_BYTES - state.position);
+      System.arraycopy(state.buffer, state.position, output, offset, todo);
+      Arrays.fill(state.buffer, state.position, state.position + todo, (byte) 0);
+      state.position += todo;
+      offset += todo;
+      length -= todo;
+    }
+  }
+
   /**
    * @return positive random int.
    */
   public static int randPositiveInt() {
+    byte[] rand = new byte[4];
     int result = 0;
     while (result == 0) {
-      byte[] rand = randBytes(4);
+      randBytes(rand, 0, rand.length);
       result = ((rand[0] & 0x7f) << 24)
           | ((rand[1] & 0xff) << 16)
           | ((rand[2] & 0xff) << 8)
@@ -0,0 +1,45 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.subtle;
+
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+
+/**
+ * StreamSegmentDecrypter decrypts individual segments of a stream.
+ *
+ * <p>{@link #init} must be called with the header of the stream before any segment is
+ * decrypted. Segments can be decrypted in any order. Instances of this interface are
+ * <b>not</b> thread-safe.
+ */
+public interface StreamSegmentDecrypter {
+  /**
+   * Initializes the decrypter with the header of the ciphertext stream.
+   *
+   * @throws GeneralSecurityException if the header is invalid.
+   */
+  void init(ByteBuffer header, byte[] associatedData) throws GeneralSecurityException;
+
+  /**
+   * Decrypts the remaining bytes of {@code ciphertext}, which must be segment number
+   * {@code segmentNr} of the stream, and writes the result into {@code plaintext}.
+   *
+   * @throws GeneralSecurityException if the segment is not authentic.
+   */
+  void decryptSegment(ByteBuffer ciphertext, int segmentNr, boolean isLastSegment,
+      ByteBuffer plaintext) throws GeneralSecurityException;
+}
@@ -0,0 +1,41 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.subtle;
+
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+
+/**
+ * StreamSegmentEncrypter encrypts individual segments of a stream.
+ *
+ * <p>Instances of this interface are stateful, as they keep track of the number of segments
+ * encrypted so far, and are <b>not</b> thread-safe.
+ */
+public interface StreamSegmentEncrypter {
+  /**
+   * @return the header of the ciphertext stream. The header must be written before the first
+   * segment.
+   */
+  ByteBuffer getHeader();
+
+  /**
+   * Encrypts the remaining bytes of {@code plaintext} as the next segment and writes the result
+   * into {@code ciphertext}. The last segment of a stream must have {@code isLastSegment} set.
+   */
+  void encryptSegment(ByteBuffer plaintext, boolean isLastSegment, ByteBuffer ciphertext)
+      throws GeneralSecurityException;
+}
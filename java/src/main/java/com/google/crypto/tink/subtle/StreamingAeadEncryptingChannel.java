@@ -0,0 +1,124 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.subtle;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.WritableByteChannel;
+import java.security.GeneralSecurityException;
+
+/**
+ * An instance of a WritableByteChannel that returns ciphertexts.
+ *
+ * <p>Plaintext is buffered until a full segment is available and more plaintext follows, so the
+ * last segment is only encrypted when the channel is closed. At most one plaintext and one
+ * ciphertext segment are held in memory. Partial writes of the underlying channel are supported:
+ * if the previous ciphertext segment has not been written out completely, {@link #write} accepts
+ * only as much plaintext as fits into the current segment.
+ */
+class StreamingAeadEncryptingChannel implements WritableByteChannel {
+  private WritableByteChannel ciphertextChannel;
+  private StreamSegmentEncrypter encrypter;
+  ByteBuffer ptBuffer;  // contains plaintext that has not yet been encrypted.
+  ByteBuffer ctBuffer;  // contains ciphertext that has not been written to ciphertextChannel.
+  private int plaintextSegmentSize;
+  boolean open = true;
+
+  public StreamingAeadEncryptingChannel(
+      NonceBasedStreamingAead streamAead,
+      WritableByteChannel ciphertextChannel,
+      byte[] associatedData)
+      throws GeneralSecurityException, IOException {
+    this.ciphertextChannel = ciphertextChannel;
+    encrypter = streamAead.newStreamSegmentEncrypter(associatedData);
+    plaintextSegmentSize = streamAead.getPlaintextSegmentSize();
+    ptBuffer = ByteBuffer.allocate(plaintextSegmentSize);
+    ptBuffer.limit(plaintextSegmentSize - streamAead.getCiphertextOffset());
+    ctBuffer = ByteBuffer.allocate(streamAead.getCiphertextSegmentSize());
+    ctBuffer.put(encrypter.getHeader());
+    ctBuffer.flip();
+    ciphertextChannel.write(ctBuffer);
+  }
+
+  @Override
+  public synchronized int write(ByteBuffer plaintext) throws IOException {
+    if (!open) {
+      throw new ClosedChannelException();
+    }
+    if (ctBuffer.remaining() > 0) {
+      ciphertextChannel.write(ctBuffer);
+    }
+    int startPosition = plaintext.position();
+    while (plaintext.remaining() > ptBuffer.remaining()) {
+      if (ctBuffer.remaining() > 0) {
+        return plaintext.position() - startPosition;
+      }
+      int sliceSize = ptBuffer.remaining();
+      ByteBuffer slice = plaintext.slice();
+      slice.limit(sliceSize);
+      plaintext.position(plaintext.position() + sliceSize);
+      try {
+        ptBuffer.put(slice);
+        ptBuffer.flip();
+        ctBuffer.clear();
+        encrypter.encryptSegment(ptBuffer, false, ctBuffer);
+      } catch (GeneralSecurityException ex) {
+        throw new IOException(ex);
+      }
+      ptBuffer.clear();
+      ctBuffer.flip();
+      ciphertextChannel.write(ctBuffer);
+    }
+    ptBuffer.put(plaintext);
+    return plaintext.position() - startPosition;
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    if (!open) {
+      return;
+    }
+    while (ctBuffer.remaining() > 0) {
+      int n = ciphertextChannel.write(ctBuffer);
+      if (n <= 0) {
+        throw new IOException("Failed to write ciphertext before closing");
+      }
+    }
+    try {
+      ctBuffer.clear();
+      ptBuffer.flip();
+      encrypter.encryptSegment(ptBuffer, true, ctBuffer);
+    } catch (GeneralSecurityException ex) {
+      throw new IOException(ex);
+    }
+    ctBuffer.flip();
+    while (ctBuffer.remaining() > 0) {
+      int n = ciphertextChannel.write(ctBuffer);
+      if (n <= 0) {
+        throw new IOException("Failed to write ciphertext before closing");
+      }
+    }
+    ciphertextChannel.close();
+    open = false;
+  }
+
+  @Override
+  public boolean isOpen() {
+    return open;
+  }
+}
@@ -0,0 +1,262 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+package com.google.crypto.tink.subtle;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.security.GeneralSecurityException;
+
+/**
+ * An instance of SeekableByteChannel that allows random access to the plaintext of some
+ * ciphertext.
+ *
+ * <p>The position of every ciphertext segment follows from its segment number, so a read at a
+ * given plaintext position only fetches and decrypts the segments that overlap the requested
+ * range. The segment that was decrypted last is cached, which makes sequential reads as cheap as
+ * with {@link StreamingAeadDecryptingChannel}.
+ *
+ * <p>The number of segments, and hence {@link #size}, is computed from the size of the
+ * ciphertext. A truncated ciphertext is detected when its last segment is decrypted; this
+ * happens at the latest when a read reaches the end of the plaintext, so a read only returns -1
+ * after the last segment has been authenticated.
+ */
+class StreamingAeadSeekableDecryptingChannel implements SeekableByteChannel {
+  private final SeekableByteChannel ciphertextChannel;
+  private final ByteBuffer header;
+  private final ByteBuffer ciphertextSegment;
+  private final ByteBuffer plaintextSegment;
+  private final StreamSegmentDecrypter decrypter;
+  private final byte[] associatedData;
+
+  private final long ciphertextChannelSize;
+  private final int numberOfSegments;
+  private final int lastCiphertextSegmentSize;
+  private final long plaintextSize;
+  private final int ciphertextSegmentSize;
+  private final int ciphertextOffset;
+  private final int plaintextSegmentSize;
+
+  private long plaintextPosition;
+  private boolean headerRead;
+  private boolean isCurrentSegmentDecrypted;
+  private int currentSegmentNr;
+  private boolean lastSegmentVerified;
+  private boolean isopen;
+
+  public StreamingAeadSeekableDecryptingChannel(
+      NonceBasedStreamingAead streamAead,
+      SeekableByteChannel ciphertext,
+      byte[] associatedData) throws IOException, GeneralSecurityException {
+    decrypter = streamAead.newStreamSegmentDecrypter();
+    ciphertextChannel = ciphertext;
+    header = ByteBuffer.allocate(streamAead.getHeaderLength());
+    ciphertextSegmentSize = streamAead.getCiphertextSegmentSize();
+    ciphertextSegment = ByteBuffer.allocate(ciphertextSegmentSize);
+    plaintextSegmentSize = streamAead.getPlaintextSegmentSize();
+    plaintextSegment = ByteBuffer.allocate(plaintextSegmentSize);
+    ciphertextOffset = streamAead.getCiphertextOffset();
+    int ciphertextOverhead = streamAead.getCiphertextOverhead();
+
+    ciphertextChannelSize = ciphertextChannel.size();
+    long fullSegments = ciphertextChannelSize / ciphertextSegmentSize;
+    int remainder = (int) (ciphertextChannelSize % ciphertextSegmentSize);
+    long segments;
+    if (remainder > 0) {
+      segments = fullSegments + 1;
+      lastCiphertextSegmentSize = segments == 1 ? remainder - ciphertextOffset : remainder;
+    } else {
+      segments = fullSegments;
+      lastCiphertextSegmentSize =
+          segments == 1 ? ciphertextSegmentSize - ciphertextOffset : ciphertextSegmentSize;
+    }
+    if (segments == 0 || segments > Integer.MAX_VALUE
+        || lastCiphertextSegmentSize < ciphertextOverhead) {
+      throw new IOException("Invalid ciphertext size");
+    }
+    numberOfSegments = (int) segments;
+    plaintextSize =
+        ciphertextChannelSize - numberOfSegments * (long) ciphertextOverhead - ciphertextOffset;
+
+    this.associatedData = associatedData.clone();
+    plaintextPosition = 0;
+    headerRead = false;
+    currentSegmentNr = -1;
+    isCurrentSegmentDecrypted = false;
+    lastSegmentVerified = false;
+    isopen = true;
+  }
+
+  /** Returns the number of the segment containing the plaintext at {@code position}. */
+  private int getSegmentNr(long position) {
+    return (int) ((position + ciphertextOffset) / plaintextSegmentSize);
+  }
+
+  /** Returns the position of the ciphertext of segment {@code segmentNr}. */
+  private long getCiphertextPosition(int segmentNr) {
+    return segmentNr == 0 ? ciphertextOffset : (long) segmentNr * ciphertextSegmentSize;
+  }
+
+  /** Returns the size of the ciphertext of segment {@code segmentNr}. */
+  private int getCiphertextSegmentSize(int segmentNr) {
+    if (segmentNr == numberOfSegments - 1) {
+      return lastCiphertextSegmentSize;
+    }
+    return segmentNr == 0 ? ciphertextSegmentSize - ciphertextOffset : ciphertextSegmentSize;
+  }
+
+  /** Reads from the ciphertext at {@code position} until {@code buffer} is full. */
+  private void readCiphertext(ByteBuffer buffer, long position) throws IOException {
+    ciphertextChannel.position(position);
+    while (buffer.remaining() > 0) {
+      if (ciphertextChannel.read(buffer) == -1) {
+        throw new IOException("Unexpected end of ciphertext");
+      }
+    }
+  }
+
+  private void readHeader() throws IOException {
+    header.clear();
+    readCiphertext(header, 0);
+    header.flip();
+    try {
+      decrypter.init(header, associatedData);
+    } catch (GeneralSecurityException ex) {
+      throw new IOException(ex);
+    }
+    headerRead = true;
+  }
+
+  /** Makes {@code segmentNr} the current segment and decrypts it if necessary. */
+  private void loadSegment(int segmentNr) throws IOException {
+    if (segmentNr == currentSegmentNr && isCurrentSegmentDecrypted) {
+      return;
+    }
+    currentSegmentNr = segmentNr;
+    isCurrentSegmentDecrypted = false;
+    boolean isLastSegment = segmentNr == numberOfSegments - 1;
+    ciphertextSegment.clear();
+    ciphertextSegment.limit(getCiphertextSegmentSize(segmentNr));
+    readCiphertext(ciphertextSegment, getCiphertextPosition(segmentNr));
+    ciphertextSegment.flip();
+    plaintextSegment.clear();
+    try {
+      decrypter.decryptSegment(ciphertextSegment, segmentNr, isLastSegment, plaintextSegment);
+    } catch (GeneralSecurityException ex) {
+      throw new IOException("Failed to decrypt segment " + segmentNr, ex);
+    }
+    plaintextSegment.flip();
+    isCurrentSegmentDecrypted = true;
+    if (isLastSegment) {
+      lastSegmentVerified = true;
+    }
+  }
+
+  @Override
+  public synchronized int read(ByteBuffer dst) throws IOException {
+    if (!isopen) {
+      throw new ClosedChannelException();
+    }
+    if (!headerRead) {
+      readHeader();
+    }
+    if (plaintextPosition >= plaintextSize) {
+      if (!lastSegmentVerified) {
+        loadSegment(numberOfSegments - 1);
+      }
+      return -1;
+    }
+    int startPosition = dst.position();
+    while (dst.remaining() > 0 && plaintextPosition < plaintextSize) {
+      int segmentNr = getSegmentNr(plaintextPosition);
+      int segmentOffset;
+      if (segmentNr == 0) {
+        segmentOffset = (int) plaintextPosition;
+      } else {
+        segmentOffset = (int) ((plaintextPosition + ciphertextOffset) % plaintextSegmentSize);
+      }
+      loadSegment(segmentNr);
+      int sliceSize = Math.min(plaintextSegment.limit() - segmentOffset, dst.remaining());
+      ByteBuffer slice = plaintextSegment.duplicate();
+      slice.position(segmentOffset);
+      slice.limit(segmentOffset + sliceSize);
+      dst.put(slice);
+      plaintextPosition += sliceSize;
+    }
+    return dst.position() - startPosition;
+  }
+
+  @Override
+  public synchronized long position() {
+    return plaintextPosition;
+  }
+
+  @Override
+  public synchronized SeekableByteChannel position(long newPosition) {
+    if (newPosition < 0) {
+      throw new IllegalArgumentException("Position must be non-negative");
+    }
+    plaintextPosition = newPosition;
+    return this;
+  }
+
+  /**
+   * Returns the size of the plaintext. The size is computed from the size of the ciphertext and
+   * is only verified once the last segment has been read.
+   */
+  @Override
+  public synchronized long size() {
+    return plaintextSize;
+  }
+
+  @Override
+  public SeekableByteChannel truncate(long size) {
+    throw new NonWritableChannelException();
+  }
+
+  @Override
+  public int write(ByteBuffer src) {
+    throw new NonWritableChannelException();
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    ciphertextChannel.close();
+    isopen = false;
+  }
+
+  @Override
+  public synchronized boolean isOpen() {
+    return isopen;
+  }
+
+  /* Returns the state of the channel. */
+  @Override
+  public synchronized String toString() {
+    StringBuilder res = new StringBuilder();
+    res.append("StreamingAeadSeekableDecryptingChannel")
+        .append("\nciphertextChannelSize:").append(ciphertextChannelSize)
+        .append("\nnumberOfSegments:").append(numberOfSegments)
+        .append("\nheaderRead:").append(headerRead)
+        .append("\nplaintextPosition:").append(plaintextPosition)
+        .append("\ncurrentSegmentNr:").append(currentSegmentNr)
+        .append("\nisCurrentSegmentDecrypted:").append(isCurrentSegmentDecrypted)
+        .append("\nlastSegmentVerified:").append(lastSegmentVerified);
+    return res.toString();
+  }
+}
@@ -18,8 +18,10 @@ package com.google.crypto.tink.subtle;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.security.GeneralSecurityException;
 import java.util.regex.Pattern;
+import javax.crypto.ShortBufferException;
 
 /**
  * Helper methods.
@@ -43,6 +45,27 @@ public final class SubtleUtil {
     return res == 0;
   }
 
+  /**
+   * Best effort fix-timing array comparison of {@code x} with the {@code yLength} bytes of
+   * {@code y} starting at {@code yOffset}.
+   *
+   * @return true if the two ranges are equal.
+   */
+  public static final boolean arrayEquals(final byte[] x, final byte[] y, int yOffset,
+      int yLength) {
+    if (x == null || y == null) {
+      return false;
+    }
+    if (x.length != yLength || yOffset < 0 || yOffset > y.length - yLength) {
+      return false;
+    }
+    int res = 0;
+    for (int i = 0; i < x.length; i++) {
+      res |= x[i] ^ y[yOffset + i];
+    }
+    return res == 0;
+  }
+
   /**
    * Returns the concatenation of the input arrays in a single array. For example,
    * {@code concat(new byte[] {a, b}, new byte[] {}, new byte[] {c}} returns the array
@@ -67,6 +90,64 @@ public final class SubtleUtil {
     return res;
   }
 
+  /**
+   * Copies the remaining bytes of {@code buffer} into a new array, and advances the position of
+   * {@code buffer} to its limit.
+   *
+   * @return the remaining bytes of {@code buffer}.
+   */
+  public static byte[] toByteArray(ByteBuffer buffer) {
+    byte[] res = new byte[buffer.remaining()];
+    buffer.get(res);
+    return res;
+  }
+
+  /**
+   * Writes {@code data} into {@code output}, starting at its current position.
+   *
+   * @throws ShortBufferException if {@code output} has less than {@code data.length} bytes
+   * remaining.
+   */
+  public static void put(ByteBuffer output, final byte[] data) throws ShortBufferException {
+    checkRemaining(output, data.length);
+    output.put(data);
+  }
+
+  /**
+   * @throws ShortBufferException if {@code output} has less than {@code size} bytes remaining.
+   */
+  public static void checkRemaining(ByteBuffer output, int size) throws ShortBufferException {
+    if (output.remaining() < size) {
+      throw new ShortBufferException(
+          String.format("output buffer too short: need %d bytes, have %d", size,
+              output.remaining()));
+    }
+  }
+
+  /**
+   * @throws ShortBufferException if {@code output} has less than {@code size} bytes starting at
+   * {@code offset}.
+   */
+  public static void checkOutputSize(final byte[] output, int offset, int size)
+      throws ShortBufferException {
+    if (offset < 0 || offset > output.length || output.length - offset < size) {
+      throw new ShortBufferException(
+          String.format("output buffer too short: need %d bytes at offset %d, have %d", size,
+              offset, output.length));
+    }
+  }
+
+  /**
+   * @throws GeneralSecurityException if {@code offset} and {@code length} do not describe a
+   * valid range of {@code input}.
+   */
+  public static void checkRange(final byte[] input, int offset, int length)
+      throws GeneralSecurityException {
+    if (offset < 0 || length < 0 || offset > input.length - length) {
+      throw new GeneralSecurityException("invalid offset or length");
+    }
+  }
+
   /**
    * @throws GeneralSecurityException if the {@code sizeInBytes} is not a valid AES key size.
    */
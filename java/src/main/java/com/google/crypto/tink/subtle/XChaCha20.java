@@ -0,0 +1,103 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.subtle;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.Executor;
+
+/**
+ * DJB's XChaCha20 stream cipher, i.e. ChaCha20 with 192-bit random nonces, based on
+ * https://tools.ietf.org/html/draft-arciszewski-xchacha-01.
+ *
+ * <p>The first 16 bytes of the nonce and the key are turned into a subkey with HChaCha20. The
+ * subkey and the last 8 bytes of the nonce are then used with ChaCha20 as in RFC 7539. Random
+ * 192-bit nonces can be used for far more messages per key than random 96-bit nonces.
+ */
+public class XChaCha20 extends DJBCipher {
+
+  public static final int NONCE_SIZE_IN_BYTES = 24;
+  private static final int COUNTER_POS = SIGMA.length + KEY_SIZE_IN_INTS;
+
+  /**
+   * Constructs a new XChaCha20 cipher with the supplied {@code key}.
+   *
+   * @throws IllegalArgumentException when {@code key} length is not
+   * {@link DJBCipher#KEY_SIZE_IN_BYTES}.
+   */
+  public XChaCha20(final byte[] key) {
+    super(key);
+  }
+
+  /**
+   * Constructs a new XChaCha20 cipher with the supplied {@code key}, which processes long
+   * messages in parallel on {@code executor}; see {@link DJBCipher#DJBCipher(byte[], Executor)}.
+   *
+   * @throws IllegalArgumentException when {@code key} length is not
+   * {@link DJBCipher#KEY_SIZE_IN_BYTES}.
+   */
+  public XChaCha20(final byte[] key, Executor executor) {
+    super(key, executor);
+  }
+
+  @Override
+  void shuffle(final int[] state) {
+    ChaCha20.shuffleInternal(state);
+  }
+
+  /**
+   * Returns the 32-byte HChaCha20 subkey of {@code key} and the first 16 bytes of {@code nonce}.
+   */
+  static byte[] hChaCha20(final byte[] key, final byte[] nonce) {
+    int[] state = new int[BLOCK_SIZE_IN_INTS];
+    System.arraycopy(SIGMA, 0, state, 0, SIGMA.length);
+    System.arraycopy(toIntArray(ByteBuffer.wrap(key)), 0, state, SIGMA.length, KEY_SIZE_IN_INTS);
+    System.arraycopy(toIntArray(ByteBuffer.wrap(nonce, 0, 16)), 0, state, COUNTER_POS, 4);
+    ChaCha20.shuffleInternal(state);
+    ByteBuffer buf = ByteBuffer.allocate(KEY_SIZE_IN_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+    buf.asIntBuffer().put(state, 0, 4).put(state, 12, 4);
+    return buf.array();
+  }
+
+  @Override
+  int[] initialState(final byte[] nonce, int counter) {
+    // Set the initial state based on
+    // https://tools.ietf.org/html/draft-arciszewski-xchacha-01#section-2.3
+    int[] state = new int[BLOCK_SIZE_IN_INTS];
+    System.arraycopy(SIGMA, 0, state, 0, SIGMA.length);
+    System.arraycopy(
+        toIntArray(ByteBuffer.wrap(hChaCha20(key, nonce))), 0, state, SIGMA.length,
+        KEY_SIZE_IN_INTS);
+    state[COUNTER_POS] = counter;
+    // The ChaCha20 nonce is 4 zero bytes followed by the last 8 bytes of the XChaCha20 nonce.
+    state[COUNTER_POS + 1] = 0;
+    int[] nonceInt = toIntArray(ByteBuffer.wrap(nonce, 16, 8));
+    state[COUNTER_POS + 2] = nonceInt[0];
+    state[COUNTER_POS + 3] = nonceInt[1];
+    return state;
+  }
+
+  @Override
+  void incrementCounter(int[] state) {
+    state[COUNTER_POS]++;
+  }
+
+  @Override
+  int nonceSizeInBytes() {
+    return NONCE_SIZE_IN_BYTES;
+  }
+}
@@ -0,0 +1,38 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.subtle;
+
+/**
+ * an {@code Aead} construction with {@link XChaCha20} and Poly1305, based on
+ * https://tools.ietf.org/html/draft-arciszewski-xchacha-01#section-2.
+ *
+ * <p>This is the RFC 7539 construction of {@link ChaCha20Poly1305} with a 192-bit random nonce,
+ * so that many more messages can be encrypted with the same key. The ciphertext format is
+ * tag || nonce || ciphertext, as for {@link ChaCha20Poly1305}, with a 24-byte nonce.
+ */
+public class XChaCha20Poly1305 extends ChaCha20Poly1305 {
+
+  /**
+   * Constructs a new XChaCha20Poly1305 cipher with the supplied {@code key}.
+   *
+   * @throws IllegalArgumentException when {@code key} length is not
+   * {@link DJBCipher#KEY_SIZE_IN_BYTES}.
+   */
+  public XChaCha20Poly1305(final byte[] key) {
+    super(new XChaCha20(key));
+  }
+}
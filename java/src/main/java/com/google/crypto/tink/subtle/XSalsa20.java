@@ -18,6 +18,7 @@ package com.google.crypto.tink.subtle;
 
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.util.concurrent.Executor;
 
 /**
  * DJB's XSalsa20 stream cipher.
@@ -37,6 +38,17 @@ public class XSalsa20 extends DJBCipher {
     super(key);
   }
 
+  /**
+   * Constructs a new XSalsa20 cipher with the supplied {@code key}, which processes long
+   * messages in parallel on {@code executor}; see {@link DJBCipher#DJBCipher(byte[], Executor)}.
+   *
+   * @throws IllegalArgumentException when {@code key} length is not
+   * {@link DJBCipher#KEY_SIZE_IN_BYTES}.
+   */
+  public XSalsa20(byte[] key, Executor executor) {
+    super(key, executor);
+  }
+
   static void quarterRound(int[] x, int a, int b, int c, int d) {
     x[b] ^= rotateLeft(x[a] + x[d], 7);
     x[c] ^= rotateLeft(x[b] + x[a], 9);
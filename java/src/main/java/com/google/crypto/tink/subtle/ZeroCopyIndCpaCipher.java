@@ -0,0 +1,53 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.subtle;
+
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+
+/**
+ * An {@link IndCpaCipher} that can also encrypt and decrypt between {@link ByteBuffer}s, which
+ * lets {@link EncryptThenAuthenticate} work without intermediate arrays.
+ */
+public interface ZeroCopyIndCpaCipher extends IndCpaCipher {
+  /**
+   * Encrypts the remaining bytes of {@code plaintext} and writes the resulting ciphertext into
+   * {@code ciphertext}, starting at its current position.
+   * Upon success, the position of {@code plaintext} is advanced to its limit, and the position
+   * of {@code ciphertext} is advanced by the length of the ciphertext.
+   *
+   * @throws javax.crypto.ShortBufferException if {@code ciphertext} is too small to hold the
+   * resulting ciphertext.
+   */
+  void encrypt(ByteBuffer plaintext, ByteBuffer ciphertext) throws GeneralSecurityException;
+
+  /**
+   * Decrypts the remaining bytes of {@code ciphertext} and writes the resulting plaintext into
+   * {@code plaintext}, starting at its current position.
+   * Upon success, the position of {@code ciphertext} is advanced to its limit, and the position
+   * of {@code plaintext} is advanced by the length of the plaintext.
+   *
+   * @throws javax.crypto.ShortBufferException if {@code plaintext} is too small to hold the
+   * resulting plaintext.
+   */
+  void decrypt(ByteBuffer ciphertext, ByteBuffer plaintext) throws GeneralSecurityException;
+
+  /**
+   * @return the length of the ciphertext produced for a plaintext of {@code plaintextSize} bytes.
+   */
+  int ciphertextSize(int plaintextSize);
+}
@@ -0,0 +1,164 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.subtle;
+
+import com.google.crypto.tink.Aead;
+import com.google.crypto.tink.HybridDecrypt;
+import com.google.crypto.tink.Mac;
+import com.google.crypto.tink.PublicKeyVerify;
+import com.google.crypto.tink.ZeroCopyAead;
+import com.google.crypto.tink.ZeroCopyHybridDecrypt;
+import com.google.crypto.tink.ZeroCopyMac;
+import com.google.crypto.tink.ZeroCopyPublicKeyVerify;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+
+/**
+ * Calls the methods of the optional zero-copy interfaces, such as {@link ZeroCopyAead}, on any
+ * primitive. If the primitive does not implement the interface, these helpers fall back to its
+ * basic methods and copy the input or output.
+ */
+public final class ZeroCopyUtil {
+  private ZeroCopyUtil() {}
+
+  /**
+   * @see ZeroCopyAead#encrypt(byte[], byte[], byte[], int)
+   */
+  public static int encrypt(Aead aead, final byte[] plaintext, final byte[] additionalData,
+      byte[] ciphertext, int offset) throws GeneralSecurityException {
+    if (aead instanceof ZeroCopyAead) {
+      return ((ZeroCopyAead) aead).encrypt(plaintext, additionalData, ciphertext, offset);
+    }
+    byte[] result = aead.encrypt(plaintext, additionalData);
+    SubtleUtil.checkOutputSize(ciphertext, offset, result.length);
+    System.arraycopy(result, 0, ciphertext, offset, result.length);
+    return result.length;
+  }
+
+  /**
+   * @see ZeroCopyAead#decrypt(byte[], int, int, byte[])
+   */
+  public static byte[] decrypt(Aead aead, final byte[] ciphertext, int offset, int length,
+      final byte[] additionalData) throws GeneralSecurityException {
+    if (aead instanceof ZeroCopyAead) {
+      return ((ZeroCopyAead) aead).decrypt(ciphertext, offset, length, additionalData);
+    }
+    SubtleUtil.checkRange(ciphertext, offset, length);
+    return aead.decrypt(Arrays.copyOfRange(ciphertext, offset, offset + length), additionalData);
+  }
+
+  /**
+   * @return the length of the ciphertext produced by {@code aead} for a plaintext of
+   * {@code plaintextSize} bytes, or -1 if {@code aead} is not a {@link ZeroCopyAead} or only
+   * knows the length after encryption.
+   */
+  public static int ciphertextSize(Aead aead, int plaintextSize) {
+    if (aead instanceof ZeroCopyAead) {
+      return ((ZeroCopyAead) aead).ciphertextSize(plaintextSize);
+    }
+    return -1;
+  }
+
+  /**
+   * @see ZeroCopyAead#encrypt(ByteBuffer, ByteBuffer, ByteBuffer)
+   */
+  public static void encrypt(Aead aead, ByteBuffer plaintext, ByteBuffer additionalData,
+      ByteBuffer ciphertext) throws GeneralSecurityException {
+    if (aead instanceof ZeroCopyAead) {
+      ((ZeroCopyAead) aead).encrypt(plaintext, additionalData, ciphertext);
+      return;
+    }
+    SubtleUtil.put(ciphertext, aead.encrypt(
+        SubtleUtil.toByteArray(plaintext), SubtleUtil.toByteArray(additionalData)));
+  }
+
+  /**
+   * @see ZeroCopyAead#decrypt(ByteBuffer, ByteBuffer, ByteBuffer)
+   */
+  public static void decrypt(Aead aead, ByteBuffer ciphertext, ByteBuffer additionalData,
+      ByteBuffer plaintext) throws GeneralSecurityException {
+    if (aead instanceof ZeroCopyAead) {
+      ((ZeroCopyAead) aead).decrypt(ciphertext, additionalData, plaintext);
+      return;
+    }
+    SubtleUtil.put(plaintext, aead.decrypt(
+        SubtleUtil.toByteArray(ciphertext), SubtleUtil.toByteArray(additionalData)));
+  }
+
+  /**
+   * @see ZeroCopyMac#verifyMac(byte[], int, int, byte[])
+   */
+  public static void verifyMac(Mac mac, final byte[] tag, int offset, int length,
+      final byte[] data) throws GeneralSecurityException {
+    if (mac instanceof ZeroCopyMac) {
+      ((ZeroCopyMac) mac).verifyMac(tag, offset, length, data);
+      return;
+    }
+    SubtleUtil.checkRange(tag, offset, length);
+    mac.verifyMac(Arrays.copyOfRange(tag, offset, offset + length), data);
+  }
+
+  /**
+   * @see ZeroCopyMac#computeMac(ByteBuffer)
+   */
+  public static byte[] computeMac(Mac mac, ByteBuffer data) throws GeneralSecurityException {
+    if (mac instanceof ZeroCopyMac) {
+      return ((ZeroCopyMac) mac).computeMac(data);
+    }
+    return mac.computeMac(SubtleUtil.toByteArray(data));
+  }
+
+  /**
+   * @see ZeroCopyMac#verifyMac(byte[], ByteBuffer)
+   */
+  public static void verifyMac(Mac mac, final byte[] tag, ByteBuffer data)
+      throws GeneralSecurityException {
+    if (mac instanceof ZeroCopyMac) {
+      ((ZeroCopyMac) mac).verifyMac(tag, data);
+      return;
+    }
+    mac.verifyMac(tag, SubtleUtil.toByteArray(data));
+  }
+
+  /**
+   * @see ZeroCopyHybridDecrypt#decrypt(byte[], int, int, byte[])
+   */
+  public static byte[] decrypt(HybridDecrypt hybridDecrypt, final byte[] ciphertext, int offset,
+      int length, final byte[] contextInfo) throws GeneralSecurityException {
+    if (hybridDecrypt instanceof ZeroCopyHybridDecrypt) {
+      return ((ZeroCopyHybridDecrypt) hybridDecrypt).decrypt(
+          ciphertext, offset, length, contextInfo);
+    }
+    SubtleUtil.checkRange(ciphertext, offset, length);
+    return hybridDecrypt.decrypt(
+        Arrays.copyOfRange(ciphertext, offset, offset + length), contextInfo);
+  }
+
+  /**
+   * @see ZeroCopyPublicKeyVerify#verify(byte[], int, int, byte[])
+   */
+  public static void verify(PublicKeyVerify verifier, final byte[] signature, int offset,
+      int length, final byte[] data) throws GeneralSecurityException {
+    if (verifier instanceof ZeroCopyPublicKeyVerify) {
+      ((ZeroCopyPublicKeyVerify) verifier).verify(signature, offset, length, data);
+      return;
+    }
+    SubtleUtil.checkRange(signature, offset, length);
+    verifier.verify(Arrays.copyOfRange(signature, offset, offset + length), data);
+  }
+}
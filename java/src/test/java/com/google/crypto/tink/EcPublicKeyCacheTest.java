@@ -0,0 +1,97 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink;
+
+import static com.google.crypto.tink.TestUtil.assertExceptionContains;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import com.google.crypto.tink.CommonProto.EllipticCurveType;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.interfaces.ECPublicKey;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests for EcPublicKeyCache.
+ */
+@RunWith(JUnit4.class)
+public class EcPublicKeyCacheTest {
+  private static ECPublicKey newKey() throws Exception {
+    KeyPairGenerator keyGen = KeyPairGenerator.getInstance("EC");
+    keyGen.initialize(Util.getCurveSpec(EllipticCurveType.NIST_P256));
+    KeyPair keyPair = keyGen.generateKeyPair();
+    return (ECPublicKey) keyPair.getPublic();
+  }
+
+  private static byte[] x(ECPublicKey key) {
+    return key.getW().getAffineX().toByteArray();
+  }
+
+  private static byte[] y(ECPublicKey key) {
+    return key.getW().getAffineY().toByteArray();
+  }
+
+  @Test
+  public void testGetAndPut() throws Exception {
+    EcPublicKeyCache cache = new EcPublicKeyCache(10);
+    ECPublicKey key = newKey();
+    assertNull(cache.get(EllipticCurveType.NIST_P256, x(key), y(key)));
+    cache.put(EllipticCurveType.NIST_P256, x(key), y(key), key);
+    assertSame(key, cache.get(EllipticCurveType.NIST_P256, x(key), y(key)));
+    // The curve is part of the cache key.
+    assertNull(cache.get(EllipticCurveType.NIST_P384, x(key), y(key)));
+    assertEquals(1, cache.size());
+    assertEquals(1, cache.hitCount());
+    assertEquals(2, cache.missCount());
+    assertEquals(1.0 / 3, cache.hitRate(), 1e-9);
+  }
+
+  @Test
+  public void testEvictsLeastRecentlyUsed() throws Exception {
+    EcPublicKeyCache cache = new EcPublicKeyCache(2);
+    ECPublicKey key0 = newKey();
+    ECPublicKey key1 = newKey();
+    ECPublicKey key2 = newKey();
+    cache.put(EllipticCurveType.NIST_P256, x(key0), y(key0), key0);
+    cache.put(EllipticCurveType.NIST_P256, x(key1), y(key1), key1);
+    assertSame(key0, cache.get(EllipticCurveType.NIST_P256, x(key0), y(key0)));
+    cache.put(EllipticCurveType.NIST_P256, x(key2), y(key2), key2);
+    assertEquals(2, cache.size());
+    assertEquals(1, cache.evictionCount());
+    assertSame(key0, cache.get(EllipticCurveType.NIST_P256, x(key0), y(key0)));
+    assertNull(cache.get(EllipticCurveType.NIST_P256, x(key1), y(key1)));
+
+    cache.clear();
+    assertEquals(0, cache.size());
+    assertEquals(3, cache.evictionCount());
+  }
+
+  @Test
+  public void testInvalidParameters() throws Exception {
+    try {
+      new EcPublicKeyCache(0);
+      fail("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      assertExceptionContains(e, "maxSize must be positive");
+    }
+  }
+}
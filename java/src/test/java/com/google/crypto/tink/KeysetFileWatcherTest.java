@@ -0,0 +1,201 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink;
+
+import static com.google.crypto.tink.TestUtil.assertExceptionContains;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.crypto.tink.mac.MacConfig;
+import com.google.crypto.tink.TinkProto.KeyData;
+import com.google.crypto.tink.mac.HmacKeyManager;
+import com.google.crypto.tink.mac.MacFactory;
+import com.google.crypto.tink.mac.MacKeyTemplates;
+import com.google.crypto.tink.subtle.Random;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.MessageLite;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests for KeysetFileWatcher.
+ */
+@RunWith(JUnit4.class)
+public class KeysetFileWatcherTest {
+  @Before
+  public void setUp() throws GeneralSecurityException {
+    MacConfig.registerStandardKeyTypes();
+  }
+
+  private static void write(File file, byte[] content) throws Exception {
+    FileOutputStream out = new FileOutputStream(file);
+    try {
+      out.write(content);
+    } finally {
+      out.close();
+    }
+  }
+
+  @Test
+  public void testReload() throws Exception {
+    KeysetManager manager = new KeysetManager.Builder()
+        .setKeyTemplate(MacKeyTemplates.HMAC_SHA256_128BITTAG)
+        .build()
+        .rotate();
+    File file = File.createTempFile("keyset", ".bin");
+    file.deleteOnExit();
+    write(file, manager.getKeysetHandle().getKeyset().toByteArray());
+
+    KeysetFileWatcher watcher = CleartextKeysetHandle.watch(file);
+    PrimitiveSet<Mac> primitives = watcher.watchPrimitives();
+    Mac mac = MacFactory.getPrimitive(primitives);
+    byte[] data = Random.randBytes(20);
+    byte[] tag1 = mac.computeMac(data);
+    // The file hasn't changed.
+    assertFalse(watcher.reload());
+
+    // Rotate the keyset in the file.
+    manager.rotate();
+    write(file, manager.getKeysetHandle().getKeyset().toByteArray());
+    assertTrue(watcher.reload());
+    assertEquals(manager.getKeysetHandle().getKeyset(), watcher.getKeysetHandle().getKeyset());
+    byte[] tag2 = mac.computeMac(data);
+    assertArrayEquals(primitives.getPrimary().getIdentifier(),
+        Arrays.copyOf(tag2, CryptoFormat.NON_RAW_PREFIX_SIZE));
+    assertFalse(Arrays.equals(Arrays.copyOf(tag1, CryptoFormat.NON_RAW_PREFIX_SIZE),
+        Arrays.copyOf(tag2, CryptoFormat.NON_RAW_PREFIX_SIZE)));
+    mac.verifyMac(tag1, data);
+    mac.verifyMac(tag2, data);
+
+    // A corrupted file leaves the keys unchanged.
+    write(file, new byte[] {(byte) 0xff});
+    try {
+      watcher.reload();
+      fail("Expected GeneralSecurityException");
+    } catch (GeneralSecurityException e) {
+      assertExceptionContains(e, "invalid keyset");
+    }
+    assertArrayEquals(tag2, mac.computeMac(data));
+    mac.verifyMac(tag1, data);
+
+    // Sets created later follow the file as well.
+    write(file, manager.rotate().getKeysetHandle().getKeyset().toByteArray());
+    assertTrue(watcher.reload());
+    Mac mac2 = MacFactory.getPrimitive(watcher.<Mac>watchPrimitives());
+    assertArrayEquals(mac.computeMac(data), mac2.computeMac(data));
+    mac2.verifyMac(tag1, data);
+  }
+
+  /** Delegates to the registered HMAC key manager, until {@code fail} is set. */
+  private static final class FailingKeyManager implements KeyManager<Mac> {
+    private final KeyManager<Mac> delegate;
+    volatile boolean fail;
+
+    FailingKeyManager() throws GeneralSecurityException {
+      delegate = Registry.INSTANCE.getKeyManager(HmacKeyManager.TYPE_URL);
+    }
+
+    private void check() throws GeneralSecurityException {
+      if (fail) {
+        throw new GeneralSecurityException("failing key manager");
+      }
+    }
+
+    @Override
+    public Mac getPrimitive(ByteString serializedKey) throws GeneralSecurityException {
+      check();
+      return delegate.getPrimitive(serializedKey);
+    }
+
+    @Override
+    public Mac getPrimitive(MessageLite key) throws GeneralSecurityException {
+      check();
+      return delegate.getPrimitive(key);
+    }
+
+    @Override
+    public MessageLite newKey(ByteString serializedKeyFormat) throws GeneralSecurityException {
+      return delegate.newKey(serializedKeyFormat);
+    }
+
+    @Override
+    public MessageLite newKey(MessageLite keyFormat) throws GeneralSecurityException {
+      return delegate.newKey(keyFormat);
+    }
+
+    @Override
+    public boolean doesSupport(String typeUrl) {
+      return delegate.doesSupport(typeUrl);
+    }
+
+    @Override
+    public String getKeyType() {
+      return delegate.getKeyType();
+    }
+
+    @Override
+    public KeyData newKeyData(ByteString serializedKeyFormat) throws GeneralSecurityException {
+      return delegate.newKeyData(serializedKeyFormat);
+    }
+  }
+
+  @Test
+  public void testReloadIsAllOrNothing() throws Exception {
+    KeysetManager manager = new KeysetManager.Builder()
+        .setKeyTemplate(MacKeyTemplates.HMAC_SHA256_128BITTAG)
+        .build()
+        .rotate();
+    File file = File.createTempFile("keyset", ".bin");
+    file.deleteOnExit();
+    write(file, manager.getKeysetHandle().getKeyset().toByteArray());
+
+    KeysetFileWatcher watcher = CleartextKeysetHandle.watch(file);
+    PrimitiveSet<Mac> first = watcher.watchPrimitives();
+    FailingKeyManager failingManager = new FailingKeyManager();
+    PrimitiveSet<Mac> second = watcher.watchPrimitives(failingManager);
+    byte[] primary = first.getPrimary().getIdentifier();
+    KeysetHandle keysetHandle = watcher.getKeysetHandle();
+
+    // The second set can't be rotated, so neither is.
+    failingManager.fail = true;
+    write(file, manager.rotate().getKeysetHandle().getKeyset().toByteArray());
+    try {
+      watcher.reload();
+      fail("Expected GeneralSecurityException");
+    } catch (GeneralSecurityException e) {
+      assertExceptionContains(e, "failing key manager");
+    }
+    assertArrayEquals(primary, first.getPrimary().getIdentifier());
+    assertArrayEquals(primary, second.getPrimary().getIdentifier());
+    assertEquals(keysetHandle, watcher.getKeysetHandle());
+
+    // The digest wasn't updated, so the next reload retries the rotation.
+    failingManager.fail = false;
+    assertTrue(watcher.reload());
+    assertFalse(Arrays.equals(primary, first.getPrimary().getIdentifier()));
+    assertArrayEquals(first.getPrimary().getIdentifier(), second.getPrimary().getIdentifier());
+  }
+}
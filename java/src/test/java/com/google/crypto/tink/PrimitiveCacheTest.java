@@ -0,0 +1,157 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink;
+
+import static com.google.crypto.tink.TestUtil.assertExceptionContains;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.TimeUnit;
+import javax.security.auth.Destroyable;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests for PrimitiveCache.
+ */
+@RunWith(JUnit4.class)
+public class PrimitiveCacheTest {
+  private static byte[] key(int i) {
+    return new byte[] {1, 2, 3, (byte) i};
+  }
+
+  private static final class DestroyablePrimitive implements Destroyable {
+    private boolean destroyed;
+
+    @Override
+    public void destroy() {
+      destroyed = true;
+    }
+
+    @Override
+    public boolean isDestroyed() {
+      return destroyed;
+    }
+  }
+
+  @Test
+  public void testGetAndPut() throws Exception {
+    PrimitiveCache cache = new PrimitiveCache(10, 1, TimeUnit.HOURS);
+    Object primitive = new Object();
+    assertNull(cache.get(key(0)));
+    assertSame(primitive, cache.put(key(0), primitive));
+    assertSame(primitive, cache.get(key(0)));
+    // A primitive that was created concurrently for the same key is dropped.
+    byte[] duplicate = key(0);
+    assertSame(primitive, cache.put(duplicate, new Object()));
+    assertArrayEquals(new byte[4], duplicate);
+    assertEquals(1, cache.size());
+    assertEquals(1, cache.hitCount());
+    assertEquals(1, cache.missCount());
+  }
+
+  @Test
+  public void testEvictsLeastRecentlyUsed() throws Exception {
+    PrimitiveCache cache = new PrimitiveCache(2, 1, TimeUnit.HOURS);
+    byte[] key0 = key(0);
+    byte[] key1 = key(1);
+    Object primitive0 = cache.put(key0, new Object());
+    Object primitive1 = cache.put(key1, new Object());
+    assertSame(primitive0, cache.get(key(0)));
+    cache.put(key(2), new Object());
+    assertEquals(2, cache.size());
+    assertEquals(1, cache.evictionCount());
+    assertSame(primitive0, cache.get(key(0)));
+    assertNull(cache.get(key(1)));
+    // The key of the evicted primitive has been overwritten.
+    assertArrayEquals(new byte[4], key1);
+    assertArrayEquals(key(0), key0);
+  }
+
+  @Test
+  public void testExpiration() throws Exception {
+    PrimitiveCache cache = new PrimitiveCache(10, 1, TimeUnit.MILLISECONDS);
+    byte[] key0 = key(0);
+    cache.put(key0, new Object());
+    Thread.sleep(10);
+    assertNull(cache.get(key(0)));
+    assertEquals(0, cache.size());
+    assertEquals(1, cache.evictionCount());
+    assertArrayEquals(new byte[4], key0);
+  }
+
+  @Test
+  public void testPutEvictsExpired() throws Exception {
+    PrimitiveCache cache = new PrimitiveCache(10, 1, TimeUnit.MILLISECONDS);
+    byte[] key0 = key(0);
+    byte[] key1 = key(1);
+    cache.put(key0, new Object());
+    cache.put(key1, new Object());
+    Thread.sleep(10);
+    cache.put(key(2), new Object());
+    assertEquals(1, cache.size());
+    assertEquals(2, cache.evictionCount());
+    assertArrayEquals(new byte[4], key0);
+    assertArrayEquals(new byte[4], key1);
+  }
+
+  @Test
+  public void testDestroysEvictedPrimitives() throws Exception {
+    PrimitiveCache cache = new PrimitiveCache(1, 1, TimeUnit.HOURS);
+    DestroyablePrimitive primitive0 = new DestroyablePrimitive();
+    DestroyablePrimitive primitive1 = new DestroyablePrimitive();
+    cache.put(key(0), primitive0);
+    cache.put(key(1), primitive1);
+    assertTrue(primitive0.isDestroyed());
+    assertFalse(primitive1.isDestroyed());
+    cache.clear();
+    assertTrue(primitive1.isDestroyed());
+  }
+
+  @Test
+  public void testClear() throws Exception {
+    PrimitiveCache cache = new PrimitiveCache(10, 1, TimeUnit.HOURS);
+    byte[] key0 = key(0);
+    cache.put(key0, new Object());
+    cache.clear();
+    assertEquals(0, cache.size());
+    assertNull(cache.get(key(0)));
+    assertArrayEquals(new byte[4], key0);
+  }
+
+  @Test
+  public void testInvalidParameters() throws Exception {
+    try {
+      new PrimitiveCache(0, 1, TimeUnit.HOURS);
+      fail("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      assertExceptionContains(e, "maxSize must be positive");
+    }
+    try {
+      new PrimitiveCache(10, 0, TimeUnit.HOURS);
+      fail("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      assertExceptionContains(e, "ttl must be positive");
+    }
+  }
+}
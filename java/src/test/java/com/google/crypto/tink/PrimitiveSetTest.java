@@ -25,6 +25,7 @@ import static org.junit.Assert.fail;
 import com.google.crypto.tink.TinkProto.KeyStatusType;
 import com.google.crypto.tink.TinkProto.Keyset.Key;
 import com.google.crypto.tink.TinkProto.OutputPrefixType;
+import java.nio.ByteBuffer;
 import java.security.GeneralSecurityException;
 import java.util.List;
 import org.junit.Test;
@@ -212,6 +213,60 @@ public class PrimitiveSetTest {
     assertArrayEquals(CryptoFormat.getOutputPrefix(key2), entry.getIdentifier());
   }
 
+  @Test
+  public void testGetPrimitiveFromCiphertext() throws Exception {
+    PrimitiveSet<Mac> pset = PrimitiveSet.newPrimitiveSet();
+    Key key1 = Key.newBuilder()
+        .setKeyId(0x01020304)
+        .setStatus(KeyStatusType.ENABLED)
+        .setOutputPrefixType(OutputPrefixType.TINK)
+        .build();
+    pset.addPrimitive(new DummyMac1(), key1);
+    // Same key id, different prefix type.
+    Key key2 = Key.newBuilder()
+        .setKeyId(0x01020304)
+        .setStatus(KeyStatusType.ENABLED)
+        .setOutputPrefixType(OutputPrefixType.LEGACY)
+        .build();
+    pset.addPrimitive(new DummyMac2(), key2);
+    // Negative key id, which is not valid UTF-8 when encoded.
+    Key key3 = Key.newBuilder()
+        .setKeyId(0xfffffffe)
+        .setStatus(KeyStatusType.ENABLED)
+        .setOutputPrefixType(OutputPrefixType.TINK)
+        .build();
+    pset.addPrimitive(new DummyMac1(), key3);
+    Key key4 = Key.newBuilder()
+        .setKeyId(0xffffffff)
+        .setStatus(KeyStatusType.ENABLED)
+        .setOutputPrefixType(OutputPrefixType.TINK)
+        .build();
+    pset.addPrimitive(new DummyMac2(), key4);
+
+    for (Key key : new Key[] {key1, key2, key3, key4}) {
+      byte[] prefix = CryptoFormat.getOutputPrefix(key);
+      byte[] ciphertext = new byte[3 + prefix.length + 10];
+      System.arraycopy(prefix, 0, ciphertext, 3, prefix.length);
+      List<PrimitiveSet.Entry<Mac>> entries = pset.getPrimitive(ciphertext, 3);
+      assertEquals(1, entries.size());
+      assertArrayEquals(prefix, entries.get(0).getIdentifier());
+      assertEquals(pset.getPrimitive(key), entries);
+
+      ByteBuffer buffer = ByteBuffer.wrap(ciphertext);
+      buffer.position(3);
+      assertEquals(entries, pset.getPrimitive(buffer));
+      assertEquals(3, buffer.position());
+    }
+    assertEquals(4, pset.getAll().size());
+
+    byte[] unknown = new byte[] {CryptoFormat.TINK_START_BYTE, 0, 0, 0, 5};
+    assertEquals(0, pset.getPrimitive(unknown, 0).size());
+    // Fewer than 5 bytes.
+    assertEquals(0, pset.getPrimitive(CryptoFormat.getOutputPrefix(key1), 1).size());
+    assertEquals(0, pset.getPrimitive(ByteBuffer.allocate(4)).size());
+    assertEquals(0, pset.getRawPrimitives().size());
+  }
+
   @Test
   public void testAddInvalidKey() throws Exception {
     PrimitiveSet<Mac> pset = PrimitiveSet.newPrimitiveSet();
@@ -17,9 +17,12 @@
 package com.google.crypto.tink;
 
 import static com.google.crypto.tink.TestUtil.assertExceptionContains;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -33,6 +36,7 @@ import com.google.crypto.tink.TinkProto.KeyTemplate;
 import com.google.crypto.tink.TinkProto.Keyset;
 import com.google.crypto.tink.TinkProto.OutputPrefixType;
 import com.google.crypto.tink.aead.AeadConfig;
+import com.google.crypto.tink.aead.AeadFactory;
 import com.google.crypto.tink.aead.AeadKeyTemplates;
 import com.google.crypto.tink.aead.AesGcmKeyManager;
 import com.google.crypto.tink.mac.HmacKeyManager;
@@ -41,10 +45,13 @@ import com.google.crypto.tink.mac.MacKeyTemplates;
 import com.google.crypto.tink.subtle.AesGcmJce;
 import com.google.crypto.tink.subtle.EncryptThenAuthenticate;
 import com.google.crypto.tink.subtle.MacJce;
+import com.google.crypto.tink.subtle.Random;
 import com.google.protobuf.ByteString;
 import com.google.protobuf.MessageLite;
 import java.security.GeneralSecurityException;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -325,5 +332,97 @@ public class RegistryTest {
     assertEquals(EncryptThenAuthenticate.class, aead2List.get(0).getPrimitive().getClass());
   }
 
+  @Test
+  public void testUpdatePrimitives() throws Exception {
+    KeyData key1 = Registry.INSTANCE.newKeyData(AeadKeyTemplates.AES128_GCM);
+    KeyData key2 = Registry.INSTANCE.newKeyData(AeadKeyTemplates.AES128_CTR_HMAC_SHA256);
+    Keyset.Key keysetKey1 = TestUtil.createKey(key1, 1, KeyStatusType.ENABLED,
+        OutputPrefixType.TINK);
+    Keyset.Key keysetKey2 = TestUtil.createKey(key2, 2, KeyStatusType.ENABLED,
+        OutputPrefixType.TINK);
+    PrimitiveSet<Aead> aeadSet = Registry.INSTANCE.getPrimitives(
+        TestUtil.createKeysetHandle(TestUtil.createKeyset(keysetKey1)));
+    Aead aead = AeadFactory.getPrimitive(aeadSet);
+    Aead aead1 = aeadSet.getPrimitive(keysetKey1).get(0).getPrimitive();
+    byte[] plaintext = Random.randBytes(20);
+    byte[] aad = Random.randBytes(20);
+    byte[] ciphertext1 = aead.encrypt(plaintext, aad);
+
+    // Rotate to key2, and keep key1 for decryption.
+    Registry.INSTANCE.updatePrimitives(aeadSet,
+        TestUtil.createKeysetHandle(TestUtil.createKeyset(keysetKey2, keysetKey1)), null);
+    // The primitive of the unchanged key is reused.
+    assertSame(aead1, aeadSet.getPrimitive(keysetKey1).get(0).getPrimitive());
+    assertEquals(EncryptThenAuthenticate.class,
+        aeadSet.getPrimary().getPrimitive().getClass());
+    byte[] ciphertext2 = aead.encrypt(plaintext, aad);
+    assertArrayEquals(CryptoFormat.getOutputPrefix(keysetKey2),
+        Arrays.copyOf(ciphertext2, CryptoFormat.NON_RAW_PREFIX_SIZE));
+    assertArrayEquals(plaintext, aead.decrypt(ciphertext1, aad));
+    assertArrayEquals(plaintext, aead.decrypt(ciphertext2, aad));
+
+    // An invalid keyset leaves the set unchanged.
+    try {
+      Registry.INSTANCE.updatePrimitives(aeadSet, new KeysetHandle(Keyset.newBuilder().build()),
+          null);
+      fail("Invalid keyset. Expect GeneralSecurityException");
+    } catch (GeneralSecurityException e) {
+      assertExceptionContains(e, "empty keyset");
+    }
+    assertArrayEquals(plaintext, aead.decrypt(ciphertext1, aad));
+
+    // Remove key1.
+    Registry.INSTANCE.updatePrimitives(aeadSet,
+        TestUtil.createKeysetHandle(TestUtil.createKeyset(keysetKey2)), null);
+    assertEquals(0, aeadSet.getPrimitive(keysetKey1).size());
+    assertArrayEquals(plaintext, aead.decrypt(ciphertext2, aad));
+    try {
+      aead.decrypt(ciphertext1, aad);
+      fail("Key was removed. Expect GeneralSecurityException");
+    } catch (GeneralSecurityException e) {
+      assertExceptionContains(e, "decryption failed");
+    }
+  }
+
+  @Test
+  public void testPrimitiveCache() throws Exception {
+    KeyData keyData = Registry.INSTANCE.newKeyData(AeadKeyTemplates.AES128_GCM);
+    Aead uncached = Registry.INSTANCE.getPrimitive(keyData);
+    assertNotSame(uncached, Registry.INSTANCE.getPrimitive(keyData));
+
+    PrimitiveCache cache = new PrimitiveCache(10, 1, TimeUnit.HOURS);
+    Registry.INSTANCE.setPrimitiveCache(cache);
+    try {
+      Aead aead = Registry.INSTANCE.getPrimitive(keyData);
+      assertSame(aead, Registry.INSTANCE.getPrimitive(keyData));
+      assertSame(aead, Registry.INSTANCE.getPrimitive(
+          keyData.getTypeUrl(), keyData.getValue().toByteArray()));
+      assertSame(aead, Registry.INSTANCE.getPrimitive(
+          keyData.getTypeUrl(), AesGcmKey.parseFrom(keyData.getValue())));
+      assertEquals(3, cache.hitCount());
+      assertEquals(1, cache.missCount());
+
+      // Keysets are instantiated through the cache as well.
+      Keyset.Key key = TestUtil.createKey(keyData, 42, KeyStatusType.ENABLED,
+          OutputPrefixType.TINK);
+      PrimitiveSet<Aead> aeadSet = Registry.INSTANCE.getPrimitives(
+          TestUtil.createKeysetHandle(TestUtil.createKeyset(key)));
+      assertSame(aead, aeadSet.getPrimary().getPrimitive());
+
+      byte[] plaintext = Random.randBytes(20);
+      byte[] aad = Random.randBytes(20);
+      assertArrayEquals(plaintext, uncached.decrypt(aead.encrypt(plaintext, aad), aad));
+
+      // A different key gets a different primitive.
+      KeyData keyData2 = Registry.INSTANCE.newKeyData(AeadKeyTemplates.AES128_GCM);
+      assertNotSame(aead, Registry.INSTANCE.getPrimitive(keyData2));
+      assertEquals(2, cache.size());
+    } finally {
+      Registry.INSTANCE.setPrimitiveCache(null);
+    }
+    assertEquals(0, cache.size());
+    assertNotSame(uncached, Registry.INSTANCE.getPrimitive(keyData));
+  }
+
   // TODO(przydatek): Add more tests for creation of PrimitiveSets.
 }
@@ -18,14 +18,19 @@ package com.google.crypto.tink;
 
 import static com.google.common.io.BaseEncoding.base16;
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import com.google.common.base.Optional;
 import com.google.crypto.tink.AesCtrHmacAeadProto.AesCtrHmacAeadKey;
+import com.google.crypto.tink.AesCtrHmacStreamingProto.AesCtrHmacStreamingKey;
+import com.google.crypto.tink.AesCtrHmacStreamingProto.AesCtrHmacStreamingParams;
 import com.google.crypto.tink.AesCtrProto.AesCtrKey;
 import com.google.crypto.tink.AesCtrProto.AesCtrParams;
 import com.google.crypto.tink.AesEaxProto.AesEaxKey;
 import com.google.crypto.tink.AesEaxProto.AesEaxParams;
+import com.google.crypto.tink.AesGcmHkdfStreamingProto.AesGcmHkdfStreamingKey;
+import com.google.crypto.tink.AesGcmHkdfStreamingProto.AesGcmHkdfStreamingParams;
 import com.google.crypto.tink.AesGcmProto.AesGcmKey;
 import com.google.crypto.tink.CommonProto.EcPointFormat;
 import com.google.crypto.tink.CommonProto.EllipticCurveType;
@@ -56,11 +61,25 @@ import com.google.crypto.tink.aead.AesEaxKeyManager;
 import com.google.crypto.tink.aead.AesGcmKeyManager;
 import com.google.crypto.tink.hybrid.HybridKeyTemplates;
 import com.google.crypto.tink.mac.HmacKeyManager;
+import com.google.crypto.tink.streamingaead.AesCtrHmacStreamingKeyManager;
+import com.google.crypto.tink.streamingaead.AesGcmHkdfStreamingKeyManager;
 import com.google.crypto.tink.subtle.EcUtil;
 import com.google.crypto.tink.subtle.Random;
 import com.google.protobuf.ByteString;
 import com.google.protobuf.MessageLite;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Paths;
 import java.security.GeneralSecurityException;
 import java.security.KeyPair;
@@ -70,6 +89,7 @@ import java.security.interfaces.ECPrivateKey;
 import java.security.interfaces.ECPublicKey;
 import java.security.spec.ECParameterSpec;
 import java.security.spec.ECPoint;
+import java.util.Arrays;
 
 /**
  * Test helpers.
@@ -229,6 +249,47 @@ public class TestUtil {
         KeyData.KeyMaterialType.SYMMETRIC);
   }
 
+  /**
+   * @return a {@code KeyData} containing a {@code AesGcmHkdfStreamingKey}.
+   */
+  public static KeyData createAesGcmHkdfStreamingKeyData(byte[] keyValue, int derivedKeySize,
+      int ciphertextSegmentSize) throws Exception {
+    AesGcmHkdfStreamingParams keyParams = AesGcmHkdfStreamingParams.newBuilder()
+        .setCiphertextSegmentSize(ciphertextSegmentSize)
+        .setDerivedKeySize(derivedKeySize)
+        .setHkdfHashType(HashType.SHA256)
+        .build();
+    AesGcmHkdfStreamingKey keyProto = AesGcmHkdfStreamingKey.newBuilder()
+        .setKeyValue(ByteString.copyFrom(keyValue))
+        .setParams(keyParams)
+        .build();
+    return createKeyData(
+        keyProto,
+        AesGcmHkdfStreamingKeyManager.TYPE_URL,
+        KeyData.KeyMaterialType.SYMMETRIC);
+  }
+
+  /**
+   * @return a {@code KeyData} containing a {@code AesCtrHmacStreamingKey}.
+   */
+  public static KeyData createAesCtrHmacStreamingKeyData(byte[] keyValue, int derivedKeySize,
+      int ciphertextSegmentSize) throws Exception {
+    AesCtrHmacStreamingParams keyParams = AesCtrHmacStreamingParams.newBuilder()
+        .setCiphertextSegmentSize(ciphertextSegmentSize)
+        .setDerivedKeySize(derivedKeySize)
+        .setHkdfHashType(HashType.SHA256)
+        .setHmacParams(HmacParams.newBuilder().setHash(HashType.SHA256).setTagSize(16).build())
+        .build();
+    AesCtrHmacStreamingKey keyProto = AesCtrHmacStreamingKey.newBuilder()
+        .setKeyValue(ByteString.copyFrom(keyValue))
+        .setParams(keyParams)
+        .build();
+    return createKeyData(
+        keyProto,
+        AesCtrHmacStreamingKeyManager.TYPE_URL,
+        KeyData.KeyMaterialType.SYMMETRIC);
+  }
+
   /**
    * @return a {@code KeyData} containing a {@code KmsEnvelopeAeadKey}.
    */
@@ -434,6 +495,168 @@ public class TestUtil {
     assertArrayEquals(plaintext, decrypted);
   }
 
+  /**
+   * Encrypts {@code plaintext} with {@code encryptionAead} through an OutputStream and decrypts
+   * the result with {@code decryptionAead} through an InputStream, reading it in chunks of
+   * {@code chunkSize} bytes.
+   */
+  public static void runStreamingAeadStreamTests(StreamingAead encryptionAead,
+      StreamingAead decryptionAead, byte[] plaintext, int chunkSize) throws Exception {
+    byte[] associatedData = Random.randBytes(20);
+    ByteArrayOutputStream ciphertext = new ByteArrayOutputStream();
+    OutputStream encryptingStream =
+        encryptionAead.newEncryptingStream(ciphertext, associatedData);
+    encryptingStream.write(plaintext);
+    encryptingStream.close();
+
+    InputStream decryptingStream = decryptionAead.newDecryptingStream(
+        new ByteArrayInputStream(ciphertext.toByteArray()), associatedData);
+    ByteArrayOutputStream decrypted = new ByteArrayOutputStream();
+    byte[] chunk = new byte[chunkSize];
+    int read;
+    while ((read = decryptingStream.read(chunk)) != -1) {
+      decrypted.write(chunk, 0, read);
+    }
+    decryptingStream.close();
+    assertArrayEquals(plaintext, decrypted.toByteArray());
+  }
+
+  /**
+   * Encrypts {@code plaintext} with {@code encryptionAead} through a WritableByteChannel and
+   * decrypts the result with {@code decryptionAead} through a ReadableByteChannel, reading it in
+   * chunks of {@code chunkSize} bytes.
+   */
+  public static void runStreamingAeadChannelTests(StreamingAead encryptionAead,
+      StreamingAead decryptionAead, byte[] plaintext, int chunkSize) throws Exception {
+    byte[] associatedData = Random.randBytes(20);
+    ByteArrayOutputStream ciphertext = new ByteArrayOutputStream();
+    WritableByteChannel encryptingChannel =
+        encryptionAead.newEncryptingChannel(Channels.newChannel(ciphertext), associatedData);
+    ByteBuffer plaintextBuffer = ByteBuffer.wrap(plaintext);
+    while (plaintextBuffer.remaining() > 0) {
+      encryptingChannel.write(plaintextBuffer);
+    }
+    encryptingChannel.close();
+
+    ReadableByteChannel decryptingChannel = decryptionAead.newDecryptingChannel(
+        Channels.newChannel(new ByteArrayInputStream(ciphertext.toByteArray())),
+        associatedData);
+    ByteBuffer decrypted = ByteBuffer.allocate(plaintext.length);
+    ByteBuffer chunk = ByteBuffer.allocate(chunkSize);
+    int read;
+    while ((read = decryptingChannel.read(chunk)) != -1) {
+      chunk.flip();
+      decrypted.put(chunk);
+      chunk.clear();
+    }
+    decryptingChannel.close();
+    assertArrayEquals(plaintext, decrypted.array());
+  }
+
+  /**
+   * A read-only SeekableByteChannel over a byte array that counts the bytes read from it.
+   */
+  public static class ByteArraySeekableChannel implements SeekableByteChannel {
+    private final byte[] data;
+    private int position = 0;
+    private long bytesRead = 0;
+    private boolean open = true;
+
+    public ByteArraySeekableChannel(byte[] data) {
+      this.data = data;
+    }
+
+    /** Returns the number of bytes read from this channel so far. */
+    public long getBytesRead() {
+      return bytesRead;
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+      if (!open) {
+        throw new ClosedChannelException();
+      }
+      if (position >= data.length) {
+        return -1;
+      }
+      int size = Math.min(dst.remaining(), data.length - position);
+      dst.put(data, position, size);
+      position += size;
+      bytesRead += size;
+      return size;
+    }
+
+    @Override
+    public long position() {
+      return position;
+    }
+
+    @Override
+    public SeekableByteChannel position(long newPosition) {
+      position = (int) Math.min(newPosition, data.length);
+      return this;
+    }
+
+    @Override
+    public long size() {
+      return data.length;
+    }
+
+    @Override
+    public SeekableByteChannel truncate(long size) {
+      throw new NonWritableChannelException();
+    }
+
+    @Override
+    public int write(ByteBuffer src) {
+      throw new NonWritableChannelException();
+    }
+
+    @Override
+    public boolean isOpen() {
+      return open;
+    }
+
+    @Override
+    public void close() {
+      open = false;
+    }
+  }
+
+  /**
+   * Encrypts {@code plaintext} with {@code encryptionAead} and checks that random ranges of it
+   * can be decrypted with a SeekableByteChannel from {@code decryptionAead}.
+   */
+  public static void runStreamingAeadSeekableTests(StreamingAead encryptionAead,
+      StreamingAead decryptionAead, byte[] plaintext) throws Exception {
+    byte[] associatedData = Random.randBytes(20);
+    ByteArrayOutputStream ciphertext = new ByteArrayOutputStream();
+    OutputStream encryptingStream =
+        encryptionAead.newEncryptingStream(ciphertext, associatedData);
+    encryptingStream.write(plaintext);
+    encryptingStream.close();
+
+    SeekableByteChannel decryptingChannel = decryptionAead.newSeekableDecryptingChannel(
+        new ByteArraySeekableChannel(ciphertext.toByteArray()), associatedData);
+    assertEquals(plaintext.length, decryptingChannel.size());
+    java.util.Random random = new java.util.Random(plaintext.length);
+    for (int i = 0; i < 20; i++) {
+      int start = random.nextInt(plaintext.length + 1);
+      int length = random.nextInt(plaintext.length - start + 1);
+      decryptingChannel.position(start);
+      ByteBuffer decrypted = ByteBuffer.allocate(length);
+      while (decrypted.remaining() > 0) {
+        assertTrue(decryptingChannel.read(decrypted) > 0);
+      }
+      assertArrayEquals(
+          Arrays.copyOfRange(plaintext, start, start + length), decrypted.array());
+      assertEquals(start + length, decryptingChannel.position());
+    }
+    decryptingChannel.position(plaintext.length);
+    assertEquals(-1, decryptingChannel.read(ByteBuffer.allocate(1)));
+    decryptingChannel.close();
+  }
+
   /**
    * Decodes hex string.
    */
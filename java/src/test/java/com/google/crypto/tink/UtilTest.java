@@ -19,6 +19,7 @@ package com.google.crypto.tink;
 import static com.google.crypto.tink.TestUtil.assertExceptionContains;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -31,6 +32,7 @@ import com.google.crypto.tink.TinkProto.OutputPrefixType;
 import com.google.crypto.tink.subtle.EcUtil;
 import java.math.BigInteger;
 import java.security.GeneralSecurityException;
+import java.security.interfaces.ECPublicKey;
 import java.security.spec.ECPoint;
 import java.security.spec.EllipticCurve;
 import org.junit.Test;
@@ -412,6 +414,38 @@ public class UtilTest {
     }
   }
 
+  @Test
+  public void testGetEcPublicKeyWithCache() throws Exception {
+    ECPoint g = EcUtil.getNistP256Params().getGenerator();
+    byte[] x = g.getAffineX().toByteArray();
+    byte[] y = g.getAffineY().toByteArray();
+    EcPublicKeyCache cache = new EcPublicKeyCache(10);
+    Util.setEcPublicKeyCache(cache);
+    try {
+      ECPublicKey key = Util.getEcPublicKey(EllipticCurveType.NIST_P256, x, y);
+      assertEquals(g, key.getW());
+      assertSame(key, Util.getEcPublicKey(EllipticCurveType.NIST_P256, x, y));
+      assertEquals(1, cache.hitCount());
+      assertEquals(1, cache.missCount());
+
+      // Invalid points are not cached.
+      byte[] invalidY = g.getAffineY().add(BigInteger.ONE).toByteArray();
+      for (int i = 0; i < 2; i++) {
+        try {
+          Util.getEcPublicKey(EllipticCurveType.NIST_P256, x, invalidY);
+          fail("Expected GeneralSecurityException");
+        } catch (GeneralSecurityException e) {
+          assertExceptionContains(e, "Point is not on curve");
+        }
+      }
+      assertEquals(1, cache.size());
+      assertEquals(3, cache.missCount());
+    } finally {
+      Util.setEcPublicKeyCache(null);
+    }
+    assertEquals(0, cache.size());
+  }
+
   @Test
   public void testAssertExceptionContains() throws Exception {
     assertExceptionContains(new GeneralSecurityException("abc"), "abc");
@@ -28,7 +28,11 @@ import com.google.crypto.tink.TestUtil;
 import com.google.crypto.tink.TinkProto.KeyStatusType;
 import com.google.crypto.tink.TinkProto.Keyset.Key;
 import com.google.crypto.tink.TinkProto.OutputPrefixType;
+import com.google.crypto.tink.ZeroCopyAead;
+import com.google.crypto.tink.subtle.AeadBatch;
 import com.google.crypto.tink.subtle.Random;
+import com.google.crypto.tink.subtle.ZeroCopyUtil;
+import java.nio.ByteBuffer;
 import java.security.GeneralSecurityException;
 import java.util.Arrays;
 import org.junit.Before;
@@ -66,6 +70,126 @@ public class AeadFactoryTest {
     TestUtil.runBasicAeadFactoryTests(keysetHandle);
   }
 
+  @Test
+  public void testByteBufferEncryptDecrypt() throws Exception {
+    byte[] aesCtrKeyValue = Random.randBytes(AES_KEY_SIZE);
+    byte[] hmacKeyValue = Random.randBytes(HMAC_KEY_SIZE);
+    int ivSize = 12;
+    int tagSize = 16;
+    Key primary = TestUtil.createKey(
+        TestUtil.createAesCtrHmacAeadKeyData(aesCtrKeyValue, ivSize, hmacKeyValue, tagSize),
+        42,
+        KeyStatusType.ENABLED,
+        OutputPrefixType.TINK);
+    Key raw = TestUtil.createKey(
+        TestUtil.createAesCtrHmacAeadKeyData(aesCtrKeyValue, ivSize, hmacKeyValue, tagSize),
+        43,
+        KeyStatusType.ENABLED,
+        OutputPrefixType.RAW);
+    ZeroCopyAead aead = (ZeroCopyAead) AeadFactory.getPrimitive(
+        TestUtil.createKeysetHandle(TestUtil.createKeyset(primary, raw)));
+    byte[] plaintext = Random.randBytes(20);
+    byte[] associatedData = Random.randBytes(20);
+
+    ByteBuffer ciphertext = ByteBuffer.allocateDirect(
+        CryptoFormat.NON_RAW_PREFIX_SIZE + plaintext.length + ivSize + tagSize);
+    aead.encrypt(ByteBuffer.wrap(plaintext), ByteBuffer.wrap(associatedData), ciphertext);
+    ciphertext.flip();
+    byte[] ciphertextBytes = new byte[ciphertext.remaining()];
+    ciphertext.duplicate().get(ciphertextBytes);
+    assertArrayEquals(plaintext, aead.decrypt(ciphertextBytes, associatedData));
+
+    ByteBuffer decrypted = ByteBuffer.allocate(plaintext.length);
+    aead.decrypt(ciphertext, ByteBuffer.wrap(associatedData), decrypted);
+    assertArrayEquals(plaintext, decrypted.array());
+
+    // A ciphertext produced by the RAW key decrypts through the prefix-less path.
+    Aead rawAead = AeadFactory.getPrimitive(
+        TestUtil.createKeysetHandle(TestUtil.createKeyset(raw)));
+    ciphertextBytes = rawAead.encrypt(plaintext, associatedData);
+    decrypted = ByteBuffer.allocate(plaintext.length);
+    aead.decrypt(
+        ByteBuffer.wrap(ciphertextBytes), ByteBuffer.wrap(associatedData), decrypted);
+    assertArrayEquals(plaintext, decrypted.array());
+  }
+
+  @Test
+  public void testEncryptDecryptWithOffset() throws Exception {
+    byte[] aesCtrKeyValue = Random.randBytes(AES_KEY_SIZE);
+    byte[] hmacKeyValue = Random.randBytes(HMAC_KEY_SIZE);
+    int ivSize = 12;
+    int tagSize = 16;
+    Key primary = TestUtil.createKey(
+        TestUtil.createAesCtrHmacAeadKeyData(aesCtrKeyValue, ivSize, hmacKeyValue, tagSize),
+        42,
+        KeyStatusType.ENABLED,
+        OutputPrefixType.TINK);
+    ZeroCopyAead aead = (ZeroCopyAead) AeadFactory.getPrimitive(
+        TestUtil.createKeysetHandle(TestUtil.createKeyset(primary)));
+    byte[] plaintext = Random.randBytes(20);
+    byte[] associatedData = Random.randBytes(20);
+
+    int ciphertextSize = aead.ciphertextSize(plaintext.length);
+    assertEquals(
+        CryptoFormat.NON_RAW_PREFIX_SIZE + ivSize + plaintext.length + tagSize, ciphertextSize);
+    byte[] buffer = new byte[3 + ciphertextSize];
+    assertEquals(ciphertextSize, aead.encrypt(plaintext, associatedData, buffer, 3));
+    assertArrayEquals(CryptoFormat.getOutputPrefix(primary),
+        Arrays.copyOfRange(buffer, 3, 3 + CryptoFormat.NON_RAW_PREFIX_SIZE));
+    assertArrayEquals(plaintext, aead.decrypt(buffer, 3, ciphertextSize, associatedData));
+    assertArrayEquals(plaintext, aead.decrypt(
+        Arrays.copyOfRange(buffer, 3, buffer.length), associatedData));
+  }
+
+  @Test
+  public void testEncryptDecryptBatch() throws Exception {
+    byte[] aesGcmKeyValue = Random.randBytes(AES_KEY_SIZE);
+    for (OutputPrefixType prefixType
+        : new OutputPrefixType[] {OutputPrefixType.TINK, OutputPrefixType.RAW}) {
+      Key primary = TestUtil.createKey(
+          TestUtil.createAesGcmKeyData(aesGcmKeyValue), 42, KeyStatusType.ENABLED, prefixType);
+      Aead aead = AeadFactory.getPrimitive(
+          TestUtil.createKeysetHandle(TestUtil.createKeyset(primary)));
+      byte[][] plaintexts = new byte[10][];
+      for (int i = 0; i < plaintexts.length; i++) {
+        plaintexts[i] = Random.randBytes(i * 7);
+      }
+      byte[] associatedData = Random.randBytes(20);
+
+      int[] offsets = new int[plaintexts.length + 1];
+      byte[] ciphertext = AeadBatch.encrypt(aead, plaintexts, associatedData, offsets);
+      assertEquals(0, offsets[0]);
+      assertEquals(ciphertext.length, offsets[plaintexts.length]);
+      for (int i = 0; i < plaintexts.length; i++) {
+        assertEquals(ZeroCopyUtil.ciphertextSize(aead, plaintexts[i].length),
+            offsets[i + 1] - offsets[i]);
+        assertArrayEquals(CryptoFormat.getOutputPrefix(primary), Arrays.copyOfRange(
+            ciphertext, offsets[i], offsets[i] + CryptoFormat.getOutputPrefix(primary).length));
+        assertArrayEquals(plaintexts[i], aead.decrypt(
+            Arrays.copyOfRange(ciphertext, offsets[i], offsets[i + 1]), associatedData));
+      }
+      byte[][] decrypted = AeadBatch.decrypt(aead, ciphertext, offsets, associatedData);
+      assertEquals(plaintexts.length, decrypted.length);
+      for (int i = 0; i < plaintexts.length; i++) {
+        assertArrayEquals(plaintexts[i], decrypted[i]);
+      }
+
+      ciphertext[offsets[3]] ^= 1;
+      try {
+        AeadBatch.decrypt(aead, ciphertext, offsets, associatedData);
+        fail("Expected GeneralSecurityException");
+      } catch (GeneralSecurityException e) {
+        assertExceptionContains(e, "decryption failed");
+      }
+      try {
+        AeadBatch.encrypt(aead, plaintexts, associatedData, new int[plaintexts.length]);
+        fail("Expected GeneralSecurityException");
+      } catch (GeneralSecurityException e) {
+        assertExceptionContains(e, "ciphertextOffsets");
+      }
+    }
+  }
+
   @Test
   public void testMultipleKeys() throws Exception {
     byte[] aesCtrKeyValue = Random.randBytes(AES_KEY_SIZE);
@@ -17,16 +17,21 @@
 package com.google.crypto.tink.aead;
 
 import static junit.framework.Assert.assertEquals;
+import static org.junit.Assert.assertArrayEquals;
 import static junit.framework.Assert.fail;
 
+import com.google.crypto.tink.Aead;
 import com.google.crypto.tink.AesCtrHmacAeadProto.AesCtrHmacAeadKey;
 import com.google.crypto.tink.AesCtrHmacAeadProto.AesCtrHmacAeadKeyFormat;
 import com.google.crypto.tink.TinkProto.KeyData;
 import com.google.crypto.tink.TinkProto.KeyTemplate;
+import com.google.crypto.tink.subtle.Random;
 import com.google.protobuf.ByteString;
 import java.security.GeneralSecurityException;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
@@ -90,4 +95,23 @@ public class AesCtrHmacAeadKeyManagerTest {
       // Expected
     }
   }
+
+  @Test
+  public void testGetPrimitiveWithExecutor() throws Exception {
+    AesCtrHmacAeadKeyManager sequentialManager = new AesCtrHmacAeadKeyManager();
+    AesCtrHmacAeadKey key = (AesCtrHmacAeadKey) sequentialManager.newKey(
+        AeadKeyTemplates.AES128_CTR_HMAC_SHA256.getValue());
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      Aead parallel = new AesCtrHmacAeadKeyManager(executor).getPrimitive(key);
+      Aead sequential = sequentialManager.getPrimitive(key);
+      // Long enough to be split into chunks.
+      byte[] plaintext = Random.randBytes(1 << 20);
+      byte[] aad = Random.randBytes(20);
+      assertArrayEquals(plaintext, sequential.decrypt(parallel.encrypt(plaintext, aad), aad));
+      assertArrayEquals(plaintext, parallel.decrypt(sequential.encrypt(plaintext, aad), aad));
+    } finally {
+      executor.shutdown();
+    }
+  }
 }
@@ -18,21 +18,29 @@ package com.google.crypto.tink.aead;
 
 import static com.google.crypto.tink.TestUtil.assertExceptionContains;
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.fail;
 
 import com.google.crypto.tink.Aead;
 import com.google.crypto.tink.EnvelopeTestUtil;
 import com.google.crypto.tink.KeysetHandle;
+import com.google.crypto.tink.KmsEnvelopeProto.KmsEnvelopeAeadKey;
+import com.google.crypto.tink.KmsEnvelopeProto.KmsEnvelopeAeadParams;
 import com.google.crypto.tink.Registry;
 import com.google.crypto.tink.TestUtil;
+import com.google.crypto.tink.TestUtil.DummyAead;
 import com.google.crypto.tink.TinkProto.KeyData;
 import com.google.crypto.tink.TinkProto.KeyStatusType;
 import com.google.crypto.tink.TinkProto.KeyTemplate;
 import com.google.crypto.tink.TinkProto.OutputPrefixType;
+import com.google.crypto.tink.subtle.AesGcmJce;
 import com.google.crypto.tink.subtle.Random;
 import com.google.crypto.tink.subtle.ServiceAccountGcpCredentialFactory;
 import java.nio.ByteBuffer;
 import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import javax.crypto.ShortBufferException;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -43,6 +51,29 @@ import org.junit.runners.JUnit4;
  */
 @RunWith(JUnit4.class)
 public class KmsEnvelopeAeadKeyManagerTest {
+  /** A local Aead that stands in for a KMS, and counts how often it is called. */
+  private static class CountingAead extends DummyAead {
+    private final Aead aead = new AesGcmJce(Random.randBytes(16));
+    int encryptCount = 0;
+    int decryptCount = 0;
+
+    @Override
+    public byte[] encrypt(byte[] plaintext, byte[] aad) throws GeneralSecurityException {
+      encryptCount++;
+      return aead.encrypt(plaintext, aad);
+    }
+
+    @Override
+    public byte[] decrypt(byte[] ciphertext, byte[] aad) throws GeneralSecurityException {
+      decryptCount++;
+      return aead.decrypt(ciphertext, aad);
+    }
+  }
+
+  private static byte[] getEncryptedDek(byte[] ciphertext) {
+    int encryptedDekSize = ByteBuffer.wrap(ciphertext).getInt();
+    return Arrays.copyOfRange(ciphertext, 4, 4 + encryptedDekSize);
+  }
 
   @Before
   public void setUp() throws GeneralSecurityException {
@@ -146,4 +177,180 @@ public class KmsEnvelopeAeadKeyManagerTest {
       assertExceptionContains(e, "decryption failed");
     }
   }
+
+  @Test
+  public void testDekReuse() throws Exception {
+    KeyTemplate dekTemplate = AeadKeyTemplates.AES128_GCM;
+    CountingAead remote = new CountingAead();
+    Aead aead = new KmsEnvelopeAead(dekTemplate, remote, 3 /* dekMaxUses */,
+        0 /* dekMaxAgeSeconds */, 0 /* decryptedDekCacheSize */,
+        0 /* decryptedDekMaxAgeSeconds */);
+    byte[] aad = Random.randBytes(20);
+    byte[][] plaintexts = new byte[7][];
+    byte[][] ciphertexts = new byte[7][];
+    for (int i = 0; i < plaintexts.length; i++) {
+      plaintexts[i] = Random.randBytes(20);
+      ciphertexts[i] = aead.encrypt(plaintexts[i], aad);
+    }
+    // Messages 0-2, 3-5 and 6 share a DEK.
+    assertEquals(3, remote.encryptCount);
+    assertArrayEquals(getEncryptedDek(ciphertexts[0]), getEncryptedDek(ciphertexts[2]));
+    assertFalse(Arrays.equals(getEncryptedDek(ciphertexts[2]), getEncryptedDek(ciphertexts[3])));
+    assertArrayEquals(getEncryptedDek(ciphertexts[3]), getEncryptedDek(ciphertexts[5]));
+    assertFalse(Arrays.equals(getEncryptedDek(ciphertexts[5]), getEncryptedDek(ciphertexts[6])));
+    for (int i = 0; i < plaintexts.length; i++) {
+      assertArrayEquals(plaintexts[i], aead.decrypt(ciphertexts[i], aad));
+    }
+    assertEquals(7, remote.decryptCount);
+
+    // A DEK older than dekMaxAgeSeconds is replaced.
+    aead = new KmsEnvelopeAead(dekTemplate, remote, 100 /* dekMaxUses */,
+        1 /* dekMaxAgeSeconds */, 0 /* decryptedDekCacheSize */,
+        0 /* decryptedDekMaxAgeSeconds */);
+    byte[] ciphertext1 = aead.encrypt(plaintexts[0], aad);
+    byte[] ciphertext2 = aead.encrypt(plaintexts[0], aad);
+    Thread.sleep(1100);
+    byte[] ciphertext3 = aead.encrypt(plaintexts[0], aad);
+    assertArrayEquals(getEncryptedDek(ciphertext1), getEncryptedDek(ciphertext2));
+    assertFalse(Arrays.equals(getEncryptedDek(ciphertext2), getEncryptedDek(ciphertext3)));
+
+    // Without a use limit, a DEK is only replaced by age.
+    aead = new KmsEnvelopeAead(dekTemplate, remote, 0 /* dekMaxUses */,
+        1 /* dekMaxAgeSeconds */, 0 /* decryptedDekCacheSize */,
+        0 /* decryptedDekMaxAgeSeconds */);
+    ciphertext1 = aead.encrypt(plaintexts[0], aad);
+    for (int i = 0; i < 10; i++) {
+      ciphertext2 = aead.encrypt(plaintexts[0], aad);
+    }
+    Thread.sleep(1100);
+    ciphertext3 = aead.encrypt(plaintexts[0], aad);
+    assertArrayEquals(getEncryptedDek(ciphertext1), getEncryptedDek(ciphertext2));
+    assertFalse(Arrays.equals(getEncryptedDek(ciphertext2), getEncryptedDek(ciphertext3)));
+  }
+
+  @Test
+  public void testShortOutputBufferDoesNotUseDek() throws Exception {
+    KeyTemplate dekTemplate = AeadKeyTemplates.AES128_GCM;
+    byte[] aad = Random.randBytes(20);
+    byte[] plaintext = Random.randBytes(20);
+    // Every message gets a new DEK: the KMS is not called if the payload doesn't fit.
+    CountingAead remote = new CountingAead();
+    KmsEnvelopeAead aead = new KmsEnvelopeAead(dekTemplate, remote);
+    try {
+      aead.encrypt(plaintext, aad, new byte[30], 0);
+      fail("Expected ShortBufferException");
+    } catch (ShortBufferException expected) {
+      // Expected
+    }
+    try {
+      aead.encrypt(ByteBuffer.wrap(plaintext), ByteBuffer.wrap(aad), ByteBuffer.allocate(30));
+      fail("Expected ShortBufferException");
+    } catch (ShortBufferException expected) {
+      // Expected
+    }
+    assertEquals(0, remote.encryptCount);
+
+    // A reused DEK is not counted as used for a message that doesn't fit.
+    aead = new KmsEnvelopeAead(dekTemplate, remote, 2 /* dekMaxUses */,
+        0 /* dekMaxAgeSeconds */, 0 /* decryptedDekCacheSize */,
+        0 /* decryptedDekMaxAgeSeconds */);
+    byte[] ciphertext1 = aead.encrypt(plaintext, aad);
+    try {
+      aead.encrypt(plaintext, aad, new byte[ciphertext1.length - 1], 0);
+      fail("Expected ShortBufferException");
+    } catch (ShortBufferException expected) {
+      // Expected
+    }
+    byte[] ciphertext2 = new byte[ciphertext1.length];
+    assertEquals(ciphertext1.length, aead.encrypt(plaintext, aad, ciphertext2, 0));
+    assertArrayEquals(getEncryptedDek(ciphertext1), getEncryptedDek(ciphertext2));
+    assertEquals(1, remote.encryptCount);
+    assertArrayEquals(plaintext, aead.decrypt(ciphertext2, aad));
+  }
+
+  @Test
+  public void testDecryptedDekCache() throws Exception {
+    KeyTemplate dekTemplate = AeadKeyTemplates.AES128_CTR_HMAC_SHA256;
+    CountingAead remote = new CountingAead();
+    Aead encrypter = new KmsEnvelopeAead(dekTemplate, remote);
+    Aead decrypter = new KmsEnvelopeAead(dekTemplate, remote, 0 /* dekMaxUses */,
+        0 /* dekMaxAgeSeconds */, 2 /* decryptedDekCacheSize */,
+        3600 /* decryptedDekMaxAgeSeconds */);
+    byte[] aad = Random.randBytes(20);
+    byte[] plaintext = Random.randBytes(20);
+    byte[] ciphertext1 = encrypter.encrypt(plaintext, aad);
+    byte[] ciphertext2 = encrypter.encrypt(plaintext, aad);
+    byte[] ciphertext3 = encrypter.encrypt(plaintext, aad);
+
+    assertArrayEquals(plaintext, decrypter.decrypt(ciphertext1, aad));
+    assertArrayEquals(plaintext, decrypter.decrypt(ciphertext1, aad));
+    assertEquals(1, remote.decryptCount);
+    assertArrayEquals(plaintext, decrypter.decrypt(ciphertext2, aad));
+    assertArrayEquals(plaintext, decrypter.decrypt(ciphertext1, aad));
+    assertEquals(2, remote.decryptCount);
+    // The DEK of ciphertext2 is evicted, as it is the least recently used one.
+    assertArrayEquals(plaintext, decrypter.decrypt(ciphertext3, aad));
+    assertArrayEquals(plaintext, decrypter.decrypt(ciphertext1, aad));
+    assertEquals(3, remote.decryptCount);
+    assertArrayEquals(plaintext, decrypter.decrypt(ciphertext2, aad));
+    assertEquals(4, remote.decryptCount);
+
+    // A modified payload doesn't decrypt with a kept DEK either.
+    byte[] modified = Arrays.copyOf(ciphertext2, ciphertext2.length);
+    modified[modified.length - 1] ^= 1;
+    try {
+      decrypter.decrypt(modified, aad);
+      fail("Expected GeneralSecurityException");
+    } catch (GeneralSecurityException e) {
+      // Expected
+    }
+    assertEquals(4, remote.decryptCount);
+  }
+
+  @Test
+  public void testDecryptedDekExpires() throws Exception {
+    KeyTemplate dekTemplate = AeadKeyTemplates.AES128_GCM;
+    CountingAead remote = new CountingAead();
+    Aead encrypter = new KmsEnvelopeAead(dekTemplate, remote);
+    Aead decrypter = new KmsEnvelopeAead(dekTemplate, remote, 0 /* dekMaxUses */,
+        0 /* dekMaxAgeSeconds */, 2 /* decryptedDekCacheSize */,
+        1 /* decryptedDekMaxAgeSeconds */);
+    byte[] aad = Random.randBytes(20);
+    byte[] plaintext = Random.randBytes(20);
+    byte[] ciphertext = encrypter.encrypt(plaintext, aad);
+    assertArrayEquals(plaintext, decrypter.decrypt(ciphertext, aad));
+    assertArrayEquals(plaintext, decrypter.decrypt(ciphertext, aad));
+    assertEquals(1, remote.decryptCount);
+    // An expired DEK is decrypted by the KMS again, so that revoking the KMS key takes effect.
+    Thread.sleep(1100);
+    assertArrayEquals(plaintext, decrypter.decrypt(ciphertext, aad));
+    assertEquals(2, remote.decryptCount);
+  }
+
+  @Test
+  public void testInvalidDekLimits() throws Exception {
+    KmsEnvelopeAeadKeyManager keyManager = new KmsEnvelopeAeadKeyManager();
+    KeyData kmsKey = EnvelopeTestUtil.createGcpKmsAeadKeyData(
+        TestUtil.RESTRICTED_CRYPTO_KEY_URI);
+    KmsEnvelopeAeadParams params = KmsEnvelopeAeadParams.newBuilder()
+        .setDekTemplate(AeadKeyTemplates.AES128_GCM)
+        .setKmsKey(kmsKey)
+        .build();
+    try {
+      keyManager.getPrimitive(KmsEnvelopeAeadKey.newBuilder()
+          .setParams(params.toBuilder().setDekMaxUses(1).setDekMaxAgeSeconds(60))
+          .build());
+      fail("Expected GeneralSecurityException");
+    } catch (GeneralSecurityException e) {
+      assertExceptionContains(e, "dek_max_age_seconds requires dek_max_uses != 1");
+    }
+    try {
+      keyManager.getPrimitive(KmsEnvelopeAeadKey.newBuilder()
+          .setParams(params.toBuilder().setDecryptedDekCacheSize(10))
+          .build());
+      fail("Expected GeneralSecurityException");
+    } catch (GeneralSecurityException e) {
+      assertExceptionContains(e, "requires decrypted_dek_max_age_seconds");
+    }
+  }
 }
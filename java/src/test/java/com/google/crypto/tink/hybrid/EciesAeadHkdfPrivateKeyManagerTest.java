@@ -16,8 +16,10 @@
 
 package com.google.crypto.tink.hybrid;
 
+import static com.google.crypto.tink.TestUtil.assertExceptionContains;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
 
 import com.google.crypto.tink.CommonProto.EcPointFormat;
 import com.google.crypto.tink.CommonProto.EllipticCurveType;
@@ -36,6 +38,7 @@ import com.google.crypto.tink.TinkProto.Keyset.Key;
 import com.google.crypto.tink.TinkProto.OutputPrefixType;
 import com.google.crypto.tink.aead.AeadKeyTemplates;
 import com.google.crypto.tink.subtle.Random;
+import java.security.GeneralSecurityException;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -68,6 +71,46 @@ public class EciesAeadHkdfPrivateKeyManagerTest {
         EciesAeadHkdfKeyFormat.newBuilder().setParams(params).build());
     assertEquals(params, keyProto.getPublicKey().getParams());
 
+    assertEncryptDecrypt(keyProto);
+  }
+
+  @Test
+  public void testNewX25519Key() throws Exception {
+    EciesAeadHkdfPrivateKeyManager manager = new EciesAeadHkdfPrivateKeyManager();
+    EciesAeadHkdfPrivateKey keyProto = (EciesAeadHkdfPrivateKey) manager.newKey(
+        HybridKeyTemplates.ECIES_X25519_HKDF_HMAC_SHA256_AES128_GCM.getValue());
+    assertEquals(32, keyProto.getKeyValue().size());
+    assertEquals(32, keyProto.getPublicKey().getX().size());
+    assertEquals(0, keyProto.getPublicKey().getY().size());
+    int ciphertextSize = assertEncryptDecrypt(keyProto);
+    // 32-byte ephemeral public value, 12-byte IV, 20-byte plaintext and 16-byte tag.
+    assertEquals(32 + 12 + 20 + 16, ciphertextSize);
+
+    keyProto = (EciesAeadHkdfPrivateKey) manager.newKey(
+        HybridKeyTemplates.ECIES_X25519_HKDF_HMAC_SHA256_AES128_CTR_HMAC_SHA256.getValue());
+    assertEncryptDecrypt(keyProto);
+  }
+
+  @Test
+  public void testX25519InvalidPointFormat() throws Exception {
+    EciesAeadHkdfParams params = HybridKeyTemplates.createEciesAeadHkdfParams(
+        EllipticCurveType.CURVE25519, HashType.SHA256, EcPointFormat.UNCOMPRESSED,
+        AeadKeyTemplates.AES128_GCM, new byte[0]);
+    EciesAeadHkdfPrivateKeyManager manager = new EciesAeadHkdfPrivateKeyManager();
+    try {
+      manager.newKey(EciesAeadHkdfKeyFormat.newBuilder().setParams(params).build());
+      fail("Expected GeneralSecurityException");
+    } catch (GeneralSecurityException e) {
+      assertExceptionContains(e, "X25519 only supports compressed points");
+    }
+  }
+
+  /**
+   * Encrypts with the public key of {@code keyProto}, and decrypts with {@code keyProto}.
+   *
+   * @return the size of the ciphertext.
+   */
+  private static int assertEncryptDecrypt(EciesAeadHkdfPrivateKey keyProto) throws Exception {
     Key primaryPriv = TestUtil.createKey(
         TestUtil.createKeyData(
             keyProto,
@@ -94,5 +137,6 @@ public class EciesAeadHkdfPrivateKeyManagerTest {
     byte[] contextInfo = Random.randBytes(20);
     byte[] ciphertext = hybridEncrypt.encrypt(plaintext, contextInfo);
     assertArrayEquals(plaintext, hybridDecrypt.decrypt(ciphertext, contextInfo));
+    return ciphertext.length;
   }
 }
@@ -0,0 +1,128 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.hybrid;
+
+import static com.google.crypto.tink.TestUtil.assertExceptionContains;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import com.google.crypto.tink.CommonProto.HashType;
+import com.google.crypto.tink.HybridDecrypt;
+import com.google.crypto.tink.HybridEncrypt;
+import com.google.crypto.tink.TestUtil;
+import com.google.crypto.tink.TinkProto.KeyTemplate;
+import com.google.crypto.tink.aead.AeadConfig;
+import com.google.crypto.tink.aead.AeadKeyTemplates;
+import com.google.crypto.tink.subtle.Curve25519;
+import com.google.crypto.tink.subtle.EciesX25519AeadHkdfHybridDecrypt;
+import com.google.crypto.tink.subtle.EciesX25519AeadHkdfHybridEncrypt;
+import com.google.crypto.tink.subtle.Random;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.TreeSet;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Unit tests for EciesX25519AeadHkdfHybridEncrypt and EciesX25519AeadHkdfHybridDecrypt.
+ */
+@RunWith(JUnit4.class)
+public class EciesX25519AeadHkdfHybridEncryptTest {
+  @Before
+  public void setUp() throws GeneralSecurityException {
+    AeadConfig.registerStandardKeyTypes();
+  }
+
+  @Test
+  public void testBasicMultipleEncrypts() throws Exception {
+    byte[] recipientPrivateKey = Curve25519.generatePrivateKey();
+    byte[] recipientPublicKey = Curve25519.x25519PublicFromPrivate(recipientPrivateKey);
+    byte[] salt = "some salt".getBytes("UTF-8");
+    byte[] plaintext = Random.randBytes(111);
+    byte[] context = "context info".getBytes("UTF-8");
+    HashType hkdfHashType = HashType.SHA256;
+
+    KeyTemplate[] keyTemplates = new KeyTemplate[] {
+      AeadKeyTemplates.AES128_CTR_HMAC_SHA256,
+      AeadKeyTemplates.AES128_GCM,
+    };
+    for (int i = 0; i < keyTemplates.length; i++) {
+      HybridEncrypt hybridEncrypt = new EciesX25519AeadHkdfHybridEncrypt(recipientPublicKey,
+          salt, hkdfHashType, new RegistryEciesAeadHkdfDemHelper(keyTemplates[i]));
+      HybridDecrypt hybridDecrypt = new EciesX25519AeadHkdfHybridDecrypt(recipientPrivateKey,
+          salt, hkdfHashType, new RegistryEciesAeadHkdfDemHelper(keyTemplates[i]));
+
+      // Makes sure that the encryption is randomized.
+      Set<String> ciphertexts = new TreeSet<String>();
+      for (int j = 0; j < 256; j++) {
+        byte[] ciphertext = hybridEncrypt.encrypt(plaintext, context);
+        ciphertexts.add(TestUtil.hexEncode(ciphertext));
+        assertArrayEquals(plaintext, hybridDecrypt.decrypt(ciphertext, context));
+      }
+      assertEquals(256, ciphertexts.size());
+    }
+  }
+
+  @Test
+  public void testModifiedCiphertext() throws Exception {
+    byte[] recipientPrivateKey = Curve25519.generatePrivateKey();
+    byte[] recipientPublicKey = Curve25519.x25519PublicFromPrivate(recipientPrivateKey);
+    byte[] salt = Random.randBytes(8);
+    byte[] context = Random.randBytes(8);
+    HybridEncrypt hybridEncrypt = new EciesX25519AeadHkdfHybridEncrypt(recipientPublicKey,
+        salt, HashType.SHA256, new RegistryEciesAeadHkdfDemHelper(AeadKeyTemplates.AES128_GCM));
+    HybridDecrypt hybridDecrypt = new EciesX25519AeadHkdfHybridDecrypt(recipientPrivateKey,
+        salt, HashType.SHA256, new RegistryEciesAeadHkdfDemHelper(AeadKeyTemplates.AES128_GCM));
+    byte[] ciphertext = hybridEncrypt.encrypt(Random.randBytes(20), context);
+
+    // Flips every bit of the ephemeral public value and of the payload.
+    for (int bytes = 0; bytes < ciphertext.length; bytes++) {
+      for (int bit = 0; bit < 8; bit++) {
+        byte[] modified = Arrays.copyOf(ciphertext, ciphertext.length);
+        modified[bytes] ^= (byte) (1 << bit);
+        try {
+          hybridDecrypt.decrypt(modified, context);
+          fail("Decrypting modified ciphertext should fail");
+        } catch (GeneralSecurityException ex) {
+          // This is expected.
+        }
+      }
+    }
+
+    // Truncated ciphertexts.
+    try {
+      hybridDecrypt.decrypt(Arrays.copyOf(ciphertext, 31), context);
+      fail("Expected GeneralSecurityException");
+    } catch (GeneralSecurityException e) {
+      assertExceptionContains(e, "ciphertext too short");
+    }
+
+    // The ephemeral public value of a small order point.
+    byte[] smallOrder = Arrays.copyOf(ciphertext, ciphertext.length);
+    Arrays.fill(smallOrder, 0, 32, (byte) 0);
+    try {
+      hybridDecrypt.decrypt(smallOrder, context);
+      fail("Expected GeneralSecurityException");
+    } catch (GeneralSecurityException e) {
+      assertExceptionContains(e, "small order point");
+    }
+  }
+}
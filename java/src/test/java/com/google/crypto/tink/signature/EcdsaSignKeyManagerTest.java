@@ -32,6 +32,9 @@ import com.google.crypto.tink.PublicKeyVerify;
 import com.google.crypto.tink.TestUtil;
 import com.google.crypto.tink.TinkProto.KeyTemplate;
 import com.google.crypto.tink.Util;
+import com.google.crypto.tink.subtle.EcdsaSignP256;
+import com.google.crypto.tink.subtle.EcdsaVerifyP256;
+import com.google.crypto.tink.subtle.P256;
 import com.google.crypto.tink.subtle.Random;
 import com.google.protobuf.ByteString;
 import java.security.GeneralSecurityException;
@@ -243,6 +246,36 @@ public class EcdsaSignKeyManagerTest {
     }
   }
 
+  @Test
+  public void testGetPrimitiveWithP256() throws Exception {
+    KeyPairGenerator keyGen = KeyPairGenerator.getInstance("EC");
+    keyGen.initialize(Util.getCurveSpec(EllipticCurveType.NIST_P256));
+    KeyPair keyPair = keyGen.generateKeyPair();
+    ECPoint w = ((ECPublicKey) keyPair.getPublic()).getW();
+    EcdsaPublicKey ecdsaPubKey = TestUtil.createEcdsaPubKey(HashType.SHA256,
+        EllipticCurveType.NIST_P256, EcdsaSignatureEncoding.DER, w.getAffineX().toByteArray(),
+        w.getAffineY().toByteArray());
+    EcdsaPrivateKey ecdsaPrivKey = TestUtil.createEcdsaPrivKey(ecdsaPubKey,
+        ((ECPrivateKey) keyPair.getPrivate()).getS().toByteArray());
+    EcdsaSignKeyManager signManager = new EcdsaSignKeyManager();
+    EcdsaVerifyKeyManager verifyManager = new EcdsaVerifyKeyManager();
+    PublicKeySign jceSigner = signManager.getPrimitive(ecdsaPrivKey);
+    PublicKeyVerify jceVerifier = verifyManager.getPrimitive(ecdsaPubKey);
+    P256.setEnabled(true);
+    try {
+      PublicKeySign signer = signManager.getPrimitive(ecdsaPrivKey);
+      PublicKeyVerify verifier = verifyManager.getPrimitive(ecdsaPubKey);
+      assertTrue(signer instanceof EcdsaSignP256);
+      assertTrue(verifier instanceof EcdsaVerifyP256);
+      // Signatures are interchangeable with the ones of the JCE.
+      jceVerifier.verify(signer.sign(msg), msg);
+      verifier.verify(jceSigner.sign(msg), msg);
+      verifier.verify(signer.sign(msg), msg);
+    } finally {
+      P256.setEnabled(false);
+    }
+  }
+
   @Test
   public void testGetPrimitiveWithUnsupportedKey() throws Exception {
     HashAndCurveType[] hashAndCurves = {
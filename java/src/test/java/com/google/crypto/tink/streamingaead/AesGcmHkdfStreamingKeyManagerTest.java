@@ -0,0 +1,102 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+package com.google.crypto.tink.streamingaead;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import com.google.crypto.tink.AesGcmHkdfStreamingProto.AesGcmHkdfStreamingKey;
+import com.google.crypto.tink.AesGcmHkdfStreamingProto.AesGcmHkdfStreamingKeyFormat;
+import com.google.crypto.tink.AesGcmHkdfStreamingProto.AesGcmHkdfStreamingParams;
+import com.google.crypto.tink.CommonProto.HashType;
+import com.google.crypto.tink.StreamingAead;
+import com.google.crypto.tink.TestUtil;
+import com.google.crypto.tink.TinkProto.KeyData;
+import com.google.crypto.tink.TinkProto.KeyTemplate;
+import com.google.crypto.tink.subtle.Random;
+import java.security.GeneralSecurityException;
+import java.util.Set;
+import java.util.TreeSet;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Test for AesGcmHkdfStreamingKeyManager.
+ */
+@RunWith(JUnit4.class)
+public class AesGcmHkdfStreamingKeyManagerTest {
+  private final AesGcmHkdfStreamingKeyManager keyManager = new AesGcmHkdfStreamingKeyManager();
+
+  @Test
+  public void testBasic() throws Exception {
+    KeyTemplate template = StreamingAeadKeyTemplates.AES128_GCM_HKDF_4KB;
+    Set<String> keys = new TreeSet<String>();
+    int numKeys = 10;
+    for (int i = 0; i < numKeys; i++) {
+      KeyData keyData = keyManager.newKeyData(template.getValue());
+      assertEquals(AesGcmHkdfStreamingKeyManager.TYPE_URL, keyData.getTypeUrl());
+      AesGcmHkdfStreamingKey key = AesGcmHkdfStreamingKey.parseFrom(keyData.getValue());
+      assertEquals(16, key.getKeyValue().size());
+      assertEquals(4096, key.getParams().getCiphertextSegmentSize());
+      keys.add(TestUtil.hexEncode(key.getKeyValue().toByteArray()));
+
+      StreamingAead streamingAead = keyManager.getPrimitive(keyData.getValue());
+      byte[] plaintext = Random.randBytes(10000);
+      TestUtil.runStreamingAeadStreamTests(streamingAead, streamingAead, plaintext, 100);
+    }
+    assertEquals(numKeys, keys.size());
+  }
+
+  @Test
+  public void testInvalidKeyFormats() throws Exception {
+    AesGcmHkdfStreamingParams validParams = AesGcmHkdfStreamingParams.newBuilder()
+        .setCiphertextSegmentSize(128)
+        .setDerivedKeySize(16)
+        .setHkdfHashType(HashType.SHA256)
+        .build();
+    AesGcmHkdfStreamingKeyFormat[] invalidFormats = {
+      // Main key shorter than the derived keys.
+      AesGcmHkdfStreamingKeyFormat.newBuilder()
+          .setParams(validParams.toBuilder().setDerivedKeySize(32).build())
+          .setKeySize(16)
+          .build(),
+      // Unsupported derived key size.
+      AesGcmHkdfStreamingKeyFormat.newBuilder()
+          .setParams(validParams.toBuilder().setDerivedKeySize(17).build())
+          .setKeySize(32)
+          .build(),
+      // Unknown HKDF hash.
+      AesGcmHkdfStreamingKeyFormat.newBuilder()
+          .setParams(validParams.toBuilder().setHkdfHashType(HashType.UNKNOWN_HASH).build())
+          .setKeySize(16)
+          .build(),
+      // Segment too small for the header and the tag.
+      AesGcmHkdfStreamingKeyFormat.newBuilder()
+          .setParams(validParams.toBuilder().setCiphertextSegmentSize(40).build())
+          .setKeySize(16)
+          .build(),
+    };
+    for (AesGcmHkdfStreamingKeyFormat format : invalidFormats) {
+      try {
+        keyManager.newKey(format);
+        fail("Invalid key format, should have thrown exception: " + format);
+      } catch (GeneralSecurityException expected) {
+        // Expected
+      }
+    }
+  }
+}
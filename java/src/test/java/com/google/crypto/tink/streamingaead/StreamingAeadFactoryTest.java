@@ -0,0 +1,142 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+package com.google.crypto.tink.streamingaead;
+
+import static com.google.crypto.tink.TestUtil.assertExceptionContains;
+import static org.junit.Assert.fail;
+
+import com.google.crypto.tink.KeysetHandle;
+import com.google.crypto.tink.StreamingAead;
+import com.google.crypto.tink.TestUtil;
+import com.google.crypto.tink.TinkProto.KeyStatusType;
+import com.google.crypto.tink.TinkProto.Keyset.Key;
+import com.google.crypto.tink.TinkProto.OutputPrefixType;
+import com.google.crypto.tink.subtle.Random;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests for StreamingAeadFactory.
+ */
+@RunWith(JUnit4.class)
+public class StreamingAeadFactoryTest {
+  private static final int AES_KEY_SIZE = 16;
+
+  @Before
+  public void setUp() throws Exception {
+    StreamingAeadConfig.registerStandardKeyTypes();
+  }
+
+  @Test
+  public void testBasicAesGcmHkdfStreamingAead() throws Exception {
+    byte[] keyValue = Random.randBytes(AES_KEY_SIZE);
+    int derivedKeySize = AES_KEY_SIZE;
+    int ciphertextSegmentSize = 128;
+    KeysetHandle keysetHandle = TestUtil.createKeysetHandle(
+        TestUtil.createKeyset(
+            TestUtil.createKey(
+                TestUtil.createAesGcmHkdfStreamingKeyData(
+                    keyValue, derivedKeySize, ciphertextSegmentSize),
+                42,
+                KeyStatusType.ENABLED,
+                OutputPrefixType.RAW)));
+    StreamingAead streamingAead = StreamingAeadFactory.getPrimitive(keysetHandle);
+    byte[] plaintext = Random.randBytes(1000);
+    TestUtil.runStreamingAeadStreamTests(streamingAead, streamingAead, plaintext, 37);
+    TestUtil.runStreamingAeadChannelTests(streamingAead, streamingAead, plaintext, 200);
+    TestUtil.runStreamingAeadSeekableTests(streamingAead, streamingAead, plaintext);
+  }
+
+  @Test
+  public void testMultipleKeys() throws Exception {
+    byte[] primaryKeyValue = Random.randBytes(AES_KEY_SIZE);
+    byte[] otherKeyValue = Random.randBytes(AES_KEY_SIZE);
+    byte[] anotherKeyValue = Random.randBytes(AES_KEY_SIZE);
+    int derivedKeySize = AES_KEY_SIZE;
+
+    Key primaryKey = TestUtil.createKey(
+        TestUtil.createAesGcmHkdfStreamingKeyData(primaryKeyValue, derivedKeySize, 512),
+        42,
+        KeyStatusType.ENABLED,
+        OutputPrefixType.RAW);
+    // Another key with a smaller segment size than the primary key.
+    Key otherKey = TestUtil.createKey(
+        TestUtil.createAesCtrHmacStreamingKeyData(otherKeyValue, derivedKeySize, 256),
+        43,
+        KeyStatusType.ENABLED,
+        OutputPrefixType.RAW);
+    // Another key with a larger segment size than the primary key.
+    Key anotherKey = TestUtil.createKey(
+        TestUtil.createAesGcmHkdfStreamingKeyData(anotherKeyValue, derivedKeySize, 1024),
+        72,
+        KeyStatusType.ENABLED,
+        OutputPrefixType.RAW);
+
+    KeysetHandle keysetHandle = TestUtil.createKeysetHandle(
+        TestUtil.createKeyset(primaryKey, otherKey, anotherKey));
+    StreamingAead streamingAead = StreamingAeadFactory.getPrimitive(keysetHandle);
+    StreamingAead primaryAead = StreamingAeadFactory.getPrimitive(
+        TestUtil.createKeysetHandle(TestUtil.createKeyset(primaryKey)));
+    StreamingAead otherAead = StreamingAeadFactory.getPrimitive(
+        TestUtil.createKeysetHandle(TestUtil.createKeyset(otherKey)));
+    StreamingAead anotherAead = StreamingAeadFactory.getPrimitive(
+        TestUtil.createKeysetHandle(TestUtil.createKeyset(anotherKey)));
+
+    byte[] plaintext = Random.randBytes(3000);
+    int[] chunkSizes = {1, 100, 4000};
+    for (int chunkSize : chunkSizes) {
+      TestUtil.runStreamingAeadStreamTests(streamingAead, primaryAead, plaintext, chunkSize);
+      TestUtil.runStreamingAeadStreamTests(otherAead, streamingAead, plaintext, chunkSize);
+      TestUtil.runStreamingAeadStreamTests(anotherAead, streamingAead, plaintext, chunkSize);
+      TestUtil.runStreamingAeadChannelTests(streamingAead, primaryAead, plaintext, chunkSize);
+      TestUtil.runStreamingAeadChannelTests(otherAead, streamingAead, plaintext, chunkSize);
+      TestUtil.runStreamingAeadChannelTests(anotherAead, streamingAead, plaintext, chunkSize);
+    }
+    TestUtil.runStreamingAeadSeekableTests(streamingAead, primaryAead, plaintext);
+    TestUtil.runStreamingAeadSeekableTests(otherAead, streamingAead, plaintext);
+    TestUtil.runStreamingAeadSeekableTests(anotherAead, streamingAead, plaintext);
+
+    // A ciphertext for a key that is not in the keyset cannot be decrypted.
+    Key unknownKey = TestUtil.createKey(
+        TestUtil.createAesGcmHkdfStreamingKeyData(
+            Random.randBytes(AES_KEY_SIZE), derivedKeySize, 512),
+        50,
+        KeyStatusType.ENABLED,
+        OutputPrefixType.RAW);
+    StreamingAead unknownAead = StreamingAeadFactory.getPrimitive(
+        TestUtil.createKeysetHandle(TestUtil.createKeyset(unknownKey)));
+    byte[] associatedData = Random.randBytes(20);
+    ByteArrayOutputStream ciphertext = new ByteArrayOutputStream();
+    OutputStream encryptingStream = unknownAead.newEncryptingStream(ciphertext, associatedData);
+    encryptingStream.write(plaintext);
+    encryptingStream.close();
+    InputStream decryptingStream = streamingAead.newDecryptingStream(
+        new ByteArrayInputStream(ciphertext.toByteArray()), associatedData);
+    try {
+      decryptingStream.read(new byte[100]);
+      fail("Expected IOException");
+    } catch (IOException e) {
+      assertExceptionContains(e, "No matching key");
+    }
+  }
+}
@@ -0,0 +1,193 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+package com.google.crypto.tink.subtle;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.crypto.tink.TestUtil;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.security.InvalidAlgorithmParameterException;
+import java.util.Arrays;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for AesCtrHmacStreaming. */
+@RunWith(JUnit4.class)
+public class AesCtrHmacStreamingTest {
+
+  private static AesCtrHmacStreaming createAead(int segmentSize) throws Exception {
+    return new AesCtrHmacStreaming(
+        Random.randBytes(16), "HmacSha256", 16, "HmacSha256", 16, segmentSize);
+  }
+
+  private static byte[] encrypt(AesCtrHmacStreaming aead, byte[] plaintext, byte[] aad)
+      throws Exception {
+    ByteArrayOutputStream ciphertext = new ByteArrayOutputStream();
+    OutputStream encryptingStream = aead.newEncryptingStream(ciphertext, aad);
+    encryptingStream.write(plaintext);
+    encryptingStream.close();
+    return ciphertext.toByteArray();
+  }
+
+  private static byte[] decrypt(AesCtrHmacStreaming aead, byte[] ciphertext, byte[] aad)
+      throws Exception {
+    InputStream decryptingStream =
+        aead.newDecryptingStream(new ByteArrayInputStream(ciphertext), aad);
+    ByteArrayOutputStream plaintext = new ByteArrayOutputStream();
+    byte[] chunk = new byte[1000];
+    int read;
+    while ((read = decryptingStream.read(chunk)) != -1) {
+      plaintext.write(chunk, 0, read);
+    }
+    return plaintext.toByteArray();
+  }
+
+  @Test
+  public void testEncryptDecrypt() throws Exception {
+    AesCtrHmacStreaming aead = createAead(256);
+    // Sizes around the segment boundaries, including the shorter first segment.
+    int[] plaintextSizes = {0, 1, 10, 215, 216, 217, 455, 456, 457, 1000, 20000};
+    for (int size : plaintextSizes) {
+      byte[] plaintext = Random.randBytes(size);
+      byte[] aad = Random.randBytes(size % 20);
+      byte[] ciphertext = encrypt(aead, plaintext, aad);
+      assertEquals(aead.expectedCiphertextSize(size), ciphertext.length);
+      assertArrayEquals(plaintext, decrypt(aead, ciphertext, aad));
+      TestUtil.runStreamingAeadStreamTests(aead, aead, plaintext, 17);
+      TestUtil.runStreamingAeadChannelTests(aead, aead, plaintext, 300);
+    }
+  }
+
+  @Test
+  public void testSeekableDecryption() throws Exception {
+    AesCtrHmacStreaming aead = createAead(256);
+    int[] plaintextSizes = {0, 1, 215, 216, 217, 456, 1000, 20000};
+    for (int size : plaintextSizes) {
+      TestUtil.runStreamingAeadSeekableTests(aead, aead, Random.randBytes(size));
+    }
+  }
+
+  @Test
+  public void testSeekableDecryptionReadsOnlyRequestedSegments() throws Exception {
+    int segmentSize = 256;
+    AesCtrHmacStreaming aead = createAead(segmentSize);
+    byte[] plaintext = Random.randBytes(100000);
+    byte[] aad = Random.randBytes(10);
+    TestUtil.ByteArraySeekableChannel ciphertext =
+        new TestUtil.ByteArraySeekableChannel(encrypt(aead, plaintext, aad));
+    SeekableByteChannel decryptingChannel = aead.newSeekableDecryptingChannel(ciphertext, aad);
+
+    int start = 50000;
+    ByteBuffer decrypted = ByteBuffer.allocate(300);
+    decryptingChannel.position(start);
+    while (decrypted.remaining() > 0) {
+      decryptingChannel.read(decrypted);
+    }
+    assertArrayEquals(Arrays.copyOfRange(plaintext, start, start + 300), decrypted.array());
+    // The header and at most three segments have been read.
+    assertTrue(ciphertext.getBytesRead() <= aead.getHeaderLength() + 3 * segmentSize);
+  }
+
+  @Test
+  public void testSeekableDecryptionOfTruncatedCiphertext() throws Exception {
+    AesCtrHmacStreaming aead = createAead(256);
+    byte[] plaintext = Random.randBytes(1000);
+    byte[] aad = Random.randBytes(10);
+    byte[] truncated = Arrays.copyOf(encrypt(aead, plaintext, aad), 2 * 256);
+    SeekableByteChannel decryptingChannel = aead.newSeekableDecryptingChannel(
+        new TestUtil.ByteArraySeekableChannel(truncated), aad);
+    // The first segment is still authentic.
+    ByteBuffer decrypted = ByteBuffer.allocate(10);
+    assertEquals(10, decryptingChannel.read(decrypted));
+    // The new last segment was not encrypted as the last segment.
+    decryptingChannel.position(decryptingChannel.size());
+    try {
+      decryptingChannel.read(ByteBuffer.allocate(1));
+      fail("Truncated ciphertext was accepted");
+    } catch (IOException expected) {
+      // Expected.
+    }
+  }
+
+  @Test
+  public void testModifiedCiphertext() throws Exception {
+    AesCtrHmacStreaming aead = createAead(128);
+    byte[] plaintext = Random.randBytes(1000);
+    byte[] aad = Random.randBytes(10);
+    byte[] ciphertext = encrypt(aead, plaintext, aad);
+
+    for (int pos : new int[] {0, 5, 30, 200, ciphertext.length - 1}) {
+      byte[] modified = Arrays.copyOf(ciphertext, ciphertext.length);
+      modified[pos] ^= 1;
+      try {
+        decrypt(aead, modified, aad);
+        fail("Modified ciphertext at position " + pos + " was accepted");
+      } catch (IOException expected) {
+        // Expected.
+      }
+    }
+
+    // Truncating the ciphertext at a segment boundary must be detected.
+    try {
+      decrypt(aead, Arrays.copyOf(ciphertext, 128 * 3), aad);
+      fail("Truncated ciphertext was accepted");
+    } catch (IOException expected) {
+      // Expected.
+    }
+
+    try {
+      decrypt(aead, ciphertext, Random.randBytes(10));
+      fail("Wrong associated data was accepted");
+    } catch (IOException expected) {
+      // Expected.
+    }
+  }
+
+  @Test
+  public void testInvalidParameters() throws Exception {
+    try {
+      new AesCtrHmacStreaming(
+          Random.randBytes(16), "HmacSha256", 16, "HmacSha256", 33, 4096);
+      fail("Too long tag was accepted");
+    } catch (InvalidAlgorithmParameterException expected) {
+      // Expected.
+    }
+    try {
+      new AesCtrHmacStreaming(
+          Random.randBytes(16), "HmacSha256", 24, "HmacSha256", 16, 4096);
+      fail("Invalid key size was accepted");
+    } catch (InvalidAlgorithmParameterException expected) {
+      // Expected.
+    }
+    try {
+      new AesCtrHmacStreaming(
+          Random.randBytes(16), "HmacSha256", 16, "HmacSha256", 16, 40);
+      fail("Too short segment size was accepted");
+    } catch (InvalidAlgorithmParameterException expected) {
+      // Expected.
+    }
+  }
+}
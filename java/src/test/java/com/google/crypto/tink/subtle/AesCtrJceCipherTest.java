@@ -21,7 +21,13 @@ import static junit.framework.Assert.assertFalse;
 import static org.junit.Assert.assertArrayEquals;
 
 import com.google.crypto.tink.TestUtil;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -68,6 +74,24 @@ public class AesCtrJceCipherTest {
     assertArrayEquals(TestUtil.hexDecode(NIST_PLAINTEXT), cipher.decrypt(ciphertext));
   }
 
+  @Test
+  public void testByteBufferEncryptDecrypt() throws Exception {
+    int ivSize = 16;
+    AesCtrJceCipher cipher = new AesCtrJceCipher(Random.randBytes(16), ivSize);
+    ByteBuffer ciphertext = ByteBuffer.allocateDirect(ivSize + msg.length);
+    cipher.encrypt(ByteBuffer.wrap(msg), ciphertext);
+    assertEquals(0, ciphertext.remaining());
+    ciphertext.flip();
+    byte[] ciphertextBytes = new byte[ciphertext.remaining()];
+    ciphertext.duplicate().get(ciphertextBytes);
+    assertArrayEquals(msg, cipher.decrypt(ciphertextBytes));
+
+    ByteBuffer plaintext = ByteBuffer.allocate(msg.length + 7);
+    plaintext.position(7);
+    cipher.decrypt(ciphertext, plaintext);
+    assertArrayEquals(msg, Arrays.copyOfRange(plaintext.array(), 7, plaintext.capacity()));
+  }
+
   @Test
   public void testMultipleEncrypts() throws Exception {
     // Checks whether multiple encryptions result in different ciphertexts.
@@ -109,4 +133,53 @@ public class AesCtrJceCipherTest {
     assertArrayEquals(msg, c.decrypt(ciphertext));
   }
 
+  @Test
+  public void testParallelMatchesSequential() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      byte[] key = Random.randBytes(16);
+      for (int ivSize : new int[] {12, 16}) {
+        AesCtrJceCipher sequential = new AesCtrJceCipher(key, ivSize);
+        AesCtrJceCipher parallel = new AesCtrJceCipher(key, ivSize, executor);
+        for (int length : new int[] {0, 1000, ParallelCtr.CHUNK_SIZE_IN_BYTES + 1,
+            3 * ParallelCtr.CHUNK_SIZE_IN_BYTES + 17}) {
+          byte[] plaintext = Random.randBytes(length);
+          byte[] ciphertext = parallel.encrypt(plaintext);
+          assertArrayEquals(plaintext, sequential.decrypt(ciphertext));
+          assertArrayEquals(plaintext, parallel.decrypt(ciphertext));
+
+          ByteBuffer ciphertextBuf = ByteBuffer.allocateDirect(ciphertext.length);
+          ciphertextBuf.put(ciphertext).flip();
+          ByteBuffer plaintextBuf = ByteBuffer.allocateDirect(length);
+          parallel.decrypt(ciphertextBuf, plaintextBuf);
+          assertFalse(ciphertextBuf.hasRemaining());
+          plaintextBuf.flip();
+          assertArrayEquals(plaintext, SubtleUtil.toByteArray(plaintextBuf));
+        }
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testParallelCounterCarry() throws Exception {
+    // With a 16 byte IV the whole block is the counter, and chunks must carry into the IV bytes.
+    byte[] key = Random.randBytes(16);
+    byte[] iv = new byte[16];
+    Arrays.fill(iv, (byte) 0xff);
+    byte[] plaintext = Random.randBytes(2 * ParallelCtr.CHUNK_SIZE_IN_BYTES + 1);
+    Cipher cipher = Cipher.getInstance("AES/CTR/NoPadding");
+    cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key, "AES"), new IvParameterSpec(iv));
+    byte[] ciphertext = new byte[iv.length + plaintext.length];
+    System.arraycopy(iv, 0, ciphertext, 0, iv.length);
+    cipher.doFinal(plaintext, 0, plaintext.length, ciphertext, iv.length);
+
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      assertArrayEquals(plaintext, new AesCtrJceCipher(key, 16, executor).decrypt(ciphertext));
+    } finally {
+      executor.shutdown();
+    }
+  }
 }
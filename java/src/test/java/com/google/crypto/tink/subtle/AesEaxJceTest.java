@@ -17,9 +17,11 @@
 package com.google.crypto.tink.subtle;
 
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.fail;
 
 import com.google.crypto.tink.TestUtil;
+import java.nio.ByteBuffer;
 import java.security.GeneralSecurityException;
 import java.util.Arrays;
 import javax.crypto.AEADBadTagException;
@@ -246,6 +248,63 @@ public class AesEaxJceTest {
     }
   }
 
+  @Test
+  public void testEncryptDecryptLongMessages() throws Exception {
+    byte[] key = Random.randBytes(KEY_SIZE);
+    AesEaxJce eax = new AesEaxJce(key, IV_SIZE);
+    // Sizes around the chunk size used for OMAC computations.
+    for (int messageSize : new int[] {4095, 4096, 4097, 4111, 4112, 4113, 100000}) {
+      byte[] message = Random.randBytes(messageSize);
+      byte[] aad = Random.randBytes(messageSize);
+      byte[] ciphertext = eax.encrypt(message, aad);
+      byte[] decrypted = eax.decrypt(ciphertext, aad);
+      assertArrayEquals(message, decrypted);
+    }
+  }
+
+  @Test
+  public void testByteBufferEncryptDecrypt() throws Exception {
+    byte[] key = Random.randBytes(KEY_SIZE);
+    AesEaxJce eax = new AesEaxJce(key, IV_SIZE);
+    for (boolean direct : new boolean[] {false, true}) {
+      // Sizes around the chunk size used for OMAC computations.
+      for (int messageSize : new int[] {0, 1, 16, 17, 75, 4095, 4096, 4097, 4113, 10000}) {
+        byte[] message = Random.randBytes(messageSize);
+        byte[] aad = Random.randBytes(messageSize % 37);
+        ByteBuffer aadBuffer = allocate(direct, aad.length);
+        aadBuffer.put(aad).flip();
+        ByteBuffer ciphertext = allocate(direct, 3 + messageSize + IV_SIZE + 16);
+        ciphertext.position(3);
+        eax.encrypt(ByteBuffer.wrap(message), aadBuffer.duplicate(), ciphertext);
+        assertEquals(ciphertext.limit(), ciphertext.position());
+        ciphertext.position(3);
+        byte[] ciphertextBytes = new byte[ciphertext.remaining()];
+        ciphertext.duplicate().get(ciphertextBytes);
+        // The two APIs are interchangeable.
+        assertArrayEquals(message, eax.decrypt(ciphertextBytes, aad));
+        ByteBuffer decrypted = allocate(direct, messageSize);
+        eax.decrypt(ciphertext, aadBuffer, decrypted);
+        assertEquals(ciphertext.limit(), ciphertext.position());
+        assertEquals(0, decrypted.remaining());
+        decrypted.flip();
+        assertEquals(ByteBuffer.wrap(message), decrypted);
+
+        ciphertextBytes[ciphertextBytes.length - 1] ^= 1;
+        try {
+          eax.decrypt(ByteBuffer.wrap(ciphertextBytes), ByteBuffer.wrap(aad),
+              allocate(direct, messageSize));
+          fail("Decrypting a modified ciphertext should fail");
+        } catch (AEADBadTagException ex) {
+          // This is expected.
+        }
+      }
+    }
+  }
+
+  private static ByteBuffer allocate(boolean direct, int size) {
+    return direct ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+  }
+
   @Test
   public void testRegression() throws Exception {
     for (EaxTestVector t : EAX_TEST_VECTOR) {
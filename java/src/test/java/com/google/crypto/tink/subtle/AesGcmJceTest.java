@@ -17,15 +17,18 @@
 package com.google.crypto.tink.subtle;
 
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.fail;
 
 import com.google.crypto.tink.TestUtil;
+import java.nio.ByteBuffer;
 import java.security.GeneralSecurityException;
 import java.util.Arrays;
 import java.util.HashSet;
 import javax.crypto.AEADBadTagException;
 import javax.crypto.Cipher;
+import javax.crypto.ShortBufferException;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -144,6 +147,104 @@ public class AesGcmJceTest {
     }
   }
 
+  @Test
+  public void testByteBufferEncryptDecrypt() throws Exception {
+    byte[] aad = new byte[] {1, 2, 3};
+    byte[] key = Random.randBytes(16);
+    AesGcmJce gcm = new AesGcmJce(key);
+    for (boolean direct : new boolean[] {false, true}) {
+      for (int messageSize = 0; messageSize < 75; messageSize++) {
+        byte[] message = Random.randBytes(messageSize);
+        ByteBuffer ciphertext = allocate(direct, 3 + messageSize + 12 + 16);
+        ciphertext.position(3);
+        gcm.encrypt(ByteBuffer.wrap(message), ByteBuffer.wrap(aad), ciphertext);
+        assertEquals(ciphertext.limit(), ciphertext.position());
+        ciphertext.position(3);
+        byte[] ciphertextBytes = new byte[ciphertext.remaining()];
+        ciphertext.duplicate().get(ciphertextBytes);
+        // The two APIs are interchangeable.
+        assertArrayEquals(message, gcm.decrypt(ciphertextBytes, aad));
+        ByteBuffer decrypted = allocate(direct, messageSize);
+        gcm.decrypt(ciphertext, ByteBuffer.wrap(aad), decrypted);
+        assertEquals(0, decrypted.remaining());
+        decrypted.flip();
+        assertEquals(ByteBuffer.wrap(message), decrypted);
+      }
+    }
+  }
+
+  @Test
+  public void testEncryptDecryptWithOffset() throws Exception {
+    byte[] aad = new byte[] {1, 2, 3};
+    AesGcmJce gcm = new AesGcmJce(Random.randBytes(16));
+    for (int messageSize = 0; messageSize < 75; messageSize++) {
+      byte[] message = Random.randBytes(messageSize);
+      int offset = 7;
+      byte[] buffer = new byte[offset + gcm.ciphertextSize(messageSize) + 3];
+      int written = gcm.encrypt(message, aad, buffer, offset);
+      assertEquals(gcm.ciphertextSize(messageSize), written);
+      assertArrayEquals(message, gcm.decrypt(buffer, offset, written, aad));
+      assertArrayEquals(
+          message, gcm.decrypt(Arrays.copyOfRange(buffer, offset, offset + written), aad));
+    }
+    try {
+      gcm.encrypt(new byte[10], aad, new byte[gcm.ciphertextSize(10)], 1);
+      fail("Expected ShortBufferException");
+    } catch (ShortBufferException expected) {
+      // expected.
+    }
+  }
+
+  @Test
+  public void testEncryptDecryptBatch() throws Exception {
+    byte[] aad = new byte[] {1, 2, 3};
+    AesGcmJce gcm = new AesGcmJce(Random.randBytes(16));
+    byte[][] messages = new byte[75][];
+    for (int messageSize = 0; messageSize < messages.length; messageSize++) {
+      messages[messageSize] = Random.randBytes(messageSize);
+    }
+    int[] offsets = new int[messages.length + 1];
+    byte[] ciphertext = AeadBatch.encrypt(gcm, messages, aad, offsets);
+    assertEquals(ciphertext.length, offsets[messages.length]);
+    HashSet<String> ivs = new HashSet<String>();
+    for (int i = 0; i < messages.length; i++) {
+      assertEquals(gcm.ciphertextSize(messages[i].length), offsets[i + 1] - offsets[i]);
+      assertArrayEquals(messages[i],
+          gcm.decrypt(Arrays.copyOfRange(ciphertext, offsets[i], offsets[i + 1]), aad));
+      ivs.add(TestUtil.hexEncode(Arrays.copyOfRange(ciphertext, offsets[i], offsets[i] + 12)));
+    }
+    assertEquals(messages.length, ivs.size());
+    byte[][] decrypted = gcm.decryptBatch(ciphertext, offsets, aad);
+    for (int i = 0; i < messages.length; i++) {
+      assertArrayEquals(messages[i], decrypted[i]);
+    }
+    int[] decreasing = offsets.clone();
+    decreasing[5] = decreasing[4] - 1;
+    try {
+      gcm.decryptBatch(ciphertext, decreasing, aad);
+      fail("Expected GeneralSecurityException");
+    } catch (GeneralSecurityException expected) {
+      // expected.
+    }
+  }
+
+  @Test
+  public void testByteBufferShortOutput() throws Exception {
+    AesGcmJce gcm = new AesGcmJce(Random.randBytes(16));
+    byte[] message = Random.randBytes(20);
+    try {
+      gcm.encrypt(ByteBuffer.wrap(message), ByteBuffer.allocate(0),
+          ByteBuffer.allocate(message.length + 12 + 15));
+      fail("Expected ShortBufferException");
+    } catch (ShortBufferException expected) {
+      // expected.
+    }
+  }
+
+  private static ByteBuffer allocate(boolean direct, int size) {
+    return direct ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+  }
+
   @Test
   public void testEncryptDecrypt() throws Exception {
     byte[] aad = new byte[] {1, 2, 3};
@@ -21,6 +21,7 @@ import static org.junit.Assert.fail;
 
 import com.google.common.truth.Truth;
 import com.google.crypto.tink.TestUtil;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.security.GeneralSecurityException;
 import java.util.Arrays;
@@ -92,6 +93,42 @@ public class ChaCha20Poly1305Test {
             + "future, sunscreen would be it.").getBytes(StandardCharsets.US_ASCII));
   }
 
+  @Test
+  public void testByteBufferEncryptDecrypt() throws GeneralSecurityException {
+    ChaCha20Poly1305 aead = new ChaCha20Poly1305(Random.randBytes(32));
+    byte[] aad = Random.randBytes(13);
+    for (int messageSize = 0; messageSize < 200; messageSize += 7) {
+      byte[] message = Random.randBytes(messageSize);
+      ByteBuffer ciphertext = ByteBuffer.allocateDirect(messageSize + 16 + 12);
+      aead.encrypt(ByteBuffer.wrap(message), ByteBuffer.wrap(aad), ciphertext);
+      ciphertext.flip();
+      byte[] ciphertextBytes = new byte[ciphertext.remaining()];
+      ciphertext.duplicate().get(ciphertextBytes);
+      Truth.assertThat(aead.decrypt(ciphertextBytes, aad)).isEqualTo(message);
+
+      ByteBuffer decrypted = ByteBuffer.allocate(messageSize);
+      aead.decrypt(ciphertext, ByteBuffer.wrap(aad), decrypted);
+      Truth.assertThat(decrypted.array()).isEqualTo(message);
+    }
+  }
+
+  @Test
+  public void testEncryptDecryptLongMessages() throws GeneralSecurityException {
+    ChaCha20Poly1305 aead = new ChaCha20Poly1305(Random.randBytes(32));
+    // Sizes around multiples of the number of bytes encrypted before being authenticated.
+    for (int messageSize : new int[] {255, 256, 257, 511, 512, 513, 5000}) {
+      byte[] message = Random.randBytes(messageSize);
+      byte[] aad = Random.randBytes(messageSize % 37);
+      ByteBuffer ciphertext = ByteBuffer.allocateDirect(messageSize + 16 + 12);
+      aead.encrypt(ByteBuffer.wrap(message), ByteBuffer.wrap(aad), ciphertext);
+      ciphertext.flip();
+      byte[] ciphertextBytes = new byte[ciphertext.remaining()];
+      ciphertext.get(ciphertextBytes);
+      Truth.assertThat(aead.decrypt(ciphertextBytes, aad)).isEqualTo(message);
+      Truth.assertThat(aead.decrypt(aead.encrypt(message, aad), aad)).isEqualTo(message);
+    }
+  }
+
   @Test
   public void testDecryptThrowsGeneralSecurityExpForCorruptInput() throws GeneralSecurityException {
     byte[] key = TestUtil.hexDecode(""
@@ -20,6 +20,7 @@ import com.google.common.truth.Truth;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executor;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
@@ -37,6 +38,11 @@ public class ChaCha20Test extends DJBCipherTestBase<ChaCha20> {
     return new ChaCha20(key);
   }
 
+  @Override
+  protected ChaCha20 createInstance(byte[] key, Executor executor) {
+    return new ChaCha20(key, executor);
+  }
+
   /**
    * https://tools.ietf.org/html/rfc7539#section-2.1.1
    */
@@ -96,6 +96,51 @@ public class DJBCipherTest {
         new int[] {5, 5, 5, 5, 5, 5, 5, 5, 5, 5, 20, 12, 12, 12, 12, 6});
   }
 
+  /**
+   * Returns {@code input} XORed with the key stream, computed one byte at a time.
+   */
+  private static byte[] xorKeyStream(byte[] input, StateGen stateGen) {
+    byte[] output = new byte[input.length];
+    ByteBuffer block = ByteBuffer.allocate(DJBCipher.BLOCK_SIZE_IN_BYTES)
+        .order(ByteOrder.LITTLE_ENDIAN);
+    for (int i = 0; i < input.length; i++) {
+      if (i % DJBCipher.BLOCK_SIZE_IN_BYTES == 0) {
+        block.asIntBuffer().put(stateGen.next());
+      }
+      output[i] = (byte) (input[i] ^ block.get(i % DJBCipher.BLOCK_SIZE_IN_BYTES));
+    }
+    return output;
+  }
+
+  @Test
+  public void testProcessMatchesStateGen() {
+    DJBCipher cipher = new MockDJBCipher(new byte[32]);
+    byte[] nonce = Random.randBytes(16);
+    int maxLength = 3 * DJBCipher.BLOCKS_PER_ITERATION * DJBCipher.BLOCK_SIZE_IN_BYTES;
+    for (int length = 0; length < maxLength; length += 7) {
+      byte[] input = Random.randBytes(length);
+      byte[] expected = xorKeyStream(input, new StateGen(cipher, nonce, 3));
+
+      ByteBuffer output = ByteBuffer.allocate(length);
+      cipher.process(output, ByteBuffer.wrap(input), new StateGen(cipher, nonce, 3));
+      assertThat(output.position()).isEqualTo(length);
+      assertThat(output.array()).isEqualTo(expected);
+
+      // Key streams that don't start at a block boundary.
+      StateGen stateGen = new StateGen(cipher, nonce, 3);
+      stateGen.read(5);
+      expected = xorKeyStream(input, stateGen);
+      stateGen = new StateGen(cipher, nonce, 3);
+      stateGen.read(5);
+      output = ByteBuffer.allocateDirect(length);
+      cipher.process(output, ByteBuffer.wrap(input), stateGen);
+      byte[] actual = new byte[length];
+      output.flip();
+      output.get(actual);
+      assertThat(actual).isEqualTo(expected);
+    }
+  }
+
   @Test
   public void testStateGenReadLengthGT16ThrowsIllegalArgException() {
     StateGen stateGen = new StateGen(new MockDJBCipher(new byte[32]), new byte[16], 3);
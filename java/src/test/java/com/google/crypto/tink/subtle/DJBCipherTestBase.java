@@ -21,8 +21,12 @@ import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import com.google.crypto.tink.TestUtil;
+import java.nio.ByteBuffer;
 import java.security.GeneralSecurityException;
 import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import org.junit.Test;
 
 /**
@@ -32,6 +36,8 @@ public abstract class DJBCipherTestBase<T extends DJBCipher> {
 
   protected abstract T createInstance(byte[] key);
 
+  protected abstract T createInstance(byte[] key, Executor executor);
+
   static int[] twosCompInt(long[] a) {
     int[] ret = new int[a.length];
     for (int i = 0; i < a.length; i++) {
@@ -69,6 +75,33 @@ public abstract class DJBCipherTestBase<T extends DJBCipher> {
     }
   }
 
+  @Test
+  public void testParallelMatchesSequential() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      byte[] key = Random.randBytes(32);
+      DJBCipher sequential = createInstance(key);
+      DJBCipher parallel = createInstance(key, executor);
+      for (int length : new int[] {0, 1000, ParallelCtr.CHUNK_SIZE_IN_BYTES + 1,
+          3 * ParallelCtr.CHUNK_SIZE_IN_BYTES + 65}) {
+        byte[] input = Random.randBytes(length);
+        byte[] ciphertext = parallel.encrypt(input);
+        assertThat(sequential.decrypt(ciphertext)).isEqualTo(input);
+        assertThat(parallel.decrypt(ciphertext)).isEqualTo(input);
+
+        ByteBuffer ciphertextBuf = ByteBuffer.allocateDirect(ciphertext.length);
+        ciphertextBuf.put(ciphertext).flip();
+        ByteBuffer plaintextBuf = ByteBuffer.allocateDirect(length);
+        parallel.decrypt(ciphertextBuf, plaintextBuf);
+        assertThat(ciphertextBuf.hasRemaining()).isFalse();
+        plaintextBuf.flip();
+        assertThat(SubtleUtil.toByteArray(plaintextBuf)).isEqualTo(input);
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
   @Test
   public void testNewCipherThrowsIllegalArgExpWhenKeyLenIsLessThan32() {
     try {
@@ -17,12 +17,17 @@
 package com.google.crypto.tink.subtle;
 
 import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.fail;
 
 import com.google.crypto.tink.TestUtil;
+import java.math.BigInteger;
 import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
 import java.security.SignatureException;
+import java.util.Arrays;
+import java.util.Collections;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
@@ -53,6 +58,152 @@ public class Ed25519Test {
     }
   }
 
+  @Test
+  public void testSignTwice() throws GeneralSecurityException {
+    Ed25519Sign.KeyPair keyPair = Ed25519Sign.KeyPair.newKeyPair();
+    Ed25519Sign signer = new Ed25519Sign(keyPair.getPrivateKey());
+    Ed25519Verify verifier = new Ed25519Verify(keyPair.getPublicKey());
+    byte[] message = Random.randBytes(20);
+    byte[] signature = signer.sign(message);
+    assertArrayEquals(signature, signer.sign(message));
+    verifier.verify(signer.sign(signature), signature);
+  }
+
+  @Test
+  public void testVerifyBatch() throws GeneralSecurityException {
+    Ed25519Sign.KeyPair[] keyPairs = new Ed25519Sign.KeyPair[3];
+    for (int i = 0; i < keyPairs.length; i++) {
+      keyPairs[i] = Ed25519Sign.KeyPair.newKeyPair();
+    }
+    // More than one chunk of the batch.
+    int count = 150;
+    byte[][] messages = new byte[count][];
+    byte[][] signatures = new byte[count][];
+    byte[][] publicKeys = new byte[count][];
+    for (int i = 0; i < count; i++) {
+      Ed25519Sign.KeyPair keyPair = keyPairs[i % keyPairs.length];
+      messages[i] = Random.randBytes(i);
+      signatures[i] = new Ed25519Sign(keyPair.getPrivateKey()).sign(messages[i]);
+      publicKeys[i] = keyPair.getPublicKey();
+    }
+    assertEquals(Collections.<Integer>emptyList(),
+        Ed25519Verify.verifyBatch(messages, signatures, publicKeys));
+
+    signatures[3][10] ^= 1;
+    signatures[64][40] ^= 1;
+    messages[65] = Random.randBytes(10);
+    publicKeys[100] = keyPairs[0].getPublicKey();
+    signatures[120] = Arrays.copyOf(signatures[120], 63);
+    publicKeys[121] = Arrays.copyOf(publicKeys[121], 31);
+    assertEquals(Arrays.asList(3, 64, 65, 100, 120, 121),
+        Ed25519Verify.verifyBatch(messages, signatures, publicKeys));
+
+    Ed25519Verify[] verifiers = new Ed25519Verify[count];
+    for (int i = 0; i < count; i++) {
+      verifiers[i] = new Ed25519Verify(keyPairs[i % keyPairs.length].getPublicKey());
+    }
+    assertEquals(Arrays.asList(3, 64, 65, 120),
+        Ed25519Verify.verifyBatch(messages, signatures, verifiers));
+  }
+
+  @Test
+  public void testVerifyBatchChecksSmallOrderPointsOneAtATime()
+      throws GeneralSecurityException {
+    // The neutral point as public key and as R, with s = 0, passes verify.
+    byte[] neutral = TestUtil.hexDecode(
+        "0100000000000000000000000000000000000000000000000000000000000000");
+    byte[] signature = SubtleUtil.concat(neutral, new byte[32]);
+    byte[] message = Random.randBytes(20);
+    new Ed25519Verify(neutral).verify(signature, message);
+    // R = 2^255 - 19 + 1 is a non-canonical encoding of the neutral point, which verify rejects.
+    byte[] nonCanonical = TestUtil.hexDecode(
+        "eeffffffffffffffffffffffffffffffffffffffffffffffffffffffffffff7f");
+    byte[] nonCanonicalSignature = SubtleUtil.concat(nonCanonical, new byte[32]);
+    try {
+      new Ed25519Verify(neutral).verify(nonCanonicalSignature, message);
+      fail("Expected SignatureException");
+    } catch (SignatureException expected) {
+      // Expected.
+    }
+
+    Ed25519Sign.KeyPair keyPair = Ed25519Sign.KeyPair.newKeyPair();
+    byte[][] messages = new byte[][] {message, message, message};
+    byte[][] signatures = new byte[][] {
+        signature, new Ed25519Sign(keyPair.getPrivateKey()).sign(message), nonCanonicalSignature};
+    byte[][] publicKeys = new byte[][] {neutral, keyPair.getPublicKey(), neutral};
+    assertEquals(Arrays.asList(2), Ed25519Verify.verifyBatch(messages, signatures, publicKeys));
+  }
+
+  @Test
+  public void testVerifyBatchAcceptsMixedOrderR() throws GeneralSecurityException {
+    // The batch check uses the cofactored equation, so unlike verify it accepts a signature
+    // whose R is the sum of r*B and a point of small order. Only the owner of the private key can
+    // create such a signature.
+    BigInteger p = BigInteger.ONE.shiftLeft(255).subtract(BigInteger.valueOf(19));
+    BigInteger l = BigInteger.ONE.shiftLeft(252)
+        .add(new BigInteger("27742317777372353535851937790883648493"));
+    Ed25519Sign.KeyPair keyPair = Ed25519Sign.KeyPair.newKeyPair();
+    byte[] publicKey = keyPair.getPublicKey();
+    BigInteger a = fromLittleEndian(
+        Arrays.copyOf(Ed25519.getHashedScalar(keyPair.getPrivateKey()), 32));
+    BigInteger r = fromLittleEndian(Random.randBytes(32)).mod(l);
+    byte[] rB = Ed25519.scalarMultToBytes(toLittleEndian(r));
+    // Adding the point (0, -1) of order 2 maps (x, y) to (-x, -y).
+    BigInteger y = fromLittleEndian(rB).clearBit(255);
+    BigInteger mixedOrderR = p.subtract(y).mod(p);
+    if (!fromLittleEndian(rB).testBit(255)) {
+      mixedOrderR = mixedOrderR.setBit(255);
+    }
+    byte[] rEncoding = toLittleEndian(mixedOrderR);
+    byte[] message = Random.randBytes(20);
+    MessageDigest digest = EngineFactory.MESSAGE_DIGEST.getInstance("SHA-512");
+    digest.update(rEncoding);
+    digest.update(publicKey);
+    byte[] k = digest.digest(message);
+    BigInteger s = r.add(fromLittleEndian(k).multiply(a)).mod(l);
+    byte[] signature = SubtleUtil.concat(rEncoding, toLittleEndian(s));
+
+    try {
+      new Ed25519Verify(publicKey).verify(signature, message);
+      fail("Expected SignatureException");
+    } catch (SignatureException expected) {
+      // Expected.
+    }
+    byte[][] messages = new byte[][] {message, message};
+    byte[][] signatures = new byte[][] {
+        signature, new Ed25519Sign(keyPair.getPrivateKey()).sign(message)};
+    byte[][] publicKeys = new byte[][] {publicKey, publicKey};
+    assertEquals(Collections.<Integer>emptyList(),
+        Ed25519Verify.verifyBatch(messages, signatures, publicKeys));
+  }
+
+  private static BigInteger fromLittleEndian(byte[] bytes) {
+    byte[] bigEndian = new byte[bytes.length];
+    for (int i = 0; i < bytes.length; i++) {
+      bigEndian[i] = bytes[bytes.length - 1 - i];
+    }
+    return new BigInteger(1, bigEndian);
+  }
+
+  private static byte[] toLittleEndian(BigInteger n) {
+    byte[] bytes = new byte[32];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = n.shiftRight(8 * i).byteValue();
+    }
+    return bytes;
+  }
+
+  @Test
+  public void testVerifyBatchThrowsIllegalArgExpWhenLengthsDiffer()
+      throws GeneralSecurityException {
+    try {
+      Ed25519Verify.verifyBatch(new byte[2][], new byte[2][], new byte[1][]);
+      fail("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException expected) {
+      assertThat(expected).hasMessageThat().contains("must have the same length");
+    }
+  }
+
   private static class TestVectors {
 
     private String hexPublicKey = "";
@@ -18,12 +18,17 @@ package com.google.crypto.tink.subtle;
 
 import static junit.framework.Assert.fail;
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 
 import com.google.crypto.tink.Aead;
 import com.google.crypto.tink.Mac;
 import com.google.crypto.tink.TestUtil;
+import com.google.crypto.tink.ZeroCopyAead;
+import java.nio.ByteBuffer;
 import java.security.GeneralSecurityException;
 import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import javax.crypto.Cipher;
 import javax.crypto.spec.SecretKeySpec;
 import org.junit.Test;
@@ -171,6 +176,112 @@ public class EncryptThenAuthenticateTest {
     }
   }
 
+  @Test
+  public void testByteBufferEncryptDecrypt() throws Exception {
+    ZeroCopyAead aead = (ZeroCopyAead) getAead(Random.randBytes(16), Random.randBytes(16),
+        16, 16, "HMACSHA256");
+    byte[] plaintext = Random.randBytes(1001);
+    byte[] aad = Random.randBytes(13);
+    ByteBuffer ciphertext = ByteBuffer.allocateDirect(16 + plaintext.length + 16);
+    aead.encrypt(ByteBuffer.wrap(plaintext), ByteBuffer.wrap(aad), ciphertext);
+    ciphertext.flip();
+    byte[] ciphertextBytes = new byte[ciphertext.remaining()];
+    ciphertext.duplicate().get(ciphertextBytes);
+    assertArrayEquals(plaintext, aead.decrypt(ciphertextBytes, aad));
+
+    ByteBuffer decrypted = ByteBuffer.allocate(plaintext.length);
+    aead.decrypt(ciphertext, ByteBuffer.wrap(aad), decrypted);
+    assertArrayEquals(plaintext, decrypted.array());
+    assertEquals(0, ciphertext.remaining());
+
+    ciphertextBytes[3] ^= 1;
+    try {
+      aead.decrypt(ByteBuffer.wrap(ciphertextBytes), ByteBuffer.wrap(aad),
+          ByteBuffer.allocate(plaintext.length));
+      fail("Invalid ciphertext, should have thrown exception");
+    } catch (GeneralSecurityException expected) {
+      // Expected
+    }
+  }
+
+  @Test
+  public void testParallelCipher() throws Exception {
+    byte[] hmacKey = Random.randBytes(16);
+    byte[] encKey = Random.randBytes(16);
+    SecretKeySpec keySpec = new SecretKeySpec(hmacKey, "HMAC");
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      Aead parallel = new EncryptThenAuthenticate(new AesCtrJceCipher(encKey, 16, executor),
+          new MacJce("HMACSHA256", keySpec, 16), 16);
+      Aead sequential = getAead(hmacKey, encKey, 16, 16, "HMACSHA256");
+      byte[] plaintext = Random.randBytes(3 * ParallelCtr.CHUNK_SIZE_IN_BYTES + 5);
+      byte[] aad = Random.randBytes(13);
+      assertArrayEquals(plaintext, sequential.decrypt(parallel.encrypt(plaintext, aad), aad));
+      assertArrayEquals(plaintext, parallel.decrypt(sequential.encrypt(plaintext, aad), aad));
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testPlainCipherAndMac() throws Exception {
+    byte[] hmacKey = Random.randBytes(16);
+    byte[] encKey = Random.randBytes(16);
+    final IndCpaCipher cipher = new AesCtrJceCipher(encKey, 16);
+    final Mac mac = new MacJce("HMACSHA256", new SecretKeySpec(hmacKey, "HMAC"), 16);
+    // Implements only the baseline interfaces, so that the fallbacks are used.
+    IndCpaCipher plainCipher = new IndCpaCipher() {
+      @Override
+      public byte[] encrypt(final byte[] plaintext) throws GeneralSecurityException {
+        return cipher.encrypt(plaintext);
+      }
+
+      @Override
+      public byte[] decrypt(final byte[] ciphertext) throws GeneralSecurityException {
+        return cipher.decrypt(ciphertext);
+      }
+    };
+    Mac plainMac = new Mac() {
+      @Override
+      public byte[] computeMac(final byte[] data) throws GeneralSecurityException {
+        return mac.computeMac(data);
+      }
+
+      @Override
+      public void verifyMac(final byte[] tag, final byte[] data) throws GeneralSecurityException {
+        mac.verifyMac(tag, data);
+      }
+    };
+    EncryptThenAuthenticate plain = new EncryptThenAuthenticate(plainCipher, plainMac, 16);
+    Aead aead = getAead(hmacKey, encKey, 16, 16, "HMACSHA256");
+    assertEquals(-1, plain.ciphertextSize(10));
+
+    byte[] plaintext = Random.randBytes(1001);
+    byte[] aad = Random.randBytes(13);
+    assertArrayEquals(plaintext, aead.decrypt(plain.encrypt(plaintext, aad), aad));
+    assertArrayEquals(plaintext, plain.decrypt(aead.encrypt(plaintext, aad), aad));
+
+    ByteBuffer ciphertext = ByteBuffer.allocateDirect(16 + plaintext.length + 16);
+    plain.encrypt(ByteBuffer.wrap(plaintext), ByteBuffer.wrap(aad), ciphertext);
+    ciphertext.flip();
+    byte[] ciphertextBytes = SubtleUtil.toByteArray(ciphertext.duplicate());
+    assertArrayEquals(plaintext, aead.decrypt(ciphertextBytes, aad));
+    ByteBuffer decrypted = ByteBuffer.allocate(plaintext.length);
+    plain.decrypt(ciphertext, ByteBuffer.wrap(aad), decrypted);
+    assertArrayEquals(plaintext, decrypted.array());
+
+    byte[] buffer = new byte[3 + ciphertextBytes.length];
+    assertEquals(ciphertextBytes.length, plain.encrypt(plaintext, aad, buffer, 3));
+    assertArrayEquals(plaintext, plain.decrypt(buffer, 3, ciphertextBytes.length, aad));
+    buffer[3] ^= 1;
+    try {
+      plain.decrypt(buffer, 3, ciphertextBytes.length, aad);
+      fail("Invalid ciphertext, should have thrown exception");
+    } catch (GeneralSecurityException expected) {
+      // Expected
+    }
+  }
+
   @Test
   public void testTruncation() throws Exception {
     Aead aead = getAead(Random.randBytes(16), Random.randBytes(16),
@@ -17,11 +17,14 @@
 package com.google.crypto.tink.subtle;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.fail;
 
 import java.security.GeneralSecurityException;
 import java.security.KeyPairGenerator;
 import java.security.Security;
+import java.util.concurrent.atomic.AtomicReference;
 import javax.crypto.Cipher;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -107,4 +110,68 @@ public class EngineFactoryTest {
     // didn't throw
   }
 
+  @Test
+  public void testCachedInstanceIsPerThread() throws Exception {
+    final Cipher c = EngineFactory.CIPHER.getCachedInstance("AES/GCM/NoPadding");
+    assertSame(c, EngineFactory.CIPHER.getCachedInstance("AES/GCM/NoPadding"));
+    assertNotSame(c, EngineFactory.CIPHER.getCachedInstance("AES/CTR/NoPadding"));
+
+    final AtomicReference<Cipher> other = new AtomicReference<Cipher>();
+    Thread thread =
+        new Thread(
+            new Runnable() {
+              @Override
+              public void run() {
+                try {
+                  other.set(EngineFactory.CIPHER.getCachedInstance("AES/GCM/NoPadding"));
+                } catch (GeneralSecurityException e) {
+                  throw new RuntimeException(e);
+                }
+              }
+            });
+    thread.start();
+    thread.join();
+    assertNotSame(c, other.get());
+  }
+
+  @Test
+  public void testCachingCanBeDisabled() throws Exception {
+    EngineFactory.setCachingEnabled(false);
+    try {
+      Cipher c = EngineFactory.CIPHER.getCachedInstance("AES/GCM/NoPadding");
+      assertNotSame(c, EngineFactory.CIPHER.getCachedInstance("AES/GCM/NoPadding"));
+    } finally {
+      EngineFactory.setCachingEnabled(true);
+    }
+  }
+
+  @Test
+  public void testProvidersChangedDropsCachedInstances() throws Exception {
+    Cipher c = EngineFactory.CIPHER.getCachedInstance("AES/GCM/NoPadding");
+    assertSame(c, EngineFactory.CIPHER.getCachedInstance("AES/GCM/NoPadding"));
+    EngineFactory.providersChanged();
+    Cipher c2 = EngineFactory.CIPHER.getCachedInstance("AES/GCM/NoPadding");
+    assertNotSame(c, c2);
+    assertSame(c2, EngineFactory.CIPHER.getCachedInstance("AES/GCM/NoPadding"));
+  }
+
+  @Test
+  public void testProviderMetrics() throws Exception {
+    EngineFactory<EngineWrapper.TCipher, Cipher> factory =
+        EngineFactory.getCustomCipherProvider(true);
+    factory.getInstance("AES/GCM/NoPadding");
+    assertEquals(
+        EngineFactory.FALLBACK_PROVIDER_NAME,
+        factory.getProviderMetrics().get("AES/GCM/NoPadding"));
+
+    if (SubtleUtil.isAndroid()) {
+      // Android doesn't have the SunJCE provider.
+      return;
+    }
+    factory = EngineFactory.getCustomCipherProvider(true, "SunEC", "SunJCE");
+    factory.getInstance("AES/GCM/NoPadding");
+    factory.getInstance("AES/GCM/NoPadding");
+    assertEquals("SunJCE", factory.getProviderMetrics().get("AES/GCM/NoPadding"));
+    assertEquals(1, factory.getProviderMetrics().size());
+  }
 }
@@ -0,0 +1,125 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.subtle;
+
+import static com.google.crypto.tink.TestUtil.assertExceptionContains;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.interfaces.ECPrivateKey;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.ECParameterSpec;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests for EphemeralKeyPairProducer.
+ */
+@RunWith(JUnit4.class)
+public class EphemeralKeyPairProducerTest {
+  /** Runs the refills inline, so that the tests are deterministic. */
+  private static final Executor DIRECT_EXECUTOR = new Executor() {
+    @Override
+    public void execute(Runnable command) {
+      command.run();
+    }
+  };
+
+  @Test
+  public void testTakeAndRefill() throws Exception {
+    ECParameterSpec spec = EcUtil.getNistP256Params();
+    EphemeralKeyPairProducer producer = new EphemeralKeyPairProducer(DIRECT_EXECUTOR, 8);
+    assertEquals(0, producer.available(spec));
+    producer.prefill(spec);
+    assertEquals(8, producer.available(spec));
+    assertEquals(0, producer.available(EcUtil.getNistP384Params()));
+
+    // Key pairs are never handed out twice.
+    Set<String> publicKeys = new HashSet<String>();
+    for (int i = 0; i < 20; i++) {
+      KeyPair keyPair = producer.take(EcUtil.getNistP256Params());
+      ECPublicKey publicKey = (ECPublicKey) keyPair.getPublic();
+      assertEquals(spec.getCurve(), publicKey.getParams().getCurve());
+      assertTrue(publicKeys.add(publicKey.getW().getAffineX().toString()));
+      assertEquals(8, producer.available(spec));
+    }
+
+    // Other curves get their own queue.
+    KeyPair keyPair = producer.take(EcUtil.getNistP384Params());
+    assertEquals(EcUtil.getNistP384Params().getCurve(),
+        ((ECPublicKey) keyPair.getPublic()).getParams().getCurve());
+    assertEquals(8, producer.available(EcUtil.getNistP384Params()));
+  }
+
+  @Test
+  public void testInlineGenerationWhenEmpty() throws Exception {
+    Executor noExecutor = new Executor() {
+      @Override
+      public void execute(Runnable command) {
+        // Never runs refills.
+      }
+    };
+    ECParameterSpec spec = EcUtil.getNistP256Params();
+    EphemeralKeyPairProducer producer = new EphemeralKeyPairProducer(noExecutor, 8);
+    KeyPair keyPair1 = producer.take(spec);
+    KeyPair keyPair2 = producer.take(spec);
+    assertEquals(0, producer.available(spec));
+    assertNotEquals(((ECPublicKey) keyPair1.getPublic()).getW(),
+        ((ECPublicKey) keyPair2.getPublic()).getW());
+  }
+
+  @Test
+  public void testSenderKem() throws Exception {
+    ECParameterSpec spec = EcUtil.getNistP256Params();
+    KeyPairGenerator keyGen = KeyPairGenerator.getInstance("EC");
+    keyGen.initialize(spec);
+    KeyPair recipientKey = keyGen.generateKeyPair();
+    EphemeralKeyPairProducer producer = new EphemeralKeyPairProducer(DIRECT_EXECUTOR, 4);
+    EciesHkdfSenderKem senderKem =
+        new EciesHkdfSenderKem((ECPublicKey) recipientKey.getPublic(), producer);
+    EciesHkdfRecipientKem recipientKem =
+        new EciesHkdfRecipientKem((ECPrivateKey) recipientKey.getPrivate());
+    byte[] salt = Random.randBytes(8);
+    byte[] info = Random.randBytes(8);
+    for (int i = 0; i < 10; i++) {
+      EciesHkdfSenderKem.KemKey kemKey = senderKem.generateKey(
+          "HmacSha256", salt, info, 16, EcUtil.PointFormat.UNCOMPRESSED);
+      assertArrayEquals(kemKey.getSymmetricKey(), recipientKem.generateKey(
+          kemKey.getKemBytes(), "HmacSha256", salt, info, 16, EcUtil.PointFormat.UNCOMPRESSED));
+    }
+    assertEquals(4, producer.available(spec));
+  }
+
+  @Test
+  public void testInvalidCapacity() throws Exception {
+    try {
+      new EphemeralKeyPairProducer(DIRECT_EXECUTOR, 0);
+      fail("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      assertExceptionContains(e, "capacity must be positive");
+    }
+  }
+}
@@ -16,11 +16,13 @@
 
 package com.google.crypto.tink.subtle;
 
+import static junit.framework.Assert.assertEquals;
 import static junit.framework.Assert.fail;
 import static org.junit.Assert.assertArrayEquals;
 
 import com.google.crypto.tink.Mac;
 import com.google.crypto.tink.TestUtil;
+import java.nio.ByteBuffer;
 import java.security.GeneralSecurityException;
 import java.util.Arrays;
 import javax.crypto.spec.SecretKeySpec;
@@ -87,6 +89,24 @@ public class MacJceTest {
     }
   }
 
+  @Test
+  public void testNistVectorsByteBuffer() throws Exception {
+    for (int i = 0; i < nistTestVectors.length; i++) {
+      NISTTestVector t = nistTestVectors[i];
+      SecretKeySpec keySpec = new SecretKeySpec(t.key, "HMAC");
+      MacJce mac = new MacJce(t.algName, keySpec, t.tag.length);
+      ByteBuffer message = ByteBuffer.allocateDirect(t.message.length);
+      message.put(t.message).flip();
+      assertArrayEquals(t.tag, mac.computeMac(message.duplicate()));
+      try {
+        mac.verifyMac(t.tag, message);
+      } catch (GeneralSecurityException e) {
+        fail("Valid MAC, should not throw exception");
+      }
+      assertEquals(0, message.remaining());
+    }
+  }
+
   @Test
   public void testTagTruncation() throws Exception {
     for (int i = 0; i < nistTestVectors.length; i++) {
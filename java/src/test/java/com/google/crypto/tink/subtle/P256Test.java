@@ -0,0 +1,251 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.subtle;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.crypto.tink.TestUtil;
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.security.interfaces.ECPrivateKey;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.ECParameterSpec;
+import java.security.spec.ECPoint;
+import javax.crypto.KeyAgreement;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Unit tests for P256, EcdsaSignP256 and EcdsaVerifyP256.
+ */
+@RunWith(JUnit4.class)
+public class P256Test {
+  private static KeyPair generateKeyPair(ECParameterSpec spec) throws Exception {
+    KeyPairGenerator keyGen = KeyPairGenerator.getInstance("EC");
+    keyGen.initialize(spec);
+    return keyGen.generateKeyPair();
+  }
+
+  private static byte[] encode(ECPoint point, EcUtil.PointFormat format) throws Exception {
+    return EcUtil.ecPointEncode(EcUtil.getNistP256Params().getCurve(), format, point);
+  }
+
+  @Test
+  public void testScalarMultBase() throws Exception {
+    ECParameterSpec spec = EcUtil.getNistP256Params();
+    BigInteger n = spec.getOrder();
+    // The base point table agrees with the generic scalar multiplication.
+    BigInteger[] scalars = {BigInteger.ONE, BigInteger.valueOf(16), n.subtract(BigInteger.ONE)};
+    P256.Table g = new P256.Table(P256.decodePoint(spec.getGenerator()));
+    for (BigInteger scalar : scalars) {
+      byte[] expected = P256.encodePoint(
+          P256.scalarMult(P256.toScalar(scalar), g), EcUtil.PointFormat.UNCOMPRESSED);
+      byte[] actual = P256.encodePoint(
+          P256.scalarMultBase(P256.toScalar(scalar)), EcUtil.PointFormat.UNCOMPRESSED);
+      assertArrayEquals(expected, actual);
+    }
+    assertArrayEquals(encode(spec.getGenerator(), EcUtil.PointFormat.UNCOMPRESSED),
+        P256.encodePoint(P256.scalarMultBase(P256.toScalar(BigInteger.ONE)),
+            EcUtil.PointFormat.UNCOMPRESSED));
+    // (n - 1) * G = -G.
+    ECPoint minusG = new ECPoint(spec.getGenerator().getAffineX(),
+        EcUtil.getModulus(spec.getCurve()).subtract(spec.getGenerator().getAffineY()));
+    assertArrayEquals(encode(minusG, EcUtil.PointFormat.UNCOMPRESSED),
+        P256.encodePoint(P256.scalarMultBase(P256.toScalar(n.subtract(BigInteger.ONE))),
+            EcUtil.PointFormat.UNCOMPRESSED));
+  }
+
+  @Test
+  public void testPointEncodingAndEcdhMatchJce() throws Exception {
+    ECParameterSpec spec = EcUtil.getNistP256Params();
+    for (int i = 0; i < 10; i++) {
+      KeyPair keyPair1 = generateKeyPair(spec);
+      KeyPair keyPair2 = generateKeyPair(spec);
+      byte[] scalar1 = P256.toScalar(((ECPrivateKey) keyPair1.getPrivate()).getS());
+      ECPoint w1 = ((ECPublicKey) keyPair1.getPublic()).getW();
+      ECPoint w2 = ((ECPublicKey) keyPair2.getPublic()).getW();
+
+      for (EcUtil.PointFormat format : EcUtil.PointFormat.values()) {
+        byte[] encoded = P256.encodePoint(P256.scalarMultBase(scalar1), format);
+        assertArrayEquals(encode(w1, format), encoded);
+        assertArrayEquals(encoded, P256.encodePoint(P256.decodePoint(encoded, format), format));
+      }
+
+      KeyAgreement ka = KeyAgreement.getInstance("ECDH");
+      ka.init(keyPair1.getPrivate());
+      ka.doPhase(keyPair2.getPublic(), true);
+      assertArrayEquals(ka.generateSecret(),
+          P256.computeSharedSecret(scalar1, new P256.Table(P256.decodePoint(w2))));
+    }
+  }
+
+  @Test
+  public void testInvalidPoints() throws Exception {
+    ECPoint g = EcUtil.getNistP256Params().getGenerator();
+    try {
+      P256.decodePoint(new ECPoint(g.getAffineX(), g.getAffineY().add(BigInteger.ONE)));
+      fail("Expected GeneralSecurityException");
+    } catch (GeneralSecurityException e) {
+      TestUtil.assertExceptionContains(e, "Point is not on curve");
+    }
+    byte[] encoded = encode(g, EcUtil.PointFormat.UNCOMPRESSED);
+    encoded[encoded.length - 1] ^= 1;
+    try {
+      P256.decodePoint(encoded, EcUtil.PointFormat.UNCOMPRESSED);
+      fail("Expected GeneralSecurityException");
+    } catch (GeneralSecurityException e) {
+      TestUtil.assertExceptionContains(e, "Point is not on curve");
+    }
+    // x = p is out of range.
+    byte[] compressed = new byte[33];
+    compressed[0] = 2;
+    System.arraycopy(TestUtil.hexDecode(
+        "ffffffff00000001000000000000000000000000ffffffffffffffffffffffff"), 0, compressed, 1, 32);
+    try {
+      P256.decodePoint(compressed, EcUtil.PointFormat.COMPRESSED);
+      fail("Expected GeneralSecurityException");
+    } catch (GeneralSecurityException e) {
+      TestUtil.assertExceptionContains(e, "x is out of range");
+    }
+  }
+
+  @Test
+  public void testSignAndVerifyWithJce() throws Exception {
+    for (String algorithm : new String[] {"SHA256WithECDSA", "SHA512WithECDSA"}) {
+      KeyPair keyPair = generateKeyPair(EcUtil.getNistP256Params());
+      ECPublicKey pub = (ECPublicKey) keyPair.getPublic();
+      ECPrivateKey priv = (ECPrivateKey) keyPair.getPrivate();
+      EcdsaSignP256 signer = new EcdsaSignP256(priv, algorithm);
+      EcdsaVerifyP256 verifier = new EcdsaVerifyP256(pub, algorithm);
+      for (int i = 0; i < 10; i++) {
+        byte[] message = Random.randBytes(i * 10);
+        byte[] signature = signer.sign(message);
+        Signature jceVerifier = Signature.getInstance(algorithm);
+        jceVerifier.initVerify(pub);
+        jceVerifier.update(message);
+        assertTrue(jceVerifier.verify(signature));
+        verifier.verify(signature, message);
+
+        Signature jceSigner = Signature.getInstance(algorithm);
+        jceSigner.initSign(priv);
+        jceSigner.update(message);
+        verifier.verify(jceSigner.sign(), message);
+      }
+    }
+  }
+
+  @Test
+  public void testBitFlip() throws Exception {
+    KeyPair keyPair = generateKeyPair(EcUtil.getNistP256Params());
+    EcdsaSignP256 signer =
+        new EcdsaSignP256((ECPrivateKey) keyPair.getPrivate(), "SHA256WithECDSA");
+    EcdsaVerifyP256 verifier =
+        new EcdsaVerifyP256((ECPublicKey) keyPair.getPublic(), "SHA256WithECDSA");
+    byte[] message = "Hello".getBytes("UTF-8");
+    byte[] signature = signer.sign(message);
+    for (int i = 0; i < signature.length; i++) {
+      for (int j = 0; j < 8; j++) {
+        signature[i] = (byte) (signature[i] ^ (1 << j));
+        try {
+          verifier.verify(signature, message);
+          fail("Invalid signature, should have thrown exception");
+        } catch (GeneralSecurityException expected) {
+          // Expected.
+        }
+        signature[i] = (byte) (signature[i] ^ (1 << j));
+      }
+    }
+  }
+
+  private static boolean verify(EcdsaVerifyP256 verifier, String signature, byte[] message) {
+    try {
+      verifier.verify(TestUtil.hexDecode(signature), message);
+      return true;
+    } catch (GeneralSecurityException e) {
+      return false;
+    }
+  }
+
+  @Test
+  public void testWycheproofVectors() throws Exception {
+    EcdsaVerifyJceTest vectors = new EcdsaVerifyJceTest();
+    ECPublicKey pub = (ECPublicKey) KeyFactory.getInstance("EC")
+        .generatePublic(vectors.publicKey1());
+    EcdsaVerifyP256 verifier = new EcdsaVerifyP256(pub, "SHA256WithECDSA");
+    byte[] message = EcdsaVerifyJceTest.MESSAGE.getBytes("UTF-8");
+    for (String signature : EcdsaVerifyJceTest.VALID_SIGNATURES) {
+      assertTrue(verify(verifier, signature, message));
+    }
+    // Only strict DER encodings are accepted.
+    for (String signature : EcdsaVerifyJceTest.MODIFIED_SIGNATURES) {
+      assertFalse(verify(verifier, signature, message));
+    }
+    for (String signature : EcdsaVerifyJceTest.INVALID_SIGNATURES) {
+      assertFalse(verify(verifier, signature, message));
+    }
+  }
+
+  @Test
+  public void testUnsupportedCurve() throws Exception {
+    KeyPair keyPair = generateKeyPair(EcUtil.getNistP384Params());
+    try {
+      new EcdsaSignP256((ECPrivateKey) keyPair.getPrivate(), "SHA512WithECDSA");
+      fail("Expected GeneralSecurityException");
+    } catch (GeneralSecurityException e) {
+      TestUtil.assertExceptionContains(e, "only supports the curve P-256");
+    }
+    try {
+      new EcdsaVerifyP256((ECPublicKey) keyPair.getPublic(), "SHA512WithECDSA");
+      fail("Expected GeneralSecurityException");
+    } catch (GeneralSecurityException e) {
+      TestUtil.assertExceptionContains(e, "only supports the curve P-256");
+    }
+  }
+
+  @Test
+  public void testKemsInteroperateWithJce() throws Exception {
+    KeyPair keyPair = generateKeyPair(EcUtil.getNistP256Params());
+    EciesHkdfSenderKem sender = new EciesHkdfSenderKem((ECPublicKey) keyPair.getPublic());
+    EciesHkdfRecipientKem recipient =
+        new EciesHkdfRecipientKem((ECPrivateKey) keyPair.getPrivate());
+    byte[] salt = Random.randBytes(16);
+    byte[] info = Random.randBytes(16);
+    for (EcUtil.PointFormat format : EcUtil.PointFormat.values()) {
+      for (boolean senderUsesP256 : new boolean[] {false, true}) {
+        try {
+          P256.setEnabled(senderUsesP256);
+          EciesHkdfSenderKem.KemKey kemKey =
+              sender.generateKey("HmacSha256", salt, info, 16, format);
+          P256.setEnabled(!senderUsesP256);
+          byte[] symmetricKey =
+              recipient.generateKey(kemKey.getKemBytes(), "HmacSha256", salt, info, 16, format);
+          assertArrayEquals(kemKey.getSymmetricKey(), symmetricKey);
+        } finally {
+          P256.setEnabled(false);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,85 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.subtle;
+
+import static org.junit.Assert.fail;
+
+import com.google.common.truth.Truth;
+import com.google.crypto.tink.TestUtil;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Unit tests for {@link Poly1305}.
+ */
+@RunWith(JUnit4.class)
+public class Poly1305Test {
+
+  /**
+   * Tests against the test vectors in Section 2.5.2 of RFC 7539, feeding one byte at a time.
+   * https://tools.ietf.org/html/rfc7539#section-2.5.2
+   */
+  @Test
+  public void testIncrementalUpdate() {
+    byte[] key = TestUtil.hexDecode(""
+        + "85d6be7857556d337f4452fe42d506a8"
+        + "0103808afb0db2fd4abff6af4149f51b");
+    byte[] in = ("Cryptographic Forum Research Group").getBytes(StandardCharsets.US_ASCII);
+    Poly1305 mac = new Poly1305(key);
+    for (int i = 0; i < in.length; i++) {
+      mac.update(in, i, 1);
+    }
+    Truth.assertThat(mac.finish()).isEqualTo(TestUtil.hexDecode(""
+        + "a8061dc1305136c6c22b8baf0c0127a9"));
+  }
+
+  @Test
+  public void testSplitUpdatesMatchOneShot() {
+    byte[] key = Random.randBytes(Poly1305.KEY_SIZE_IN_BYTES);
+    byte[] in = Random.randBytes(100);
+    byte[] expected = Poly1305.computeMac(key, in);
+    for (int split = 0; split <= in.length; split++) {
+      Poly1305 mac = new Poly1305(key);
+      mac.update(in, 0, split);
+      mac.update(in, split, in.length - split);
+      Truth.assertThat(mac.finish()).isEqualTo(expected);
+
+      mac = new Poly1305(key);
+      mac.update(ByteBuffer.wrap(in, 0, split));
+      ByteBuffer direct = ByteBuffer.allocateDirect(in.length - split);
+      direct.put(in, split, in.length - split);
+      direct.flip();
+      mac.update(direct);
+      Truth.assertThat(mac.finish()).isEqualTo(expected);
+    }
+  }
+
+  @Test
+  public void testUpdateAfterFinishThrows() {
+    Poly1305 mac = new Poly1305(Random.randBytes(Poly1305.KEY_SIZE_IN_BYTES));
+    mac.finish();
+    try {
+      mac.update(new byte[1], 0, 1);
+      fail("Expected IllegalStateException.");
+    } catch (IllegalStateException e) {
+      // Expected.
+    }
+  }
+}
@@ -0,0 +1,115 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.subtle;
+
+import static com.google.crypto.tink.TestUtil.assertExceptionContains;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.crypto.tink.TestUtil;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests for Random.
+ */
+@RunWith(JUnit4.class)
+public class RandomTest {
+  @Test
+  public void testRandBytesDistinct() throws Exception {
+    // Crosses the boundary of the internal buffer, and requests larger than the buffer.
+    int[] sizes = {12, 16, 24, 100, 1000, 1024, 5000};
+    Set<String> values = new HashSet<String>();
+    for (int size : sizes) {
+      for (int i = 0; i < 50; i++) {
+        byte[] rand = Random.randBytes(size);
+        assertEquals(size, rand.length);
+        assertTrue(values.add(TestUtil.hexEncode(rand)));
+      }
+    }
+  }
+
+  @Test
+  public void testRandBytesWithOffset() throws Exception {
+    for (int length : new int[] {0, 12, 1024, 3000}) {
+      byte[] output = new byte[length + 20];
+      Random.randBytes(output, 7, length);
+      for (int i = 0; i < 7; i++) {
+        assertEquals(0, output[i]);
+      }
+      for (int i = 7 + length; i < output.length; i++) {
+        assertEquals(0, output[i]);
+      }
+      if (length >= 12) {
+        assertFalse(Arrays.equals(new byte[length], Arrays.copyOfRange(output, 7, 7 + length)));
+      }
+    }
+  }
+
+  @Test
+  public void testRandBytesInvalidRange() throws Exception {
+    byte[] output = new byte[10];
+    int[][] ranges = {{-1, 5}, {0, -1}, {0, 11}, {5, 6}, {11, 0}};
+    for (int[] range : ranges) {
+      try {
+        Random.randBytes(output, range[0], range[1]);
+        fail("Expected IllegalArgumentException");
+      } catch (IllegalArgumentException e) {
+        assertExceptionContains(e, "invalid offset or length");
+      }
+    }
+  }
+
+  @Test
+  public void testRandBytesMultipleThreads() throws Exception {
+    final int numThreads = 4;
+    final String[] values = new String[numThreads * 100];
+    Thread[] threads = new Thread[numThreads];
+    for (int t = 0; t < numThreads; t++) {
+      final int thread = t;
+      threads[t] = new Thread() {
+        @Override
+        public void run() {
+          for (int i = 0; i < 100; i++) {
+            values[thread * 100 + i] = TestUtil.hexEncode(Random.randBytes(16));
+          }
+        }
+      };
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    Set<String> distinct = new HashSet<String>();
+    for (String value : values) {
+      assertTrue(distinct.add(value));
+    }
+  }
+
+  @Test
+  public void testRandPositiveInt() throws Exception {
+    for (int i = 0; i < 1000; i++) {
+      assertTrue(Random.randPositiveInt() > 0);
+    }
+  }
+}
@@ -0,0 +1,89 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+package com.google.crypto.tink.subtle;
+
+import static org.junit.Assert.fail;
+
+import com.google.common.truth.Truth;
+import com.google.crypto.tink.TestUtil;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Unit tests for {@link XChaCha20Poly1305}.
+ */
+@RunWith(JUnit4.class)
+public class XChaCha20Poly1305Test {
+
+  /**
+   * Tests against the test vector in Section A.3.1 of draft-arciszewski-xchacha-01.
+   */
+  @Test
+  public void testDecryptTestVector() throws GeneralSecurityException {
+    byte[] key = TestUtil.hexDecode(""
+        + "808182838485868788898a8b8c8d8e8f"
+        + "909192939495969798999a9b9c9d9e9f");
+    byte[] ciphertext = TestUtil.hexDecode(""
+        + "c0875924c1c7987947deafd8780acf49"  // tag
+        + "404142434445464748494a4b4c4d4e4f5051525354555657"  // nonce
+        + "bd6d179d3e83d43b9576579493c0e939"  // ciphertext
+        + "572a1700252bfaccbed2902c21396cbb"
+        + "731c7f1b0b4aa6440bf3a82f4eda7e39"
+        + "ae64c6708c54c216cb96b72e1213b452"
+        + "2f8c9ba40db5d945b11b69b982c1bb9e"
+        + "3f3fac2bc369488f76b2383565d3fff9"
+        + "21f9664c97637da9768812f615c68b13"
+        + "b52e");
+    byte[] aad = TestUtil.hexDecode("50515253c0c1c2c3c4c5c6c7");
+    XChaCha20Poly1305 aead = new XChaCha20Poly1305(key);
+    Truth.assertThat(aead.decrypt(ciphertext, aad)).isEqualTo(
+        ("Ladies and Gentlemen of the class of '99: If I could offer you only one tip for the "
+            + "future, sunscreen would be it.").getBytes(StandardCharsets.US_ASCII));
+  }
+
+  @Test
+  public void testEncryptDecrypt() throws GeneralSecurityException {
+    XChaCha20Poly1305 aead = new XChaCha20Poly1305(Random.randBytes(32));
+    byte[] aad = Random.randBytes(13);
+    for (int messageSize = 0; messageSize < 600; messageSize += 11) {
+      byte[] message = Random.randBytes(messageSize);
+      byte[] ciphertext = aead.encrypt(message, aad);
+      Truth.assertThat(ciphertext.length).isEqualTo(16 + 24 + messageSize);
+      Truth.assertThat(aead.decrypt(ciphertext, aad)).isEqualTo(message);
+    }
+  }
+
+  @Test
+  public void testModifiedCiphertextFails() throws GeneralSecurityException {
+    XChaCha20Poly1305 aead = new XChaCha20Poly1305(Random.randBytes(32));
+    byte[] aad = Random.randBytes(13);
+    byte[] ciphertext = aead.encrypt(Random.randBytes(40), aad);
+    for (int b = 0; b < ciphertext.length; b++) {
+      byte[] modified = Arrays.copyOf(ciphertext, ciphertext.length);
+      modified[b] ^= 1;
+      try {
+        aead.decrypt(modified, aad);
+        fail("Decrypting modified ciphertext should fail");
+      } catch (GeneralSecurityException e) {
+        // Expected.
+      }
+    }
+  }
+}
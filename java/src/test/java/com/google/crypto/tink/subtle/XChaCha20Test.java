@@ -0,0 +1,81 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+package com.google.crypto.tink.subtle;
+
+import com.google.common.truth.Truth;
+import com.google.crypto.tink.TestUtil;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executor;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Unit tests for {@link XChaCha20}.
+ */
+@RunWith(JUnit4.class)
+public class XChaCha20Test extends DJBCipherTestBase<XChaCha20> {
+
+  @Override
+  protected XChaCha20 createInstance(byte[] key) {
+    return new XChaCha20(key);
+  }
+
+  @Override
+  protected XChaCha20 createInstance(byte[] key, Executor executor) {
+    return new XChaCha20(key, executor);
+  }
+
+  /**
+   * Tests against the test vector in Section 2.2.1 of draft-arciszewski-xchacha-01.
+   */
+  @Test
+  public void testHChaCha20() {
+    byte[] key = TestUtil.hexDecode(""
+        + "000102030405060708090a0b0c0d0e0f"
+        + "101112131415161718191a1b1c1d1e1f");
+    byte[] nonce = TestUtil.hexDecode("000000090000004a0000000031415927");
+    Truth.assertThat(XChaCha20.hChaCha20(key, nonce)).isEqualTo(TestUtil.hexDecode(""
+        + "82413b4227b27bfed30e42508a877d73"
+        + "a0f9e4d58a74a853c12ec41326d3ecdc"));
+  }
+
+  /**
+   * Tests against the ciphertext of the test vector in Section A.3.1 of
+   * draft-arciszewski-xchacha-01.
+   */
+  @Test
+  public void testXChaCha20() {
+    byte[] key = TestUtil.hexDecode(""
+        + "808182838485868788898a8b8c8d8e8f"
+        + "909192939495969798999a9b9c9d9e9f");
+    byte[] nonce = TestUtil.hexDecode("404142434445464748494a4b4c4d4e4f5051525354555657");
+    byte[] in = ("Ladies and Gentlemen of the class of '99: If I could offer you only one tip "
+        + "for the future, sunscreen would be it.").getBytes(StandardCharsets.US_ASCII);
+    ByteBuffer out = ByteBuffer.allocate(in.length);
+    new XChaCha20(key).process(out, in, 0, nonce, 1);
+    Truth.assertThat(out.array()).isEqualTo(TestUtil.hexDecode(""
+        + "bd6d179d3e83d43b9576579493c0e939"
+        + "572a1700252bfaccbed2902c21396cbb"
+        + "731c7f1b0b4aa6440bf3a82f4eda7e39"
+        + "ae64c6708c54c216cb96b72e1213b452"
+        + "2f8c9ba40db5d945b11b69b982c1bb9e"
+        + "3f3fac2bc369488f76b2383565d3fff9"
+        + "21f9664c97637da9768812f615c68b13"
+        + "b52e"));
+  }
+}
@@ -22,6 +22,7 @@ import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.Executor;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
@@ -39,6 +40,11 @@ public class XSalsa20Test extends DJBCipherTestBase<XSalsa20> {
     return new XSalsa20(key);
   }
 
+  @Override
+  protected XSalsa20 createInstance(byte[] key, Executor executor) {
+    return new XSalsa20(key, executor);
+  }
+
   private static int[] matrix(int[] bytes) {
     return DJBCipher.toIntArray(
         ByteBuffer.wrap(twosCompByte(bytes)).order(ByteOrder.LITTLE_ENDIAN));
@@ -0,0 +1,166 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.subtle;
+
+import static com.google.crypto.tink.TestUtil.assertExceptionContains;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import com.google.crypto.tink.Aead;
+import com.google.crypto.tink.Mac;
+import com.google.crypto.tink.PublicKeyVerify;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.SecretKeySpec;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link ZeroCopyUtil}. */
+@RunWith(JUnit4.class)
+public class ZeroCopyUtilTest {
+  /** An Aead that only implements the methods of {@code Aead}. */
+  private static final class PlainAead implements Aead {
+    private final Aead delegate;
+
+    PlainAead(Aead delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public byte[] encrypt(final byte[] plaintext, final byte[] aad)
+        throws GeneralSecurityException {
+      return delegate.encrypt(plaintext, aad);
+    }
+
+    @Override
+    public byte[] decrypt(final byte[] ciphertext, final byte[] aad)
+        throws GeneralSecurityException {
+      return delegate.decrypt(ciphertext, aad);
+    }
+  }
+
+  private static void checkAead(Aead aead, int ciphertextSize) throws Exception {
+    byte[] plaintext = Random.randBytes(20);
+    byte[] aad = Random.randBytes(10);
+    byte[] buffer = new byte[3 + ciphertextSize + 2];
+    assertEquals(ciphertextSize, ZeroCopyUtil.encrypt(aead, plaintext, aad, buffer, 3));
+    assertArrayEquals(plaintext, ZeroCopyUtil.decrypt(aead, buffer, 3, ciphertextSize, aad));
+    assertArrayEquals(plaintext,
+        aead.decrypt(Arrays.copyOfRange(buffer, 3, 3 + ciphertextSize), aad));
+
+    ByteBuffer ciphertext = ByteBuffer.allocateDirect(ciphertextSize);
+    ZeroCopyUtil.encrypt(aead, ByteBuffer.wrap(plaintext), ByteBuffer.wrap(aad), ciphertext);
+    assertEquals(0, ciphertext.remaining());
+    ciphertext.flip();
+    ByteBuffer decrypted = ByteBuffer.allocate(plaintext.length);
+    ZeroCopyUtil.decrypt(aead, ciphertext, ByteBuffer.wrap(aad), decrypted);
+    assertEquals(0, ciphertext.remaining());
+    assertArrayEquals(plaintext, decrypted.array());
+
+    try {
+      ZeroCopyUtil.encrypt(aead, plaintext, aad, new byte[ciphertextSize], 1);
+      fail("Expected ShortBufferException");
+    } catch (ShortBufferException expected) {
+    }
+    try {
+      ZeroCopyUtil.decrypt(aead, buffer, 3, buffer.length, aad);
+      fail("Expected GeneralSecurityException");
+    } catch (GeneralSecurityException e) {
+      assertExceptionContains(e, "invalid offset or length");
+    }
+  }
+
+  @Test
+  public void testZeroCopyAead() throws Exception {
+    Aead aead = new AesGcmJce(Random.randBytes(16));
+    assertEquals(12 + 20 + 16, ZeroCopyUtil.ciphertextSize(aead, 20));
+    checkAead(aead, 12 + 20 + 16);
+  }
+
+  @Test
+  public void testAeadFallback() throws Exception {
+    Aead aead = new PlainAead(new AesGcmJce(Random.randBytes(16)));
+    assertEquals(-1, ZeroCopyUtil.ciphertextSize(aead, 20));
+    checkAead(aead, 12 + 20 + 16);
+  }
+
+  @Test
+  public void testMac() throws Exception {
+    final Mac zeroCopyMac =
+        new MacJce("HMACSHA256", new SecretKeySpec(Random.randBytes(16), "HMAC"), 16);
+    Mac plainMac = new Mac() {
+      @Override
+      public byte[] computeMac(final byte[] data) throws GeneralSecurityException {
+        return zeroCopyMac.computeMac(data);
+      }
+
+      @Override
+      public void verifyMac(final byte[] mac, final byte[] data) throws GeneralSecurityException {
+        zeroCopyMac.verifyMac(mac, data);
+      }
+    };
+    byte[] data = Random.randBytes(20);
+    byte[] tag = zeroCopyMac.computeMac(data);
+    byte[] buffer = new byte[5 + tag.length];
+    System.arraycopy(tag, 0, buffer, 5, tag.length);
+    for (Mac mac : new Mac[] {zeroCopyMac, plainMac}) {
+      ByteBuffer dataBuffer = ByteBuffer.allocateDirect(data.length);
+      dataBuffer.put(data).flip();
+      assertArrayEquals(tag, ZeroCopyUtil.computeMac(mac, dataBuffer.duplicate()));
+      ZeroCopyUtil.verifyMac(mac, tag, dataBuffer);
+      assertEquals(0, dataBuffer.remaining());
+      ZeroCopyUtil.verifyMac(mac, buffer, 5, tag.length, data);
+      try {
+        ZeroCopyUtil.verifyMac(mac, buffer, 4, tag.length, data);
+        fail("Expected GeneralSecurityException");
+      } catch (GeneralSecurityException expected) {
+      }
+    }
+  }
+
+  @Test
+  public void testVerify() throws Exception {
+    Ed25519Sign.KeyPair keyPair = Ed25519Sign.KeyPair.newKeyPair();
+    byte[] data = Random.randBytes(20);
+    byte[] signature = new Ed25519Sign(keyPair.getPrivateKey()).sign(data);
+    byte[] buffer = new byte[5 + signature.length];
+    System.arraycopy(signature, 0, buffer, 5, signature.length);
+
+    final Ed25519Verify zeroCopyVerifier = new Ed25519Verify(keyPair.getPublicKey());
+    PublicKeyVerify plainVerifier = new PublicKeyVerify() {
+      @Override
+      public void verify(final byte[] signature, final byte[] data)
+          throws GeneralSecurityException {
+        zeroCopyVerifier.verify(signature, data);
+      }
+    };
+    for (PublicKeyVerify verifier : new PublicKeyVerify[] {zeroCopyVerifier, plainVerifier}) {
+      ZeroCopyUtil.verify(verifier, buffer, 5, signature.length, data);
+      byte[] modified = Arrays.copyOf(data, data.length);
+      modified[0] ^= 1;
+      try {
+        ZeroCopyUtil.verify(verifier, buffer, 5, signature.length, modified);
+        fail("Expected GeneralSecurityException");
+      } catch (GeneralSecurityException expected) {
+      }
+    }
+  }
+}